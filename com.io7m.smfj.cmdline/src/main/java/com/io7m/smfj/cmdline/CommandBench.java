@@ -0,0 +1,486 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.cmdline;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.io7m.smfj.core.SMFErrorType;
+import com.io7m.smfj.core.SMFFormatVersion;
+import com.io7m.smfj.frontend.SMFFCopier;
+import com.io7m.smfj.frontend.SMFFCopierType;
+import com.io7m.smfj.frontend.SMFFormatRegistry;
+import com.io7m.smfj.frontend.SMFParserProviders;
+import com.io7m.smfj.parser.api.SMFParserEventsType;
+import com.io7m.smfj.parser.api.SMFParserProviderType;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshProducer;
+import com.io7m.smfj.processing.api.SMFMemoryMeshProducerType;
+import com.io7m.smfj.processing.api.SMFMemoryMeshSerializer;
+import com.io7m.smfj.serializer.api.SMFSerializerProviderType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Parameters(commandDescription = "Measure parsing and serialization throughput")
+public final class CommandBench extends CommandRoot
+{
+  private static final Logger LOG = LoggerFactory.getLogger(CommandBench.class);
+  private static final URI BENCH_URI = URI.create("urn:bench");
+
+  @Parameter(
+    names = "--input-file",
+    required = true,
+    description = "The input file")
+  private Path fileIn;
+
+  @Parameter(
+    names = "--input-format",
+    description = "The input file format")
+  private String formatIn;
+
+  @Parameter(
+    names = "--warmup-iterations",
+    description = "The number of unmeasured iterations of each workload")
+  private int warmup = 3;
+
+  @Parameter(
+    names = "--iterations",
+    description = "The number of measured iterations of each workload")
+  private int iterations = 10;
+
+  @Parameter(
+    names = "--output-json",
+    description = "A file to which results are written as JSON")
+  private Path fileJSON;
+
+  private SMFMemoryMesh mesh;
+  private long vertices;
+  private long triangles;
+
+  CommandBench()
+  {
+
+  }
+
+  @Override
+  public Integer call()
+    throws Exception
+  {
+    super.call();
+
+    if (this.warmup < 0 || this.iterations < 1) {
+      LOG.error("iteration counts must be positive");
+      return Integer.valueOf(1);
+    }
+
+    final Optional<SMFParserProviderType> providerInOpt =
+      SMFParserProviders.findParserProvider(
+        Optional.ofNullable(this.formatIn),
+        this.fileIn.toString());
+
+    if (providerInOpt.isEmpty()) {
+      return Integer.valueOf(1);
+    }
+
+    final SMFParserProviderType providerIn = providerInOpt.get();
+    final byte[] input = Files.readAllBytes(this.fileIn);
+    final SMFMemoryMeshProducerType loader = SMFMemoryMeshProducer.create();
+    try (var parser = providerIn.parserCreateSequential(
+      loader, this.fileIn.toUri(), new ByteArrayInputStream(input))) {
+      parser.parse();
+    }
+
+    if (!loader.errors().isEmpty()) {
+      logErrors(loader.errors());
+      return Integer.valueOf(1);
+    }
+
+    this.mesh = loader.mesh();
+    this.vertices = this.mesh.header().vertexCount();
+    this.triangles = this.mesh.header().triangles().triangleCount();
+
+    final List<Result> results = new ArrayList<>();
+    final SMFFormatRegistry registry = SMFFormatRegistry.serviceLoaded();
+    for (final SMFParserProviderType parsers : registry.parserProviders()) {
+      final String name = parsers.parserFormat().name();
+      final Optional<SMFSerializerProviderType> serializersOpt =
+        registry.serializerForName(name);
+
+      if (serializersOpt.isPresent()) {
+        final SMFSerializerProviderType serializers = serializersOpt.get();
+        this.benchSerializer(serializers, results);
+        this.benchParser(parsers, this.encode(serializers), results);
+        this.benchCopy(parsers, serializers, results);
+      } else if (name.equals(providerIn.parserFormat().name())) {
+        this.benchParser(parsers, input, results);
+      } else {
+        LOG.info(
+          "skipping format {}: no serializer is available to produce data",
+          name);
+      }
+    }
+
+    this.showText(results);
+    if (this.fileJSON != null) {
+      Files.writeString(
+        this.fileJSON,
+        this.showJSON(results),
+        StandardCharsets.UTF_8);
+    }
+    return Integer.valueOf(0);
+  }
+
+  private static void logErrors(
+    final List<SMFErrorType> errors)
+  {
+    errors.forEach(e -> {
+      LOG.error("{}", e.fullMessage());
+      e.exception().ifPresent(x -> LOG.error("exception: ", x));
+    });
+  }
+
+  private byte[] encode(
+    final SMFSerializerProviderType serializers)
+    throws IOException
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    this.serialize(serializers, output);
+    return output.toByteArray();
+  }
+
+  private void serialize(
+    final SMFSerializerProviderType serializers,
+    final OutputStream output)
+    throws IOException
+  {
+    try (var serializer = serializers.serializerCreate(
+      serializers.serializerSupportedVersions().last(), BENCH_URI, output)) {
+      SMFMemoryMeshSerializer.serialize(this.mesh, serializer);
+    }
+  }
+
+  private void benchSerializer(
+    final SMFSerializerProviderType serializers,
+    final List<Result> results)
+    throws IOException
+  {
+    final long size = (long) this.encode(serializers).length;
+    results.add(this.measure(
+      serializers.serializerFormat().name(),
+      serializers.serializerSupportedVersions().last(),
+      "serialize",
+      size,
+      () -> this.serialize(serializers, OutputStream.nullOutputStream())));
+  }
+
+  private void benchParser(
+    final SMFParserProviderType parsers,
+    final byte[] data,
+    final List<Result> results)
+    throws IOException
+  {
+    final String name = parsers.parserFormat().name();
+    final SMFFormatVersion version = parsers.parserSupportedVersions().last();
+
+    results.add(this.measure(
+      name, version, "parse", (long) data.length, () -> {
+        final SMFBenchDiscardingEvents events =
+          new SMFBenchDiscardingEvents();
+        parse(parsers, data, events);
+        checkErrors(events.errors());
+        LOG.trace("checksum: {}", Long.valueOf(events.checksum()));
+      }));
+
+    results.add(this.measure(
+      name, version, "parse-mesh", (long) data.length, () -> {
+        final SMFMemoryMeshProducerType events =
+          SMFMemoryMeshProducer.create();
+        parse(parsers, data, events);
+        checkErrors(events.errors());
+        LOG.trace("mesh: {}", events.mesh().header());
+      }));
+  }
+
+  private void benchCopy(
+    final SMFParserProviderType parsers,
+    final SMFSerializerProviderType serializers,
+    final List<Result> results)
+    throws IOException
+  {
+    final byte[] data = this.encode(serializers);
+    final SMFFormatVersion version =
+      serializers.serializerSupportedVersions().last();
+
+    results.add(this.measure(
+      serializers.serializerFormat().name(),
+      version,
+      "copy",
+      (long) data.length,
+      () -> {
+        final SMFFCopierType copier =
+          SMFFCopier.create(serializers.serializerCreate(
+            version, BENCH_URI, OutputStream.nullOutputStream()));
+        parse(parsers, data, copier);
+        checkErrors(copier.errors());
+      }));
+  }
+
+  private static void parse(
+    final SMFParserProviderType parsers,
+    final byte[] data,
+    final SMFParserEventsType events)
+    throws IOException
+  {
+    try (var parser = parsers.parserCreateSequential(
+      events, BENCH_URI, new ByteArrayInputStream(data))) {
+      parser.parse();
+    }
+  }
+
+  private static void checkErrors(
+    final List<SMFErrorType> errors)
+    throws IOException
+  {
+    if (!errors.isEmpty()) {
+      logErrors(errors);
+      throw new IOException("Workload reported errors");
+    }
+  }
+
+  private Result measure(
+    final String format,
+    final SMFFormatVersion version,
+    final String workload,
+    final long bytes,
+    final WorkloadType task)
+    throws IOException
+  {
+    LOG.debug("{} {}: warming up", format, workload);
+    for (int index = 0; index < this.warmup; ++index) {
+      task.run();
+    }
+
+    LOG.debug("{} {}: measuring", format, workload);
+    final long allocatedThen = allocatedBytes();
+    final long timeThen = System.nanoTime();
+    for (int index = 0; index < this.iterations; ++index) {
+      task.run();
+    }
+    final long timeNow = System.nanoTime();
+    final long allocatedNow = allocatedBytes();
+
+    final long allocated;
+    if (allocatedThen < 0L || allocatedNow < 0L) {
+      allocated = -1L;
+    } else {
+      allocated = (allocatedNow - allocatedThen) / (long) this.iterations;
+    }
+
+    return new Result(
+      format,
+      version,
+      workload,
+      bytes,
+      (double) (timeNow - timeThen) / 1.0e9 / (double) this.iterations,
+      allocated);
+  }
+
+  private static long allocatedBytes()
+  {
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      final var extended = (com.sun.management.ThreadMXBean) threads;
+      if (extended.isThreadAllocatedMemorySupported()
+        && extended.isThreadAllocatedMemoryEnabled()) {
+        return extended.getThreadAllocatedBytes(
+          Thread.currentThread().getId());
+      }
+    }
+    return -1L;
+  }
+
+  private void showText(
+    final List<Result> results)
+  {
+    final String fmt_string =
+      "%-6s : %-7s : %-10s : %12s : %14s : %14s : %12s\n";
+
+    this.output().printf(
+      "# %s: %d vertices, %d triangles, %d warmup, %d iterations\n",
+      this.fileIn,
+      Long.valueOf(this.vertices),
+      Long.valueOf(this.triangles),
+      Integer.valueOf(this.warmup),
+      Integer.valueOf(this.iterations));
+
+    this.output().printf(
+      fmt_string,
+      "# Name",
+      "Version",
+      "Workload",
+      "MB/s",
+      "Vertices/s",
+      "Triangles/s",
+      "Bytes/vertex");
+
+    for (final Result result : results) {
+      this.output().printf(
+        fmt_string,
+        result.format,
+        result.version.toHumanString(),
+        result.workload,
+        number(result.megabytesPerSecond(), "%.2f"),
+        number(result.perSecond(this.vertices), "%.0f"),
+        number(result.perSecond(this.triangles), "%.0f"),
+        number(result.allocatedPer(this.vertices), "%.2f"));
+    }
+  }
+
+  private static String number(
+    final double x,
+    final String format)
+  {
+    if (Double.isFinite(x)) {
+      return String.format(Locale.ROOT, format, Double.valueOf(x));
+    }
+    return "-";
+  }
+
+  private static String json(
+    final double x)
+  {
+    if (Double.isFinite(x)) {
+      return String.format(Locale.ROOT, "%.6f", Double.valueOf(x));
+    }
+    return "null";
+  }
+
+  private String showJSON(
+    final List<Result> results)
+  {
+    final StringBuilder out = new StringBuilder(256 + results.size() * 256);
+    out.append("{\n");
+    out.append(String.format(
+      "  \"file\": %s,\n", SMFTextOutput.jsonString(this.fileIn.toString())));
+    out.append(String.format(
+      "  \"vertices\": %d,\n", Long.valueOf(this.vertices)));
+    out.append(String.format(
+      "  \"triangles\": %d,\n", Long.valueOf(this.triangles)));
+    out.append(String.format(
+      "  \"warmup_iterations\": %d,\n", Integer.valueOf(this.warmup)));
+    out.append(String.format(
+      "  \"iterations\": %d,\n", Integer.valueOf(this.iterations)));
+    out.append("  \"results\": [");
+
+    for (int index = 0; index < results.size(); ++index) {
+      final Result result = results.get(index);
+      out.append(index == 0 ? "\n" : ",\n");
+      out.append("    {");
+      out.append(String.format(
+        "\"format\": %s, ", SMFTextOutput.jsonString(result.format)));
+      out.append(String.format(
+        "\"version\": %s, ", SMFTextOutput.jsonString(result.version.toHumanString())));
+      out.append(String.format(
+        "\"workload\": %s, ", SMFTextOutput.jsonString(result.workload)));
+      out.append(String.format(
+        "\"bytes\": %d, ", Long.valueOf(result.bytes)));
+      out.append(String.format(
+        "\"seconds_per_iteration\": %s, ", json(result.seconds)));
+      out.append(String.format(
+        "\"megabytes_per_second\": %s, ",
+        json(result.megabytesPerSecond())));
+      out.append(String.format(
+        "\"vertices_per_second\": %s, ",
+        json(result.perSecond(this.vertices))));
+      out.append(String.format(
+        "\"triangles_per_second\": %s, ",
+        json(result.perSecond(this.triangles))));
+      out.append(String.format(
+        "\"allocated_bytes_per_vertex\": %s",
+        json(result.allocatedPer(this.vertices))));
+      out.append('}');
+    }
+
+    out.append("\n  ]\n}\n");
+    return out.toString();
+  }
+
+  private interface WorkloadType
+  {
+    void run()
+      throws IOException;
+  }
+
+  private static final class Result
+  {
+    private final String format;
+    private final SMFFormatVersion version;
+    private final String workload;
+    private final long bytes;
+    private final double seconds;
+    private final long allocated;
+
+    Result(
+      final String in_format,
+      final SMFFormatVersion in_version,
+      final String in_workload,
+      final long in_bytes,
+      final double in_seconds,
+      final long in_allocated)
+    {
+      this.format = in_format;
+      this.version = in_version;
+      this.workload = in_workload;
+      this.bytes = in_bytes;
+      this.seconds = in_seconds;
+      this.allocated = in_allocated;
+    }
+
+    double megabytesPerSecond()
+    {
+      return (double) this.bytes / 1.0e6 / this.seconds;
+    }
+
+    double perSecond(
+      final long count)
+    {
+      return (double) count / this.seconds;
+    }
+
+    double allocatedPer(
+      final long count)
+    {
+      if (this.allocated < 0L || count == 0L) {
+        return Double.NaN;
+      }
+      return (double) this.allocated / (double) count;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.cmdline;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Parameters(commandDescription = "Run a command on a running server")
+public final class CommandClient extends CommandRoot
+{
+  private static final Logger LOG = LoggerFactory.getLogger(CommandClient.class);
+
+  @Parameter(
+    names = "--state-file",
+    description = "The state file written by the server")
+  private Path stateFile = SMFServeProtocol.defaultStateFile();
+
+  @Parameter(
+    description = "The command to run, following '--' (or 'shutdown')")
+  private List<String> arguments = new ArrayList<>();
+
+  CommandClient()
+  {
+
+  }
+
+  @Override
+  public Integer call()
+    throws Exception
+  {
+    super.call();
+
+    if (this.arguments.isEmpty()) {
+      LOG.error("a command is required");
+      return Integer.valueOf(1);
+    }
+
+    final SMFServeProtocol.State state;
+    try {
+      state = SMFServeProtocol.readState(this.stateFile);
+    } catch (final IOException e) {
+      LOG.error("no server appears to be running: {}", e.getMessage());
+      return Integer.valueOf(1);
+    }
+
+    try (Socket socket =
+           new Socket(InetAddress.getLoopbackAddress(), state.port())) {
+      final DataOutputStream output =
+        new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      final DataInputStream input =
+        new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+      SMFServeProtocol.writeRequest(
+        output,
+        state.token(),
+        Paths.get("").toAbsolutePath(),
+        this.arguments);
+      final SMFServeProtocol.Response response =
+        SMFServeProtocol.readResponse(input);
+
+      final String message = response.message().strip();
+      if (!message.isEmpty()) {
+        if (response.exitCode() == 0) {
+          LOG.warn("server: {}", message);
+        } else {
+          LOG.error("server: {}", message);
+        }
+      }
+      this.output().write(response.output());
+      this.output().flush();
+      return Integer.valueOf(response.exitCode());
+    }
+  }
+}
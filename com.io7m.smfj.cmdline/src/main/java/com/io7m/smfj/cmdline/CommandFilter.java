@@ -26,7 +26,6 @@ import com.io7m.smfj.frontend.SMFParserProviders;
 import com.io7m.smfj.frontend.SMFSerializerProviders;
 import com.io7m.smfj.parser.api.SMFParserProviderType;
 import com.io7m.smfj.processing.api.SMFFilterCommandContext;
-import com.io7m.smfj.processing.api.SMFFilterCommandModuleResolver;
 import com.io7m.smfj.processing.api.SMFFilterCommandModuleResolverType;
 import com.io7m.smfj.processing.api.SMFMemoryMesh;
 import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
@@ -35,16 +34,33 @@ import com.io7m.smfj.processing.api.SMFMemoryMeshProducerType;
 import com.io7m.smfj.processing.api.SMFMemoryMeshSerializer;
 import com.io7m.smfj.serializer.api.SMFSerializerProviderType;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
 @Parameters(commandDescription = "Filter mesh data")
 public final class CommandFilter extends CommandRoot
 {
@@ -83,6 +99,16 @@ public final class CommandFilter extends CommandRoot
     description = "The source directory")
   private Path sourceDirectory = Paths.get("");
 
+  @Parameter(
+    names = "--watch",
+    description = "Keep running and filter again whenever the input or command file changes (not permitted in jobs)")
+  private boolean watch;
+
+  @Parameter(
+    names = "--watch-debounce-ms",
+    description = "The time in milliseconds that must pass without further changes before filtering again")
+  private long watchDebounce = 50L;
+
   CommandFilter()
   {
     this.exitCode = 0;
@@ -94,6 +120,18 @@ public final class CommandFilter extends CommandRoot
   {
     super.call();
 
+    if (this.watch && this.isJob()) {
+      LOG.error("--watch cannot be used in jobs run by a server");
+      return Integer.valueOf(1);
+    }
+
+    this.fileIn = this.resolve(this.fileIn);
+    this.fileCommands = this.resolve(this.fileCommands);
+    this.sourceDirectory = this.resolve(this.sourceDirectory);
+    if (this.fileOut != null) {
+      this.fileOut = this.resolve(this.fileOut);
+    }
+
     final Optional<List<SMFMemoryMeshFilterType>> filtersOpt =
       this.parseFilterCommands();
 
@@ -101,8 +139,6 @@ public final class CommandFilter extends CommandRoot
       return this.fail();
     }
 
-    final List<SMFMemoryMeshFilterType> filters = filtersOpt.get();
-
     final Optional<SMFParserProviderType> providerParserOpt =
       SMFParserProviders.findParserProvider(
         Optional.ofNullable(this.formatIn),
@@ -113,12 +149,28 @@ public final class CommandFilter extends CommandRoot
     }
 
     final SMFParserProviderType providerParser = providerParserOpt.get();
+    if (this.watch) {
+      this.watchLoop(providerParser, filtersOpt.get());
+    } else {
+      this.runPipeline(providerParser, filtersOpt.get());
+    }
+    return Integer.valueOf(this.exitCode);
+  }
+
+  private void runPipeline(
+    final SMFParserProviderType providerParser,
+    final List<SMFMemoryMeshFilterType> filters)
+    throws IOException
+  {
+    final var timeThen = LocalDateTime.now();
+    this.exitCode = 0;
 
     final Optional<SMFMemoryMesh> meshOpt =
       this.loadMemoryMesh(providerParser, this.fileIn);
 
     if (meshOpt.isEmpty()) {
-      return this.fail();
+      this.fail();
+      return;
     }
 
     final SMFFilterCommandContext context =
@@ -130,11 +182,181 @@ public final class CommandFilter extends CommandRoot
       this.runFilters(context, filters, meshOpt.get());
 
     if (filteredOpt.isEmpty()) {
-      return this.fail();
+      this.fail();
+      return;
     }
 
     this.serializeMesh(filteredOpt.get());
-    return Integer.valueOf(this.exitCode);
+    LOG.debug(
+      "pipeline completed in {}",
+      Duration.between(timeThen, LocalDateTime.now()));
+  }
+
+  private void watchLoop(
+    final SMFParserProviderType providerParser,
+    final List<SMFMemoryMeshFilterType> initialFilters)
+    throws IOException
+  {
+    final Path input = this.fileIn.toAbsolutePath().normalize();
+    final Path commands = this.fileCommands.toAbsolutePath().normalize();
+
+    try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+      final Set<Path> watched = register(watcher, input, commands);
+
+      /*
+       * The files are registered and hashed before the first run so that
+       * changes made during the first run are not missed.
+       */
+
+      List<SMFMemoryMeshFilterType> filters = initialFilters;
+      Optional<String> inputHash = hashOf(input);
+      Optional<String> commandsHash = hashOf(commands);
+      this.runPipelineWatched(providerParser, filters);
+      LOG.info("watching {} and {} for changes", input, commands);
+
+      while (true) {
+        if (!this.awaitChanges(watcher, watched)) {
+          continue;
+        }
+
+        final Optional<String> commandsNow = hashOf(commands);
+        final Optional<String> inputNow = hashOf(input);
+        if (commandsNow.isEmpty() || inputNow.isEmpty()) {
+          continue;
+        }
+
+        final boolean commandsChanged = !commandsNow.equals(commandsHash);
+        if (commandsChanged) {
+          LOG.info("{} changed; reloading filter commands", commands);
+          final Optional<List<SMFMemoryMeshFilterType>> filtersOpt =
+            this.parseFilterCommandsWatched();
+          if (filtersOpt.isEmpty()) {
+            continue;
+          }
+          filters = filtersOpt.get();
+          commandsHash = commandsNow;
+        }
+
+        if (commandsChanged || !inputNow.equals(inputHash)) {
+          LOG.info("filtering {}", input);
+          this.runPipelineWatched(providerParser, filters);
+          inputHash = inputNow;
+        }
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Run the pipeline without allowing failures to end the watch; the input
+   * file may be only partially written when the pipeline runs.
+   */
+
+  private void runPipelineWatched(
+    final SMFParserProviderType providerParser,
+    final List<SMFMemoryMeshFilterType> filters)
+  {
+    try {
+      this.runPipeline(providerParser, filters);
+    } catch (final IOException e) {
+      LOG.error("i/o error: {}", e.getMessage());
+      LOG.debug("i/o error: ", e);
+      this.fail();
+    } catch (final RuntimeException e) {
+      LOG.error("filtering failed: {}", e.getMessage());
+      LOG.debug("filtering failed: ", e);
+      this.fail();
+    }
+  }
+
+  private Optional<List<SMFMemoryMeshFilterType>> parseFilterCommandsWatched()
+  {
+    try {
+      return this.parseFilterCommands();
+    } catch (final IOException e) {
+      LOG.error("could not read filter commands: {}", e.getMessage());
+      LOG.debug("i/o error: ", e);
+      return Optional.empty();
+    }
+  }
+
+  private static Set<Path> register(
+    final WatchService watcher,
+    final Path... files)
+    throws IOException
+  {
+    final Set<Path> watched = new HashSet<>(List.of(files));
+    final Set<Path> directories = new HashSet<>();
+    for (final Path file : watched) {
+      directories.add(file.getParent());
+    }
+    for (final Path directory : directories) {
+      directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+    }
+    return watched;
+  }
+
+  /**
+   * Wait for a burst of changes to end. A burst is considered to have ended
+   * when no further events have arrived within the debounce period.
+   *
+   * @return {@code true} if any of the watched files were touched
+   */
+
+  private boolean awaitChanges(
+    final WatchService watcher,
+    final Set<Path> watched)
+    throws InterruptedException
+  {
+    boolean relevant =
+      changedFiles(watcher.take()).anyMatch(watched::contains);
+
+    while (true) {
+      final WatchKey next =
+        watcher.poll(this.watchDebounce, TimeUnit.MILLISECONDS);
+      if (next == null) {
+        return relevant;
+      }
+      relevant |= changedFiles(next).anyMatch(watched::contains);
+    }
+  }
+
+  private static Stream<Path> changedFiles(
+    final WatchKey key)
+  {
+    final Path directory = (Path) key.watchable();
+    final List<Path> paths =
+      key.pollEvents()
+        .stream()
+        .filter(event -> event.kind() != OVERFLOW)
+        .map(event -> directory.resolve((Path) event.context()))
+        .map(Path::normalize)
+        .collect(Collectors.toList());
+    key.reset();
+    return paths.stream();
+  }
+
+  /**
+   * @return A digest of the file contents, or nothing if the file could not
+   * be read (such as when an editor is in the middle of replacing it)
+   */
+
+  private static Optional<String> hashOf(
+    final Path file)
+  {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      try (var stream = new DigestInputStream(Files.newInputStream(file), digest)) {
+        stream.transferTo(OutputStream.nullOutputStream());
+      }
+      return Optional.of(Base64.getEncoder().encodeToString(digest.digest()));
+    } catch (final IOException e) {
+      LOG.debug("could not read {}: {}", file, e.getMessage());
+      return Optional.empty();
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
   }
 
   private void serializeMesh(
@@ -264,7 +486,7 @@ public final class CommandFilter extends CommandRoot
     throws IOException
   {
     final SMFFilterCommandModuleResolverType resolver =
-      SMFFilterCommandModuleResolver.create();
+      SMFFilterModules.resolver();
 
     try (var stream = Files.newInputStream(this.fileCommands)) {
       final SMFPartialLogged<List<SMFMemoryMeshFilterType>> result =
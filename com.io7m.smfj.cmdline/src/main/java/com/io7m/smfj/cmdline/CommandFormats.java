@@ -20,10 +20,10 @@ package com.io7m.smfj.cmdline;
 import com.beust.jcommander.Parameters;
 import com.io7m.smfj.core.SMFFormatDescription;
 import com.io7m.smfj.core.SMFFormatVersion;
+import com.io7m.smfj.frontend.SMFFormatRegistry;
 import com.io7m.smfj.parser.api.SMFParserProviderType;
 import com.io7m.smfj.serializer.api.SMFSerializerProviderType;
-import java.util.Iterator;
-import java.util.ServiceLoader;
+import java.util.List;
 import java.util.SortedSet;
 
 @Parameters(commandDescription = "List supported formats")
@@ -42,7 +42,7 @@ final class CommandFormats extends CommandRoot
 
     final String fmt_string = "%-6s : %-6s : %-32s : %-10s : %-6s : %s\n";
 
-    System.out.printf(
+    this.output().printf(
       fmt_string,
       "# Name",
       "Suffix",
@@ -51,18 +51,15 @@ final class CommandFormats extends CommandRoot
       "R/W",
       "Description");
 
-    final ServiceLoader<SMFParserProviderType> parser_loader =
-      ServiceLoader.load(SMFParserProviderType.class);
-    final Iterator<SMFParserProviderType> parser_providers =
-      parser_loader.iterator();
+    final SMFFormatRegistry registry = SMFFormatRegistry.serviceLoaded();
 
-    while (parser_providers.hasNext()) {
-      final SMFParserProviderType provider = parser_providers.next();
+    for (final SMFParserProviderType provider : registry.parserProviders()) {
       final SMFFormatDescription format = provider.parserFormat();
-      final SortedSet<SMFFormatVersion> versions = provider.parserSupportedVersions();
+      final SortedSet<SMFFormatVersion> versions =
+        registry.parserVersions(provider);
       versions.forEach(
         version ->
-          System.out.printf(
+          this.output().printf(
             fmt_string,
             format.name(),
             format.suffix(),
@@ -75,18 +72,15 @@ final class CommandFormats extends CommandRoot
             format.description()));
     }
 
-    final ServiceLoader<SMFSerializerProviderType> serializer_loader =
-      ServiceLoader.load(SMFSerializerProviderType.class);
-    final Iterator<SMFSerializerProviderType> serializer_providers =
-      serializer_loader.iterator();
-
-    while (serializer_providers.hasNext()) {
-      final SMFSerializerProviderType provider = serializer_providers.next();
+    final List<SMFSerializerProviderType> serializers =
+      registry.serializerProviders();
+    for (final SMFSerializerProviderType provider : serializers) {
       final SMFFormatDescription format = provider.serializerFormat();
-      final SortedSet<SMFFormatVersion> versions = provider.serializerSupportedVersions();
+      final SortedSet<SMFFormatVersion> versions =
+        registry.serializerVersions(provider);
       versions.forEach(
         version ->
-          System.out.printf(
+          this.output().printf(
             fmt_string,
             format.name(),
             format.suffix(),
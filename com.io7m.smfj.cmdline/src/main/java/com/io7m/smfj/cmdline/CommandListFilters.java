@@ -18,7 +18,6 @@
 package com.io7m.smfj.cmdline;
 
 import com.beust.jcommander.Parameters;
-import com.io7m.smfj.processing.api.SMFFilterCommandModuleResolver;
 import com.io7m.smfj.processing.api.SMFFilterCommandModuleResolverType;
 import com.io7m.smfj.processing.api.SMFFilterCommandModuleType;
 import java.util.Map;
@@ -38,17 +37,17 @@ public final class CommandListFilters extends CommandRoot
     super.call();
 
     final SMFFilterCommandModuleResolverType resolver =
-      SMFFilterCommandModuleResolver.create();
+      SMFFilterModules.resolver();
     final Map<String, SMFFilterCommandModuleType> available =
       resolver.available();
 
     available.keySet().stream().sorted().forEach(moduleName -> {
       final SMFFilterCommandModuleType module = available.get(moduleName);
       module.parsers().keySet().stream().sorted().forEach(commandName -> {
-        System.out.print(moduleName);
-        System.out.print(":");
-        System.out.print(commandName);
-        System.out.println();
+        this.output().print(moduleName);
+        this.output().print(":");
+        this.output().print(commandName);
+        this.output().println();
       });
     });
 
@@ -65,7 +65,7 @@ public final class CommandProbe extends CommandRoot
   {
     super.call();
 
-    final var pathN = this.path.normalize();
+    final var pathN = this.resolve(this.path).normalize();
 
     final SMFVersionProbeControllerType controller =
       new SMFVersionProbeControllerServiceLoader();
@@ -97,7 +97,7 @@ public final class CommandProbe extends CommandRoot
 
     final SMFVersionProbed version = r.get();
     final SMFFormatDescription format = version.provider().parserFormat();
-    System.out.printf(
+    this.output().printf(
       "Format: %s (%s) %s\n",
       format.name(),
       format.mimeType(),
@@ -151,22 +151,22 @@ public final class CommandProbe extends CommandRoot
     final SMFHeader header)
   {
     header.schemaIdentifier().ifPresent(
-      schema -> System.out.printf("Schema: %s\n", schema.toHumanString()));
+      schema -> this.output().printf("Schema: %s\n", schema.toHumanString()));
 
-    System.out.printf(
+    this.output().printf(
       "Vertices: %s\n",
       Long.toUnsignedString(header.vertexCount()));
 
     final SMFTriangles triangles = header.triangles();
-    System.out.printf(
+    this.output().printf(
       "Triangles: %s (size %s)\n",
       Long.toUnsignedString(triangles.triangleCount()),
       Integer.toUnsignedString(triangles.triangleIndexSizeBits()));
 
-    System.out.printf("Attributes:\n");
+    this.output().printf("Attributes:\n");
 
     header.attributesInOrder().forEach(
-      attr -> System.out.printf(
+      attr -> this.output().printf(
         "  %-32s %s %s %s\n",
         attr.name().value(),
         attr.componentType().getName(),
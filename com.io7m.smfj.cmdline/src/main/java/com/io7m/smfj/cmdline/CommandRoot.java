@@ -18,6 +18,9 @@
 package com.io7m.smfj.cmdline;
 
 import com.beust.jcommander.Parameter;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,11 +32,82 @@ public class CommandRoot implements CommandType
     description = "Set the minimum logging verbosity level")
   private SMFLogLevel verbose = SMFLogLevel.LOG_INFO;
 
+  private PrintStream output = System.out;
+  private Path workingDirectory;
+  private boolean job;
+
   CommandRoot()
   {
 
   }
 
+  /**
+   * Set the stream to which the command writes its results.
+   *
+   * @param stream The output stream
+   */
+
+  final void setOutput(
+    final PrintStream stream)
+  {
+    this.output = Objects.requireNonNull(stream, "stream");
+  }
+
+  /**
+   * @return The stream to which the command writes its results
+   */
+
+  final PrintStream output()
+  {
+    return this.output;
+  }
+
+  /**
+   * Mark this command as a job run by the server on behalf of a client.
+   * Relative paths are resolved against the client's working directory, and
+   * the command does not change the process-wide logging level, as other
+   * jobs may be running concurrently.
+   *
+   * @param directory The absolute working directory of the client
+   */
+
+  final void setJob(
+    final Path directory)
+  {
+    Objects.requireNonNull(directory, "directory");
+    if (!directory.isAbsolute()) {
+      throw new IllegalArgumentException(
+        "Working directory must be absolute: " + directory);
+    }
+    this.workingDirectory = directory;
+    this.job = true;
+  }
+
+  /**
+   * @param path A path given on the command line
+   *
+   * @return The path resolved against the client's working directory if
+   * this command is running as a server job, or {@code path} otherwise
+   */
+
+  final Path resolve(
+    final Path path)
+  {
+    if (this.job) {
+      return this.workingDirectory.resolve(path).normalize();
+    }
+    return path;
+  }
+
+  /**
+   * @return {@code true} if this command is running as a server job
+   */
+
+  final boolean isJob()
+  {
+    return this.job;
+  }
+
   /**
    * This method must be called by subclasses.
    *
@@ -46,10 +120,12 @@ public class CommandRoot implements CommandType
   public Integer call()
     throws Exception
   {
-    final ch.qos.logback.classic.Logger root =
-      (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(
-        Logger.ROOT_LOGGER_NAME);
-    root.setLevel(this.verbose.toLevel());
+    if (!this.job) {
+      final ch.qos.logback.classic.Logger root =
+        (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(
+          Logger.ROOT_LOGGER_NAME);
+      root.setLevel(this.verbose.toLevel());
+    }
     return Integer.valueOf(0);
   }
 }
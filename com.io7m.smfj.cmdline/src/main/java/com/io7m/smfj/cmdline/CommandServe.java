@@ -0,0 +1,256 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.cmdline;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+@Parameters(commandDescription = "Run a server that executes jobs for clients")
+public final class CommandServe extends CommandRoot
+{
+  private static final Logger LOG = LoggerFactory.getLogger(CommandServe.class);
+  private static final int REQUEST_TIMEOUT_MILLISECONDS = 30_000;
+
+  @Parameter(
+    names = "--state-file",
+    description = "The file to which the server port and access token are written")
+  private Path stateFile = SMFServeProtocol.defaultStateFile();
+
+  @Parameter(
+    names = "--port",
+    description = "The loopback port on which to listen (0 selects a free port)")
+  private int port;
+
+  @Parameter(
+    names = "--threads",
+    description = "The maximum number of jobs that may run concurrently")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  @Parameter(
+    names = "--queue-size",
+    description = "The maximum number of jobs that may wait for a thread")
+  private int queueSize = 256;
+
+  private final AtomicBoolean stopping;
+  private final AtomicLong jobIds;
+  private ServerSocket server;
+  private String token;
+
+  CommandServe()
+  {
+    this.stopping = new AtomicBoolean(false);
+    this.jobIds = new AtomicLong(0L);
+  }
+
+  @Override
+  public Integer call()
+    throws Exception
+  {
+    super.call();
+
+    if (this.threads < 1 || this.queueSize < 1) {
+      LOG.error("thread and queue sizes must be positive");
+      return Integer.valueOf(1);
+    }
+
+    this.token = SMFServeProtocol.generateToken();
+
+    final ThreadPoolExecutor executor =
+      new ThreadPoolExecutor(
+        this.threads,
+        this.threads,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(this.queueSize),
+        runnable -> {
+          final Thread thread = new Thread(runnable);
+          thread.setName("com.io7m.smfj.serve.job[" + thread.getId() + "]");
+          thread.setDaemon(true);
+          return thread;
+        });
+
+    try (ServerSocket socket =
+           new ServerSocket(this.port, 50, InetAddress.getLoopbackAddress())) {
+      this.server = socket;
+      SMFServeProtocol.writeState(
+        this.stateFile, socket.getLocalPort(), this.token);
+      LOG.info(
+        "listening on {} (state file {})",
+        socket.getLocalSocketAddress(),
+        this.stateFile);
+
+      this.acceptLoop(socket, executor);
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1L, TimeUnit.MINUTES);
+      Files.deleteIfExists(this.stateFile);
+    }
+    return Integer.valueOf(0);
+  }
+
+  private void acceptLoop(
+    final ServerSocket socket,
+    final ThreadPoolExecutor executor)
+    throws IOException
+  {
+    while (!this.stopping.get()) {
+      final Socket client;
+      try {
+        client = socket.accept();
+      } catch (final SocketException e) {
+        if (this.stopping.get()) {
+          return;
+        }
+        throw e;
+      }
+
+      try {
+        executor.execute(() -> this.handle(client));
+      } catch (final RejectedExecutionException e) {
+        LOG.warn("job queue is full; rejecting connection");
+        this.reject(client, "Server is busy");
+      }
+    }
+  }
+
+  private void reject(
+    final Socket client,
+    final String message)
+  {
+    try (client) {
+      final DataOutputStream output =
+        new DataOutputStream(client.getOutputStream());
+      SMFServeProtocol.writeResponse(output, 1, message, new byte[0]);
+    } catch (final IOException e) {
+      LOG.debug("could not reject client: ", e);
+    }
+  }
+
+  private void handle(
+    final Socket client)
+  {
+    final long job = this.jobIds.incrementAndGet();
+
+    try (client) {
+      client.setSoTimeout(REQUEST_TIMEOUT_MILLISECONDS);
+      final DataInputStream input =
+        new DataInputStream(new BufferedInputStream(client.getInputStream()));
+      final DataOutputStream output =
+        new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+
+      final SMFServeProtocol.Request request =
+        SMFServeProtocol.readRequest(input);
+      if (!SMFServeProtocol.tokenMatches(this.token, request.token())) {
+        LOG.error("job {}: incorrect access token", Long.valueOf(job));
+        SMFServeProtocol.writeResponse(
+          output, 1, "Permission denied", new byte[0]);
+        return;
+      }
+
+      final List<String> arguments = request.arguments();
+      if (List.of(SMFServeProtocol.SHUTDOWN).equals(arguments)) {
+        LOG.info("job {}: shutting down", Long.valueOf(job));
+        SMFServeProtocol.writeResponse(output, 0, "", new byte[0]);
+        this.stop();
+        return;
+      }
+
+      LOG.debug("job {}: {}", Long.valueOf(job), arguments);
+      final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      final SMFJobLogAppender diagnostics =
+        new SMFJobLogAppender(Long.toString(job));
+      final int exitCode;
+      try (PrintStream stream =
+             new PrintStream(buffer, true, StandardCharsets.UTF_8)) {
+        exitCode = runJob(request, stream, diagnostics);
+      }
+
+      LOG.debug(
+        "job {}: exited with {}",
+        Long.valueOf(job),
+        Integer.valueOf(exitCode));
+      SMFServeProtocol.writeResponse(
+        output, exitCode, diagnostics.text(), buffer.toByteArray());
+    } catch (final IOException e) {
+      LOG.error("job {}: i/o error: {}", Long.valueOf(job), e.getMessage());
+      LOG.debug("i/o error: ", e);
+    }
+  }
+
+  /**
+   * Run a job, collecting the warnings and errors that it logs.
+   */
+
+  private static int runJob(
+    final SMFServeProtocol.Request request,
+    final PrintStream stream,
+    final SMFJobLogAppender diagnostics)
+  {
+    final ch.qos.logback.classic.Logger root =
+      (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(
+        Logger.ROOT_LOGGER_NAME);
+
+    diagnostics.setContext(root.getLoggerContext());
+    diagnostics.start();
+    root.addAppender(diagnostics);
+    MDC.put(SMFJobLogAppender.JOB_KEY, diagnostics.job());
+    try {
+      return Main.runJob(
+        request.arguments().toArray(new String[0]),
+        request.directory(),
+        stream);
+    } finally {
+      MDC.remove(SMFJobLogAppender.JOB_KEY);
+      root.detachAppender(diagnostics);
+      diagnostics.stop();
+    }
+  }
+
+  private void stop()
+  {
+    this.stopping.set(true);
+    try {
+      this.server.close();
+    } catch (final IOException e) {
+      LOG.error("could not close server socket: ", e);
+    }
+  }
+}
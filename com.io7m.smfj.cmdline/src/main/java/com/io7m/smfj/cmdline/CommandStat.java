@@ -0,0 +1,446 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.cmdline;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.io7m.smfj.core.SMFAttribute;
+import com.io7m.smfj.core.SMFErrorType;
+import com.io7m.smfj.core.SMFFormatVersion;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFWarningType;
+import com.io7m.smfj.frontend.SMFFormatRegistry;
+import com.io7m.smfj.parser.api.SMFParserEventsBodyType;
+import com.io7m.smfj.parser.api.SMFParserEventsHeaderType;
+import com.io7m.smfj.parser.api.SMFParserEventsType;
+import com.io7m.smfj.parser.api.SMFParserProviderType;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Parameters(commandDescription = "Display header statistics for mesh files")
+public final class CommandStat extends CommandRoot
+{
+  private static final Logger LOG = LoggerFactory.getLogger(CommandStat.class);
+
+  @Parameter(
+    names = "--input-format",
+    description = "The input file format (inferred from file suffixes if not specified)")
+  private String formatIn;
+
+  @Parameter(
+    names = "--threads",
+    description = "The number of files that may be read concurrently")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  @Parameter(
+    names = "--output-format",
+    description = "The output format (CSV or JSON)")
+  private OutputFormat outputFormat = OutputFormat.CSV;
+
+  @Parameter(
+    required = true,
+    description = "The files, or directories of files, to examine")
+  private List<String> inputs = new ArrayList<>();
+
+  private SMFFormatRegistry registry;
+
+  CommandStat()
+  {
+
+  }
+
+  enum OutputFormat
+  {
+    CSV,
+    JSON
+  }
+
+  @Override
+  public Integer call()
+    throws Exception
+  {
+    super.call();
+
+    if (this.threads < 1) {
+      LOG.error("thread count must be positive");
+      return Integer.valueOf(1);
+    }
+
+    this.registry = SMFFormatRegistry.serviceLoaded();
+    final List<Path> files = this.collectFiles();
+
+    final ExecutorService executor =
+      Executors.newFixedThreadPool(this.threads, runnable -> {
+        final Thread thread = new Thread(runnable);
+        thread.setName("com.io7m.smfj.stat[" + thread.getId() + "]");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+    final List<FileStatistics> results = new ArrayList<>(files.size());
+    try {
+      final List<Future<FileStatistics>> futures = new ArrayList<>(files.size());
+      for (final Path file : files) {
+        futures.add(executor.submit(() -> this.examine(file)));
+      }
+      for (final Future<FileStatistics> future : futures) {
+        results.add(future.get());
+      }
+    } catch (final ExecutionException e) {
+      throw new IOException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+
+    switch (this.outputFormat) {
+      case CSV:
+        this.showCSV(results);
+        break;
+      case JSON:
+        this.showJSON(results);
+        break;
+    }
+
+    final boolean failed =
+      results.stream().anyMatch(result -> !result.errors.isEmpty());
+    return Integer.valueOf(failed ? 1 : 0);
+  }
+
+  private List<Path> collectFiles()
+    throws IOException
+  {
+    final List<Path> files = new ArrayList<>();
+    for (final String input : this.inputs) {
+      final Path path = this.resolve(Paths.get(input));
+      if (Files.isDirectory(path)) {
+        try (Stream<Path> walk = Files.walk(path)) {
+          files.addAll(
+            walk.filter(Files::isRegularFile)
+              .filter(file -> this.provider(file).isPresent())
+              .sorted()
+              .collect(Collectors.toList()));
+        }
+      } else {
+        files.add(path);
+      }
+    }
+    return files;
+  }
+
+  private Optional<SMFParserProviderType> provider(
+    final Path file)
+  {
+    if (this.formatIn != null) {
+      return this.registry.parserForName(this.formatIn);
+    }
+
+    final String name = file.getFileName().toString();
+    final int index = name.lastIndexOf('.');
+    if (index == -1) {
+      return Optional.empty();
+    }
+    return this.registry.parserForSuffix(name.substring(index + 1));
+  }
+
+  private FileStatistics examine(
+    final Path file)
+  {
+    final FileStatistics result = new FileStatistics(file);
+    try {
+      result.size = Files.size(file);
+
+      final Optional<SMFParserProviderType> providerOpt = this.provider(file);
+      if (providerOpt.isEmpty()) {
+        result.errors.add("No parser is available for the file");
+        return result;
+      }
+
+      final SMFParserProviderType provider = providerOpt.get();
+      result.format = provider.parserFormat().name();
+
+      try (InputStream stream =
+             new BufferedInputStream(Files.newInputStream(file))) {
+        try (var parser =
+               provider.parserCreateSequential(result, file.toUri(), stream)) {
+          parser.parse();
+        }
+      }
+
+      if (result.header == null && result.errors.isEmpty()) {
+        result.errors.add("No header was parsed");
+      }
+    } catch (final IOException e) {
+      result.errors.add(e.getMessage());
+    }
+
+    result.errors.forEach(message -> LOG.error("{}: {}", file, message));
+    return result;
+  }
+
+  private static String attributes(
+    final SMFHeader header)
+  {
+    return header.attributesInOrder()
+      .stream()
+      .map(attribute -> String.format(
+        "%s:%s:%d:%d",
+        attribute.name().value(),
+        attribute.componentType().getName(),
+        Integer.valueOf(attribute.componentCount()),
+        Integer.valueOf(attribute.componentSizeBits())))
+      .collect(Collectors.joining(";"));
+  }
+
+  private static long vertexSize(
+    final SMFHeader header)
+  {
+    long bits = 0L;
+    for (final SMFAttribute attribute : header.attributesInOrder()) {
+      bits += (long) attribute.componentCount()
+        * (long) attribute.componentSizeBits();
+    }
+    return bits / 8L;
+  }
+
+  private void showCSV(
+    final List<FileStatistics> results)
+  {
+    this.output().print(
+      "path,format,version,size_bytes,vertices,triangles,"
+        + "triangle_index_bits,byte_order,vertex_size_bytes,attributes,errors\n");
+
+    for (final FileStatistics result : results) {
+      final List<String> fields = new ArrayList<>(11);
+      fields.add(result.file.toString());
+      fields.add(result.format == null ? "" : result.format);
+      fields.add(result.version == null ? "" : result.version.toHumanString());
+      fields.add(Long.toString(result.size));
+
+      final SMFHeader header = result.header;
+      if (header != null) {
+        fields.add(Long.toUnsignedString(header.vertexCount()));
+        fields.add(Long.toUnsignedString(header.triangles().triangleCount()));
+        fields.add(Integer.toString(
+          header.triangles().triangleIndexSizeBits()));
+        fields.add(header.dataByteOrder().toString());
+        fields.add(Long.toString(vertexSize(header)));
+        fields.add(attributes(header));
+      } else {
+        for (int index = 0; index < 6; ++index) {
+          fields.add("");
+        }
+      }
+      fields.add(String.join("; ", result.errors));
+
+      this.output().print(
+        fields.stream()
+          .map(SMFTextOutput::csvField)
+          .collect(Collectors.joining(",")));
+      this.output().print('\n');
+    }
+  }
+
+  private void showJSON(
+    final List<FileStatistics> results)
+  {
+    final StringBuilder out = new StringBuilder(256 + results.size() * 512);
+    out.append("{\n  \"files\": [");
+
+    long failed = 0L;
+    long bytes = 0L;
+    long vertices = 0L;
+    long triangles = 0L;
+    final Map<String, Long> formats = new TreeMap<>();
+
+    for (int index = 0; index < results.size(); ++index) {
+      final FileStatistics result = results.get(index);
+      out.append(index == 0 ? "\n" : ",\n");
+      out.append("    ");
+      showJSONFile(out, result);
+
+      bytes += result.size;
+      if (!result.errors.isEmpty()) {
+        failed += 1L;
+      }
+      if (result.header != null) {
+        vertices += result.header.vertexCount();
+        triangles += result.header.triangles().triangleCount();
+      }
+      if (result.format != null) {
+        formats.merge(result.format, Long.valueOf(1L), Long::sum);
+      }
+    }
+
+    out.append("\n  ],\n  \"totals\": {");
+    out.append(String.format(
+      "\"files\": %d, ", Integer.valueOf(results.size())));
+    out.append(String.format("\"failed\": %d, ", Long.valueOf(failed)));
+    out.append(String.format("\"size_bytes\": %d, ", Long.valueOf(bytes)));
+    out.append(String.format(
+      "\"vertices\": %s, ", Long.toUnsignedString(vertices)));
+    out.append(String.format(
+      "\"triangles\": %s, ", Long.toUnsignedString(triangles)));
+    out.append("\"formats\": {");
+    out.append(
+      formats.entrySet()
+        .stream()
+        .map(e -> String.format(
+          "%s: %d", SMFTextOutput.jsonString(e.getKey()), e.getValue()))
+        .collect(Collectors.joining(", ")));
+    out.append("}}\n}\n");
+    this.output().print(out);
+  }
+
+  private static void showJSONFile(
+    final StringBuilder out,
+    final FileStatistics result)
+  {
+    out.append('{');
+    out.append(String.format(
+      "\"path\": %s, ", SMFTextOutput.jsonString(result.file.toString())));
+    if (result.format != null) {
+      out.append(String.format(
+        "\"format\": %s, ", SMFTextOutput.jsonString(result.format)));
+    }
+    if (result.version != null) {
+      out.append(String.format(
+        "\"version\": %s, ",
+        SMFTextOutput.jsonString(result.version.toHumanString())));
+    }
+    out.append(String.format(
+      "\"size_bytes\": %d, ", Long.valueOf(result.size)));
+
+    final SMFHeader header = result.header;
+    if (header != null) {
+      out.append(String.format(
+        "\"vertices\": %s, ", Long.toUnsignedString(header.vertexCount())));
+      out.append(String.format(
+        "\"triangles\": %s, ",
+        Long.toUnsignedString(header.triangles().triangleCount())));
+      out.append(String.format(
+        "\"triangle_index_bits\": %d, ",
+        Integer.valueOf(header.triangles().triangleIndexSizeBits())));
+      out.append(String.format(
+        "\"byte_order\": %s, ",
+        SMFTextOutput.jsonString(header.dataByteOrder().toString())));
+      out.append(String.format(
+        "\"vertex_size_bytes\": %d, ", Long.valueOf(vertexSize(header))));
+      out.append("\"attributes\": [");
+      out.append(
+        header.attributesInOrder()
+          .stream()
+          .map(attribute -> String.format(
+            "{\"name\": %s, \"type\": %s, \"count\": %d, \"bits\": %d}",
+            SMFTextOutput.jsonString(attribute.name().value()),
+            SMFTextOutput.jsonString(attribute.componentType().getName()),
+            Integer.valueOf(attribute.componentCount()),
+            Integer.valueOf(attribute.componentSizeBits())))
+          .collect(Collectors.joining(", ")));
+      out.append("], ");
+    }
+
+    out.append("\"errors\": [");
+    out.append(
+      result.errors.stream()
+        .map(SMFTextOutput::jsonString)
+        .collect(Collectors.joining(", ")));
+    out.append("]}");
+  }
+
+  /**
+   * The statistics gathered from a single file. The receiver accepts the
+   * header and declines the body, so parsers stop before any vertex or
+   * triangle data.
+   */
+
+  private static final class FileStatistics
+    implements SMFParserEventsType, SMFParserEventsHeaderType
+  {
+    private final Path file;
+    private final List<String> errors;
+    private long size;
+    private String format;
+    private SMFFormatVersion version;
+    private SMFHeader header;
+
+    FileStatistics(
+      final Path in_file)
+    {
+      this.file = in_file;
+      this.errors = new ArrayList<>();
+    }
+
+    @Override
+    public void onStart()
+    {
+
+    }
+
+    @Override
+    public Optional<SMFParserEventsHeaderType> onVersionReceived(
+      final SMFFormatVersion in_version)
+    {
+      this.version = in_version;
+      return Optional.of(this);
+    }
+
+    @Override
+    public void onFinish()
+    {
+
+    }
+
+    @Override
+    public void onError(
+      final SMFErrorType e)
+    {
+      this.errors.add(e.fullMessage());
+    }
+
+    @Override
+    public void onWarning(
+      final SMFWarningType w)
+    {
+
+    }
+
+    @Override
+    public Optional<SMFParserEventsBodyType> onHeaderParsed(
+      final SMFHeader in_header)
+    {
+      this.header = in_header;
+      return Optional.empty();
+    }
+  }
+}
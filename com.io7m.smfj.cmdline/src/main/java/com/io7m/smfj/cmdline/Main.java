@@ -19,9 +19,12 @@ package com.io7m.smfj.cmdline;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.internal.Console;
-import java.util.HashMap;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,36 +40,86 @@ public final class Main implements Runnable
     LOG = LoggerFactory.getLogger(Main.class);
   }
 
-  private final Map<String, CommandType> commands;
+  private final Map<String, CommandRoot> commands;
   private final JCommander commander;
   private final String[] args;
   private final StringConsole console;
   private int exitCode;
 
-  private Main(final String[] in_args)
+  private Main(
+    final String[] in_args,
+    final PrintStream in_output,
+    final Optional<Path> in_job)
   {
     this.args = Objects.requireNonNull(in_args, "Arguments");
+    Objects.requireNonNull(in_output, "Output");
+    Objects.requireNonNull(in_job, "Job");
 
     final CommandRoot root = new CommandRoot();
-    final CommandFormats formats = new CommandFormats();
-    final CommandFilter filter = new CommandFilter();
-    final CommandListFilters listFilters = new CommandListFilters();
-    final CommandProbe probe = new CommandProbe();
 
-    this.commands = new HashMap<>(8);
-    this.commands.put("filter", filter);
-    this.commands.put("list-formats", formats);
-    this.commands.put("list-filters", listFilters);
-    this.commands.put("probe", probe);
+    this.commands = new LinkedHashMap<>(8);
+    if (in_job.isEmpty()) {
+      this.commands.put("bench", new CommandBench());
+      this.commands.put("client", new CommandClient());
+    }
+    this.commands.put("filter", new CommandFilter());
+    this.commands.put("list-formats", new CommandFormats());
+    this.commands.put("list-filters", new CommandListFilters());
+    this.commands.put("probe", new CommandProbe());
+    if (in_job.isEmpty()) {
+      this.commands.put("serve", new CommandServe());
+    }
+    this.commands.put("stat", new CommandStat());
 
     this.console = new StringConsole();
     this.commander = new JCommander(root);
     this.commander.setConsole(this.console);
     this.commander.setProgramName("smf");
-    this.commander.addCommand("filter", filter);
-    this.commander.addCommand("list-formats", formats);
-    this.commander.addCommand("list-filters", listFilters);
-    this.commander.addCommand("probe", probe);
+    for (final Map.Entry<String, CommandRoot> entry : this.commands.entrySet()) {
+      entry.getValue().setOutput(in_output);
+      in_job.ifPresent(entry.getValue()::setJob);
+      this.commander.addCommand(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Run a single job inside an existing process, as the server does. Only
+   * the commands that are safe to run concurrently with other jobs are
+   * available.
+   *
+   * @param args      The command line arguments
+   * @param directory The absolute working directory of the client
+   * @param output    The stream to which the command writes its results
+   *
+   * @return The exit code of the job
+   */
+
+  static int runJob(
+    final String[] args,
+    final Path directory,
+    final PrintStream output)
+  {
+    final Main cm = new Main(args, output, Optional.of(directory));
+    cm.run();
+    return cm.exitCode();
+  }
+
+  /**
+   * Run a command without exiting the process.
+   *
+   * @param args   The command line arguments
+   * @param output The stream to which the command writes its results
+   *
+   * @return The exit code of the command
+   */
+
+  public static int run(
+    final String[] args,
+    final PrintStream output)
+  {
+    final Main cm = new Main(args, output, Optional.empty());
+    cm.run();
+    return cm.exitCode();
   }
 
   /**
@@ -77,9 +130,7 @@ public final class Main implements Runnable
 
   public static void main(final String[] args)
   {
-    final Main cm = new Main(args);
-    cm.run();
-    System.exit(cm.exitCode());
+    System.exit(run(args, System.out));
   }
 
   /**
@@ -106,7 +157,7 @@ public final class Main implements Runnable
         return;
       }
 
-      final CommandType command = this.commands.get(cmd);
+      final CommandRoot command = this.commands.get(cmd);
       this.exitCode = command.call().intValue();
     } catch (final ParameterException e) {
       this.commander.usage();
@@ -0,0 +1,304 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.cmdline;
+
+import com.io7m.smfj.core.SMFAttribute;
+import com.io7m.smfj.core.SMFErrorType;
+import com.io7m.smfj.core.SMFFormatVersion;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFSchemaIdentifier;
+import com.io7m.smfj.core.SMFWarningType;
+import com.io7m.smfj.parser.api.SMFParserEventsBodyType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataAttributeValuesType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataAttributesNonInterleavedType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataMetaType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataTrianglesType;
+import com.io7m.smfj.parser.api.SMFParserEventsHeaderType;
+import com.io7m.smfj.parser.api.SMFParserEventsType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A parser event receiver that accepts every section of a mesh and discards
+ * the data. Received values are folded into a checksum so that the work of
+ * delivering them cannot be optimized away.
+ */
+
+final class SMFBenchDiscardingEvents
+  implements SMFParserEventsType,
+  SMFParserEventsHeaderType,
+  SMFParserEventsBodyType,
+  SMFParserEventsDataAttributesNonInterleavedType,
+  SMFParserEventsDataAttributeValuesType,
+  SMFParserEventsDataTrianglesType,
+  SMFParserEventsDataMetaType
+{
+  private final List<SMFErrorType> errors;
+  private long checksum;
+
+  SMFBenchDiscardingEvents()
+  {
+    this.errors = new ArrayList<>();
+  }
+
+  List<SMFErrorType> errors()
+  {
+    return this.errors;
+  }
+
+  long checksum()
+  {
+    return this.checksum;
+  }
+
+  private void addLong(
+    final long x)
+  {
+    this.checksum = this.checksum * 31L + x;
+  }
+
+  private void addDouble(
+    final double x)
+  {
+    this.addLong(Double.doubleToRawLongBits(x));
+  }
+
+  @Override
+  public void onStart()
+  {
+
+  }
+
+  @Override
+  public Optional<SMFParserEventsHeaderType> onVersionReceived(
+    final SMFFormatVersion version)
+  {
+    return Optional.of(this);
+  }
+
+  @Override
+  public void onFinish()
+  {
+
+  }
+
+  @Override
+  public void onError(
+    final SMFErrorType e)
+  {
+    this.errors.add(e);
+  }
+
+  @Override
+  public void onWarning(
+    final SMFWarningType w)
+  {
+
+  }
+
+  @Override
+  public Optional<SMFParserEventsBodyType> onHeaderParsed(
+    final SMFHeader header)
+  {
+    return Optional.of(this);
+  }
+
+  @Override
+  public Optional<SMFParserEventsDataAttributesNonInterleavedType>
+  onAttributesNonInterleaved()
+  {
+    return Optional.of(this);
+  }
+
+  @Override
+  public Optional<SMFParserEventsDataTrianglesType> onTriangles()
+  {
+    return Optional.of(this);
+  }
+
+  @Override
+  public Optional<SMFParserEventsDataMetaType> onMeta(
+    final SMFSchemaIdentifier schema)
+  {
+    return Optional.of(this);
+  }
+
+  @Override
+  public void onMetaData(
+    final SMFSchemaIdentifier schema,
+    final byte[] data)
+  {
+    this.addLong((long) data.length);
+  }
+
+  @Override
+  public Optional<SMFParserEventsDataAttributeValuesType> onDataAttributeStart(
+    final SMFAttribute attribute)
+  {
+    return Optional.of(this);
+  }
+
+  @Override
+  public void onDataAttributesNonInterleavedFinish()
+  {
+
+  }
+
+  @Override
+  public void onDataAttributeValueIntegerSigned1(
+    final long x)
+  {
+    this.addLong(x);
+  }
+
+  @Override
+  public void onDataAttributeValueIntegerSigned2(
+    final long x,
+    final long y)
+  {
+    this.addLong(x);
+    this.addLong(y);
+  }
+
+  @Override
+  public void onDataAttributeValueIntegerSigned3(
+    final long x,
+    final long y,
+    final long z)
+  {
+    this.addLong(x);
+    this.addLong(y);
+    this.addLong(z);
+  }
+
+  @Override
+  public void onDataAttributeValueIntegerSigned4(
+    final long x,
+    final long y,
+    final long z,
+    final long w)
+  {
+    this.addLong(x);
+    this.addLong(y);
+    this.addLong(z);
+    this.addLong(w);
+  }
+
+  @Override
+  public void onDataAttributeValueIntegerUnsigned1(
+    final long x)
+  {
+    this.addLong(x);
+  }
+
+  @Override
+  public void onDataAttributeValueIntegerUnsigned2(
+    final long x,
+    final long y)
+  {
+    this.addLong(x);
+    this.addLong(y);
+  }
+
+  @Override
+  public void onDataAttributeValueIntegerUnsigned3(
+    final long x,
+    final long y,
+    final long z)
+  {
+    this.addLong(x);
+    this.addLong(y);
+    this.addLong(z);
+  }
+
+  @Override
+  public void onDataAttributeValueIntegerUnsigned4(
+    final long x,
+    final long y,
+    final long z,
+    final long w)
+  {
+    this.addLong(x);
+    this.addLong(y);
+    this.addLong(z);
+    this.addLong(w);
+  }
+
+  @Override
+  public void onDataAttributeValueFloat1(
+    final double x)
+  {
+    this.addDouble(x);
+  }
+
+  @Override
+  public void onDataAttributeValueFloat2(
+    final double x,
+    final double y)
+  {
+    this.addDouble(x);
+    this.addDouble(y);
+  }
+
+  @Override
+  public void onDataAttributeValueFloat3(
+    final double x,
+    final double y,
+    final double z)
+  {
+    this.addDouble(x);
+    this.addDouble(y);
+    this.addDouble(z);
+  }
+
+  @Override
+  public void onDataAttributeValueFloat4(
+    final double x,
+    final double y,
+    final double z,
+    final double w)
+  {
+    this.addDouble(x);
+    this.addDouble(y);
+    this.addDouble(z);
+    this.addDouble(w);
+  }
+
+  @Override
+  public void onDataAttributeValueFinish()
+  {
+
+  }
+
+  @Override
+  public void onDataTriangle(
+    final long v0,
+    final long v1,
+    final long v2)
+  {
+    this.addLong(v0);
+    this.addLong(v1);
+    this.addLong(v2);
+  }
+
+  @Override
+  public void onDataTrianglesFinish()
+  {
+
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.cmdline;
+
+import com.io7m.smfj.processing.api.SMFFilterCommandModuleResolver;
+import com.io7m.smfj.processing.api.SMFFilterCommandModuleResolverType;
+
+/**
+ * The filter command modules shared by all commands in the process.
+ */
+
+final class SMFFilterModules
+{
+  private SMFFilterModules()
+  {
+
+  }
+
+  /**
+   * @return The process-wide filter command module resolver
+   */
+
+  static SMFFilterCommandModuleResolverType resolver()
+  {
+    return Holder.RESOLVER;
+  }
+
+  private static final class Holder
+  {
+    private static final SMFFilterCommandModuleResolverType RESOLVER =
+      SMFFilterCommandModuleResolver.create();
+
+    private Holder()
+    {
+
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.cmdline;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.core.AppenderBase;
+import java.util.Objects;
+
+/**
+ * An appender that collects the warnings and errors logged by a single
+ * server job, so that they can be returned to the client. Events are
+ * attributed to a job by the {@link #JOB_KEY} value in the MDC of the
+ * thread that logged them.
+ */
+
+final class SMFJobLogAppender extends AppenderBase<ILoggingEvent>
+{
+  /**
+   * The MDC key that identifies the job that logged an event.
+   */
+
+  static final String JOB_KEY = "com.io7m.smfj.serve.job";
+
+  /**
+   * The largest number of characters collected; the text must fit into a
+   * single protocol message.
+   */
+
+  private static final int MAXIMUM_LENGTH = 16384;
+
+  private final String job;
+  private final StringBuilder text;
+  private boolean truncated;
+
+  SMFJobLogAppender(
+    final String in_job)
+  {
+    this.job = Objects.requireNonNull(in_job, "job");
+    this.text = new StringBuilder(128);
+    this.setName("com.io7m.smfj.serve.job." + in_job);
+  }
+
+  @Override
+  protected void append(
+    final ILoggingEvent event)
+  {
+    if (!event.getLevel().isGreaterOrEqual(Level.WARN)) {
+      return;
+    }
+    if (!this.job.equals(event.getMDCPropertyMap().get(JOB_KEY))) {
+      return;
+    }
+
+    final StringBuilder line = new StringBuilder(128);
+    line.append(event.getLevel());
+    line.append(": ");
+    line.append(event.getFormattedMessage());
+    final IThrowableProxy exception = event.getThrowableProxy();
+    if (exception != null) {
+      line.append(" (");
+      line.append(exception.getClassName());
+      line.append(": ");
+      line.append(exception.getMessage());
+      line.append(')');
+    }
+    line.append(System.lineSeparator());
+
+    synchronized (this.text) {
+      if (this.text.length() + line.length() > MAXIMUM_LENGTH) {
+        this.truncated = true;
+      } else {
+        this.text.append(line);
+      }
+    }
+  }
+
+  /**
+   * @return The identifier of the job
+   */
+
+  String job()
+  {
+    return this.job;
+  }
+
+  /**
+   * @return The collected warnings and errors, one per line
+   */
+
+  String text()
+  {
+    synchronized (this.text) {
+      if (this.truncated) {
+        return this.text + "(further messages omitted)";
+      }
+      return this.text.toString();
+    }
+  }
+}
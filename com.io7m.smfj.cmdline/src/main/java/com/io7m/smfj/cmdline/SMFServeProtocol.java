@@ -0,0 +1,363 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.cmdline;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * The protocol spoken between the {@code serve} and {@code client} commands.
+ *
+ * <p>The server listens on the loopback interface and writes its port and a
+ * random access token to a state file that is readable only by the owner.
+ * A request consists of the protocol version, the token, the absolute
+ * working directory of the client, and the command line arguments of the
+ * job. Relative paths in the arguments are resolved against the working
+ * directory of the client rather than that of the server. A response consists of the exit code of the
+ * job, an error message (empty if the job was run), and the output of the
+ * job.</p>
+ */
+
+final class SMFServeProtocol
+{
+  /**
+   * The protocol version.
+   */
+
+  static final int VERSION = 2;
+
+  /**
+   * The job that stops the server.
+   */
+
+  static final String SHUTDOWN = "shutdown";
+
+  private static final int TOKEN_SIZE = 32;
+  private static final int MAXIMUM_ARGUMENTS = 4096;
+
+  private SMFServeProtocol()
+  {
+
+  }
+
+  /**
+   * @return The default location of the server state file
+   */
+
+  static Path defaultStateFile()
+  {
+    return Paths.get(System.getProperty("user.home"), ".smf-serve");
+  }
+
+  /**
+   * @return A new random access token
+   */
+
+  static String generateToken()
+  {
+    final byte[] data = new byte[TOKEN_SIZE];
+    new SecureRandom().nextBytes(data);
+
+    final StringBuilder text = new StringBuilder(TOKEN_SIZE * 2);
+    for (final byte x : data) {
+      text.append(String.format("%02x", Integer.valueOf(x & 0xff)));
+    }
+    return text.toString();
+  }
+
+  /**
+   * @param expected The expected token
+   * @param received The received token
+   *
+   * @return {@code true} if the tokens are equal
+   */
+
+  static boolean tokenMatches(
+    final String expected,
+    final String received)
+  {
+    return MessageDigest.isEqual(
+      expected.getBytes(StandardCharsets.UTF_8),
+      received.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Atomically replace the state file.
+   *
+   * @param file  The state file
+   * @param port  The port on which the server is listening
+   * @param token The access token
+   *
+   * @throws IOException On I/O errors
+   */
+
+  static void writeState(
+    final Path file,
+    final int port,
+    final String token)
+    throws IOException
+  {
+    final Path absolute = file.toAbsolutePath();
+    final Path directory = absolute.getParent();
+    final Path temporary;
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      temporary = Files.createTempFile(
+        directory,
+        "smf-serve",
+        ".tmp",
+        PosixFilePermissions.asFileAttribute(
+          PosixFilePermissions.fromString("rw-------")));
+    } else {
+      temporary = Files.createTempFile(directory, "smf-serve", ".tmp");
+    }
+
+    final Properties properties = new Properties();
+    properties.setProperty("port", Integer.toString(port));
+    properties.setProperty("token", token);
+    try (OutputStream stream = Files.newOutputStream(temporary)) {
+      properties.store(stream, "smf serve");
+    }
+
+    Files.move(
+      temporary,
+      absolute,
+      StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Read the state file.
+   *
+   * @param file The state file
+   *
+   * @return The server state
+   *
+   * @throws IOException On I/O errors or malformed state files
+   */
+
+  static State readState(
+    final Path file)
+    throws IOException
+  {
+    final Properties properties = new Properties();
+    try (InputStream stream = Files.newInputStream(file)) {
+      properties.load(stream);
+    }
+
+    final String port = properties.getProperty("port");
+    final String token = properties.getProperty("token");
+    if (port == null || token == null) {
+      throw new IOException("Malformed server state file: " + file);
+    }
+
+    try {
+      return new State(Integer.parseInt(port), token);
+    } catch (final NumberFormatException e) {
+      throw new IOException("Malformed server state file: " + file, e);
+    }
+  }
+
+  static void writeRequest(
+    final DataOutputStream output,
+    final String token,
+    final Path directory,
+    final List<String> arguments)
+    throws IOException
+  {
+    output.writeInt(VERSION);
+    output.writeUTF(token);
+    output.writeUTF(directory.toString());
+    output.writeInt(arguments.size());
+    for (final String argument : arguments) {
+      output.writeUTF(argument);
+    }
+    output.flush();
+  }
+
+  static Request readRequest(
+    final DataInputStream input)
+    throws IOException
+  {
+    final int version = input.readInt();
+    if (version != VERSION) {
+      throw new IOException(
+        String.format(
+          "Unsupported protocol version %d (expected %d)",
+          Integer.valueOf(version),
+          Integer.valueOf(VERSION)));
+    }
+
+    final String token = input.readUTF();
+    final Path directory;
+    try {
+      directory = Paths.get(input.readUTF());
+    } catch (final InvalidPathException e) {
+      throw new IOException("Malformed working directory", e);
+    }
+    if (!directory.isAbsolute()) {
+      throw new IOException(
+        "Working directory must be absolute: " + directory);
+    }
+
+    final int count = input.readInt();
+    if (count < 0 || count > MAXIMUM_ARGUMENTS) {
+      throw new IOException(
+        String.format(
+          "Argument count %d must be in the range [0, %d]",
+          Integer.valueOf(count),
+          Integer.valueOf(MAXIMUM_ARGUMENTS)));
+    }
+
+    final List<String> arguments = new ArrayList<>(count);
+    for (int index = 0; index < count; ++index) {
+      arguments.add(input.readUTF());
+    }
+    return new Request(token, directory, arguments);
+  }
+
+  static void writeResponse(
+    final DataOutputStream output,
+    final int exitCode,
+    final String message,
+    final byte[] data)
+    throws IOException
+  {
+    output.writeInt(exitCode);
+    output.writeUTF(message);
+    output.writeInt(data.length);
+    output.write(data);
+    output.flush();
+  }
+
+  static Response readResponse(
+    final DataInputStream input)
+    throws IOException
+  {
+    final int exitCode = input.readInt();
+    final String message = input.readUTF();
+    final int size = input.readInt();
+    if (size < 0) {
+      throw new IOException("Negative output size");
+    }
+    return new Response(exitCode, message, input.readNBytes(size));
+  }
+
+  static final class State
+  {
+    private final int port;
+    private final String token;
+
+    State(
+      final int in_port,
+      final String in_token)
+    {
+      this.port = in_port;
+      this.token = Objects.requireNonNull(in_token, "token");
+    }
+
+    int port()
+    {
+      return this.port;
+    }
+
+    String token()
+    {
+      return this.token;
+    }
+  }
+
+  static final class Request
+  {
+    private final String token;
+    private final Path directory;
+    private final List<String> arguments;
+
+    Request(
+      final String in_token,
+      final Path in_directory,
+      final List<String> in_arguments)
+    {
+      this.token = Objects.requireNonNull(in_token, "token");
+      this.directory = Objects.requireNonNull(in_directory, "directory");
+      this.arguments = List.copyOf(in_arguments);
+    }
+
+    String token()
+    {
+      return this.token;
+    }
+
+    Path directory()
+    {
+      return this.directory;
+    }
+
+    List<String> arguments()
+    {
+      return this.arguments;
+    }
+  }
+
+  static final class Response
+  {
+    private final int exitCode;
+    private final String message;
+    private final byte[] output;
+
+    Response(
+      final int in_exit_code,
+      final String in_message,
+      final byte[] in_output)
+    {
+      this.exitCode = in_exit_code;
+      this.message = Objects.requireNonNull(in_message, "message");
+      this.output = Objects.requireNonNull(in_output, "output");
+    }
+
+    int exitCode()
+    {
+      return this.exitCode;
+    }
+
+    String message()
+    {
+      return this.message;
+    }
+
+    byte[] output()
+    {
+      return this.output;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.cmdline;
+
+/**
+ * Functions for producing JSON and CSV text.
+ */
+
+final class SMFTextOutput
+{
+  private SMFTextOutput()
+  {
+
+  }
+
+  /**
+   * @param text The text
+   *
+   * @return The text as a quoted JSON string
+   */
+
+  static String jsonString(
+    final String text)
+  {
+    final StringBuilder out = new StringBuilder(text.length() + 2);
+    out.append('"');
+    for (int index = 0; index < text.length(); ++index) {
+      final char c = text.charAt(index);
+      if (c == '"' || c == '\\') {
+        out.append('\\');
+        out.append(c);
+      } else if (c < 0x20) {
+        out.append(String.format("\\u%04x", Integer.valueOf(c)));
+      } else {
+        out.append(c);
+      }
+    }
+    out.append('"');
+    return out.toString();
+  }
+
+  /**
+   * @param text The text
+   *
+   * @return The text as a CSV field, quoted if necessary
+   */
+
+  static String csvField(
+    final String text)
+  {
+    final boolean quote =
+      text.indexOf(',') >= 0
+        || text.indexOf('"') >= 0
+        || text.indexOf('\n') >= 0
+        || text.indexOf('\r') >= 0;
+
+    if (!quote) {
+      return text;
+    }
+    return '"' + text.replace("\"", "\"\"") + '"';
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.core;
+
+import com.io7m.junreachable.UnreachableCodeException;
+
+/**
+ * Conversions between double precision values and IEEE 754 binary16 values.
+ * Values are rounded to the nearest representable binary16 value, with
+ * ties rounded to the value with an even significand, as required by IEEE
+ * 754. This differs from {@code com.io7m.ieee754b16}, which rounds ties away
+ * from zero.
+ */
+
+public final class SMFBinary16
+{
+  private static final double OVERFLOW_THRESHOLD = 65520.0;
+  private static final double SMALLEST_NORMAL = 0x1.0p-14;
+
+  private SMFBinary16()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Pack a double precision value into a binary16 value, rounding to the
+   * nearest representable value (ties to even).
+   *
+   * @param value The value
+   *
+   * @return A packed binary16 value
+   */
+
+  public static char pack(
+    final double value)
+  {
+    final int sign =
+      (int) (Double.doubleToRawLongBits(value) >>> 48) & 0x8000;
+
+    if (Double.isNaN(value)) {
+      return (char) (sign | 0x7e00);
+    }
+
+    final double magnitude = Math.abs(value);
+    if (magnitude >= OVERFLOW_THRESHOLD) {
+      return (char) (sign | 0x7c00);
+    }
+
+    if (magnitude < SMALLEST_NORMAL) {
+      final int significand = (int) Math.rint(Math.scalb(magnitude, 24));
+      return (char) (sign | significand);
+    }
+
+    int exponent = Math.getExponent(magnitude);
+    int significand =
+      (int) Math.rint((Math.scalb(magnitude, -exponent) - 1.0) * 1024.0);
+
+    if (significand == 1024) {
+      significand = 0;
+      ++exponent;
+    }
+    return (char) (sign | ((exponent + 15) << 10) | significand);
+  }
+
+  /**
+   * Unpack a binary16 value to a double precision value.
+   *
+   * @param bits The packed binary16 value
+   *
+   * @return The unpacked value
+   */
+
+  public static double unpack(
+    final char bits)
+  {
+    final boolean negative = (bits & 0x8000) != 0;
+    final int exponent = (bits >>> 10) & 0x1f;
+    final int significand = bits & 0x3ff;
+
+    final double magnitude;
+    if (exponent == 0) {
+      magnitude = Math.scalb((double) significand, -24);
+    } else if (exponent == 0x1f) {
+      magnitude = significand == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+    } else {
+      magnitude = Math.scalb((double) (significand | 0x400), exponent - 25);
+    }
+    return negative ? -magnitude : magnitude;
+  }
+
+  /**
+   * Round a double precision value to the nearest value representable as a
+   * binary16 value (ties to even). Values that are out of range become
+   * infinities.
+   *
+   * @param value The value
+   *
+   * @return The rounded value
+   */
+
+  public static double round(
+    final double value)
+  {
+    return unpack(pack(value));
+  }
+}
@@ -42,8 +42,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -61,6 +64,11 @@ public final class SMFFormatBinary2
 {
   private static final SMFFormatDescription FORMAT = makeFormat();
   private static final SortedSet<SMFFormatVersion> SUPPORTED = makeVersion();
+  private static final List<byte[]> MAGIC_NUMBERS =
+    List.of(ByteBuffer.allocate(8)
+              .order(ByteOrder.BIG_ENDIAN)
+              .putLong(SMFB2ParsingFileHeader.magic())
+              .array());
   private final BSSReaderProviderType readers;
   private final BSSWriterProviderType writers;
   private final SMFB2ParsingContexts parserContexts;
@@ -154,6 +162,12 @@ public final class SMFFormatBinary2
     return new SMFB2ParserRandomAccess(events, uri, file, this.parserContexts);
   }
 
+  @Override
+  public List<byte[]> probeMagicNumbers()
+  {
+    return MAGIC_NUMBERS;
+  }
+
   @Override
   public SMFPartialLogged<SMFVersionProbed> probe(
     final InputStream stream)
@@ -17,6 +17,7 @@
 package com.io7m.smfj.format.binary2.internal;
 
 import com.io7m.jbssio.api.BSSReaderType;
+import com.io7m.jlexing.core.LexicalPosition;
 import com.io7m.junreachable.UnreachableCodeException;
 import com.io7m.smfj.core.SMFHeader;
 import com.io7m.smfj.core.SMFPartial;
@@ -25,7 +26,9 @@ import com.io7m.smfj.core.SMFVoid;
 import com.io7m.smfj.format.support.SMFTriangleTracker;
 import com.io7m.smfj.parser.api.SMFParserEventsDataTrianglesType;
 import java.io.IOException;
+import java.net.URI;
 import java.util.Objects;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -131,6 +134,8 @@ public final class SMFB2ParsingSectionTriangles
     throws IOException
   {
     final var triangleCount = headerTriangles.triangleCount();
+    final Supplier<LexicalPosition<URI>> lexical =
+      () -> SMFB2Lexical.ofReader(reader);
     switch (headerTriangles.triangleIndexSizeBits()) {
       case 8: {
         for (long index = 0L;
@@ -140,7 +145,7 @@ public final class SMFB2ParsingSectionTriangles
           final var v1 = reader.readU8("v1");
           final var v2 = reader.readU8("v2");
           this.triangleTracker.addTriangle(
-            SMFB2Lexical.ofReader(reader), v0, v1, v2);
+            lexical, v0, v1, v2);
           this.triangles.onDataTriangle(v0, v1, v2);
         }
         break;
@@ -153,7 +158,7 @@ public final class SMFB2ParsingSectionTriangles
           final var v1 = reader.readU16BE("v1");
           final var v2 = reader.readU16BE("v2");
           this.triangleTracker.addTriangle(
-            SMFB2Lexical.ofReader(reader), v0, v1, v2);
+            lexical, v0, v1, v2);
           this.triangles.onDataTriangle(v0, v1, v2);
         }
         break;
@@ -166,7 +171,7 @@ public final class SMFB2ParsingSectionTriangles
           final var v1 = reader.readU32BE("v1");
           final var v2 = reader.readU32BE("v2");
           this.triangleTracker.addTriangle(
-            SMFB2Lexical.ofReader(reader), v0, v1, v2);
+            lexical, v0, v1, v2);
           this.triangles.onDataTriangle(v0, v1, v2);
         }
         break;
@@ -179,7 +184,7 @@ public final class SMFB2ParsingSectionTriangles
           final var v1 = reader.readU64BE("v1");
           final var v2 = reader.readU64BE("v2");
           this.triangleTracker.addTriangle(
-            SMFB2Lexical.ofReader(reader), v0, v1, v2);
+            lexical, v0, v1, v2);
           this.triangles.onDataTriangle(v0, v1, v2);
         }
         break;
@@ -196,6 +201,8 @@ public final class SMFB2ParsingSectionTriangles
     throws IOException
   {
     final var triangleCount = headerTriangles.triangleCount();
+    final Supplier<LexicalPosition<URI>> lexical =
+      () -> SMFB2Lexical.ofReader(reader);
     switch (headerTriangles.triangleIndexSizeBits()) {
       case 8: {
         for (long index = 0L;
@@ -205,7 +212,7 @@ public final class SMFB2ParsingSectionTriangles
           final var v1 = reader.readU8("v1");
           final var v2 = reader.readU8("v2");
           this.triangleTracker.addTriangle(
-            SMFB2Lexical.ofReader(reader), v0, v1, v2);
+            lexical, v0, v1, v2);
           this.triangles.onDataTriangle(v0, v1, v2);
         }
         break;
@@ -218,7 +225,7 @@ public final class SMFB2ParsingSectionTriangles
           final var v1 = reader.readU16LE("v1");
           final var v2 = reader.readU16LE("v2");
           this.triangleTracker.addTriangle(
-            SMFB2Lexical.ofReader(reader), v0, v1, v2);
+            lexical, v0, v1, v2);
           this.triangles.onDataTriangle(v0, v1, v2);
         }
         break;
@@ -231,7 +238,7 @@ public final class SMFB2ParsingSectionTriangles
           final var v1 = reader.readU32LE("v1");
           final var v2 = reader.readU32LE("v2");
           this.triangleTracker.addTriangle(
-            SMFB2Lexical.ofReader(reader), v0, v1, v2);
+            lexical, v0, v1, v2);
           this.triangles.onDataTriangle(v0, v1, v2);
         }
         break;
@@ -244,7 +251,7 @@ public final class SMFB2ParsingSectionTriangles
           final var v1 = reader.readU64LE("v1");
           final var v2 = reader.readU64LE("v2");
           this.triangleTracker.addTriangle(
-            SMFB2Lexical.ofReader(reader), v0, v1, v2);
+            lexical, v0, v1, v2);
           this.triangles.onDataTriangle(v0, v1, v2);
         }
         break;
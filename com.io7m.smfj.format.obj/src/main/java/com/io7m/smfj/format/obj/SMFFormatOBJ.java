@@ -16,6 +16,7 @@
 
 package com.io7m.smfj.format.obj;
 
+import com.io7m.junreachable.UnreachableCodeException;
 import com.io7m.smfj.core.SMFFormatDescription;
 import com.io7m.smfj.core.SMFFormatVersion;
 import com.io7m.smfj.parser.api.SMFParserEventsType;
@@ -23,6 +24,7 @@ import com.io7m.smfj.parser.api.SMFParserProviderType;
 import com.io7m.smfj.parser.api.SMFParserRandomAccessType;
 import com.io7m.smfj.parser.api.SMFParserSequentialType;
 import java.util.Collections;
+import java.util.Objects;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import org.osgi.service.component.annotations.Component;
@@ -47,7 +49,7 @@ public final class SMFFormatOBJ implements SMFParserProviderType
     final SMFFormatDescription.Builder fb = SMFFormatDescription.builder();
     fb.setDescription("Wavefront OBJ");
     fb.setSuffix("obj");
-    fb.setRandomAccess(false);
+    fb.setRandomAccess(true);
     fb.setName("obj");
     fb.setMimeType("application/wavefront-obj");
     return fb.build();
@@ -60,13 +62,28 @@ public final class SMFFormatOBJ implements SMFParserProviderType
     return Collections.unmodifiableSortedSet(versions);
   }
 
+  private final SMFFormatOBJParserEngine engine;
+
   /**
-   * Construct an OBJ format provider.
+   * Construct an OBJ format provider that uses the two-pass engine for
+   * random-access parsers.
    */
 
   public SMFFormatOBJ()
   {
+    this(SMFFormatOBJParserEngine.PARSER_ENGINE_TWO_PASS);
+  }
+
+  /**
+   * Construct an OBJ format provider.
+   *
+   * @param inEngine The engine used for random-access parsers
+   */
 
+  public SMFFormatOBJ(
+    final SMFFormatOBJParserEngine inEngine)
+  {
+    this.engine = Objects.requireNonNull(inEngine, "engine");
   }
 
   @Override
@@ -104,6 +121,12 @@ public final class SMFFormatOBJ implements SMFParserProviderType
     final FileChannel file)
     throws UnsupportedOperationException
   {
-    throw new UnsupportedOperationException();
+    switch (this.engine) {
+      case PARSER_ENGINE_TWO_PASS:
+        return SMFOBJTwoPassImporter.create(path, file, events);
+      case PARSER_ENGINE_PARALLEL:
+        return SMFOBJParallelImporter.create(path, file, events);
+    }
+    throw new UnreachableCodeException();
   }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj;
+
+/**
+ * The available engines for random-access parsing of OBJ files.
+ */
+
+public enum SMFFormatOBJParserEngine
+{
+  /**
+   * A parser that reads the file twice, holding only the vertex mapping
+   * and attribute values in memory.
+   *
+   * @see SMFOBJTwoPassImporter
+   */
+
+  PARSER_ENGINE_TWO_PASS,
+
+  /**
+   * A parser that maps the file into memory and parses chunks of it
+   * concurrently.
+   *
+   * @see SMFOBJParallelImporter
+   */
+
+  PARSER_ENGINE_PARALLEL
+}
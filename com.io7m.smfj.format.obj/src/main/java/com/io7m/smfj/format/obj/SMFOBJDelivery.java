@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.smfj.format.obj.internal.SMFOBJDoubleArray;
+import com.io7m.smfj.format.obj.internal.SMFOBJIntArray;
+import com.io7m.smfj.format.obj.internal.SMFOBJVertexTable;
+import com.io7m.smfj.parser.api.SMFParserEventsBodyType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataAttributeValuesType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataAttributesNonInterleavedType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataTrianglesType;
+import java.util.Optional;
+
+import static com.io7m.smfj.format.obj.internal.SMFOBJVertexTable.ABSENT;
+
+/**
+ * Functions to deliver imported data to event receivers.
+ */
+
+final class SMFOBJDelivery
+{
+  private SMFOBJDelivery()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Deliver the attribute values of all vertices in the given table.
+   *
+   * @param body      The body event receiver
+   * @param table     The vertex table
+   * @param positions The position values, three per position
+   * @param normals   The normal values, three per normal
+   * @param uvs       The texture coordinate values, two per coordinate
+   */
+
+  static void deliverAttributes(
+    final SMFParserEventsBodyType body,
+    final SMFOBJVertexTable table,
+    final SMFOBJDoubleArray positions,
+    final SMFOBJDoubleArray normals,
+    final SMFOBJDoubleArray uvs)
+  {
+    if (table.size() == 0) {
+      return;
+    }
+
+    final Optional<SMFParserEventsDataAttributesNonInterleavedType> events_noninterleaved_opt =
+      body.onAttributesNonInterleaved();
+
+    if (events_noninterleaved_opt.isPresent()) {
+      final SMFParserEventsDataAttributesNonInterleavedType events_noninterleaved =
+        events_noninterleaved_opt.get();
+      try {
+        deliverFloat3(
+          events_noninterleaved.onDataAttributeStart(
+            SMFOBJHeaders.ATTRIBUTE_POSITION),
+          positions,
+          table.positions());
+
+        if (table.hasNormals()) {
+          deliverFloat3(
+            events_noninterleaved.onDataAttributeStart(
+              SMFOBJHeaders.ATTRIBUTE_NORMAL),
+            normals,
+            table.normals());
+        }
+
+        if (table.hasUVs()) {
+          deliverFloat2(
+            events_noninterleaved.onDataAttributeStart(
+              SMFOBJHeaders.ATTRIBUTE_UV),
+            uvs,
+            table.uvs());
+        }
+      } finally {
+        events_noninterleaved.onDataAttributesNonInterleavedFinish();
+      }
+    }
+  }
+
+  /**
+   * Deliver triangles.
+   *
+   * @param events_tri The triangle event receiver
+   * @param triangles  The triangle vertex indices, three per triangle
+   */
+
+  static void deliverTriangles(
+    final SMFParserEventsDataTrianglesType events_tri,
+    final SMFOBJIntArray triangles)
+  {
+    final int count = triangles.size();
+    for (int index = 0; index < count; index += 3) {
+      events_tri.onDataTriangle(
+        (long) triangles.get(index),
+        (long) triangles.get(index + 1),
+        (long) triangles.get(index + 2));
+    }
+  }
+
+  private static void deliverFloat3(
+    final Optional<SMFParserEventsDataAttributeValuesType> events_opt,
+    final SMFOBJDoubleArray values,
+    final SMFOBJIntArray sources)
+  {
+    if (events_opt.isPresent()) {
+      final SMFParserEventsDataAttributeValuesType data_events =
+        events_opt.get();
+      try {
+        final int count = sources.size();
+        for (int index = 0; index < count; ++index) {
+          final int source = sources.get(index);
+          if (source == ABSENT) {
+            data_events.onDataAttributeValueFloat3(0.0, 0.0, 0.0);
+          } else {
+            final int base = source * 3;
+            data_events.onDataAttributeValueFloat3(
+              values.get(base),
+              values.get(base + 1),
+              values.get(base + 2));
+          }
+        }
+      } finally {
+        data_events.onDataAttributeValueFinish();
+      }
+    }
+  }
+
+  private static void deliverFloat2(
+    final Optional<SMFParserEventsDataAttributeValuesType> events_opt,
+    final SMFOBJDoubleArray values,
+    final SMFOBJIntArray sources)
+  {
+    if (events_opt.isPresent()) {
+      final SMFParserEventsDataAttributeValuesType data_events =
+        events_opt.get();
+      try {
+        final int count = sources.size();
+        for (int index = 0; index < count; ++index) {
+          final int source = sources.get(index);
+          if (source == ABSENT) {
+            data_events.onDataAttributeValueFloat2(0.0, 0.0);
+          } else {
+            final int base = source * 2;
+            data_events.onDataAttributeValueFloat2(
+              values.get(base),
+              values.get(base + 1));
+          }
+        }
+      } finally {
+        data_events.onDataAttributeValueFinish();
+      }
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj;
+
+import com.io7m.smfj.parser.api.SMFParseErrors;
+import com.io7m.smfj.parser.api.SMFParserEventsErrorType;
+
+/**
+ * Raised by the importers to unwind out of the underlying line parsers once
+ * the receiver of parse events has stopped accepting errors.
+ */
+
+final class SMFOBJErrorLimitReached extends RuntimeException
+{
+  private static final long serialVersionUID = 1L;
+
+  private SMFOBJErrorLimitReached()
+  {
+    super("Too many errors; parsing was stopped", null, false, false);
+  }
+
+  /**
+   * Stop parsing if the receiver has reached its error limit.
+   *
+   * @param events The receiver
+   */
+
+  static void check(
+    final SMFParserEventsErrorType events)
+  {
+    if (events.errorLimitReached()) {
+      throw new SMFOBJErrorLimitReached();
+    }
+  }
+
+  /**
+   * Report that parsing was stopped.
+   *
+   * @param events The receiver
+   */
+
+  void report(
+    final SMFParserEventsErrorType events)
+  {
+    events.onError(SMFParseErrors.errorWithMessage(this.getMessage()));
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj;
+
+import com.io7m.jcoords.core.conversion.CAxisSystem;
+import com.io7m.jlexing.core.LexicalPositions;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.smfj.core.SMFAttribute;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFComponentType;
+import com.io7m.smfj.core.SMFCoordinateSystem;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFSchemaIdentifier;
+import com.io7m.smfj.core.SMFSchemaName;
+import com.io7m.smfj.core.SMFTriangles;
+import com.io7m.smfj.parser.api.SMFParseWarning;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.io7m.jcoords.core.conversion.CAxis.AXIS_NEGATIVE_Z;
+import static com.io7m.jcoords.core.conversion.CAxis.AXIS_POSITIVE_X;
+import static com.io7m.jcoords.core.conversion.CAxis.AXIS_POSITIVE_Y;
+import static com.io7m.smfj.core.SMFFaceWindingOrder.FACE_WINDING_ORDER_COUNTER_CLOCKWISE;
+
+/**
+ * The header information shared by the OBJ importers.
+ */
+
+final class SMFOBJHeaders
+{
+  static final SMFAttribute ATTRIBUTE_POSITION =
+    SMFAttribute.of(
+      SMFAttributeName.of("position"),
+      SMFComponentType.ELEMENT_TYPE_FLOATING, 3, 32);
+
+  static final SMFAttribute ATTRIBUTE_NORMAL =
+    SMFAttribute.of(
+      SMFAttributeName.of("normal"),
+      SMFComponentType.ELEMENT_TYPE_FLOATING, 3, 32);
+
+  static final SMFAttribute ATTRIBUTE_UV =
+    SMFAttribute.of(
+      SMFAttributeName.of("uv:0"),
+      SMFComponentType.ELEMENT_TYPE_FLOATING, 2, 32);
+
+  static final SMFCoordinateSystem COORDINATE_SYSTEM =
+    SMFCoordinateSystem.of(
+      CAxisSystem.of(AXIS_POSITIVE_X, AXIS_POSITIVE_Y, AXIS_NEGATIVE_Z),
+      FACE_WINDING_ORDER_COUNTER_CLOCKWISE);
+
+  private SMFOBJHeaders()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Construct a header for an imported mesh. The position attribute is
+   * present if there are any vertices.
+   *
+   * @param vertices  The number of vertices
+   * @param triangles The number of triangles
+   * @param normals   {@code true} if the vertices have normals
+   * @param uvs       {@code true} if the vertices have texture coordinates
+   *
+   * @return A header
+   */
+
+  static SMFHeader header(
+    final long vertices,
+    final long triangles,
+    final boolean normals,
+    final boolean uvs)
+  {
+    final SMFHeader.Builder header_b = SMFHeader.builder();
+    header_b.setSchemaIdentifier(SMFSchemaIdentifier.of(
+      SMFSchemaName.of("com.io7m.example"), 0, 0));
+
+    final List<SMFAttribute> attributes = new ArrayList<>();
+    if (vertices > 0L) {
+      header_b.setVertexCount(vertices);
+      attributes.add(ATTRIBUTE_POSITION);
+      if (normals) {
+        attributes.add(ATTRIBUTE_NORMAL);
+      }
+      if (uvs) {
+        attributes.add(ATTRIBUTE_UV);
+      }
+    }
+    header_b.setAttributesInOrder(attributes);
+
+    int triangle_bits = 32;
+    if (vertices < 65536L) {
+      triangle_bits = 16;
+    }
+
+    header_b.setCoordinateSystem(COORDINATE_SYSTEM);
+    header_b.setTriangles(SMFTriangles.of(triangles, triangle_bits));
+    return header_b.build();
+  }
+
+  /**
+   * @return A warning that the coordinate system has been assumed
+   */
+
+  static SMFParseWarning coordinateSystemWarning()
+  {
+    final String text =
+      new StringBuilder(128)
+        .append("OBJ files do not contain coordinate system information.")
+        .append(System.lineSeparator())
+        .append(
+          "A possibly incorrect default coordinate system has been assumed: ")
+        .append(COORDINATE_SYSTEM.toHumanString())
+        .append(System.lineSeparator())
+        .toString();
+    return SMFParseWarning.of(LexicalPositions.zero(), text, Optional.empty());
+  }
+}
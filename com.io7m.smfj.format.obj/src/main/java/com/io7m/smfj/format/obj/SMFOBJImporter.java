@@ -17,26 +17,18 @@
 package com.io7m.smfj.format.obj;
 
 import com.io7m.jaffirm.core.Preconditions;
-import com.io7m.jcoords.core.conversion.CAxisSystem;
 import com.io7m.jlexing.core.LexicalPosition;
 import com.io7m.jlexing.core.LexicalPositionType;
-import com.io7m.jlexing.core.LexicalPositions;
 import com.io7m.jobj.core.JOParser;
 import com.io7m.jobj.core.JOParserErrorCode;
 import com.io7m.jobj.core.JOParserType;
-import com.io7m.jtensors.core.unparameterized.vectors.Vector2D;
-import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
 import com.io7m.smfj.core.SMFAttribute;
-import com.io7m.smfj.core.SMFAttributeName;
-import com.io7m.smfj.core.SMFComponentType;
-import com.io7m.smfj.core.SMFCoordinateSystem;
 import com.io7m.smfj.core.SMFFormatVersion;
 import com.io7m.smfj.core.SMFHeader;
-import com.io7m.smfj.core.SMFSchemaIdentifier;
-import com.io7m.smfj.core.SMFSchemaName;
-import com.io7m.smfj.core.SMFTriangles;
+import com.io7m.smfj.format.obj.internal.SMFOBJDoubleArray;
+import com.io7m.smfj.format.obj.internal.SMFOBJIntArray;
+import com.io7m.smfj.format.obj.internal.SMFOBJVertexMap;
 import com.io7m.smfj.parser.api.SMFParseError;
-import com.io7m.smfj.parser.api.SMFParseWarning;
 import com.io7m.smfj.parser.api.SMFParserEventsBodyType;
 import com.io7m.smfj.parser.api.SMFParserEventsDataAttributeValuesType;
 import com.io7m.smfj.parser.api.SMFParserEventsDataAttributesNonInterleavedType;
@@ -48,26 +40,26 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
-import static com.io7m.jcoords.core.conversion.CAxis.AXIS_NEGATIVE_Z;
-import static com.io7m.jcoords.core.conversion.CAxis.AXIS_POSITIVE_X;
-import static com.io7m.jcoords.core.conversion.CAxis.AXIS_POSITIVE_Y;
-import static com.io7m.smfj.core.SMFFaceWindingOrder.FACE_WINDING_ORDER_COUNTER_CLOCKWISE;
-
 /**
  * The default implementation of the {@link SMFOBJImporterType} interface.
+ *
+ * <p>All attribute data, vertices, and triangles are held in growable arrays
+ * of primitive values. Each distinct (position, texture coordinate, normal)
+ * reference in the face commands becomes one vertex, and a vertex is stored
+ * as the three source indices that produced it; attribute values are
+ * resolved from the source arrays only when the data is delivered.</p>
  */
 
 public final class SMFOBJImporter implements SMFOBJImporterType
 {
   private static final Logger LOG;
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int ABSENT = -1;
 
   static {
     LOG = LoggerFactory.getLogger(SMFOBJImporter.class);
@@ -75,19 +67,18 @@ public final class SMFOBJImporter implements SMFOBJImporterType
 
   private final JOParserType parser;
   private final SMFParserEventsType events;
-  private final List<Vector3D> positions;
-  private final List<Vector3D> normals;
-  private final List<Vector2D> uvs;
-  private final List<Vertex> vertices;
-  private final List<Triangle> triangles;
-  private final Map<OriginalVertexIdentifier, Integer> vertex_mappings;
+  private final SMFOBJDoubleArray positions;
+  private final SMFOBJDoubleArray normals;
+  private final SMFOBJDoubleArray uvs;
+  private final SMFOBJIntArray vertex_positions;
+  private final SMFOBJIntArray vertex_normals;
+  private final SMFOBJIntArray vertex_uvs;
+  private final SMFOBJIntArray triangles;
+  private final SMFOBJVertexMap vertex_mappings;
   private int triangle_v0;
   private int triangle_v1;
   private int triangle_v2;
   private TriangleState triangle_state = TriangleState.WANT_VERTEX_0;
-  private SMFAttribute attrib_position;
-  private SMFAttribute attrib_normal;
-  private SMFAttribute attrib_uv;
 
   private SMFOBJImporter(
     final Optional<Path> in_path,
@@ -96,12 +87,14 @@ public final class SMFOBJImporter implements SMFOBJImporterType
   {
     this.events = Objects.requireNonNull(in_events, "Events");
     this.parser = JOParser.newParserFromStream(in_path, in_stream, this);
-    this.positions = new ArrayList<>(8);
-    this.normals = new ArrayList<>(8);
-    this.uvs = new ArrayList<>(8);
-    this.vertices = new ArrayList<>(0);
-    this.triangles = new ArrayList<>(0);
-    this.vertex_mappings = new HashMap<>(16);
+    this.positions = new SMFOBJDoubleArray(INITIAL_CAPACITY * 3);
+    this.normals = new SMFOBJDoubleArray(INITIAL_CAPACITY * 3);
+    this.uvs = new SMFOBJDoubleArray(INITIAL_CAPACITY * 2);
+    this.vertex_positions = new SMFOBJIntArray(INITIAL_CAPACITY);
+    this.vertex_normals = new SMFOBJIntArray(INITIAL_CAPACITY);
+    this.vertex_uvs = new SMFOBJIntArray(INITIAL_CAPACITY);
+    this.triangles = new SMFOBJIntArray(INITIAL_CAPACITY * 3);
+    this.vertex_mappings = new SMFOBJVertexMap(INITIAL_CAPACITY);
   }
 
   /**
@@ -122,14 +115,27 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     return new SMFOBJImporter(in_path, in_stream, in_events);
   }
 
+  private static LexicalPosition<URI> position(
+    final LexicalPositionType<Path> p)
+  {
+    return LexicalPosition.of(p.line(), p.column(), p.file().map(Path::toUri));
+  }
+
+  private void error(
+    final SMFParseError error)
+  {
+    this.events.onError(error);
+    SMFOBJErrorLimitReached.check(this.events);
+  }
+
   @Override
   public void onFatalError(
     final LexicalPositionType<Path> p,
     final Optional<Throwable> e,
     final String message)
   {
-    this.events.onError(SMFParseError.of(
-      LexicalPosition.of(p.line(), p.column(), p.file().map(Path::toUri)),
+    this.error(SMFParseError.of(
+      position(p),
       e + ": " + message,
       e.map(Exception::new)));
   }
@@ -140,8 +146,8 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     final JOParserErrorCode e,
     final String message)
   {
-    this.events.onError(SMFParseError.of(
-      LexicalPosition.of(p.line(), p.column(), p.file().map(Path::toUri)),
+    this.error(SMFParseError.of(
+      position(p),
       e + ": " + message,
       Optional.empty()));
   }
@@ -161,96 +167,60 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     this.deliverHeader();
   }
 
+  private int vertexCount()
+  {
+    return this.vertex_positions.size();
+  }
+
+  private int triangleCount()
+  {
+    return this.triangles.size() / 3;
+  }
+
   private void deliverData(
     final SMFParserEventsBodyType events_data)
   {
-    if (this.vertices.size() > 0) {
+    if (this.vertexCount() > 0) {
       final Optional<SMFParserEventsDataAttributesNonInterleavedType> events_noninterleaved_opt =
         events_data.onAttributesNonInterleaved();
-      final SMFParserEventsDataAttributesNonInterleavedType events_noninterleaved =
-        events_noninterleaved_opt.get();
-      final Vertex vertex = this.vertices.get(0);
-
-      this.deliverDataPosition(
-        events_noninterleaved, this.attrib_position, vertex);
-      this.deliverDataNormals(
-        events_noninterleaved, this.attrib_normal, vertex);
-      this.deliverDataUV(
-        events_noninterleaved, this.attrib_uv, vertex);
+
+      if (events_noninterleaved_opt.isPresent()) {
+        final SMFParserEventsDataAttributesNonInterleavedType events_noninterleaved =
+          events_noninterleaved_opt.get();
+        try {
+          this.deliverDataPosition(
+            events_noninterleaved, SMFOBJHeaders.ATTRIBUTE_POSITION);
+          this.deliverDataNormals(
+            events_noninterleaved, SMFOBJHeaders.ATTRIBUTE_NORMAL);
+          this.deliverDataUV(
+            events_noninterleaved, SMFOBJHeaders.ATTRIBUTE_UV);
+        } finally {
+          events_noninterleaved.onDataAttributesNonInterleavedFinish();
+        }
+      }
     }
 
-    if (this.triangles.size() > 0) {
+    if (this.triangleCount() > 0) {
       this.deliverDataTriangles(events_data);
     }
   }
 
   private void deliverHeader()
   {
-    final SMFHeader.Builder header_b = SMFHeader.builder();
-    header_b.setSchemaIdentifier(SMFSchemaIdentifier.of(
-      SMFSchemaName.of("com.io7m.example"), 0, 0));
-
-    final List<SMFAttribute> attributes =
-      new ArrayList<>();
-
-    final SMFAttributeName name_position =
-      SMFAttributeName.of("POSITION");
-    final SMFAttributeName name_normal =
-      SMFAttributeName.of("NORMAL");
-    final SMFAttributeName name_uv =
-      SMFAttributeName.of("UV:0");
-
-    this.attrib_position = SMFAttribute.of(
-      name_position, SMFComponentType.ELEMENT_TYPE_FLOATING, 3, 32);
-    this.attrib_normal = SMFAttribute.of(
-      name_normal, SMFComponentType.ELEMENT_TYPE_FLOATING, 3, 32);
-    this.attrib_uv = SMFAttribute.of(
-      name_uv, SMFComponentType.ELEMENT_TYPE_FLOATING, 2, 32);
-
-    if (this.vertices.size() > 0) {
-      header_b.setVertexCount((long) this.vertices.size());
-      final Vertex vertex = this.vertices.get(0);
-      if (vertex.position != null) {
-        attributes.add(this.attrib_position);
-      }
-      if (vertex.normal != null) {
-        attributes.add(this.attrib_normal);
-      }
-      if (vertex.uv != null) {
-        attributes.add(this.attrib_uv);
-      }
-    }
-
-    header_b.setAttributesInOrder(attributes);
+    final int vertex_count = this.vertexCount();
+    final boolean has_normals =
+      vertex_count > 0 && this.vertex_normals.get(0) != ABSENT;
+    final boolean has_uvs =
+      vertex_count > 0 && this.vertex_uvs.get(0) != ABSENT;
 
-    int triangle_bits = 32;
-    if (this.vertices.size() < 65536) {
-      triangle_bits = 16;
-    }
-
-    final SMFCoordinateSystem system =
-      SMFCoordinateSystem.of(
-        CAxisSystem.of(AXIS_POSITIVE_X, AXIS_POSITIVE_Y, AXIS_NEGATIVE_Z),
-        FACE_WINDING_ORDER_COUNTER_CLOCKWISE);
-
-    {
-      final String text =
-        new StringBuilder(128)
-          .append("OBJ files do not contain coordinate system information.")
-          .append(System.lineSeparator())
-          .append(
-            "A possibly incorrect default coordinate system has been assumed: ")
-          .append(system.toHumanString())
-          .append(System.lineSeparator())
-          .toString();
-      this.events.onWarning(
-        SMFParseWarning.of(LexicalPositions.zero(), text, Optional.empty()));
-    }
+    this.events.onWarning(SMFOBJHeaders.coordinateSystemWarning());
 
-    header_b.setCoordinateSystem(system);
-    header_b.setTriangles(
-      SMFTriangles.of((long) this.triangles.size(), triangle_bits));
-    final SMFHeader header = header_b.build();
+    final SMFHeader header =
+      SMFOBJHeaders.header(
+        (long) vertex_count,
+        (long) this.triangleCount(),
+        has_normals,
+        has_uvs);
 
     final Optional<SMFParserEventsHeaderType> events_header_opt =
       this.events.onVersionReceived(SMFFormatVersion.of(1, 0));
@@ -276,8 +246,12 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     if (events_tri_opt.isPresent()) {
       final SMFParserEventsDataTrianglesType events_tri = events_tri_opt.get();
       try {
-        for (final Triangle t : this.triangles) {
-          events_tri.onDataTriangle((long) t.v0, (long) t.v1, (long) t.v2);
+        final int count = this.triangles.size();
+        for (int index = 0; index < count; index += 3) {
+          events_tri.onDataTriangle(
+            (long) this.triangles.get(index),
+            (long) this.triangles.get(index + 1),
+            (long) this.triangles.get(index + 2));
         }
       } finally {
         events_tri.onDataTrianglesFinish();
@@ -287,20 +261,26 @@ public final class SMFOBJImporter implements SMFOBJImporterType
 
   private void deliverDataUV(
     final SMFParserEventsDataAttributesNonInterleavedType events_noninterleaved,
-    final SMFAttribute in_attrib_uv,
-    final Vertex vertex)
+    final SMFAttribute in_attrib_uv)
   {
-    if (vertex.uv != null) {
+    if (this.vertex_uvs.get(0) != ABSENT) {
       final Optional<SMFParserEventsDataAttributeValuesType> events_opt =
         events_noninterleaved.onDataAttributeStart(in_attrib_uv);
 
       if (events_opt.isPresent()) {
         final SMFParserEventsDataAttributeValuesType data_events = events_opt.get();
         try {
-          for (final Vertex v : this.vertices) {
-            data_events.onDataAttributeValueFloat2(
-              v.uv.x(),
-              v.uv.y());
+          final int count = this.vertexCount();
+          for (int index = 0; index < count; ++index) {
+            final int source = this.vertex_uvs.get(index);
+            if (source == ABSENT) {
+              data_events.onDataAttributeValueFloat2(0.0, 0.0);
+            } else {
+              final int base = source * 2;
+              data_events.onDataAttributeValueFloat2(
+                this.uvs.get(base),
+                this.uvs.get(base + 1));
+            }
           }
         } finally {
           data_events.onDataAttributeValueFinish();
@@ -311,22 +291,16 @@ public final class SMFOBJImporter implements SMFOBJImporterType
 
   private void deliverDataNormals(
     final SMFParserEventsDataAttributesNonInterleavedType events_noninterleaved,
-    final SMFAttribute in_attrib_normal,
-    final Vertex vertex)
+    final SMFAttribute in_attrib_normal)
   {
-    if (vertex.normal != null) {
+    if (this.vertex_normals.get(0) != ABSENT) {
       final Optional<SMFParserEventsDataAttributeValuesType> events_opt =
         events_noninterleaved.onDataAttributeStart(in_attrib_normal);
 
       if (events_opt.isPresent()) {
         final SMFParserEventsDataAttributeValuesType data_events = events_opt.get();
         try {
-          for (final Vertex v : this.vertices) {
-            data_events.onDataAttributeValueFloat3(
-              v.normal.x(),
-              v.normal.y(),
-              v.normal.z());
-          }
+          deliverFloat3(this.normals, this.vertex_normals, data_events);
         } finally {
           data_events.onDataAttributeValueFinish();
         }
@@ -336,25 +310,37 @@ public final class SMFOBJImporter implements SMFOBJImporterType
 
   private void deliverDataPosition(
     final SMFParserEventsDataAttributesNonInterleavedType events_noninterleaved,
-    final SMFAttribute in_attrib_position,
-    final Vertex vertex)
+    final SMFAttribute in_attrib_position)
   {
-    if (vertex.position != null) {
-      final Optional<SMFParserEventsDataAttributeValuesType> events_opt =
-        events_noninterleaved.onDataAttributeStart(in_attrib_position);
+    final Optional<SMFParserEventsDataAttributeValuesType> events_opt =
+      events_noninterleaved.onDataAttributeStart(in_attrib_position);
 
-      if (events_opt.isPresent()) {
-        final SMFParserEventsDataAttributeValuesType data_events = events_opt.get();
-        try {
-          for (final Vertex v : this.vertices) {
-            data_events.onDataAttributeValueFloat3(
-              v.position.x(),
-              v.position.y(),
-              v.position.z());
-          }
-        } finally {
-          data_events.onDataAttributeValueFinish();
-        }
+    if (events_opt.isPresent()) {
+      final SMFParserEventsDataAttributeValuesType data_events = events_opt.get();
+      try {
+        deliverFloat3(this.positions, this.vertex_positions, data_events);
+      } finally {
+        data_events.onDataAttributeValueFinish();
+      }
+    }
+  }
+
+  private static void deliverFloat3(
+    final SMFOBJDoubleArray values,
+    final SMFOBJIntArray sources,
+    final SMFParserEventsDataAttributeValuesType data_events)
+  {
+    final int count = sources.size();
+    for (int index = 0; index < count; ++index) {
+      final int source = sources.get(index);
+      if (source == ABSENT) {
+        data_events.onDataAttributeValueFloat3(0.0, 0.0, 0.0);
+      } else {
+        final int base = source * 3;
+        data_events.onDataAttributeValueFloat3(
+          values.get(base),
+          values.get(base + 1),
+          values.get(base + 2));
       }
     }
   }
@@ -408,7 +394,7 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     final double z,
     final double w)
   {
-    this.positions.add(Vector3D.of(x, y, z));
+    this.positions.add3(x, y, z);
   }
 
   @Override
@@ -419,7 +405,7 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     final double y,
     final double z)
   {
-    this.normals.add(Vector3D.of(x, y, z));
+    this.normals.add3(x, y, z);
   }
 
   @Override
@@ -430,7 +416,7 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     final double y,
     final double z)
   {
-    this.uvs.add(Vector2D.of(x, y));
+    this.uvs.add2(x, y);
   }
 
   @Override
@@ -441,48 +427,7 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     final int vt,
     final int vn)
   {
-    final int v_index;
-    final OriginalVertexIdentifier key =
-      new OriginalVertexIdentifier(v, vn, vt);
-    if (this.vertex_mappings.containsKey(key)) {
-      v_index = this.vertex_mappings.get(key).intValue();
-      if (LOG.isTraceEnabled()) {
-        LOG.trace("reused vertex {}", Integer.valueOf(v_index));
-      }
-    } else {
-      v_index = this.vertices.size();
-      final Vertex vert =
-        new Vertex(
-          this.positions.get(v - 1),
-          this.normals.get(vn - 1),
-          this.uvs.get(vt - 1));
-      this.vertices.add(vert);
-      this.vertex_mappings.put(key, Integer.valueOf(v_index));
-
-      if (LOG.isTraceEnabled()) {
-        LOG.trace(
-          "created vertex {} -> {}",
-          key,
-          Integer.valueOf(v_index));
-      }
-    }
-
-    switch (this.triangle_state) {
-      case WANT_VERTEX_0: {
-        this.triangle_v0 = v_index;
-        this.triangle_state = TriangleState.WANT_VERTEX_1;
-        break;
-      }
-      case WANT_VERTEX_1: {
-        this.triangle_v1 = v_index;
-        this.triangle_state = TriangleState.WANT_VERTEX_2;
-        break;
-      }
-      case WANT_VERTEX_2: {
-        this.triangle_v2 = v_index;
-        break;
-      }
-    }
+    this.onFaceVertex(p, v, vt, vn);
   }
 
   @Override
@@ -492,48 +437,7 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     final int v,
     final int vt)
   {
-    final int v_index;
-    final OriginalVertexIdentifier key =
-      new OriginalVertexIdentifier(v, -1, vt);
-    if (this.vertex_mappings.containsKey(key)) {
-      v_index = this.vertex_mappings.get(key).intValue();
-      if (LOG.isTraceEnabled()) {
-        LOG.trace("reused vertex {}", Integer.valueOf(v_index));
-      }
-    } else {
-      v_index = this.vertices.size();
-      final Vertex vert =
-        new Vertex(
-          this.positions.get(v - 1),
-          null,
-          this.uvs.get(vt - 1));
-      this.vertices.add(vert);
-      this.vertex_mappings.put(key, Integer.valueOf(v_index));
-
-      if (LOG.isTraceEnabled()) {
-        LOG.trace(
-          "created vertex {} -> {}",
-          key,
-          Integer.valueOf(v_index));
-      }
-    }
-
-    switch (this.triangle_state) {
-      case WANT_VERTEX_0: {
-        this.triangle_v0 = v_index;
-        this.triangle_state = TriangleState.WANT_VERTEX_1;
-        break;
-      }
-      case WANT_VERTEX_1: {
-        this.triangle_v1 = v_index;
-        this.triangle_state = TriangleState.WANT_VERTEX_2;
-        break;
-      }
-      case WANT_VERTEX_2: {
-        this.triangle_v2 = v_index;
-        break;
-      }
-    }
+    this.onFaceVertex(p, v, vt, ABSENT);
   }
 
   @Override
@@ -543,48 +447,7 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     final int v,
     final int vn)
   {
-    final int v_index;
-    final OriginalVertexIdentifier key =
-      new OriginalVertexIdentifier(v, vn, -1);
-    if (this.vertex_mappings.containsKey(key)) {
-      v_index = this.vertex_mappings.get(key).intValue();
-      if (LOG.isTraceEnabled()) {
-        LOG.trace("reused vertex {}", Integer.valueOf(v_index));
-      }
-    } else {
-      v_index = this.vertices.size();
-      final Vertex vert =
-        new Vertex(
-          this.positions.get(v - 1),
-          this.normals.get(vn - 1),
-          null);
-      this.vertices.add(vert);
-      this.vertex_mappings.put(key, Integer.valueOf(v_index));
-
-      if (LOG.isTraceEnabled()) {
-        LOG.trace(
-          "created vertex {} -> {}",
-          key,
-          Integer.valueOf(v_index));
-      }
-    }
-
-    switch (this.triangle_state) {
-      case WANT_VERTEX_0: {
-        this.triangle_v0 = v_index;
-        this.triangle_state = TriangleState.WANT_VERTEX_1;
-        break;
-      }
-      case WANT_VERTEX_1: {
-        this.triangle_v1 = v_index;
-        this.triangle_state = TriangleState.WANT_VERTEX_2;
-        break;
-      }
-      case WANT_VERTEX_2: {
-        this.triangle_v2 = v_index;
-        break;
-      }
-    }
+    this.onFaceVertex(p, v, ABSENT, vn);
   }
 
   @Override
@@ -593,25 +456,40 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     final int index,
     final int v)
   {
-    final int v_index;
-    final OriginalVertexIdentifier key =
-      new OriginalVertexIdentifier(v, -1, -1);
-    if (this.vertex_mappings.containsKey(key)) {
-      v_index = this.vertex_mappings.get(key).intValue();
+    this.onFaceVertex(p, v, ABSENT, ABSENT);
+  }
+
+  private void onFaceVertex(
+    final LexicalPositionType<Path> p,
+    final int v,
+    final int vt,
+    final int vn)
+  {
+    final int source_position =
+      Objects.checkIndex(v - 1, this.positions.size() / 3);
+    final int source_uv =
+      vt == ABSENT ? ABSENT : Objects.checkIndex(vt - 1, this.uvs.size() / 2);
+    final int source_normal =
+      vn == ABSENT ? ABSENT : Objects.checkIndex(vn - 1, this.normals.size() / 3);
+
+    final int candidate = this.vertexCount();
+    final int v_index =
+      this.vertex_mappings.findOrInsert(
+        source_position, source_uv, source_normal, candidate);
+
+    if (v_index == candidate) {
+      this.createVertex(p, source_position, source_uv, source_normal);
       if (LOG.isTraceEnabled()) {
-        LOG.trace("reused vertex {}", Integer.valueOf(v_index));
+        LOG.trace(
+          "created vertex {}/{}/{} -> {}",
+          Integer.valueOf(v),
+          Integer.valueOf(vt),
+          Integer.valueOf(vn),
+          Integer.valueOf(v_index));
       }
     } else {
-      v_index = this.vertices.size();
-      final Vertex vert =
-        new Vertex(
-          this.positions.get(v - 1),
-          null,
-          null);
-      this.vertices.add(vert);
-
       if (LOG.isTraceEnabled()) {
-        LOG.trace("created vertex {}", Integer.valueOf(v_index));
+        LOG.trace("reused vertex {}", Integer.valueOf(v_index));
       }
     }
 
@@ -633,6 +511,30 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     }
   }
 
+  private void createVertex(
+    final LexicalPositionType<Path> p,
+    final int source_position,
+    final int source_uv,
+    final int source_normal)
+  {
+    if (this.vertexCount() > 0) {
+      final boolean missing_normal =
+        source_normal == ABSENT && this.vertex_normals.get(0) != ABSENT;
+      final boolean missing_uv =
+        source_uv == ABSENT && this.vertex_uvs.get(0) != ABSENT;
+      if (missing_normal || missing_uv) {
+        this.error(SMFParseError.of(
+          position(p),
+          "Face vertex does not specify all of the attributes specified by the first face vertex",
+          Optional.empty()));
+      }
+    }
+
+    this.vertex_positions.add(source_position);
+    this.vertex_uvs.add(source_uv);
+    this.vertex_normals.add(source_normal);
+  }
+
   @Override
   public void onCommandFStarted(
     final LexicalPositionType<Path> p,
@@ -665,13 +567,16 @@ public final class SMFOBJImporter implements SMFOBJImporterType
       this.triangle_v2 != -1,
       i -> "Triangle vertex 2 must have been set");
 
-    final int t_index = this.triangles.size();
-    final Triangle t =
-      new Triangle(this.triangle_v0, this.triangle_v1, this.triangle_v2);
-    this.triangles.add(t);
+    final int t_index = this.triangleCount();
+    this.triangles.add3(this.triangle_v0, this.triangle_v1, this.triangle_v2);
 
     if (LOG.isTraceEnabled()) {
-      LOG.trace("created triangle {} -> {}", Integer.valueOf(t_index), t);
+      LOG.trace(
+        "created triangle {} -> {} {} {}",
+        Integer.valueOf(t_index),
+        Integer.valueOf(this.triangle_v0),
+        Integer.valueOf(this.triangle_v1),
+        Integer.valueOf(this.triangle_v2));
     }
   }
 
@@ -685,7 +590,14 @@ public final class SMFOBJImporter implements SMFOBJImporterType
   @Override
   public void parse()
   {
-    this.parser.run();
+    try {
+      this.events.onStart();
+      this.parser.run();
+    } catch (final SMFOBJErrorLimitReached e) {
+      e.report(this.events);
+    } finally {
+      this.events.onFinish();
+    }
   }
 
   private enum TriangleState
@@ -694,102 +606,4 @@ public final class SMFOBJImporter implements SMFOBJImporterType
     WANT_VERTEX_1,
     WANT_VERTEX_2
   }
-
-  private static final class OriginalVertexIdentifier
-  {
-    private final int v;
-    private final int vn;
-    private final int vt;
-
-    OriginalVertexIdentifier(
-      final int in_v,
-      final int in_vn,
-      final int in_vt)
-    {
-      this.v = in_v;
-      this.vn = in_vn;
-      this.vt = in_vt;
-    }
-
-    @Override
-    public String toString()
-    {
-      final StringBuilder sb = new StringBuilder(16);
-      sb.append(this.v);
-      sb.append("/");
-      sb.append(this.vn);
-      sb.append("/");
-      sb.append(this.vt);
-      return sb.toString();
-    }
-
-    @Override
-    public boolean equals(final Object o)
-    {
-      if (this == o) {
-        return true;
-      }
-      if (o == null || !Objects.equals(this.getClass(), o.getClass())) {
-        return false;
-      }
-
-      final OriginalVertexIdentifier that = (OriginalVertexIdentifier) o;
-      return this.v == that.v && this.vn == that.vn && this.vt == that.vt;
-    }
-
-    @Override
-    public int hashCode()
-    {
-      int result = this.v;
-      result = 31 * result + this.vn;
-      result = 31 * result + this.vt;
-      return result;
-    }
-  }
-
-  private static final class Vertex
-  {
-    private final Vector3D position;
-    private final Vector3D normal;
-    private final Vector2D uv;
-
-    Vertex(
-      final Vector3D in_position,
-      final Vector3D in_normal,
-      final Vector2D in_uv)
-    {
-      this.position = in_position;
-      this.normal = in_normal;
-      this.uv = in_uv;
-    }
-  }
-
-  private static final class Triangle
-  {
-    private final int v0;
-    private final int v1;
-    private final int v2;
-
-    Triangle(
-      final int in_v0,
-      final int in_v1,
-      final int in_v2)
-    {
-      this.v0 = in_v0;
-      this.v1 = in_v1;
-      this.v2 = in_v2;
-    }
-
-    @Override
-    public String toString()
-    {
-      final StringBuilder sb = new StringBuilder(16);
-      sb.append(this.v0);
-      sb.append(" ");
-      sb.append(this.v1);
-      sb.append(" ");
-      sb.append(this.v2);
-      return sb.toString();
-    }
-  }
 }
@@ -0,0 +1,568 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.smfj.core.SMFFormatVersion;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.format.obj.internal.SMFOBJByteParser;
+import com.io7m.smfj.format.obj.internal.SMFOBJByteParserReceiverType;
+import com.io7m.smfj.format.obj.internal.SMFOBJDoubleArray;
+import com.io7m.smfj.format.obj.internal.SMFOBJIntArray;
+import com.io7m.smfj.format.obj.internal.SMFOBJVertexTable;
+import com.io7m.smfj.parser.api.SMFParseError;
+import com.io7m.smfj.parser.api.SMFParseErrors;
+import com.io7m.smfj.parser.api.SMFParserEventsBodyType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataTrianglesType;
+import com.io7m.smfj.parser.api.SMFParserEventsHeaderType;
+import com.io7m.smfj.parser.api.SMFParserEventsType;
+import com.io7m.smfj.parser.api.SMFParserRandomAccessType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.io7m.smfj.format.obj.internal.SMFOBJVertexTable.ABSENT;
+
+/**
+ * An OBJ importer that maps the file into memory and parses it
+ * concurrently.
+ *
+ * <p>The file is split into chunks at line boundaries, and each chunk is
+ * parsed on the given executor into its own arrays of attribute values and
+ * face records. The chunks are then merged in file order: attribute arrays
+ * are concatenated, and face vertex references are validated against the
+ * number of attribute values defined before them (the sum of the counts of
+ * the preceding chunks plus the count within the chunk) and deduplicated in
+ * the same order as the sequential importer. The resulting mesh is
+ * therefore identical to that produced by {@link SMFOBJImporter} for the
+ * same file.</p>
+ */
+
+public final class SMFOBJParallelImporter implements SMFParserRandomAccessType
+{
+  /**
+   * The default approximate size of the chunks into which files are split.
+   */
+
+  public static final long DEFAULT_CHUNK_SIZE = 8L * 1024L * 1024L;
+
+  private static final long MAXIMUM_CHUNK_SIZE = 1L << 30;
+  private static final int BOUNDARY_BUFFER_SIZE = 4096;
+  private static final int FACE_HEADER_SIZE = 5;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final SMFParserEventsType events;
+  private final URI uri;
+  private final FileChannel channel;
+  private final Executor executor;
+  private final long chunk_size;
+
+  private SMFOBJParallelImporter(
+    final URI in_uri,
+    final FileChannel in_channel,
+    final SMFParserEventsType in_events,
+    final Executor in_executor,
+    final long in_chunk_size)
+  {
+    this.uri = Objects.requireNonNull(in_uri, "URI");
+    this.channel = Objects.requireNonNull(in_channel, "Channel");
+    this.events = Objects.requireNonNull(in_events, "Events");
+    this.executor = Objects.requireNonNull(in_executor, "Executor");
+
+    if (in_chunk_size < 1L || in_chunk_size > MAXIMUM_CHUNK_SIZE) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Chunk size %d must be in the range [1, %d]",
+          Long.valueOf(in_chunk_size),
+          Long.valueOf(MAXIMUM_CHUNK_SIZE)));
+    }
+    this.chunk_size = in_chunk_size;
+  }
+
+  /**
+   * Create a new parallel OBJ importer that parses chunks of
+   * {@link #DEFAULT_CHUNK_SIZE} bytes on the common fork/join pool. The
+   * channel is not closed by the importer.
+   *
+   * @param in_uri     The URI of the file, for diagnostic messages
+   * @param in_channel The file channel
+   * @param in_events  An event receiver
+   *
+   * @return A new importer
+   */
+
+  public static SMFParserRandomAccessType create(
+    final URI in_uri,
+    final FileChannel in_channel,
+    final SMFParserEventsType in_events)
+  {
+    return create(
+      in_uri,
+      in_channel,
+      in_events,
+      ForkJoinPool.commonPool(),
+      DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Create a new parallel OBJ importer. The channel is not closed by the
+   * importer.
+   *
+   * @param in_uri        The URI of the file, for diagnostic messages
+   * @param in_channel    The file channel
+   * @param in_events     An event receiver
+   * @param in_executor   The executor on which chunks are parsed
+   * @param in_chunk_size The approximate size in bytes of each chunk
+   *
+   * @return A new importer
+   */
+
+  public static SMFParserRandomAccessType create(
+    final URI in_uri,
+    final FileChannel in_channel,
+    final SMFParserEventsType in_events,
+    final Executor in_executor,
+    final long in_chunk_size)
+  {
+    return new SMFOBJParallelImporter(
+      in_uri, in_channel, in_events, in_executor, in_chunk_size);
+  }
+
+  private void error(
+    final long line,
+    final String message)
+  {
+    this.events.onError(SMFParseError.of(
+      LexicalPosition.of(
+        (int) Math.min(line, (long) Integer.MAX_VALUE),
+        0,
+        Optional.of(this.uri)),
+      message,
+      Optional.empty()));
+    SMFOBJErrorLimitReached.check(this.events);
+  }
+
+  @Override
+  public void parse()
+  {
+    try {
+      this.events.onStart();
+      final List<Chunk> chunks = this.parseChunks();
+      final Merger merger = new Merger(chunks);
+      merger.merge();
+      this.deliver(merger);
+    } catch (final IOException e) {
+      this.events.onError(SMFParseErrors.errorException(e));
+    } catch (final SMFOBJErrorLimitReached e) {
+      e.report(this.events);
+    } finally {
+      this.events.onFinish();
+    }
+  }
+
+  private List<Chunk> parseChunks()
+    throws IOException
+  {
+    final long size = this.channel.size();
+    final List<CompletableFuture<Chunk>> futures = new ArrayList<>();
+
+    long start = 0L;
+    while (start < size) {
+      final long end =
+        this.lineStartAfter(Math.min(size, start + this.chunk_size), size);
+      final long chunk_start = start;
+      futures.add(CompletableFuture.supplyAsync(
+        () -> this.parseChunk(chunk_start, end), this.executor));
+      start = end;
+    }
+
+    final List<Chunk> chunks = new ArrayList<>(futures.size());
+    for (final CompletableFuture<Chunk> future : futures) {
+      try {
+        chunks.add(future.join());
+      } catch (final CompletionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof UncheckedIOException) {
+          throw ((UncheckedIOException) cause).getCause();
+        }
+        throw e;
+      }
+    }
+    return chunks;
+  }
+
+  /**
+   * @return The offset of the start of the first line that begins at or
+   * after {@code position}, or {@code size} if there is no such line
+   */
+
+  private long lineStartAfter(
+    final long position,
+    final long size)
+    throws IOException
+  {
+    if (position >= size) {
+      return size;
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_BUFFER_SIZE);
+    long offset = position - 1L;
+    while (offset < size) {
+      buffer.clear();
+      final int read = this.channel.read(buffer, offset);
+      if (read <= 0) {
+        break;
+      }
+      for (int index = 0; index < read; ++index) {
+        if (buffer.get(index) == '\n') {
+          return offset + (long) index + 1L;
+        }
+      }
+      offset += read;
+    }
+    return size;
+  }
+
+  private Chunk parseChunk(
+    final long start,
+    final long end)
+  {
+    final long length = end - start;
+    if (length > (long) Integer.MAX_VALUE) {
+      throw new UncheckedIOException(new IOException(
+        String.format(
+          "A line beginning at offset %d is too long to be parsed",
+          Long.valueOf(start))));
+    }
+
+    try {
+      final MappedByteBuffer buffer =
+        this.channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+      final Chunk chunk = new Chunk();
+      final SMFOBJByteParser parser = new SMFOBJByteParser(chunk);
+      parser.parse(buffer, 0, (int) length, 1L);
+      chunk.lines = parser.line();
+      return chunk;
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void deliver(
+    final Merger merger)
+  {
+    this.events.onWarning(SMFOBJHeaders.coordinateSystemWarning());
+
+    final SMFOBJVertexTable vertices = merger.vertices;
+    final long triangle_count = (long) (merger.triangles.size() / 3);
+    final SMFHeader header =
+      SMFOBJHeaders.header(
+        (long) vertices.size(),
+        triangle_count,
+        vertices.hasNormals(),
+        vertices.hasUVs());
+
+    final Optional<SMFParserEventsHeaderType> events_header_opt =
+      this.events.onVersionReceived(SMFFormatVersion.of(1, 0));
+    if (events_header_opt.isEmpty()) {
+      return;
+    }
+
+    final Optional<SMFParserEventsBodyType> events_data_opt =
+      events_header_opt.get().onHeaderParsed(header);
+    if (events_data_opt.isEmpty()) {
+      return;
+    }
+
+    final SMFParserEventsBodyType body = events_data_opt.get();
+    SMFOBJDelivery.deliverAttributes(
+      body, vertices, merger.positions, merger.normals, merger.uvs);
+
+    if (triangle_count > 0L) {
+      final Optional<SMFParserEventsDataTrianglesType> events_tri_opt =
+        body.onTriangles();
+      if (events_tri_opt.isPresent()) {
+        final SMFParserEventsDataTrianglesType events_tri =
+          events_tri_opt.get();
+        try {
+          SMFOBJDelivery.deliverTriangles(events_tri, merger.triangles);
+        } finally {
+          events_tri.onDataTrianglesFinish();
+        }
+      }
+    }
+  }
+
+  /**
+   * The records parsed from one chunk of the file. Each face is recorded as
+   * its line number within the chunk, the numbers of positions, texture
+   * coordinates and normals defined before it within the chunk, and its
+   * vertex count, followed by the indices of each of its vertices.
+   */
+
+  private static final class Chunk implements SMFOBJByteParserReceiverType
+  {
+    private final SMFOBJDoubleArray positions;
+    private final SMFOBJDoubleArray normals;
+    private final SMFOBJDoubleArray uvs;
+    private final SMFOBJIntArray faces;
+    private final SMFOBJIntArray error_lines;
+    private final List<String> error_messages;
+    private int face_start;
+    private long lines;
+
+    Chunk()
+    {
+      this.positions = new SMFOBJDoubleArray(INITIAL_CAPACITY * 3);
+      this.normals = new SMFOBJDoubleArray(INITIAL_CAPACITY * 3);
+      this.uvs = new SMFOBJDoubleArray(INITIAL_CAPACITY * 2);
+      this.faces = new SMFOBJIntArray(INITIAL_CAPACITY * 8);
+      this.error_lines = new SMFOBJIntArray(0);
+      this.error_messages = new ArrayList<>();
+    }
+
+    @Override
+    public void onPosition(
+      final double x,
+      final double y,
+      final double z)
+    {
+      this.positions.add3(x, y, z);
+    }
+
+    @Override
+    public void onNormal(
+      final double x,
+      final double y,
+      final double z)
+    {
+      this.normals.add3(x, y, z);
+    }
+
+    @Override
+    public void onTextureCoordinates(
+      final double u,
+      final double v)
+    {
+      this.uvs.add2(u, v);
+    }
+
+    @Override
+    public void onFaceStarted(
+      final long line)
+    {
+      this.face_start = this.faces.size();
+      this.faces.add((int) line);
+      this.faces.add3(
+        this.positions.size() / 3,
+        this.uvs.size() / 2,
+        this.normals.size() / 3);
+      this.faces.add(0);
+    }
+
+    @Override
+    public void onFaceVertex(
+      final long line,
+      final int v,
+      final int vt,
+      final int vn)
+    {
+      this.faces.add3(v, vt, vn);
+      final int count_index = this.face_start + FACE_HEADER_SIZE - 1;
+      this.faces.set(count_index, this.faces.get(count_index) + 1);
+    }
+
+    @Override
+    public void onFaceFinished(
+      final long line)
+    {
+
+    }
+
+    @Override
+    public void onError(
+      final long line,
+      final String message)
+    {
+      this.error_lines.add((int) line);
+      this.error_messages.add(message);
+    }
+  }
+
+  /**
+   * The merging of chunks, in file order, into a single mesh.
+   */
+
+  private final class Merger
+  {
+    private final List<Chunk> chunks;
+    private final SMFOBJVertexTable vertices;
+    private final SMFOBJIntArray triangles;
+    private final SMFOBJDoubleArray positions;
+    private final SMFOBJDoubleArray normals;
+    private final SMFOBJDoubleArray uvs;
+    private long line_base;
+
+    Merger(
+      final List<Chunk> in_chunks)
+    {
+      this.chunks = in_chunks;
+
+      int position_values = 0;
+      int normal_values = 0;
+      int uv_values = 0;
+      int face_values = 0;
+      for (final Chunk chunk : in_chunks) {
+        position_values =
+          Math.addExact(position_values, chunk.positions.size());
+        normal_values = Math.addExact(normal_values, chunk.normals.size());
+        uv_values = Math.addExact(uv_values, chunk.uvs.size());
+        face_values = Math.addExact(face_values, chunk.faces.size());
+      }
+
+      this.vertices = new SMFOBJVertexTable(INITIAL_CAPACITY);
+      this.triangles = new SMFOBJIntArray(face_values / 3);
+      this.positions = new SMFOBJDoubleArray(position_values);
+      this.normals = new SMFOBJDoubleArray(normal_values);
+      this.uvs = new SMFOBJDoubleArray(uv_values);
+    }
+
+    void merge()
+    {
+      for (int index = 0; index < this.chunks.size(); ++index) {
+        final Chunk chunk = this.chunks.get(index);
+        this.mergeChunk(chunk);
+        this.positions.addAll(chunk.positions);
+        this.normals.addAll(chunk.normals);
+        this.uvs.addAll(chunk.uvs);
+        this.line_base += chunk.lines;
+        this.chunks.set(index, null);
+      }
+    }
+
+    private void mergeChunk(
+      final Chunk chunk)
+    {
+      final SMFOBJIntArray faces = chunk.faces;
+      int error = 0;
+      int cursor = 0;
+      while (cursor < faces.size()) {
+        error = this.reportErrors(chunk, error, faces.get(cursor));
+        cursor = this.mergeFace(faces, cursor);
+      }
+      this.reportErrors(chunk, error, Integer.MAX_VALUE);
+    }
+
+    private int reportErrors(
+      final Chunk chunk,
+      final int start,
+      final int before_line)
+    {
+      int index = start;
+      while (index < chunk.error_lines.size()
+        && chunk.error_lines.get(index) < before_line) {
+        SMFOBJParallelImporter.this.error(
+          this.line_base + (long) chunk.error_lines.get(index),
+          chunk.error_messages.get(index));
+        index += 1;
+      }
+      return index;
+    }
+
+    private void vertexError(
+      final String message,
+      final long line)
+    {
+      SMFOBJParallelImporter.this.error(line, message);
+    }
+
+    private int mergeFace(
+      final SMFOBJIntArray faces,
+      final int cursor)
+    {
+      final long line = this.line_base + (long) faces.get(cursor);
+      final int position_count =
+        this.positions.size() / 3 + faces.get(cursor + 1);
+      final int uv_count =
+        this.uvs.size() / 2 + faces.get(cursor + 2);
+      final int normal_count =
+        this.normals.size() / 3 + faces.get(cursor + 3);
+      final int count = faces.get(cursor + 4);
+      final int first = cursor + FACE_HEADER_SIZE;
+
+      int v0 = ABSENT;
+      int v1 = ABSENT;
+      int v2 = ABSENT;
+      for (int index = 0; index < count; ++index) {
+        final int base = first + index * 3;
+        final int v = faces.get(base);
+        final int vt = faces.get(base + 1);
+        final int vn = faces.get(base + 2);
+
+        final Optional<String> check =
+          SMFOBJVertexTable.checkReference(
+            v, vt, vn, position_count, uv_count, normal_count);
+        if (check.isPresent()) {
+          SMFOBJParallelImporter.this.error(line, check.get());
+          return first + count * 3;
+        }
+
+        final int vertex =
+          this.vertices.insert(
+            line,
+            SMFOBJVertexTable.resolve(v, position_count),
+            SMFOBJVertexTable.resolve(vt, uv_count),
+            SMFOBJVertexTable.resolve(vn, normal_count),
+            this::vertexError);
+        if (index == 0) {
+          v0 = vertex;
+        } else if (index == 1) {
+          v1 = vertex;
+        } else {
+          v2 = vertex;
+        }
+      }
+
+      if (count < 3) {
+        SMFOBJParallelImporter.this.error(
+          line, "Must have received three triangle vertices");
+      } else {
+        this.triangles.add3(v0, v1, v2);
+      }
+      return first + count * 3;
+    }
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+
+  }
+}
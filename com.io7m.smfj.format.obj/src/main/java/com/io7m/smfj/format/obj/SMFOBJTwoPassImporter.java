@@ -0,0 +1,576 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.smfj.core.SMFFormatVersion;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.format.obj.internal.SMFOBJByteParser;
+import com.io7m.smfj.format.obj.internal.SMFOBJByteParserReceiverType;
+import com.io7m.smfj.format.obj.internal.SMFOBJDoubleArray;
+import com.io7m.smfj.format.obj.internal.SMFOBJIntArray;
+import com.io7m.smfj.format.obj.internal.SMFOBJVertexTable;
+import com.io7m.smfj.parser.api.SMFParseError;
+import com.io7m.smfj.parser.api.SMFParseErrors;
+import com.io7m.smfj.parser.api.SMFParserEventsBodyType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataTrianglesType;
+import com.io7m.smfj.parser.api.SMFParserEventsHeaderType;
+import com.io7m.smfj.parser.api.SMFParserEventsType;
+import com.io7m.smfj.parser.api.SMFParserRandomAccessType;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.io7m.smfj.format.obj.internal.SMFOBJVertexTable.ABSENT;
+
+/**
+ * An OBJ importer for seekable inputs that reads the file twice instead of
+ * accumulating the whole mesh in memory.
+ *
+ * <p>The first pass parses the file directly from bytes, counting the
+ * position, normal, texture coordinate, and face records, and builds the
+ * mapping from distinct face vertex references to vertex indices. This is
+ * enough to deliver the header. The second pass reads the attribute values
+ * into arrays of exactly the required sizes, and streams triangles to the
+ * event receiver as the faces are parsed, resolving their vertices through
+ * the mapping built by the first pass. Triangles are never held in memory
+ * unless faces appear in the file before the attribute values that they
+ * refer to.</p>
+ *
+ * <p>The resulting mesh is the same as that produced by
+ * {@link SMFOBJImporter} for the same file.</p>
+ */
+
+public final class SMFOBJTwoPassImporter implements SMFParserRandomAccessType
+{
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final SMFParserEventsType events;
+  private final URI uri;
+  private final FileChannel channel;
+  private final SMFOBJVertexTable vertices;
+
+  private SMFOBJTwoPassImporter(
+    final URI in_uri,
+    final FileChannel in_channel,
+    final SMFParserEventsType in_events)
+  {
+    this.uri = Objects.requireNonNull(in_uri, "URI");
+    this.channel = Objects.requireNonNull(in_channel, "Channel");
+    this.events = Objects.requireNonNull(in_events, "Events");
+    this.vertices = new SMFOBJVertexTable(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Create a new two-pass OBJ importer. The channel is read using absolute
+   * reads, so its position is not modified, and it is not closed by the
+   * importer.
+   *
+   * @param in_uri     The URI of the file, for diagnostic messages
+   * @param in_channel The file channel
+   * @param in_events  An event receiver
+   *
+   * @return A new importer
+   */
+
+  public static SMFParserRandomAccessType create(
+    final URI in_uri,
+    final FileChannel in_channel,
+    final SMFParserEventsType in_events)
+  {
+    return new SMFOBJTwoPassImporter(in_uri, in_channel, in_events);
+  }
+
+  private void error(
+    final long line,
+    final String message)
+  {
+    this.events.onError(SMFParseError.of(
+      LexicalPosition.of(
+        (int) Math.min(line, (long) Integer.MAX_VALUE),
+        0,
+        Optional.of(this.uri)),
+      message,
+      Optional.empty()));
+    SMFOBJErrorLimitReached.check(this.events);
+  }
+
+  @Override
+  public void parse()
+  {
+    try {
+      this.events.onStart();
+
+      final FirstPass first = new FirstPass();
+      new SMFOBJByteParser(first).parseChannel(this.channel);
+
+      final Optional<SMFParserEventsBodyType> body_opt =
+        this.deliverHeader(first);
+
+      if (body_opt.isPresent()) {
+        final SecondPass second = new SecondPass(first, body_opt.get());
+        try {
+          new SMFOBJByteParser(second).parseChannel(this.channel);
+          second.finish();
+        } finally {
+          second.finishTriangles();
+        }
+      }
+    } catch (final IOException e) {
+      this.events.onError(SMFParseErrors.errorException(e));
+    } catch (final SMFOBJErrorLimitReached e) {
+      e.report(this.events);
+    } finally {
+      this.events.onFinish();
+    }
+  }
+
+  private Optional<SMFParserEventsBodyType> deliverHeader(
+    final FirstPass first)
+  {
+    this.events.onWarning(SMFOBJHeaders.coordinateSystemWarning());
+
+    final SMFHeader header =
+      SMFOBJHeaders.header(
+        (long) this.vertices.size(),
+        first.triangles,
+        this.vertices.hasNormals(),
+        this.vertices.hasUVs());
+
+    final Optional<SMFParserEventsHeaderType> events_header_opt =
+      this.events.onVersionReceived(SMFFormatVersion.of(1, 0));
+
+    if (events_header_opt.isPresent()) {
+      return events_header_opt.get().onHeaderParsed(header);
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+
+  }
+
+  /**
+   * The face assembly and index validation common to both passes. A face
+   * produces the triangle made from its first two vertices and its last
+   * vertex, and a face that refers to a nonexistent attribute value is
+   * discarded from that vertex onwards, in the same manner as the
+   * event-based importer.
+   */
+
+  private abstract class Pass implements SMFOBJByteParserReceiverType
+  {
+    private int positions;
+    private int normals;
+    private int uvs;
+    private boolean face_valid;
+    private int face_size;
+    private int face_v0;
+    private int face_v1;
+    private int face_v2;
+
+    Pass()
+    {
+
+    }
+
+    final int positionCount()
+    {
+      return this.positions;
+    }
+
+    final int normalCount()
+    {
+      return this.normals;
+    }
+
+    final int uvCount()
+    {
+      return this.uvs;
+    }
+
+    abstract void position(
+      double x,
+      double y,
+      double z);
+
+    abstract void normal(
+      double x,
+      double y,
+      double z);
+
+    abstract void uv(
+      double u,
+      double v);
+
+    abstract int vertex(
+      long line,
+      int v,
+      int vt,
+      int vn);
+
+    abstract void triangle(
+      int v0,
+      int v1,
+      int v2);
+
+    abstract void reportError(
+      long line,
+      String message);
+
+    @Override
+    public final void onPosition(
+      final double x,
+      final double y,
+      final double z)
+    {
+      this.positions += 1;
+      this.position(x, y, z);
+    }
+
+    @Override
+    public final void onNormal(
+      final double x,
+      final double y,
+      final double z)
+    {
+      this.normals += 1;
+      this.normal(x, y, z);
+    }
+
+    @Override
+    public final void onTextureCoordinates(
+      final double u,
+      final double v)
+    {
+      this.uvs += 1;
+      this.uv(u, v);
+    }
+
+    @Override
+    public void onFaceStarted(
+      final long line)
+    {
+      this.face_valid = true;
+      this.face_size = 0;
+    }
+
+    @Override
+    public final void onFaceVertex(
+      final long line,
+      final int v,
+      final int vt,
+      final int vn)
+    {
+      if (!this.face_valid) {
+        return;
+      }
+
+      final int index = this.resolve(line, v, vt, vn);
+      if (index == ABSENT) {
+        this.face_valid = false;
+        return;
+      }
+
+      if (this.face_size == 0) {
+        this.face_v0 = index;
+      } else if (this.face_size == 1) {
+        this.face_v1 = index;
+      } else {
+        this.face_v2 = index;
+      }
+      this.face_size += 1;
+    }
+
+    @Override
+    public final void onFaceFinished(
+      final long line)
+    {
+      if (!this.face_valid) {
+        return;
+      }
+      if (this.face_size < 3) {
+        this.reportError(line, "Must have received three triangle vertices");
+        return;
+      }
+      this.triangle(this.face_v0, this.face_v1, this.face_v2);
+    }
+
+    @Override
+    public final void onError(
+      final long line,
+      final String message)
+    {
+      this.reportError(line, message);
+    }
+
+    private int resolve(
+      final long line,
+      final int v,
+      final int vt,
+      final int vn)
+    {
+      final Optional<String> error =
+        SMFOBJVertexTable.checkReference(
+          v, vt, vn, this.positions, this.uvs, this.normals);
+
+      if (error.isPresent()) {
+        this.reportError(line, error.get());
+        return ABSENT;
+      }
+      return this.vertex(
+        line,
+        SMFOBJVertexTable.resolve(v, this.positions),
+        SMFOBJVertexTable.resolve(vt, this.uvs),
+        SMFOBJVertexTable.resolve(vn, this.normals));
+    }
+  }
+
+  /**
+   * The first pass: count the records and build the vertex mapping.
+   */
+
+  private final class FirstPass extends Pass
+  {
+    private long triangles;
+
+    FirstPass()
+    {
+
+    }
+
+    @Override
+    void position(
+      final double x,
+      final double y,
+      final double z)
+    {
+
+    }
+
+    @Override
+    void normal(
+      final double x,
+      final double y,
+      final double z)
+    {
+
+    }
+
+    @Override
+    void uv(
+      final double u,
+      final double v)
+    {
+
+    }
+
+    @Override
+    int vertex(
+      final long line,
+      final int v,
+      final int vt,
+      final int vn)
+    {
+      return SMFOBJTwoPassImporter.this.vertices.insert(
+        line, v, vt, vn, (message, at) -> this.reportError(at, message));
+    }
+
+    @Override
+    void triangle(
+      final int v0,
+      final int v1,
+      final int v2)
+    {
+      this.triangles += 1L;
+    }
+
+    @Override
+    void reportError(
+      final long line,
+      final String message)
+    {
+      SMFOBJTwoPassImporter.this.error(line, message);
+    }
+  }
+
+  /**
+   * The second pass: read the attribute values, deliver the attributes once
+   * all of them have been read, and stream the triangles.
+   */
+
+  private final class SecondPass extends Pass
+  {
+    private final FirstPass first;
+    private final SMFParserEventsBodyType body;
+    private final SMFOBJDoubleArray positions;
+    private final SMFOBJDoubleArray normals;
+    private final SMFOBJDoubleArray uvs;
+    private final SMFOBJIntArray pending;
+    private Optional<SMFParserEventsDataTrianglesType> triangles;
+    private boolean delivered;
+    private boolean changed;
+
+    SecondPass(
+      final FirstPass in_first,
+      final SMFParserEventsBodyType in_body)
+    {
+      this.first = in_first;
+      this.body = in_body;
+      this.positions = new SMFOBJDoubleArray(in_first.positionCount() * 3);
+      this.normals = new SMFOBJDoubleArray(in_first.normalCount() * 3);
+      this.uvs = new SMFOBJDoubleArray(in_first.uvCount() * 2);
+      this.pending = new SMFOBJIntArray(0);
+      this.triangles = Optional.empty();
+    }
+
+    @Override
+    void position(
+      final double x,
+      final double y,
+      final double z)
+    {
+      this.positions.add3(x, y, z);
+    }
+
+    @Override
+    void normal(
+      final double x,
+      final double y,
+      final double z)
+    {
+      this.normals.add3(x, y, z);
+    }
+
+    @Override
+    void uv(
+      final double u,
+      final double v)
+    {
+      this.uvs.add2(u, v);
+    }
+
+    @Override
+    public void onFaceStarted(
+      final long line)
+    {
+      if (!this.delivered && this.allAttributesRead()) {
+        this.deliverAttributes();
+      }
+      super.onFaceStarted(line);
+    }
+
+    private boolean allAttributesRead()
+    {
+      return this.positionCount() == this.first.positionCount()
+        && this.normalCount() == this.first.normalCount()
+        && this.uvCount() == this.first.uvCount();
+    }
+
+    @Override
+    int vertex(
+      final long line,
+      final int v,
+      final int vt,
+      final int vn)
+    {
+      final int index = SMFOBJTwoPassImporter.this.vertices.find(v, vt, vn);
+      if (index == ABSENT) {
+        this.fileChanged(line);
+      }
+      return index;
+    }
+
+    @Override
+    void triangle(
+      final int v0,
+      final int v1,
+      final int v2)
+    {
+      if (this.delivered) {
+        this.triangles.ifPresent(t -> t.onDataTriangle(
+          (long) v0, (long) v1, (long) v2));
+      } else {
+        this.pending.add3(v0, v1, v2);
+      }
+    }
+
+    @Override
+    void reportError(
+      final long line,
+      final String message)
+    {
+      // Errors have already been reported by the first pass.
+    }
+
+    private void fileChanged(
+      final long line)
+    {
+      if (!this.changed) {
+        this.changed = true;
+        SMFOBJTwoPassImporter.this.error(
+          line, "The file was modified while it was being imported");
+      }
+    }
+
+    void finish()
+    {
+      if (!this.allAttributesRead()) {
+        this.fileChanged(0L);
+        return;
+      }
+
+      if (!this.delivered) {
+        this.deliverAttributes();
+      }
+
+      final Optional<SMFParserEventsDataTrianglesType> events_tri =
+        this.triangles;
+      if (events_tri.isPresent()) {
+        SMFOBJDelivery.deliverTriangles(events_tri.get(), this.pending);
+      }
+    }
+
+    void finishTriangles()
+    {
+      this.triangles.ifPresent(
+        SMFParserEventsDataTrianglesType::onDataTrianglesFinish);
+    }
+
+    private void deliverAttributes()
+    {
+      this.delivered = true;
+
+      SMFOBJDelivery.deliverAttributes(
+        this.body,
+        SMFOBJTwoPassImporter.this.vertices,
+        this.positions,
+        this.normals,
+        this.uvs);
+
+      if (this.first.triangles > 0L) {
+        this.triangles = this.body.onTriangles();
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj.internal;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import java.util.Arrays;
+
+/**
+ * Functions for growing primitive arrays.
+ */
+
+public final class SMFOBJArrays
+{
+  /**
+   * The largest array size that can be reliably allocated.
+   */
+
+  public static final int MAXIMUM_SIZE = Integer.MAX_VALUE - 8;
+
+  private SMFOBJArrays()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  private static int capacityFor(
+    final int current,
+    final int size,
+    final int extra)
+  {
+    final long required = (long) size + (long) extra;
+    if (required > MAXIMUM_SIZE) {
+      throw new IllegalStateException(
+        String.format(
+          "Array size %d exceeds the maximum size %d",
+          Long.valueOf(required),
+          Integer.valueOf(MAXIMUM_SIZE)));
+    }
+
+    final long grown = Math.max(16L, (long) current + (long) (current >> 1));
+    return (int) Math.min(Math.max(grown, required), MAXIMUM_SIZE);
+  }
+
+  /**
+   * Ensure that {@code values} has room for {@code extra} more elements.
+   *
+   * @param values The current array
+   * @param size   The number of elements in use
+   * @param extra  The number of required extra elements
+   *
+   * @return {@code values}, or a larger copy of it
+   */
+
+  public static double[] grow(
+    final double[] values,
+    final int size,
+    final int extra)
+  {
+    if (size + extra <= values.length) {
+      return values;
+    }
+    return Arrays.copyOf(values, capacityFor(values.length, size, extra));
+  }
+
+  /**
+   * Ensure that {@code values} has room for {@code extra} more elements.
+   *
+   * @param values The current array
+   * @param size   The number of elements in use
+   * @param extra  The number of required extra elements
+   *
+   * @return {@code values}, or a larger copy of it
+   */
+
+  public static int[] grow(
+    final int[] values,
+    final int size,
+    final int extra)
+  {
+    if (size + extra <= values.length) {
+      return values;
+    }
+    return Arrays.copyOf(values, capacityFor(values.length, size, extra));
+  }
+}
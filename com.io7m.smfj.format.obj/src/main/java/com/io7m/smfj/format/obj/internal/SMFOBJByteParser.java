@@ -0,0 +1,598 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static com.io7m.smfj.format.obj.internal.SMFOBJByteParserReceiverType.UNSPECIFIED;
+
+/**
+ * A parser for the subset of OBJ that the importers understand, operating
+ * directly on bytes.
+ *
+ * <p>The parser recognizes the same commands as the event-based OBJ parser
+ * used by {@link com.io7m.smfj.format.obj.SMFOBJImporter}: {@code v},
+ * {@code vn}, {@code vt} and {@code f} produce records, {@code o},
+ * {@code s}, {@code usemtl} and {@code mtllib} are ignored, and anything
+ * else is reported as an error. Numbers that fit in a {@code long}
+ * significand with a small decimal exponent are converted without
+ * allocation; the conversion is exact in the same way as
+ * {@link Double#parseDouble(String)}, which is used for all other
+ * numbers.</p>
+ */
+
+public final class SMFOBJByteParser
+{
+  private static final int BUFFER_SIZE = 65536;
+  private static final int MAXIMUM_FAST_DIGITS = 15;
+  private static final int MAXIMUM_FAST_EXPONENT = 22;
+  private static final double[] POWERS_OF_TEN = {
+    1.0e0, 1.0e1, 1.0e2, 1.0e3, 1.0e4, 1.0e5, 1.0e6, 1.0e7, 1.0e8, 1.0e9,
+    1.0e10, 1.0e11, 1.0e12, 1.0e13, 1.0e14, 1.0e15, 1.0e16, 1.0e17, 1.0e18,
+    1.0e19, 1.0e20, 1.0e21, 1.0e22,
+  };
+
+  private final SMFOBJByteParserReceiverType receiver;
+  private int[] face;
+  private int faceSize;
+  private char[] text;
+  private ByteBuffer data;
+  private int cursor;
+  private int limit;
+  private long line;
+  private long fastSignificand;
+  private int fastExponent;
+
+  /**
+   * Construct a parser.
+   *
+   * @param inReceiver The receiver of parsed records
+   */
+
+  public SMFOBJByteParser(
+    final SMFOBJByteParserReceiverType inReceiver)
+  {
+    this.receiver = Objects.requireNonNull(inReceiver, "receiver");
+    this.face = new int[3 * 8];
+    this.text = new char[32];
+  }
+
+  private static boolean isSpace(
+    final byte c)
+  {
+    return c == ' ' || (c >= '\t' && c <= '\r');
+  }
+
+  private static boolean isDigit(
+    final byte c)
+  {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * @return The number of the most recently parsed line
+   */
+
+  public long line()
+  {
+    return this.line;
+  }
+
+  /**
+   * Parse the whole of the given file channel. The channel's position is
+   * not modified.
+   *
+   * @param channel The channel
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public void parseChannel(
+    final FileChannel channel)
+    throws IOException
+  {
+    Objects.requireNonNull(channel, "channel");
+
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    long position = 0L;
+    this.line = 0L;
+
+    while (true) {
+      if (!buffer.hasRemaining()) {
+        final ByteBuffer larger = ByteBuffer.allocate(
+          Math.multiplyExact(buffer.capacity(), 2));
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+      }
+
+      final int read = channel.read(buffer, position);
+      if (read < 0) {
+        break;
+      }
+      position += read;
+
+      buffer.flip();
+      final int consumed = this.parseLines(buffer, 0, buffer.limit());
+      buffer.position(consumed);
+      buffer.compact();
+    }
+
+    buffer.flip();
+    if (buffer.hasRemaining()) {
+      this.line += 1L;
+      this.parseLine(buffer, 0, buffer.limit());
+    }
+  }
+
+  /**
+   * Parse all of the lines in the given range of bytes. A final line that is
+   * not terminated by a newline is parsed as a complete line.
+   *
+   * @param buffer    The bytes
+   * @param start     The index of the first byte
+   * @param end       The index one past the last byte
+   * @param firstLine The number of the first line in the range
+   */
+
+  public void parse(
+    final ByteBuffer buffer,
+    final int start,
+    final int end,
+    final long firstLine)
+  {
+    Objects.requireNonNull(buffer, "buffer");
+
+    this.line = firstLine - 1L;
+    final int consumed = this.parseLines(buffer, start, end);
+    if (consumed < end) {
+      this.line += 1L;
+      this.parseLine(buffer, consumed, end);
+    }
+  }
+
+  private int parseLines(
+    final ByteBuffer buffer,
+    final int start,
+    final int end)
+  {
+    int lineStart = start;
+    for (int index = start; index < end; ++index) {
+      if (buffer.get(index) == '\n') {
+        this.line += 1L;
+        this.parseLine(buffer, lineStart, index);
+        lineStart = index + 1;
+      }
+    }
+    return lineStart;
+  }
+
+  private void parseLine(
+    final ByteBuffer buffer,
+    final int start,
+    final int end)
+  {
+    this.data = buffer;
+    this.cursor = start;
+    this.limit = end;
+
+    this.skipSpace();
+    if (this.cursor == this.limit || this.data.get(this.cursor) == '#') {
+      return;
+    }
+
+    final int commandStart = this.cursor;
+    this.skipToken();
+    final int commandLength = this.cursor - commandStart;
+
+    try {
+      this.parseCommand(commandStart, commandLength);
+    } catch (final IllegalArgumentException e) {
+      this.receiver.onError(this.line, e.getMessage());
+    }
+  }
+
+  private void parseCommand(
+    final int start,
+    final int length)
+  {
+    final byte c0 = this.data.get(start);
+    if (length == 1) {
+      switch (c0) {
+        case 'v':
+          this.parsePosition();
+          return;
+        case 'f':
+          this.parseFace();
+          return;
+        case 'o':
+        case 's':
+          return;
+        default:
+          break;
+      }
+    } else if (length == 2 && c0 == 'v') {
+      final byte c1 = this.data.get(start + 1);
+      if (c1 == 'n') {
+        this.parseNormal();
+        return;
+      }
+      if (c1 == 't') {
+        this.parseTextureCoordinates();
+        return;
+      }
+    } else if (this.isWord(start, length, "usemtl")
+      || this.isWord(start, length, "mtllib")) {
+      return;
+    }
+
+    throw new IllegalArgumentException(
+      "Unrecognized command: " + this.textOf(start, start + length));
+  }
+
+  private boolean isWord(
+    final int start,
+    final int length,
+    final String word)
+  {
+    if (length != word.length()) {
+      return false;
+    }
+    for (int index = 0; index < length; ++index) {
+      if (this.data.get(start + index) != word.charAt(index)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void parsePosition()
+  {
+    final double x = this.nextDouble();
+    final double y = this.nextDouble();
+    final double z = this.nextDouble();
+    this.skipSpace();
+    if (this.cursor < this.limit) {
+      this.nextDouble();
+    }
+    this.receiver.onPosition(x, y, z);
+  }
+
+  private void parseNormal()
+  {
+    final double x = this.nextDouble();
+    final double y = this.nextDouble();
+    final double z = this.nextDouble();
+    this.receiver.onNormal(x, y, z);
+  }
+
+  private void parseTextureCoordinates()
+  {
+    final double u = this.nextDouble();
+    this.skipSpace();
+    double v = 0.0;
+    if (this.cursor < this.limit) {
+      v = this.nextDouble();
+      this.skipSpace();
+      if (this.cursor < this.limit) {
+        this.nextDouble();
+      }
+    }
+    this.receiver.onTextureCoordinates(u, v);
+  }
+
+  private void parseFace()
+  {
+    this.faceSize = 0;
+
+    while (true) {
+      this.skipSpace();
+      if (this.cursor == this.limit) {
+        break;
+      }
+      this.parseFaceVertex();
+    }
+
+    this.receiver.onFaceStarted(this.line);
+    for (int index = 0; index < this.faceSize; index += 3) {
+      this.receiver.onFaceVertex(
+        this.line,
+        this.face[index],
+        this.face[index + 1],
+        this.face[index + 2]);
+    }
+    this.receiver.onFaceFinished(this.line);
+  }
+
+  private void parseFaceVertex()
+  {
+    final int v = this.nextIndex();
+    int vt = UNSPECIFIED;
+    int vn = UNSPECIFIED;
+
+    if (this.peekSlash()) {
+      this.cursor += 1;
+      if (!this.peekSlash() && !this.atTokenEnd()) {
+        vt = this.nextIndex();
+      }
+      if (this.peekSlash()) {
+        this.cursor += 1;
+        if (!this.atTokenEnd()) {
+          vn = this.nextIndex();
+        }
+      }
+    }
+
+    if (!this.atTokenEnd()) {
+      throw new IllegalArgumentException("Malformed face vertex");
+    }
+
+    this.face = SMFOBJArrays.grow(this.face, this.faceSize, 3);
+    this.face[this.faceSize] = v;
+    this.face[this.faceSize + 1] = vt;
+    this.face[this.faceSize + 2] = vn;
+    this.faceSize += 3;
+  }
+
+  private boolean peekSlash()
+  {
+    return this.cursor < this.limit && this.data.get(this.cursor) == '/';
+  }
+
+  private boolean atTokenEnd()
+  {
+    return this.cursor == this.limit || isSpace(this.data.get(this.cursor));
+  }
+
+  private void skipSpace()
+  {
+    while (this.cursor < this.limit && isSpace(this.data.get(this.cursor))) {
+      this.cursor += 1;
+    }
+  }
+
+  private void skipToken()
+  {
+    while (this.cursor < this.limit && !isSpace(this.data.get(this.cursor))) {
+      this.cursor += 1;
+    }
+  }
+
+  private int nextIndex()
+  {
+    final int index = this.nextInt();
+    if (index == UNSPECIFIED) {
+      throw new IllegalArgumentException("Face vertex index 0 is not valid");
+    }
+    return index;
+  }
+
+  private int nextInt()
+  {
+    final int start = this.cursor;
+    boolean negative = false;
+    if (this.cursor < this.limit) {
+      final byte c = this.data.get(this.cursor);
+      if (c == '-' || c == '+') {
+        negative = c == '-';
+        this.cursor += 1;
+      }
+    }
+
+    final int digitsStart = this.cursor;
+    long value = 0L;
+    while (this.cursor < this.limit && isDigit(this.data.get(this.cursor))) {
+      value = value * 10L + (long) (this.data.get(this.cursor) - '0');
+      if (value > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException(
+          "Integer out of range: " + this.textOf(start, this.cursor + 1));
+      }
+      this.cursor += 1;
+    }
+
+    if (this.cursor == digitsStart) {
+      this.skipToken();
+      throw new IllegalArgumentException(
+        "Malformed integer: " + this.textOf(start, this.cursor));
+    }
+    return (int) (negative ? -value : value);
+  }
+
+  private double nextDouble()
+  {
+    this.skipSpace();
+    if (this.cursor == this.limit) {
+      throw new IllegalArgumentException("Expected a number");
+    }
+
+    final int start = this.cursor;
+    this.skipToken();
+    final int end = this.cursor;
+
+    final double fast = this.parseDoubleFast(start, end);
+    if (!Double.isNaN(fast)) {
+      return fast;
+    }
+    return Double.parseDouble(this.textOf(start, end));
+  }
+
+  /**
+   * Parse a number of the form {@code [+-]digits[.digits][(e|E)[+-]digits]}
+   * if the significand has at most {@link #MAXIMUM_FAST_DIGITS} significant
+   * digits and the decimal exponent is small enough that both the
+   * significand and the power of ten are exact doubles. In that case, a
+   * single multiplication or division yields the correctly rounded result.
+   *
+   * @return The number, or {@code NaN} if the number is not of that form
+   */
+
+  private double parseDoubleFast(
+    final int start,
+    final int end)
+  {
+    int index = start;
+    final byte first = this.data.get(index);
+    final boolean negative = first == '-';
+    if (negative || first == '+') {
+      index += 1;
+    }
+
+    index = this.parseSignificandFast(index, end);
+    if (index < 0) {
+      return Double.NaN;
+    }
+
+    int exponent = this.fastExponent;
+    if (index < end) {
+      final int explicit = this.parseExponentFast(index, end);
+      if (explicit == Integer.MIN_VALUE) {
+        return Double.NaN;
+      }
+      exponent += explicit;
+    }
+
+    return scale(negative, this.fastSignificand, exponent);
+  }
+
+  /**
+   * Parse the digits and optional decimal point of a significand into
+   * {@link #fastSignificand} and {@link #fastExponent}.
+   *
+   * @return The index of the first byte after the significand, or {@code -1}
+   * if there are no digits or too many significant digits
+   */
+
+  private int parseSignificandFast(
+    final int start,
+    final int end)
+  {
+    long significand = 0L;
+    int digits = 0;
+    int significant = 0;
+    int exponent = 0;
+    boolean fraction = false;
+
+    int index = start;
+    for (; index < end; ++index) {
+      final byte c = this.data.get(index);
+      if (isDigit(c)) {
+        digits += 1;
+        if (significand != 0L || c != '0') {
+          significant += 1;
+          significand = significand * 10L + (long) (c - '0');
+        }
+        if (fraction) {
+          exponent -= 1;
+        }
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+    }
+
+    if (digits == 0 || significant > MAXIMUM_FAST_DIGITS) {
+      return -1;
+    }
+
+    this.fastSignificand = significand;
+    this.fastExponent = exponent;
+    return index;
+  }
+
+  private static double scale(
+    final boolean negative,
+    final long significand,
+    final int exponent)
+  {
+    final double magnitude;
+    if (significand == 0L) {
+      magnitude = 0.0;
+    } else if (exponent >= 0 && exponent <= MAXIMUM_FAST_EXPONENT) {
+      magnitude = (double) significand * POWERS_OF_TEN[exponent];
+    } else if (exponent < 0 && exponent >= -MAXIMUM_FAST_EXPONENT) {
+      magnitude = (double) significand / POWERS_OF_TEN[-exponent];
+    } else {
+      return Double.NaN;
+    }
+    return negative ? -magnitude : magnitude;
+  }
+
+  private int parseExponentFast(
+    final int start,
+    final int end)
+  {
+    final byte marker = this.data.get(start);
+    if (marker != 'e' && marker != 'E') {
+      return Integer.MIN_VALUE;
+    }
+
+    int index = start + 1;
+    boolean negative = false;
+    if (index < end) {
+      final byte sign = this.data.get(index);
+      if (sign == '-' || sign == '+') {
+        negative = sign == '-';
+        index += 1;
+      }
+    }
+
+    final int value = this.parseExponentDigits(index, end);
+    if (value == Integer.MIN_VALUE) {
+      return value;
+    }
+    return negative ? -value : value;
+  }
+
+  private int parseExponentDigits(
+    final int start,
+    final int end)
+  {
+    final int length = end - start;
+    if (length == 0 || length > 4) {
+      return Integer.MIN_VALUE;
+    }
+
+    int value = 0;
+    for (int index = start; index < end; ++index) {
+      final byte c = this.data.get(index);
+      if (!isDigit(c)) {
+        return Integer.MIN_VALUE;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private String textOf(
+    final int start,
+    final int end)
+  {
+    final int length = end - start;
+    if (this.text.length < length) {
+      this.text = Arrays.copyOf(this.text, length);
+    }
+    for (int index = 0; index < length; ++index) {
+      this.text[index] = (char) (this.data.get(start + index) & 0xff);
+    }
+    return String.valueOf(this.text, 0, length);
+  }
+}
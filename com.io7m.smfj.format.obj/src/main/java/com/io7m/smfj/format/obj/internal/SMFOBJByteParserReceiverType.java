@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj.internal;
+
+/**
+ * The type of receivers of records from {@link SMFOBJByteParser}.
+ *
+ * <p>Face vertex indices are delivered exactly as they appear in the OBJ
+ * file: positive indices are one-based, negative indices are relative to the
+ * most recently defined value of the same kind, and texture coordinate and
+ * normal indices that are not present are given as {@link #UNSPECIFIED}.
+ * A literal index of zero is reported as an error.</p>
+ */
+
+public interface SMFOBJByteParserReceiverType
+{
+  /**
+   * The index given for attributes that were not specified.
+   */
+
+  int UNSPECIFIED = 0;
+
+  /**
+   * A position was parsed.
+   *
+   * @param x The x component
+   * @param y The y component
+   * @param z The z component
+   */
+
+  void onPosition(
+    double x,
+    double y,
+    double z);
+
+  /**
+   * A normal was parsed.
+   *
+   * @param x The x component
+   * @param y The y component
+   * @param z The z component
+   */
+
+  void onNormal(
+    double x,
+    double y,
+    double z);
+
+  /**
+   * A texture coordinate was parsed.
+   *
+   * @param u The u component
+   * @param v The v component
+   */
+
+  void onTextureCoordinates(
+    double u,
+    double v);
+
+  /**
+   * A face was started.
+   *
+   * @param line The line number
+   */
+
+  void onFaceStarted(
+    long line);
+
+  /**
+   * A face vertex was parsed.
+   *
+   * @param line The line number
+   * @param v    The position index
+   * @param vt   The texture coordinate index, or {@link #UNSPECIFIED}
+   * @param vn   The normal index, or {@link #UNSPECIFIED}
+   */
+
+  void onFaceVertex(
+    long line,
+    int v,
+    int vt,
+    int vn);
+
+  /**
+   * A face was finished.
+   *
+   * @param line The line number
+   */
+
+  void onFaceFinished(
+    long line);
+
+  /**
+   * A line could not be parsed.
+   *
+   * @param line    The line number
+   * @param message The error message
+   */
+
+  void onError(
+    long line,
+    String message);
+}
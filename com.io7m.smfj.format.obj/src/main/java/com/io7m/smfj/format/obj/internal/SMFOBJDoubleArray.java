@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj.internal;
+
+/**
+ * A growable array of unboxed {@code double} values.
+ */
+
+public final class SMFOBJDoubleArray
+{
+  private double[] values;
+  private int size;
+
+  /**
+   * Construct an array.
+   *
+   * @param capacity The initial capacity
+   */
+
+  public SMFOBJDoubleArray(
+    final int capacity)
+  {
+    this.values = new double[Math.max(0, capacity)];
+    this.size = 0;
+  }
+
+  /**
+   * Append a value.
+   *
+   * @param x The value
+   */
+
+  public void add(
+    final double x)
+  {
+    this.ensureCapacity(1);
+    this.values[this.size] = x;
+    this.size += 1;
+  }
+
+  /**
+   * Append two values.
+   *
+   * @param x The first value
+   * @param y The second value
+   */
+
+  public void add2(
+    final double x,
+    final double y)
+  {
+    this.ensureCapacity(2);
+    this.values[this.size] = x;
+    this.values[this.size + 1] = y;
+    this.size += 2;
+  }
+
+  /**
+   * Append three values.
+   *
+   * @param x The first value
+   * @param y The second value
+   * @param z The third value
+   */
+
+  public void add3(
+    final double x,
+    final double y,
+    final double z)
+  {
+    this.ensureCapacity(3);
+    this.values[this.size] = x;
+    this.values[this.size + 1] = y;
+    this.values[this.size + 2] = z;
+    this.size += 3;
+  }
+
+  /**
+   * Append all of the values in {@code other}.
+   *
+   * @param other The array of values
+   */
+
+  public void addAll(
+    final SMFOBJDoubleArray other)
+  {
+    this.ensureCapacity(other.size);
+    System.arraycopy(other.values, 0, this.values, this.size, other.size);
+    this.size += other.size;
+  }
+
+  /**
+   * @param index The index
+   *
+   * @return The value at {@code index}
+   */
+
+  public double get(
+    final int index)
+  {
+    return this.values[index];
+  }
+
+  /**
+   * @return The number of values in the array
+   */
+
+  public int size()
+  {
+    return this.size;
+  }
+
+  private void ensureCapacity(
+    final int extra)
+  {
+    this.values = SMFOBJArrays.grow(this.values, this.size, extra);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj.internal;
+
+/**
+ * A growable array of unboxed {@code int} values.
+ */
+
+public final class SMFOBJIntArray
+{
+  private int[] values;
+  private int size;
+
+  /**
+   * Construct an array.
+   *
+   * @param capacity The initial capacity
+   */
+
+  public SMFOBJIntArray(
+    final int capacity)
+  {
+    this.values = new int[Math.max(0, capacity)];
+    this.size = 0;
+  }
+
+  /**
+   * Append a value.
+   *
+   * @param x The value
+   */
+
+  public void add(
+    final int x)
+  {
+    this.ensureCapacity(1);
+    this.values[this.size] = x;
+    this.size += 1;
+  }
+
+  /**
+   * Append three values.
+   *
+   * @param x The first value
+   * @param y The second value
+   * @param z The third value
+   */
+
+  public void add3(
+    final int x,
+    final int y,
+    final int z)
+  {
+    this.ensureCapacity(3);
+    this.values[this.size] = x;
+    this.values[this.size + 1] = y;
+    this.values[this.size + 2] = z;
+    this.size += 3;
+  }
+
+  /**
+   * @param index The index
+   *
+   * @return The value at {@code index}
+   */
+
+  public int get(
+    final int index)
+  {
+    return this.values[index];
+  }
+
+  /**
+   * Replace the value at {@code index}.
+   *
+   * @param index The index
+   * @param x     The new value
+   */
+
+  public void set(
+    final int index,
+    final int x)
+  {
+    if (index >= this.size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    this.values[index] = x;
+  }
+
+  /**
+   * @return The number of values in the array
+   */
+
+  public int size()
+  {
+    return this.size;
+  }
+
+  private void ensureCapacity(
+    final int extra)
+  {
+    this.values = SMFOBJArrays.grow(this.values, this.size, extra);
+  }
+}
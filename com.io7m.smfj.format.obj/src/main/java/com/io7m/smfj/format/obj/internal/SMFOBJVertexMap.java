@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj.internal;
+
+/**
+ * An open-addressing map from OBJ face vertex references to vertex indices.
+ *
+ * <p>A face vertex reference is the triple of position, texture coordinate
+ * and normal indices that appear in an OBJ {@code f} command. The position
+ * and texture coordinate indices are packed into a single {@code long} key,
+ * and the normal index is held in a parallel {@code int} array. Slots are
+ * probed linearly, and no per-entry objects are allocated.</p>
+ */
+
+public final class SMFOBJVertexMap
+{
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  private static final int MINIMUM_CAPACITY = 16;
+
+  private long[] keys;
+  private int[] normals;
+  private int[] values;
+  private int mask;
+  private int size;
+  private int resizeAt;
+
+  /**
+   * Construct a map.
+   *
+   * @param expected The expected number of entries
+   */
+
+  public SMFOBJVertexMap(
+    final int expected)
+  {
+    this.allocate(capacityFor(expected));
+  }
+
+  private static int capacityFor(
+    final int expected)
+  {
+    final long required = Math.max(0L, (long) expected) * 4L / 3L + 1L;
+    long capacity = MINIMUM_CAPACITY;
+    while (capacity < required && capacity < MAXIMUM_CAPACITY) {
+      capacity <<= 1;
+    }
+    return (int) capacity;
+  }
+
+  private static long keyOf(
+    final int v,
+    final int vt)
+  {
+    return ((long) v << 32) | ((long) vt & 0xffff_ffffL);
+  }
+
+  private static int hash(
+    final long key,
+    final int vn)
+  {
+    long h = key * 0x9e37_79b9_7f4a_7c15L;
+    h ^= (long) vn * 0xc2b2_ae3d_27d4_eb4fL;
+    h ^= h >>> 31;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private void allocate(
+    final int capacity)
+  {
+    this.keys = new long[capacity];
+    this.normals = new int[capacity];
+    this.values = new int[capacity];
+    this.mask = capacity - 1;
+    this.resizeAt = (int) ((long) capacity * 3L / 4L);
+  }
+
+  /**
+   * Find the vertex index associated with the given face vertex reference,
+   * associating {@code candidate} with the reference if there is no existing
+   * association.
+   *
+   * @param v         The position index
+   * @param vt        The texture coordinate index
+   * @param vn        The normal index
+   * @param candidate The non-negative vertex index used for new references
+   *
+   * @return The existing vertex index, or {@code candidate}
+   */
+
+  public int findOrInsert(
+    final int v,
+    final int vt,
+    final int vn,
+    final int candidate)
+  {
+    if (candidate < 0) {
+      throw new IllegalArgumentException(
+        "Vertex index must be non-negative");
+    }
+
+    final long key = keyOf(v, vt);
+    int slot = hash(key, vn) & this.mask;
+    while (true) {
+      final int stored = this.values[slot];
+      if (stored == 0) {
+        break;
+      }
+      if (this.keys[slot] == key && this.normals[slot] == vn) {
+        return stored - 1;
+      }
+      slot = (slot + 1) & this.mask;
+    }
+
+    this.keys[slot] = key;
+    this.normals[slot] = vn;
+    this.values[slot] = candidate + 1;
+    this.size += 1;
+
+    if (this.size >= this.resizeAt) {
+      this.resize();
+    }
+    return candidate;
+  }
+
+  /**
+   * Find the vertex index associated with the given face vertex reference.
+   *
+   * @param v  The position index
+   * @param vt The texture coordinate index
+   * @param vn The normal index
+   *
+   * @return The vertex index, or {@code -1} if there is no association
+   */
+
+  public int find(
+    final int v,
+    final int vt,
+    final int vn)
+  {
+    final long key = keyOf(v, vt);
+    int slot = hash(key, vn) & this.mask;
+    while (true) {
+      final int stored = this.values[slot];
+      if (stored == 0) {
+        return -1;
+      }
+      if (this.keys[slot] == key && this.normals[slot] == vn) {
+        return stored - 1;
+      }
+      slot = (slot + 1) & this.mask;
+    }
+  }
+
+  /**
+   * @return The number of entries in the map
+   */
+
+  public int size()
+  {
+    return this.size;
+  }
+
+  private void resize()
+  {
+    final int capacity = this.values.length;
+    if (capacity >= MAXIMUM_CAPACITY) {
+      throw new IllegalStateException(
+        String.format(
+          "Vertex map cannot hold more than %d entries",
+          Integer.valueOf(this.size)));
+    }
+
+    final long[] oldKeys = this.keys;
+    final int[] oldNormals = this.normals;
+    final int[] oldValues = this.values;
+
+    this.allocate(capacity << 1);
+    for (int index = 0; index < capacity; ++index) {
+      final int stored = oldValues[index];
+      if (stored != 0) {
+        final long key = oldKeys[index];
+        final int vn = oldNormals[index];
+        int slot = hash(key, vn) & this.mask;
+        while (this.values[slot] != 0) {
+          slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = key;
+        this.normals[slot] = vn;
+        this.values[slot] = stored;
+      }
+    }
+  }
+}
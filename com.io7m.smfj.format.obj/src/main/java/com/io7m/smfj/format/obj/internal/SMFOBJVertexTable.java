@@ -0,0 +1,267 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.obj.internal;
+
+import java.util.Optional;
+import java.util.function.ObjLongConsumer;
+
+import static com.io7m.smfj.format.obj.internal.SMFOBJByteParserReceiverType.UNSPECIFIED;
+
+/**
+ * The distinct vertices of an imported mesh. Each vertex is recorded as the
+ * zero-based indices of the position, texture coordinate, and normal that
+ * produced it, with {@link #ABSENT} for attributes that were not specified.
+ * Vertices are numbered in the order in which they are first referenced.
+ */
+
+public final class SMFOBJVertexTable
+{
+  /**
+   * The index used for attributes that were not specified.
+   */
+
+  public static final int ABSENT = -1;
+
+  private final SMFOBJVertexMap mappings;
+  private final SMFOBJIntArray positions;
+  private final SMFOBJIntArray uvs;
+  private final SMFOBJIntArray normals;
+
+  /**
+   * Construct a table.
+   *
+   * @param capacity The initial vertex capacity
+   */
+
+  public SMFOBJVertexTable(
+    final int capacity)
+  {
+    this.mappings = new SMFOBJVertexMap(capacity);
+    this.positions = new SMFOBJIntArray(capacity);
+    this.uvs = new SMFOBJIntArray(capacity);
+    this.normals = new SMFOBJIntArray(capacity);
+  }
+
+  /**
+   * Check that the indices of a face vertex, as delivered by
+   * {@link SMFOBJByteParser}, refer to attribute values that have been
+   * defined. Negative indices are relative to the most recently defined
+   * value of the same kind.
+   *
+   * @param v         The position index
+   * @param vt        The texture coordinate index, or
+   *                  {@link SMFOBJByteParserReceiverType#UNSPECIFIED}
+   * @param vn        The normal index, or
+   *                  {@link SMFOBJByteParserReceiverType#UNSPECIFIED}
+   * @param positions The number of positions defined so far
+   * @param uvs       The number of texture coordinates defined so far
+   * @param normals   The number of normals defined so far
+   *
+   * @return An error message if the face vertex is invalid
+   */
+
+  public static Optional<String> checkReference(
+    final int v,
+    final int vt,
+    final int vn,
+    final int positions,
+    final int uvs,
+    final int normals)
+  {
+    if (!isDefined(v, positions)) {
+      return Optional.of(outOfRange("Position", v, positions));
+    }
+    if (vt != UNSPECIFIED && !isDefined(vt, uvs)) {
+      return Optional.of(outOfRange("Texture coordinate", vt, uvs));
+    }
+    if (vn != UNSPECIFIED && !isDefined(vn, normals)) {
+      return Optional.of(outOfRange("Normal", vn, normals));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Resolve an index that has been checked with
+   * {@link #checkReference(int, int, int, int, int, int)} to a one-based
+   * index.
+   *
+   * @param index The index, or {@link SMFOBJByteParserReceiverType#UNSPECIFIED}
+   * @param count The number of values of the same kind defined so far
+   *
+   * @return The one-based index, or {@link #ABSENT}
+   */
+
+  public static int resolve(
+    final int index,
+    final int count)
+  {
+    if (index == UNSPECIFIED) {
+      return ABSENT;
+    }
+    return index < 0 ? count + 1 + index : index;
+  }
+
+  private static boolean isDefined(
+    final int index,
+    final int count)
+  {
+    if (index < 0) {
+      return -index <= count;
+    }
+    return index >= 1 && index <= count;
+  }
+
+  private static String outOfRange(
+    final String kind,
+    final int index,
+    final int count)
+  {
+    return String.format(
+      "%s index %d is out of range (%d have been defined)",
+      kind,
+      Integer.valueOf(index),
+      Integer.valueOf(count));
+  }
+
+  private static int source(
+    final int index)
+  {
+    return index == ABSENT ? ABSENT : index - 1;
+  }
+
+  /**
+   * Find or create the vertex for a face vertex that has been checked with
+   * {@link #checkReference(int, int, int, int, int, int)}. An error is
+   * reported if a new vertex lacks attributes that the first vertex has.
+   *
+   * @param line   The line number
+   * @param v      The one-based position index
+   * @param vt     The one-based texture coordinate index, or {@link #ABSENT}
+   * @param vn     The one-based normal index, or {@link #ABSENT}
+   * @param errors A receiver of errors
+   *
+   * @return The vertex index
+   */
+
+  public int insert(
+    final long line,
+    final int v,
+    final int vt,
+    final int vn,
+    final ObjLongConsumer<String> errors)
+  {
+    final int source_position = source(v);
+    final int source_uv = source(vt);
+    final int source_normal = source(vn);
+
+    final int candidate = this.size();
+    final int index =
+      this.mappings.findOrInsert(
+        source_position, source_uv, source_normal, candidate);
+
+    if (index == candidate) {
+      if (candidate > 0) {
+        final boolean missing_normal =
+          source_normal == ABSENT && this.hasNormals();
+        final boolean missing_uv =
+          source_uv == ABSENT && this.hasUVs();
+        if (missing_normal || missing_uv) {
+          errors.accept(
+            "Face vertex does not specify all of the attributes specified by the first face vertex",
+            line);
+        }
+      }
+
+      this.positions.add(source_position);
+      this.uvs.add(source_uv);
+      this.normals.add(source_normal);
+    }
+    return index;
+  }
+
+  /**
+   * Find the vertex for a face vertex.
+   *
+   * @param v  The one-based position index
+   * @param vt The one-based texture coordinate index, or {@link #ABSENT}
+   * @param vn The one-based normal index, or {@link #ABSENT}
+   *
+   * @return The vertex index, or {@link #ABSENT} if there is no such vertex
+   */
+
+  public int find(
+    final int v,
+    final int vt,
+    final int vn)
+  {
+    return this.mappings.find(source(v), source(vt), source(vn));
+  }
+
+  /**
+   * @return The number of vertices
+   */
+
+  public int size()
+  {
+    return this.positions.size();
+  }
+
+  /**
+   * @return {@code true} if the first vertex has a normal
+   */
+
+  public boolean hasNormals()
+  {
+    return this.size() > 0 && this.normals.get(0) != ABSENT;
+  }
+
+  /**
+   * @return {@code true} if the first vertex has texture coordinates
+   */
+
+  public boolean hasUVs()
+  {
+    return this.size() > 0 && this.uvs.get(0) != ABSENT;
+  }
+
+  /**
+   * @return The zero-based position index of each vertex
+   */
+
+  public SMFOBJIntArray positions()
+  {
+    return this.positions;
+  }
+
+  /**
+   * @return The zero-based texture coordinate index of each vertex
+   */
+
+  public SMFOBJIntArray uvs()
+  {
+    return this.uvs;
+  }
+
+  /**
+   * @return The zero-based normal index of each vertex
+   */
+
+  public SMFOBJIntArray normals()
+  {
+    return this.normals;
+  }
+}
@@ -30,7 +30,7 @@ module com.io7m.smfj.format.obj
   requires com.io7m.jcoords.core;
   requires com.io7m.jlexing.core;
   requires com.io7m.jobj.core;
-  requires com.io7m.jtensors.core;
+  requires com.io7m.junreachable.core;
   requires com.io7m.smfj.core;
   requires com.io7m.smfj.parser.api;
   requires org.slf4j;
@@ -20,6 +20,7 @@ package com.io7m.smfj.format.support;
 import com.io7m.jlexing.core.LexicalPosition;
 import java.net.URI;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * A tracker of triangle counts and indices.
@@ -27,13 +28,23 @@ import java.util.Objects;
 
 public final class SMFTriangleTracker
 {
+  /**
+   * The default maximum number of out-of-range index errors that will be
+   * reported individually.
+   */
+
+  public static final int DEFAULT_ERROR_LIMIT = 100;
+
   private final long expectedVertexCount;
   private final long expectedTriangleCount;
   private final ErrorReceiverType errors;
+  private final int errorLimit;
   private long triangleCount;
+  private long invalidIndices;
 
   /**
-   * Construct a tracker.
+   * Construct a tracker that reports at most {@link #DEFAULT_ERROR_LIMIT}
+   * out-of-range indices individually.
    *
    * @param inErrors        A receiver of errors
    * @param inVertexCount   The expected number of vertices
@@ -44,11 +55,39 @@ public final class SMFTriangleTracker
     final ErrorReceiverType inErrors,
     final long inVertexCount,
     final long inTriangleCount)
+  {
+    this(inErrors, inVertexCount, inTriangleCount, DEFAULT_ERROR_LIMIT);
+  }
+
+  /**
+   * Construct a tracker. Once {@code inErrorLimit} out-of-range indices have
+   * been reported, further out-of-range indices are only counted, and the
+   * count is reported by {@link #check(LexicalPosition)}.
+   *
+   * @param inErrors        A receiver of errors
+   * @param inVertexCount   The expected number of vertices
+   * @param inTriangleCount The expected number of triangles
+   * @param inErrorLimit    The maximum number of out-of-range indices that
+   *                        will be reported individually
+   */
+
+  public SMFTriangleTracker(
+    final ErrorReceiverType inErrors,
+    final long inVertexCount,
+    final long inTriangleCount,
+    final int inErrorLimit)
   {
     this.errors = Objects.requireNonNull(inErrors, "inErrors");
     this.expectedVertexCount = inVertexCount;
     this.expectedTriangleCount = inTriangleCount;
+    this.errorLimit = inErrorLimit;
     this.triangleCount = 0L;
+    this.invalidIndices = 0L;
+
+    if (inErrorLimit < 0) {
+      throw new IllegalArgumentException(
+        String.format("Error limit %d must be non-negative", inErrorLimit));
+    }
   }
 
   /**
@@ -74,6 +113,47 @@ public final class SMFTriangleTracker
     this.triangleCount = Math.addExact(this.triangleCount, 1L);
   }
 
+  /**
+   * Add a triangle. The lexical position is only evaluated if an error must
+   * be reported, so parsers that construct positions on demand can avoid
+   * doing so for every triangle.
+   *
+   * @param lexical The triangle declaration position
+   * @param v0      The index of vertex 0
+   * @param v1      The index of vertex 1
+   * @param v2      The index of vertex 2
+   */
+
+  public void addTriangle(
+    final Supplier<LexicalPosition<URI>> lexical,
+    final long v0,
+    final long v1,
+    final long v2)
+  {
+    Objects.requireNonNull(lexical, "lexical");
+
+    if (this.isInvalid(v0) || this.isInvalid(v1) || this.isInvalid(v2)) {
+      this.addTriangle(lexical.get(), v0, v1, v2);
+    } else {
+      this.triangleCount = Math.addExact(this.triangleCount, 1L);
+    }
+  }
+
+  /**
+   * @return The number of out-of-range indices encountered so far
+   */
+
+  public long invalidIndices()
+  {
+    return this.invalidIndices;
+  }
+
+  private boolean isInvalid(
+    final long vertexValue)
+  {
+    return Long.compareUnsigned(vertexValue, this.expectedVertexCount) >= 0;
+  }
+
   /**
    * Check that all invariants hold. If they do not, errors will be published
    * to the error receiver and {@code false} returned.
@@ -86,6 +166,16 @@ public final class SMFTriangleTracker
   public boolean check(
     final LexicalPosition<URI> lexical)
   {
+    final long unreported = this.invalidIndices - (long) this.errorLimit;
+    if (unreported > 0L) {
+      this.errors.onError(
+        lexical,
+        String.format(
+          "...and %,d more out-of-range indices",
+          Long.valueOf(unreported))
+      );
+    }
+
     if (this.triangleCount != this.expectedTriangleCount) {
       this.errors.onError(
         lexical,
@@ -104,7 +194,12 @@ public final class SMFTriangleTracker
     final int vertexIndex,
     final long vertexValue)
   {
-    if (Long.compareUnsigned(vertexValue, this.expectedVertexCount) >= 0) {
+    if (this.isInvalid(vertexValue)) {
+      this.invalidIndices = Math.addExact(this.invalidIndices, 1L);
+      if (this.invalidIndices > (long) this.errorLimit) {
+        return;
+      }
+
       this.errors.onError(
         lexical,
         String.format(
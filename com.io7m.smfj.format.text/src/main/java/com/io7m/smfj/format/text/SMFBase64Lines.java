@@ -17,12 +17,13 @@
 package com.io7m.smfj.format.text;
 
 import com.io7m.junreachable.UnreachableCodeException;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 import java.util.Objects;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Base64 encoding.
@@ -30,6 +31,18 @@ import java.util.stream.Collectors;
 
 public final class SMFBase64Lines
 {
+  /**
+   * The maximum number of characters on a single line of Base64 text.
+   */
+
+  static final int CHARACTERS_PER_LINE = 72;
+
+  /**
+   * The number of bytes encoded by a single full line of Base64 text.
+   */
+
+  static final int BYTES_PER_LINE = 54;
+
   private static final Pattern SPLIT_PATTERN = Pattern.compile(
     "(?<=\\G.{72})");
 
@@ -56,12 +69,78 @@ public final class SMFBase64Lines
     return Arrays.asList(SPLIT_PATTERN.split(text));
   }
 
+  /**
+   * Determine the number of lines that {@link #writeBase64Lines(byte[],
+   * BufferedWriter)} will produce for data of the given size.
+   *
+   * @param size The size of the data in bytes
+   *
+   * @return The number of lines
+   */
+
+  public static int base64LineCount(
+    final int size)
+  {
+    if (size < 0) {
+      throw new IllegalArgumentException("Size must be non-negative");
+    }
+    return (size / BYTES_PER_LINE) + (size % BYTES_PER_LINE == 0 ? 0 : 1);
+  }
+
+  /**
+   * Serialize the given binary data into lines of at most 72 characters of
+   * Base64 text, writing each line to the given writer as it is encoded. Each
+   * line is terminated with {@link BufferedWriter#newLine()}. Exactly {@link
+   * #base64LineCount(int)} lines are written, and no lines are written for
+   * empty data.
+   *
+   * @param data   The data
+   * @param writer The output writer
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static void writeBase64Lines(
+    final byte[] data,
+    final BufferedWriter writer)
+    throws IOException
+  {
+    Objects.requireNonNull(data, "Data");
+    Objects.requireNonNull(writer, "Writer");
+
+    final Base64.Encoder encoder = Base64.getUrlEncoder();
+    final byte[] input = new byte[BYTES_PER_LINE];
+    final byte[] output = new byte[CHARACTERS_PER_LINE];
+    final char[] chars = new char[CHARACTERS_PER_LINE];
+
+    for (int offset = 0; offset < data.length; offset += BYTES_PER_LINE) {
+      final int length = Math.min(BYTES_PER_LINE, data.length - offset);
+
+      final int encoded;
+      if (length == BYTES_PER_LINE) {
+        System.arraycopy(data, offset, input, 0, length);
+        encoded = encoder.encode(input, output);
+      } else {
+        encoded = encoder.encode(
+          Arrays.copyOfRange(data, offset, offset + length), output);
+      }
+
+      for (int index = 0; index < encoded; ++index) {
+        chars[index] = (char) output[index];
+      }
+      writer.write(chars, 0, encoded);
+      writer.newLine();
+    }
+  }
+
   /**
    * Parse binary data from the given lines of Base64 encoded data.
    *
    * @param lines A set of lines of Base64 encoded data
    *
    * @return The decoded binary data
+   *
+   * @see SMFBase64LinesDecoder
    */
 
   public static byte[] fromBase64Lines(
@@ -69,9 +148,11 @@ public final class SMFBase64Lines
   {
     Objects.requireNonNull(lines, "Lines");
 
-    final String text =
-      lines.stream().map(String::trim).collect(Collectors.joining()).trim();
-    final Base64.Decoder decoder = Base64.getUrlDecoder();
-    return decoder.decode(text);
+    final SMFBase64LinesDecoder decoder =
+      new SMFBase64LinesDecoder((long) lines.size());
+    for (final String line : lines) {
+      decoder.addLine(line);
+    }
+    return decoder.finish();
   }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.format.text;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A streaming decoder for lines of Base64 text as produced by
+ * {@link SMFBase64Lines}. Lines are decoded as they are received into a
+ * growing byte buffer, so the encoded text is never held in memory as a
+ * whole.
+ */
+
+public final class SMFBase64LinesDecoder
+{
+  private static final long INITIAL_CAPACITY_LIMIT = 1L << 20;
+  private static final int[] ALPHABET = makeAlphabet();
+
+  private byte[] buffer;
+  private int size;
+  private int bits;
+  private int count;
+  private int padding;
+  private boolean finished;
+
+  /**
+   * Construct a decoder.
+   *
+   * @param expectedLines The number of lines that are expected to be
+   *                      received, used to size the initial buffer
+   */
+
+  public SMFBase64LinesDecoder(
+    final long expectedLines)
+  {
+    final long lines =
+      Math.max(0L, Math.min(expectedLines, INITIAL_CAPACITY_LIMIT));
+    final long expected =
+      Math.min(lines * SMFBase64Lines.BYTES_PER_LINE, INITIAL_CAPACITY_LIMIT);
+
+    this.buffer = new byte[(int) expected];
+    this.size = 0;
+  }
+
+  private static int[] makeAlphabet()
+  {
+    final int[] alphabet = new int[128];
+    Arrays.fill(alphabet, -1);
+    final String chars =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    for (int index = 0; index < chars.length(); ++index) {
+      alphabet[chars.charAt(index)] = index;
+    }
+    return alphabet;
+  }
+
+  /**
+   * Decode a single line of Base64 text. Leading and trailing whitespace is
+   * ignored.
+   *
+   * @param line The line
+   *
+   * @throws IllegalArgumentException If the line contains invalid Base64 data
+   * @throws IllegalStateException    If {@link #finish()} has already been
+   *                                  called
+   */
+
+  public void addLine(
+    final String line)
+    throws IllegalArgumentException, IllegalStateException
+  {
+    Objects.requireNonNull(line, "line");
+
+    if (this.finished) {
+      throw new IllegalStateException("Decoder has already finished");
+    }
+
+    final String trimmed = line.trim();
+    for (int index = 0; index < trimmed.length(); ++index) {
+      this.addCharacter(trimmed.charAt(index));
+    }
+  }
+
+  private void addCharacter(
+    final char c)
+  {
+    if (c == '=') {
+      this.addPadding();
+      return;
+    }
+
+    if (this.padding > 0) {
+      throw new IllegalArgumentException(
+        "Input byte array has incorrect ending byte");
+    }
+
+    final int value = c < 128 ? ALPHABET[c] : -1;
+    if (value < 0) {
+      throw new IllegalArgumentException(
+        "Illegal base64 character " + Integer.toString(c, 16));
+    }
+
+    this.bits = (this.bits << 6) | value;
+    ++this.count;
+
+    if (this.count == 4) {
+      this.ensureCapacity(3);
+      this.buffer[this.size] = (byte) (this.bits >> 16);
+      this.buffer[this.size + 1] = (byte) (this.bits >> 8);
+      this.buffer[this.size + 2] = (byte) this.bits;
+      this.size += 3;
+      this.bits = 0;
+      this.count = 0;
+    }
+  }
+
+  private void addPadding()
+  {
+    switch (this.count) {
+      case 2: {
+        if (this.padding == 0) {
+          this.padding = 1;
+          return;
+        }
+        if (this.padding == 1) {
+          this.padding = 2;
+          this.flushPartial();
+          return;
+        }
+        break;
+      }
+      case 3: {
+        if (this.padding == 0) {
+          this.padding = 1;
+          this.flushPartial();
+          return;
+        }
+        break;
+      }
+      default: {
+        break;
+      }
+    }
+
+    throw new IllegalArgumentException(
+      "Input byte array has wrong 4-byte ending unit");
+  }
+
+  private void flushPartial()
+  {
+    switch (this.count) {
+      case 2: {
+        this.ensureCapacity(1);
+        this.buffer[this.size] = (byte) (this.bits >> 4);
+        this.size += 1;
+        break;
+      }
+      case 3: {
+        this.ensureCapacity(2);
+        this.buffer[this.size] = (byte) (this.bits >> 10);
+        this.buffer[this.size + 1] = (byte) (this.bits >> 2);
+        this.size += 2;
+        break;
+      }
+      default: {
+        break;
+      }
+    }
+
+    this.bits = 0;
+    this.count = 0;
+  }
+
+  private void ensureCapacity(
+    final int extra)
+  {
+    final int required = Math.addExact(this.size, extra);
+    if (required > this.buffer.length) {
+      final long doubled = Math.max(16L, (long) this.buffer.length * 2L);
+      final int capacity =
+        (int) Math.min(Math.max(doubled, required), Integer.MAX_VALUE - 8);
+      this.buffer = Arrays.copyOf(this.buffer, capacity);
+    }
+  }
+
+  /**
+   * Finish decoding.
+   *
+   * @return The decoded data
+   *
+   * @throws IllegalArgumentException If the received data was truncated
+   */
+
+  public byte[] finish()
+    throws IllegalArgumentException
+  {
+    this.finished = true;
+
+    if (this.padding == 1 && this.count == 2) {
+      throw new IllegalArgumentException(
+        "Input byte array has wrong 4-byte ending unit");
+    }
+    if (this.count == 1) {
+      throw new IllegalArgumentException(
+        "Last unit does not have enough valid bits");
+    }
+
+    this.flushPartial();
+
+    if (this.size == this.buffer.length) {
+      return this.buffer;
+    }
+    return Arrays.copyOf(this.buffer, this.size);
+  }
+}
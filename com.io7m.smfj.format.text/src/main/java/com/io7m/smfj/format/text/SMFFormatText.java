@@ -74,6 +74,8 @@ public final class SMFFormatText
 
   private static final SMFFormatDescription FORMAT = makeFormat();
   private static final SortedSet<SMFFormatVersion> SUPPORTED = makeVersion();
+  private static final List<byte[]> MAGIC_NUMBERS =
+    List.of("smf ".getBytes(UTF_8));
 
   private static SMFFormatDescription makeFormat()
   {
@@ -227,6 +229,12 @@ public final class SMFFormatText
     throw new UnsupportedOperationException(notSupported(version));
   }
 
+  @Override
+  public List<byte[]> probeMagicNumbers()
+  {
+    return MAGIC_NUMBERS;
+  }
+
   @Override
   public SMFPartialLogged<SMFVersionProbed> probe(
     final InputStream stream)
@@ -230,11 +230,6 @@ public final class SMFTV1Parser implements SMFParserSequentialType
 
     this.header = this.header_builder.build();
 
-    this.state.set(
-      VERTICES_REQUIRED, this.header.vertexCount() != 0L);
-    this.state.set(
-      TRIANGLES_REQUIRED, this.header.triangles().triangleCount() != 0L);
-
     final Optional<SMFParserEventsBodyType> r_opt =
       header_receiver.onHeaderParsed(this.header);
 
@@ -242,6 +237,11 @@ public final class SMFTV1Parser implements SMFParserSequentialType
       return;
     }
 
+    this.state.set(
+      VERTICES_REQUIRED, this.header.vertexCount() != 0L);
+    this.state.set(
+      TRIANGLES_REQUIRED, this.header.triangles().triangleCount() != 0L);
+
     final SMFParserEventsBodyType data_receiver = r_opt.get();
     switch (this.parseBodyCommands(data_receiver)) {
       case SUCCESS:
@@ -39,7 +39,6 @@ import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Deque;
 import java.util.LinkedList;
-import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -270,7 +269,6 @@ public final class SMFTV1Serializer implements SMFSerializerType
       throw new IllegalStateException("Header has not yet been serialized");
     }
 
-    final List<String> lines = SMFBase64Lines.toBase64Lines(data);
     this.writer.append("metadata ");
     this.writer.append(schema.name().value());
     this.writer.append(" ");
@@ -278,22 +276,10 @@ public final class SMFTV1Serializer implements SMFSerializerType
     this.writer.append(" ");
     this.writer.append(Integer.toUnsignedString(schema.versionMinor()));
     this.writer.append(" ");
-    this.writer.append(Integer.toUnsignedString(lines.size()));
+    this.writer.append(
+      Integer.toUnsignedString(SMFBase64Lines.base64LineCount(data.length)));
     this.writer.newLine();
-
-    try {
-      lines.forEach(line -> {
-        try {
-          this.writer.append(line);
-          this.writer.newLine();
-        } catch (final IOException e) {
-          throw new UncheckedIOException(e);
-        }
-      });
-    } catch (final UncheckedIOException e) {
-      throw e.getCause();
-    }
-
+    SMFBase64Lines.writeBase64Lines(data, this.writer);
     this.writer.append("end");
     this.writer.newLine();
   }
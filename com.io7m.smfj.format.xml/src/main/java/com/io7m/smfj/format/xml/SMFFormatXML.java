@@ -23,9 +23,11 @@ import com.io7m.jxe.core.JXESchemaResolutionMappings;
 import com.io7m.smfj.core.SMFFormatDescription;
 import com.io7m.smfj.core.SMFFormatVersion;
 import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.format.xml.internal.SMFXFastProbe;
 import com.io7m.smfj.format.xml.internal.SMFXParser;
 import com.io7m.smfj.format.xml.internal.SMFXProbe;
 import com.io7m.smfj.format.xml.internal.SMFXSerializer;
+import com.io7m.smfj.format.xml.internal.SMFXStreamParser;
 import com.io7m.smfj.parser.api.SMFParseErrors;
 import com.io7m.smfj.parser.api.SMFParserEventsType;
 import com.io7m.smfj.parser.api.SMFParserProviderType;
@@ -35,17 +37,22 @@ import com.io7m.smfj.probe.api.SMFVersionProbeProviderType;
 import com.io7m.smfj.probe.api.SMFVersionProbed;
 import com.io7m.smfj.serializer.api.SMFSerializerProviderType;
 import com.io7m.smfj.serializer.api.SMFSerializerType;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.URI;
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import org.osgi.service.component.annotations.Component;
@@ -70,26 +77,96 @@ public final class SMFFormatXML
       SMFFormatXML.class.getResource("/com/io7m/smfj/format/xml/schema-2.0.xsd")
     );
 
+  private static final JXESchemaDefinition SCHEMA_M2P1 =
+    JXESchemaDefinition.of(
+      URI.create("urn:com.io7m.smf:xml:2:1"),
+      "schema-2.1.xsd",
+      SMFFormatXML.class.getResource("/com/io7m/smfj/format/xml/schema-2.1.xsd")
+    );
+
   private static final JXESchemaResolutionMappings SCHEMAS =
     JXESchemaResolutionMappings.builder()
       .putMappings(URI.create("urn:com.io7m.smf:xml:2:0"), SCHEMA_M2P0)
+      .putMappings(URI.create("urn:com.io7m.smf:xml:2:1"), SCHEMA_M2P1)
       .build();
 
   private static final SMFFormatDescription FORMAT = makeFormat();
   private static final SortedSet<SMFFormatVersion> SUPPORTED = makeVersion();
+  private static final List<byte[]> MAGIC_NUMBERS =
+    List.of(
+      "<?xml".getBytes(StandardCharsets.UTF_8),
+      "<SMF".getBytes(StandardCharsets.UTF_8));
+  private final SMFFormatXMLParserEngine engine;
+  private final SMFFormatXMLPackedEncoding packedEncoding;
   private final JXEHardenedSAXParsers parsers;
+  private final XMLInputFactory readers;
   private final XMLOutputFactory writers;
 
   /**
-   * Construct a format provider.
+   * Construct a format provider that uses the streaming parser engine, and
+   * that writes packed data as text.
    */
 
   public SMFFormatXML()
   {
+    this(SMFFormatXMLParserEngine.PARSER_ENGINE_STAX);
+  }
+
+  /**
+   * Construct a format provider that writes packed data as text.
+   *
+   * @param inEngine The engine used for sequential parsers
+   */
+
+  public SMFFormatXML(
+    final SMFFormatXMLParserEngine inEngine)
+  {
+    this(inEngine, SMFFormatXMLPackedEncoding.PACKED_ENCODING_TEXT);
+  }
+
+  /**
+   * Construct a format provider.
+   *
+   * @param inEngine         The engine used for sequential parsers
+   * @param inPackedEncoding The encoding used for packed data when
+   *                         serializing versions of the format that
+   *                         support packed data
+   */
+
+  public SMFFormatXML(
+    final SMFFormatXMLParserEngine inEngine,
+    final SMFFormatXMLPackedEncoding inPackedEncoding)
+  {
+    this.engine = Objects.requireNonNull(inEngine, "engine");
+    this.packedEncoding =
+      Objects.requireNonNull(inPackedEncoding, "packedEncoding");
     this.parsers = new JXEHardenedSAXParsers();
+    this.readers = createHardenedInputFactory();
     this.writers = XMLOutputFactory.newInstance();
   }
 
+  /*
+   * A stream reader factory hardened to the same degree as the SAX parsers:
+   * document type declarations are not processed (and are rejected by the
+   * parser), and external entities are never resolved.
+   */
+
+  private static XMLInputFactory createHardenedInputFactory()
+  {
+    final var factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(
+      XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    factory.setProperty(
+      XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.FALSE);
+    factory.setXMLResolver((publicId, systemId, baseURI, namespace) -> {
+      throw new XMLStreamException(
+        String.format("External resources are not permitted: %s", systemId));
+    });
+    return factory;
+  }
+
   private static SMFFormatDescription makeFormat()
   {
     final SMFFormatDescription.Builder b = SMFFormatDescription.builder();
@@ -105,6 +182,7 @@ public final class SMFFormatXML
   {
     final var supported = new TreeSet<SMFFormatVersion>();
     supported.add(SMFFormatVersion.of(2, 0));
+    supported.add(SMFFormatVersion.of(2, 1));
     return Collections.unmodifiableSortedSet(supported);
   }
 
@@ -132,12 +210,18 @@ public final class SMFFormatXML
     Objects.requireNonNull(stream, "stream");
 
     try {
+      if (this.engine == SMFFormatXMLParserEngine.PARSER_ENGINE_SAX) {
+        final var reader =
+          this.parsers.createXMLReader(
+            Optional.empty(),
+            XINCLUDE_DISABLED,
+            SCHEMAS);
+        return new SMFXParser(events, uri, reader, stream);
+      }
+
       final var reader =
-        this.parsers.createXMLReader(
-          Optional.empty(),
-          XINCLUDE_DISABLED,
-          SCHEMAS);
-      return new SMFXParser(events, uri, reader, stream);
+        this.readers.createXMLStreamReader(uri.toString(), stream);
+      return new SMFXStreamParser(events, uri, reader, stream);
     } catch (final Exception e) {
       events.onError(SMFParseErrors.errorException(e));
       throw new UnsupportedOperationException(e);
@@ -158,10 +242,37 @@ public final class SMFFormatXML
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public List<byte[]> probeMagicNumbers()
+  {
+    return MAGIC_NUMBERS;
+  }
+
   @Override
   public SMFPartialLogged<SMFVersionProbed> probe(
     final InputStream stream)
   {
+    Objects.requireNonNull(stream, "stream");
+
+    final byte[] prefix;
+    try {
+      prefix = stream.readNBytes(SMFXFastProbe.PREFIX_SIZE);
+    } catch (final IOException e) {
+      return SMFPartialLogged.failed(SMFParseErrors.errorException(e));
+    }
+
+    final var result = SMFXFastProbe.scan(prefix, prefix.length);
+    switch (result.kind()) {
+      case FOUND:
+        return SMFPartialLogged.succeeded(
+          SMFVersionProbed.of(this, result.version().orElseThrow()));
+      case NOT_SMF:
+        return SMFPartialLogged.failed(
+          SMFParseErrors.errorWithMessage(result.message()));
+      case AMBIGUOUS:
+        break;
+    }
+
     try {
       final var reader =
         this.parsers.createXMLReader(
@@ -172,7 +283,7 @@ public final class SMFFormatXML
         this,
         URI.create("urn:probe-input"),
         reader,
-        stream)
+        new SequenceInputStream(new ByteArrayInputStream(prefix), stream))
         .execute();
     } catch (final ParserConfigurationException | SAXException e) {
       return SMFPartialLogged.failed(SMFParseErrors.errorException(e));
@@ -202,8 +313,19 @@ public final class SMFFormatXML
     Objects.requireNonNull(uri, "uri");
     Objects.requireNonNull(stream, "stream");
 
+    if (!SUPPORTED.contains(version)) {
+      throw new UnsupportedOperationException(
+        String.format(
+          "Version %d.%d is not supported",
+          Integer.valueOf(version.major()),
+          Integer.valueOf(version.minor())));
+    }
+
     try {
       return new SMFXSerializer(
+        version,
+        this.packedEncoding,
+        stream,
         this.writers.createXMLStreamWriter(stream, "UTF-8"))
         .start();
     } catch (final XMLStreamException e) {
@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml;
+
+/**
+ * The encodings available for packed attribute and triangle data in
+ * version 2.1 of the XML format.
+ */
+
+public enum SMFFormatXMLPackedEncoding
+{
+  /**
+   * Component values are written as whitespace-separated decimal text.
+   */
+
+  PACKED_ENCODING_TEXT,
+
+  /**
+   * Component values are packed as little-endian binary values of the
+   * declared component size, and the resulting bytes are Base64 encoded.
+   */
+
+  PACKED_ENCODING_BASE64_LITTLE_ENDIAN
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml;
+
+/**
+ * The available engines for parsing the XML format.
+ */
+
+public enum SMFFormatXMLParserEngine
+{
+  /**
+   * A streaming (StAX) parser that walks vertex and triangle elements in a
+   * tight loop. Structural constraints that would otherwise be checked by the
+   * XML schema are checked directly by the parser.
+   */
+
+  PARSER_ENGINE_STAX,
+
+  /**
+   * A SAX parser that validates documents against the XML schema.
+   */
+
+  PARSER_ENGINE_SAX
+}
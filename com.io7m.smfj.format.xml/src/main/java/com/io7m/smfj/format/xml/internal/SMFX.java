@@ -40,6 +40,8 @@ import org.xml.sax.Attributes;
 public final class SMFX implements BTElementHandlerType<Object, Object>
 {
   private final SMFParserEventsType events;
+  private final SMFFormatVersion version;
+  private final String namespaceURI;
   private SMFHeader header;
   private SMFParserEventsHeaderType eventsHeader;
   private SMFParserEventsBodyType eventsBody;
@@ -47,9 +49,12 @@ public final class SMFX implements BTElementHandlerType<Object, Object>
 
   public SMFX(
     final BTElementParsingContextType context,
-    final SMFParserEventsType inEvents)
+    final SMFParserEventsType inEvents,
+    final SMFFormatVersion inVersion)
   {
     this.events = Objects.requireNonNull(inEvents, "inEvents");
+    this.version = Objects.requireNonNull(inVersion, "version");
+    this.namespaceURI = namespaceURIOf(inVersion);
   }
 
   public static String namespaceURI2p0()
@@ -57,26 +62,66 @@ public final class SMFX implements BTElementHandlerType<Object, Object>
     return "urn:com.io7m.smf:xml:2:0";
   }
 
+  public static String namespaceURI2p1()
+  {
+    return "urn:com.io7m.smf:xml:2:1";
+  }
+
+  public static String namespaceURIOf(
+    final SMFFormatVersion version)
+  {
+    if (version.major() == 2) {
+      switch (version.minor()) {
+        case 0:
+          return namespaceURI2p0();
+        case 1:
+          return namespaceURI2p1();
+        default:
+          break;
+      }
+    }
+    throw new IllegalArgumentException(
+      String.format("Unsupported version: %s", version.toHumanString()));
+  }
+
+  /**
+   * @param namespaceURI A namespace URI
+   *
+   * @return {@code true} if the namespace supports packed data
+   */
+
+  public static boolean supportsPacked(
+    final String namespaceURI)
+  {
+    return namespaceURI2p1().equals(namespaceURI);
+  }
+
   @Override
   public Map<BTQualifiedName, BTElementHandlerConstructorType<?, ?>> onChildHandlersRequested(
     final BTElementParsingContextType context)
   {
     return Map.ofEntries(
       Map.entry(
-        BTQualifiedName.of(namespaceURI2p0(), "Header"),
-        c -> new SMFXHeader(c, this.events)
+        BTQualifiedName.of(this.namespaceURI, "Header"),
+        c -> new SMFXHeader(c, this.namespaceURI, this.events)
       ),
       Map.entry(
-        BTQualifiedName.of(namespaceURI2p0(), "VertexDataNonInterleaved"),
-        c -> new SMFXVertexDataNonInterleaved(c, this.header, this.eventsBody)
+        BTQualifiedName.of(this.namespaceURI, "VertexDataNonInterleaved"),
+        c -> new SMFXVertexDataNonInterleaved(
+          c, this.namespaceURI, this.header, this.eventsBody)
       ),
       Map.entry(
-        BTQualifiedName.of(namespaceURI2p0(), "Triangles"),
-        c -> new SMFXTriangles(c, this.triangleTracker, this.eventsBody)
+        BTQualifiedName.of(this.namespaceURI, "Triangles"),
+        c -> new SMFXTriangles(
+          c,
+          this.namespaceURI,
+          this.header.triangles(),
+          this.triangleTracker,
+          this.eventsBody)
       ),
       Map.entry(
-        BTQualifiedName.of(namespaceURI2p0(), "Metadata"),
-        c -> new SMFXMetadata(c, this.eventsBody)
+        BTQualifiedName.of(this.namespaceURI, "Metadata"),
+        c -> new SMFXMetadata(c, this.namespaceURI, this.eventsBody)
       )
     );
   }
@@ -88,7 +133,7 @@ public final class SMFX implements BTElementHandlerType<Object, Object>
   {
     this.events.onStart();
     this.eventsHeader =
-      this.events.onVersionReceived(SMFFormatVersion.of(2, 0))
+      this.events.onVersionReceived(this.version)
         .orElse(new SMFParserEventsHeaderIgnoringReceiver(this.events));
   }
 
@@ -21,29 +21,36 @@ import com.io7m.blackthorne.api.BTElementHandlerConstructorType;
 import com.io7m.blackthorne.api.BTElementHandlerType;
 import com.io7m.blackthorne.api.BTElementParsingContextType;
 import com.io7m.blackthorne.api.BTQualifiedName;
-import com.io7m.junreachable.UnimplementedCodeException;
+import com.io7m.smfj.core.SMFAttribute;
 import com.io7m.smfj.core.SMFAttributeName;
 import com.io7m.smfj.core.SMFHeader;
 import com.io7m.smfj.core.SMFVoid;
 import com.io7m.smfj.parser.api.SMFParserEventsDataAttributeValuesIgnoringReceiver;
 import com.io7m.smfj.parser.api.SMFParserEventsDataAttributeValuesType;
 import com.io7m.smfj.parser.api.SMFParserEventsDataAttributesNonInterleavedType;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
 
 public final class SMFXAttributeData
   implements BTElementHandlerType<Object, SMFVoid>
 {
   private final SMFParserEventsDataAttributesNonInterleavedType events;
   private final SMFHeader header;
+  private final String namespaceURI;
+  private SMFAttribute attribute;
   private SMFParserEventsDataAttributeValuesType eventsValues;
 
   public SMFXAttributeData(
     final BTElementParsingContextType inContext,
+    final String inNamespaceURI,
     final SMFHeader inHeader,
     final SMFParserEventsDataAttributesNonInterleavedType inEvents)
   {
+    this.namespaceURI =
+      Objects.requireNonNull(inNamespaceURI, "namespaceURI");
     this.header =
       Objects.requireNonNull(inHeader, "header");
     this.events =
@@ -54,73 +61,84 @@ public final class SMFXAttributeData
   public Map<BTQualifiedName, BTElementHandlerConstructorType<?, ?>> onChildHandlersRequested(
     final BTElementParsingContextType context)
   {
-    return Map.ofEntries(
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeFloat4"),
-        c -> new SMFXAttributeFloat4(context, this.eventsValues)
-      ),
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeFloat3"),
-        c -> new SMFXAttributeFloat3(context, this.eventsValues)
-      ),
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeFloat2"),
-        c -> new SMFXAttributeFloat2(context, this.eventsValues)
-      ),
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeFloat1"),
-        c -> new SMFXAttributeFloat1(context, this.eventsValues)
-      ),
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeIntegerUnsigned4"),
-        c -> new SMFXAttributeIntegerUnsigned4(context, this.eventsValues)
-      ),
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeIntegerUnsigned3"),
-        c -> new SMFXAttributeIntegerUnsigned3(context, this.eventsValues)
-      ),
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeIntegerUnsigned2"),
-        c -> new SMFXAttributeIntegerUnsigned2(context, this.eventsValues)
-      ),
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeIntegerUnsigned1"),
-        c -> new SMFXAttributeIntegerUnsigned1(context, this.eventsValues)
-      ),
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeIntegerSigned4"),
-        c -> new SMFXAttributeIntegerSigned4(context, this.eventsValues)
-      ),
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeIntegerSigned3"),
-        c -> new SMFXAttributeIntegerSigned3(context, this.eventsValues)
-      ),
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeIntegerSigned2"),
-        c -> new SMFXAttributeIntegerSigned2(context, this.eventsValues)
-      ),
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "AttributeIntegerSigned1"),
-        c -> new SMFXAttributeIntegerSigned1(context, this.eventsValues)
-      )
-    );
+    final var handlers =
+      new HashMap<BTQualifiedName, BTElementHandlerConstructorType<?, ?>>(16);
+
+    handlers.put(
+      this.name("AttributeFloat4"),
+      c -> new SMFXAttributeFloat4(context, this.eventsValues));
+    handlers.put(
+      this.name("AttributeFloat3"),
+      c -> new SMFXAttributeFloat3(context, this.eventsValues));
+    handlers.put(
+      this.name("AttributeFloat2"),
+      c -> new SMFXAttributeFloat2(context, this.eventsValues));
+    handlers.put(
+      this.name("AttributeFloat1"),
+      c -> new SMFXAttributeFloat1(context, this.eventsValues));
+    handlers.put(
+      this.name("AttributeIntegerUnsigned4"),
+      c -> new SMFXAttributeIntegerUnsigned4(context, this.eventsValues));
+    handlers.put(
+      this.name("AttributeIntegerUnsigned3"),
+      c -> new SMFXAttributeIntegerUnsigned3(context, this.eventsValues));
+    handlers.put(
+      this.name("AttributeIntegerUnsigned2"),
+      c -> new SMFXAttributeIntegerUnsigned2(context, this.eventsValues));
+    handlers.put(
+      this.name("AttributeIntegerUnsigned1"),
+      c -> new SMFXAttributeIntegerUnsigned1(context, this.eventsValues));
+    handlers.put(
+      this.name("AttributeIntegerSigned4"),
+      c -> new SMFXAttributeIntegerSigned4(context, this.eventsValues));
+    handlers.put(
+      this.name("AttributeIntegerSigned3"),
+      c -> new SMFXAttributeIntegerSigned3(context, this.eventsValues));
+    handlers.put(
+      this.name("AttributeIntegerSigned2"),
+      c -> new SMFXAttributeIntegerSigned2(context, this.eventsValues));
+    handlers.put(
+      this.name("AttributeIntegerSigned1"),
+      c -> new SMFXAttributeIntegerSigned1(context, this.eventsValues));
+
+    if (SMFX.supportsPacked(this.namespaceURI)) {
+      handlers.put(
+        this.name("Packed"),
+        c -> new SMFXPacked(
+          c,
+          new SMFXPackedAttributeValues(
+            this.attribute,
+            this.header.vertexCount(),
+            this.eventsValues)));
+    }
+    return handlers;
+  }
+
+  private BTQualifiedName name(
+    final String localName)
+  {
+    return BTQualifiedName.of(this.namespaceURI, localName);
   }
 
   @Override
   public void onElementStart(
     final BTElementParsingContextType context,
     final Attributes attributes)
+    throws SAXException
   {
     final var attributeName =
       SMFAttributeName.of(attributes.getValue("name"));
-    final var attribute =
+    this.attribute =
       this.header.attributesByName().get(attributeName);
 
-    if (attribute == null) {
-      throw new UnimplementedCodeException();
+    if (this.attribute == null) {
+      throw context.parseException(new IllegalArgumentException(
+        String.format(
+          "Data was provided for an undeclared attribute '%s'",
+          attributeName.value())));
     }
 
-    this.eventsValues = this.events.onDataAttributeStart(attribute)
+    this.eventsValues = this.events.onDataAttributeStart(this.attribute)
       .orElse(new SMFParserEventsDataAttributeValuesIgnoringReceiver(this.events));
   }
 
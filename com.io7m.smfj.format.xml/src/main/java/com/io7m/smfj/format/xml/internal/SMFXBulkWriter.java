@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * A writer for the bulk data sections of a document. Pre-escaped ASCII
+ * templates and formatted numbers are written into a reusable byte buffer
+ * that is copied directly to the underlying output stream, bypassing the
+ * per-call overhead of the stream writer.
+ *
+ * A bulk section begins with {@link #begin(XMLStreamWriter)}, which closes
+ * any open start tag in the stream writer and flushes it, and ends with
+ * {@link #end()}, after which the stream writer may be used again.
+ */
+
+public final class SMFXBulkWriter
+{
+  private static final int BUFFER_SIZE = 65536;
+  private static final byte[] LONG_MIN_VALUE =
+    ascii(Long.toString(Long.MIN_VALUE));
+
+  private final OutputStream output;
+  private final byte[] buffer;
+  private final byte[] digits;
+  private final StringBuilder scratch;
+  private int position;
+
+  /**
+   * Construct a bulk writer.
+   *
+   * @param inOutput The underlying output stream
+   */
+
+  public SMFXBulkWriter(
+    final OutputStream inOutput)
+  {
+    this.output = Objects.requireNonNull(inOutput, "output");
+    this.buffer = new byte[BUFFER_SIZE];
+    this.digits = new byte[20];
+    this.scratch = new StringBuilder(32);
+  }
+
+  /**
+   * Encode a template as ASCII. The template must not contain any
+   * characters that require escaping in the context in which it is used.
+   *
+   * @param text The template text
+   *
+   * @return The encoded template
+   */
+
+  public static byte[] ascii(
+    final String text)
+  {
+    return text.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Begin a bulk section.
+   *
+   * @param writer The stream writer that is writing to the same output stream
+   *
+   * @throws XMLStreamException On errors
+   */
+
+  public void begin(
+    final XMLStreamWriter writer)
+    throws XMLStreamException
+  {
+    writer.writeCharacters("");
+    writer.flush();
+  }
+
+  /**
+   * End a bulk section, writing any buffered data to the output stream.
+   *
+   * @throws IOException On errors
+   */
+
+  public void end()
+    throws IOException
+  {
+    this.flush();
+  }
+
+  private void flush()
+    throws IOException
+  {
+    if (this.position > 0) {
+      this.output.write(this.buffer, 0, this.position);
+      this.position = 0;
+    }
+  }
+
+  private void reserve(
+    final int size)
+    throws IOException
+  {
+    if (this.position + size > this.buffer.length) {
+      this.flush();
+    }
+  }
+
+  /**
+   * Write a template.
+   *
+   * @param template The template
+   *
+   * @throws IOException On errors
+   */
+
+  public void writeTemplate(
+    final byte[] template)
+    throws IOException
+  {
+    this.writeBytes(template, 0, template.length);
+  }
+
+  /**
+   * Write a range of bytes.
+   *
+   * @param data   The data
+   * @param offset The offset of the first byte
+   * @param length The number of bytes
+   *
+   * @throws IOException On errors
+   */
+
+  public void writeBytes(
+    final byte[] data,
+    final int offset,
+    final int length)
+    throws IOException
+  {
+    if (length > this.buffer.length) {
+      this.flush();
+      this.output.write(data, offset, length);
+      return;
+    }
+
+    this.reserve(length);
+    System.arraycopy(data, offset, this.buffer, this.position, length);
+    this.position += length;
+  }
+
+  /**
+   * Write a single ASCII character.
+   *
+   * @param c The character
+   *
+   * @throws IOException On errors
+   */
+
+  public void writeASCII(
+    final char c)
+    throws IOException
+  {
+    this.reserve(1);
+    this.buffer[this.position] = (byte) c;
+    this.position += 1;
+  }
+
+  /**
+   * Write a double in the format produced by {@link Double#toString(double)}.
+   *
+   * @param value The value
+   *
+   * @throws IOException On errors
+   */
+
+  public void writeDouble(
+    final double value)
+    throws IOException
+  {
+    final var text = this.scratch;
+    text.setLength(0);
+    text.append(value);
+
+    final int length = text.length();
+    this.reserve(length);
+    for (int index = 0; index < length; ++index) {
+      this.buffer[this.position + index] = (byte) text.charAt(index);
+    }
+    this.position += length;
+  }
+
+  /**
+   * Write a signed decimal integer.
+   *
+   * @param value The value
+   *
+   * @throws IOException On errors
+   */
+
+  public void writeSigned(
+    final long value)
+    throws IOException
+  {
+    if (value == Long.MIN_VALUE) {
+      this.writeTemplate(LONG_MIN_VALUE);
+      return;
+    }
+
+    if (value < 0L) {
+      this.writeASCII('-');
+      this.writeDigits(-value);
+    } else {
+      this.writeDigits(value);
+    }
+  }
+
+  /**
+   * Write an unsigned decimal integer.
+   *
+   * @param value The value
+   *
+   * @throws IOException On errors
+   */
+
+  public void writeUnsigned(
+    final long value)
+    throws IOException
+  {
+    if (value >= 0L) {
+      this.writeDigits(value);
+      return;
+    }
+
+    final long quotient = (value >>> 1) / 5L;
+    final long remainder = value - quotient * 10L;
+    this.writeDigits(quotient);
+    this.writeASCII((char) ('0' + remainder));
+  }
+
+  private void writeDigits(
+    final long value)
+    throws IOException
+  {
+    int start = this.digits.length;
+    long remaining = value;
+    do {
+      start -= 1;
+      this.digits[start] = (byte) ('0' + (remaining % 10L));
+      remaining /= 10L;
+    } while (remaining != 0L);
+
+    this.writeBytes(this.digits, start, this.digits.length - start);
+  }
+}
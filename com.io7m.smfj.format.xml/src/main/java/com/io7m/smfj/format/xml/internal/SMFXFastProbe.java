@@ -0,0 +1,447 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+import com.io7m.smfj.core.SMFFormatVersion;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A probe that determines the version of a document by scanning a prefix of
+ * the document for the root element, without constructing an XML parser.
+ * The scan only succeeds or fails outright when the prefix unambiguously
+ * identifies (or rules out) an smf/x document; anything that the scanner
+ * does not understand is reported as ambiguous so that callers can fall back
+ * to a full parser.
+ */
+
+public final class SMFXFastProbe
+{
+  /**
+   * The number of bytes of the document that should be scanned.
+   */
+
+  public static final int PREFIX_SIZE = 4096;
+
+  private static final Set<String> COMPATIBLE_ENCODINGS =
+    Set.of("UTF-8", "UTF8", "US-ASCII", "ASCII");
+
+  private final String text;
+  private int position;
+
+  private SMFXFastProbe(
+    final String inText)
+  {
+    this.text = Objects.requireNonNull(inText, "text");
+    this.position = 0;
+  }
+
+  /**
+   * The kind of probe result.
+   */
+
+  public enum Kind
+  {
+    /**
+     * The document is an smf/x document of a known version.
+     */
+
+    FOUND,
+
+    /**
+     * The document is definitely not an smf/x document of a known version.
+     */
+
+    NOT_SMF,
+
+    /**
+     * The document prefix could not be classified.
+     */
+
+    AMBIGUOUS
+  }
+
+  /**
+   * The result of probing.
+   */
+
+  public static final class Result
+  {
+    private static final Result AMBIGUOUS =
+      new Result(Kind.AMBIGUOUS, null, "");
+
+    private final Kind kind;
+    private final SMFFormatVersion version;
+    private final String message;
+
+    private Result(
+      final Kind inKind,
+      final SMFFormatVersion inVersion,
+      final String inMessage)
+    {
+      this.kind = Objects.requireNonNull(inKind, "kind");
+      this.version = inVersion;
+      this.message = Objects.requireNonNull(inMessage, "message");
+    }
+
+    /**
+     * @return The kind of result
+     */
+
+    public Kind kind()
+    {
+      return this.kind;
+    }
+
+    /**
+     * @return The version, if the result is {@link Kind#FOUND}
+     */
+
+    public Optional<SMFFormatVersion> version()
+    {
+      return Optional.ofNullable(this.version);
+    }
+
+    /**
+     * @return The reason the document was rejected, if the result is
+     * {@link Kind#NOT_SMF}
+     */
+
+    public String message()
+    {
+      return this.message;
+    }
+  }
+
+  /**
+   * Scan the given document prefix.
+   *
+   * @param data   The document prefix
+   * @param length The number of bytes of the prefix that are valid
+   *
+   * @return The probe result
+   */
+
+  public static Result scan(
+    final byte[] data,
+    final int length)
+  {
+    Objects.requireNonNull(data, "data");
+
+    final int start = hasUTF8BOM(data, length) ? 3 : 0;
+    if (looksLikeWideEncoding(data, start, length)) {
+      return Result.AMBIGUOUS;
+    }
+
+    final var text =
+      StandardCharsets.ISO_8859_1.decode(
+        ByteBuffer.wrap(data, start, length - start))
+        .toString();
+    return new SMFXFastProbe(text).run();
+  }
+
+  private static boolean hasUTF8BOM(
+    final byte[] data,
+    final int length)
+  {
+    if (length < 3) {
+      return false;
+    }
+    final int mark =
+      ((data[0] & 0xff) << 16) + ((data[1] & 0xff) << 8) + (data[2] & 0xff);
+    return mark == 0xefbbbf;
+  }
+
+  /*
+   * Byte order marks and NUL bytes around a '<' indicate UTF-16 or UTF-32,
+   * which the scanner does not attempt to decode.
+   */
+
+  private static boolean looksLikeWideEncoding(
+    final byte[] data,
+    final int start,
+    final int length)
+  {
+    if (length - start >= 2) {
+      final int mark = ((data[start] & 0xff) << 8) + (data[start + 1] & 0xff);
+      if (mark == 0xfeff || mark == 0xfffe) {
+        return true;
+      }
+    }
+
+    boolean nul = false;
+    boolean open = false;
+    for (int index = start; index < Math.min(length, start + 4); ++index) {
+      nul = nul || data[index] == 0x00;
+      open = open || data[index] == '<';
+    }
+    return nul && open;
+  }
+
+  private static Result notSMF(
+    final String message)
+  {
+    return new Result(Kind.NOT_SMF, null, message);
+  }
+
+  private static Optional<SMFFormatVersion> versionOf(
+    final String namespace)
+  {
+    if (Objects.equals(namespace, SMFX.namespaceURI2p0())) {
+      return Optional.of(SMFFormatVersion.of(2, 0));
+    }
+    if (Objects.equals(namespace, SMFX.namespaceURI2p1())) {
+      return Optional.of(SMFFormatVersion.of(2, 1));
+    }
+    return Optional.empty();
+  }
+
+  private static boolean isWhitespace(
+    final char c)
+  {
+    return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+  }
+
+  private boolean atEnd()
+  {
+    return this.position >= this.text.length();
+  }
+
+  private char current()
+  {
+    return this.text.charAt(this.position);
+  }
+
+  private void skipWhitespace()
+  {
+    while (!this.atEnd() && isWhitespace(this.current())) {
+      ++this.position;
+    }
+  }
+
+  private boolean skipPast(
+    final String terminator)
+  {
+    final int index = this.text.indexOf(terminator, this.position);
+    if (index < 0) {
+      return false;
+    }
+    this.position = index + terminator.length();
+    return true;
+  }
+
+  private Result run()
+  {
+    final var prolog = this.skipProlog();
+    if (prolog != null) {
+      return prolog;
+    }
+
+    ++this.position;
+    final var name = this.readName();
+    if (name == null) {
+      return Result.AMBIGUOUS;
+    }
+
+    final var attributes = this.readAttributes();
+    if (attributes == null) {
+      return Result.AMBIGUOUS;
+    }
+
+    final int colon = name.indexOf(':');
+    final String localName = name.substring(colon + 1);
+    final String namespace;
+    if (colon >= 0) {
+      namespace = attributes.get("xmlns:" + name.substring(0, colon));
+    } else {
+      namespace = attributes.get("xmlns");
+    }
+
+    final var version = versionOf(namespace);
+    if (!Objects.equals(localName, "SMF") || version.isEmpty()) {
+      return notSMF("No recognized root element");
+    }
+    return new Result(Kind.FOUND, version.get(), "");
+  }
+
+  /*
+   * Walk the prolog: the XML declaration, comments, and processing
+   * instructions. Returns a result if the prolog determines the outcome, or
+   * null if the scanner is positioned at the start of the root element.
+   */
+
+  private Result skipProlog()
+  {
+    while (true) {
+      this.skipWhitespace();
+      if (this.atEnd()) {
+        return Result.AMBIGUOUS;
+      }
+      if (this.current() != '<') {
+        return notSMF("Input does not appear to be an XML document");
+      }
+
+      if (this.text.startsWith("<?", this.position)) {
+        final int declaration = this.position;
+        if (!this.skipPast("?>")) {
+          return Result.AMBIGUOUS;
+        }
+        if (this.text.startsWith("<?xml", declaration)
+          && !this.encodingCompatible(declaration)) {
+          return Result.AMBIGUOUS;
+        }
+        continue;
+      }
+
+      if (this.text.startsWith("<!--", this.position)) {
+        if (!this.skipPast("-->")) {
+          return Result.AMBIGUOUS;
+        }
+        continue;
+      }
+
+      if (this.text.startsWith("<!", this.position)) {
+        return Result.AMBIGUOUS;
+      }
+      return null;
+    }
+  }
+
+  private boolean encodingCompatible(
+    final int declaration)
+  {
+    final var decl = this.text.substring(declaration, this.position);
+    final int index = decl.indexOf("encoding");
+    if (index < 0) {
+      return true;
+    }
+
+    int cursor = index + "encoding".length();
+    while (cursor < decl.length() && decl.charAt(cursor) != '=') {
+      ++cursor;
+    }
+    ++cursor;
+    while (cursor < decl.length() && isWhitespace(decl.charAt(cursor))) {
+      ++cursor;
+    }
+    if (cursor >= decl.length()) {
+      return false;
+    }
+
+    final char quote = decl.charAt(cursor);
+    final int end = decl.indexOf(quote, cursor + 1);
+    if (end < 0) {
+      return false;
+    }
+
+    final var encoding =
+      decl.substring(cursor + 1, end).toUpperCase(Locale.ROOT);
+    return COMPATIBLE_ENCODINGS.contains(encoding);
+  }
+
+  private String readName()
+  {
+    final int start = this.position;
+    while (!this.atEnd()) {
+      final char c = this.current();
+      if (isWhitespace(c) || c == '/' || c == '>' || c == '=') {
+        break;
+      }
+      if (c == '<' || c == '"' || c == '\'' || c == '&') {
+        return null;
+      }
+      ++this.position;
+    }
+    if (this.atEnd() || this.position == start) {
+      return null;
+    }
+    return this.text.substring(start, this.position);
+  }
+
+  private Map<String, String> readAttributes()
+  {
+    final var attributes = new HashMap<String, String>();
+    while (true) {
+      this.skipWhitespace();
+      if (this.atEnd()) {
+        return null;
+      }
+
+      final char c = this.current();
+      if (c == '>' || c == '/') {
+        return attributes;
+      }
+      if (!this.readAttribute(attributes)) {
+        return null;
+      }
+    }
+  }
+
+  private boolean readAttribute(
+    final Map<String, String> attributes)
+  {
+    final var name = this.readName();
+    if (name == null) {
+      return false;
+    }
+
+    this.skipWhitespace();
+    if (this.atEnd() || this.current() != '=') {
+      return false;
+    }
+    ++this.position;
+    this.skipWhitespace();
+
+    final var value = this.readQuoted();
+    if (value == null) {
+      return false;
+    }
+    return attributes.put(name, value) == null;
+  }
+
+  private String readQuoted()
+  {
+    if (this.atEnd()) {
+      return null;
+    }
+
+    final char quote = this.current();
+    if (quote != '"' && quote != '\'') {
+      return null;
+    }
+
+    final int end = this.text.indexOf(quote, this.position + 1);
+    if (end < 0) {
+      return null;
+    }
+
+    final var value = this.text.substring(this.position + 1, end);
+    if (value.indexOf('&') >= 0 || value.indexOf('<') >= 0) {
+      return null;
+    }
+
+    this.position = end + 1;
+    return value;
+  }
+}
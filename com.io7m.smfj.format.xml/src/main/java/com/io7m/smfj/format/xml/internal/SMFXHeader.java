@@ -40,11 +40,14 @@ public final class SMFXHeader
 {
   private final SMFHeader.Builder builder;
   private final SMFParserEventsErrorType errors;
+  private final String namespaceURI;
 
   public SMFXHeader(
     final BTElementParsingContextType context,
+    final String inNamespaceURI,
     final SMFParserEventsErrorType inErrors)
   {
+    this.namespaceURI = Objects.requireNonNull(inNamespaceURI, "namespaceURI");
     this.errors = Objects.requireNonNull(inErrors, "errors");
     this.builder = SMFHeader.builder();
   }
@@ -55,20 +58,20 @@ public final class SMFXHeader
   {
     return Map.ofEntries(
       Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "CoordinateSystem"),
+        BTQualifiedName.of(this.namespaceURI, "CoordinateSystem"),
         SMFXHeaderCoordinateSystem::new
       ),
       Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "TriangleSpecification"),
+        BTQualifiedName.of(this.namespaceURI, "TriangleSpecification"),
         c -> new SMFXHeaderTriangles(this.errors, c)
       ),
       Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "SchemaIdentifier"),
+        BTQualifiedName.of(this.namespaceURI, "SchemaIdentifier"),
         SMFXHeaderSchemaIdentifier::new
       ),
       Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "Attributes"),
-        SMFXHeaderAttributes::new
+        BTQualifiedName.of(this.namespaceURI, "Attributes"),
+        c -> new SMFXHeaderAttributes(c, this.namespaceURI)
       )
     );
   }
@@ -25,15 +25,19 @@ import com.io7m.smfj.core.SMFAttribute;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 public final class SMFXHeaderAttributes
   implements BTElementHandlerType<SMFAttribute, List<SMFAttribute>>
 {
   private final List<SMFAttribute> attributesOrdered;
+  private final String namespaceURI;
 
   public SMFXHeaderAttributes(
-    final BTElementParsingContextType context)
+    final BTElementParsingContextType context,
+    final String inNamespaceURI)
   {
+    this.namespaceURI = Objects.requireNonNull(inNamespaceURI, "namespaceURI");
     this.attributesOrdered = new ArrayList<>();
   }
 
@@ -44,7 +48,7 @@ public final class SMFXHeaderAttributes
   {
     return Map.ofEntries(
       Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "Attribute"),
+        BTQualifiedName.of(this.namespaceURI, "Attribute"),
         SMFXHeaderAttribute::new
       )
     );
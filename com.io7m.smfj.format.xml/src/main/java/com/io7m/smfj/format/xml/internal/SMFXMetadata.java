@@ -36,14 +36,17 @@ public final class SMFXMetadata
   implements BTElementHandlerType<Object, SMFMetadataValue>
 {
   private final SMFParserEventsBodyType events;
+  private final String namespaceURI;
   private SMFSchemaIdentifier schemaId;
   private byte[] data;
   private Optional<SMFParserEventsDataMetaType> eventsMeta;
 
   public SMFXMetadata(
     final BTElementParsingContextType context,
+    final String inNamespaceURI,
     final SMFParserEventsBodyType inEvents)
   {
+    this.namespaceURI = Objects.requireNonNull(inNamespaceURI, "namespaceURI");
     this.events = Objects.requireNonNull(inEvents, "events");
     this.data = new byte[0];
   }
@@ -65,11 +68,11 @@ public final class SMFXMetadata
     final BTElementParsingContextType context)
   {
     final BTQualifiedName base64 =
-      BTQualifiedName.of(SMFX.namespaceURI2p0(), "Base64Data");
+      BTQualifiedName.of(this.namespaceURI, "Base64Data");
 
     return Map.ofEntries(
       Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "SchemaIdentifier"),
+        BTQualifiedName.of(this.namespaceURI, "SchemaIdentifier"),
         SMFXHeaderSchemaIdentifier::new
       ),
       Map.entry(
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+import com.io7m.blackthorne.api.BTElementHandlerType;
+import com.io7m.blackthorne.api.BTElementParsingContextType;
+import com.io7m.smfj.core.SMFVoid;
+import java.util.Objects;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+public final class SMFXPacked
+  implements BTElementHandlerType<Object, SMFVoid>
+{
+  private final SMFXPackedComponents components;
+  private SMFXPackedDecoderType decoder;
+
+  public SMFXPacked(
+    final BTElementParsingContextType context,
+    final SMFXPackedComponents inComponents)
+  {
+    this.components =
+      Objects.requireNonNull(inComponents, "components");
+  }
+
+  @Override
+  public void onElementStart(
+    final BTElementParsingContextType context,
+    final Attributes attributes)
+    throws SAXException
+  {
+    try {
+      final var encoding = attributes.getValue("encoding");
+      if (encoding == null) {
+        throw new IllegalArgumentException("No encoding specified");
+      }
+      this.decoder = SMFXPackedDecoders.create(encoding, this.components);
+    } catch (final Exception e) {
+      throw context.parseException(e);
+    }
+  }
+
+  @Override
+  public void onCharacters(
+    final BTElementParsingContextType context,
+    final char[] data,
+    final int offset,
+    final int length)
+    throws SAXException
+  {
+    try {
+      this.decoder.onCharacters(data, offset, length);
+    } catch (final Exception e) {
+      throw context.parseException(e);
+    }
+  }
+
+  @Override
+  public SMFVoid onElementFinished(
+    final BTElementParsingContextType context)
+    throws SAXException
+  {
+    try {
+      this.decoder.finish();
+    } catch (final Exception e) {
+      throw context.parseException(e);
+    }
+    return SMFVoid.void_();
+  }
+}
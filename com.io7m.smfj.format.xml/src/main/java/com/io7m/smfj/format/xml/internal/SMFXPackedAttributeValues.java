@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+import com.io7m.smfj.core.SMFAttribute;
+import com.io7m.smfj.parser.api.SMFParserEventsDataAttributeValuesType;
+import java.util.Objects;
+
+/**
+ * Packed attribute values, delivered to an attribute value receiver.
+ */
+
+public final class SMFXPackedAttributeValues extends SMFXPackedComponents
+{
+  private final SMFParserEventsDataAttributeValuesType events;
+  private final SMFAttribute attribute;
+
+  /**
+   * Construct a receiver.
+   *
+   * @param inAttribute   The attribute
+   * @param inVertexCount The number of vertices
+   * @param inEvents      The attribute value receiver
+   */
+
+  public SMFXPackedAttributeValues(
+    final SMFAttribute inAttribute,
+    final long inVertexCount,
+    final SMFParserEventsDataAttributeValuesType inEvents)
+  {
+    super(
+      inAttribute.componentType(),
+      inAttribute.componentCount(),
+      inAttribute.componentSizeBits(),
+      inVertexCount);
+
+    this.attribute = Objects.requireNonNull(inAttribute, "attribute");
+    this.events = Objects.requireNonNull(inEvents, "events");
+  }
+
+  @Override
+  protected void onElement()
+  {
+    switch (this.attribute.componentType()) {
+      case ELEMENT_TYPE_FLOATING: {
+        this.deliverFloat();
+        break;
+      }
+      case ELEMENT_TYPE_INTEGER_SIGNED:
+      case ELEMENT_TYPE_INTEGER_UNSIGNED: {
+        this.deliverInteger();
+        break;
+      }
+    }
+  }
+
+  private void deliverFloat()
+  {
+    switch (this.attribute.componentCount()) {
+      case 1: {
+        this.events.onDataAttributeValueFloat1(
+          this.componentDouble(0));
+        break;
+      }
+      case 2: {
+        this.events.onDataAttributeValueFloat2(
+          this.componentDouble(0),
+          this.componentDouble(1));
+        break;
+      }
+      case 3: {
+        this.events.onDataAttributeValueFloat3(
+          this.componentDouble(0),
+          this.componentDouble(1),
+          this.componentDouble(2));
+        break;
+      }
+      default: {
+        this.events.onDataAttributeValueFloat4(
+          this.componentDouble(0),
+          this.componentDouble(1),
+          this.componentDouble(2),
+          this.componentDouble(3));
+        break;
+      }
+    }
+  }
+
+  /*
+   * Unsigned values are delivered through the signed callbacks, in the same
+   * manner as the per-element encoding.
+   */
+
+  private void deliverInteger()
+  {
+    switch (this.attribute.componentCount()) {
+      case 1: {
+        this.events.onDataAttributeValueIntegerSigned1(
+          this.componentLong(0));
+        break;
+      }
+      case 2: {
+        this.events.onDataAttributeValueIntegerSigned2(
+          this.componentLong(0),
+          this.componentLong(1));
+        break;
+      }
+      case 3: {
+        this.events.onDataAttributeValueIntegerSigned3(
+          this.componentLong(0),
+          this.componentLong(1),
+          this.componentLong(2));
+        break;
+      }
+      default: {
+        this.events.onDataAttributeValueIntegerSigned4(
+          this.componentLong(0),
+          this.componentLong(1),
+          this.componentLong(2),
+          this.componentLong(3));
+        break;
+      }
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A decoder for packed data given as Base64 encoded little-endian binary
+ * values. Whitespace within the encoded text is ignored.
+ */
+
+public final class SMFXPackedBase64Decoder implements SMFXPackedDecoderType
+{
+  private static final int[] ALPHABET = makeAlphabet();
+
+  private final SMFXPackedComponents components;
+  private final int componentBytes;
+  private int quantum;
+  private int quantumCount;
+  private int padding;
+  private long value;
+  private int valueBytes;
+
+  /**
+   * Construct a decoder.
+   *
+   * @param inComponents The receiver of decoded components
+   */
+
+  public SMFXPackedBase64Decoder(
+    final SMFXPackedComponents inComponents)
+  {
+    this.components = Objects.requireNonNull(inComponents, "components");
+    this.componentBytes = inComponents.componentSizeBits() / 8;
+  }
+
+  private static int[] makeAlphabet()
+  {
+    final int[] alphabet = new int[128];
+    Arrays.fill(alphabet, -1);
+    final String chars =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    for (int index = 0; index < chars.length(); ++index) {
+      alphabet[chars.charAt(index)] = index;
+    }
+    return alphabet;
+  }
+
+  @Override
+  public void onCharacters(
+    final char[] data,
+    final int offset,
+    final int length)
+  {
+    final int end = offset + length;
+    for (int index = offset; index < end; ++index) {
+      final char c = data[index];
+      switch (c) {
+        case ' ':
+        case '\n':
+        case '\t':
+        case '\r': {
+          break;
+        }
+        case '=': {
+          this.onPadding();
+          break;
+        }
+        default: {
+          this.onCharacter(c);
+          break;
+        }
+      }
+    }
+  }
+
+  private void onCharacter(
+    final char c)
+  {
+    if (this.padding > 0) {
+      throw new IllegalArgumentException(
+        "Base64 data continues after padding");
+    }
+
+    final int bits = c < 128 ? ALPHABET[c] : -1;
+    if (bits < 0) {
+      throw new IllegalArgumentException(
+        String.format("Illegal Base64 character 0x%x", Integer.valueOf(c)));
+    }
+
+    this.quantum = (this.quantum << 6) | bits;
+    ++this.quantumCount;
+    if (this.quantumCount == 4) {
+      this.onByte(this.quantum >> 16);
+      this.onByte(this.quantum >> 8);
+      this.onByte(this.quantum);
+      this.quantum = 0;
+      this.quantumCount = 0;
+    }
+  }
+
+  private void onPadding()
+  {
+    if (this.quantumCount == 2 && this.padding == 0) {
+      this.padding = 1;
+      return;
+    }
+    if (this.quantumCount == 2 && this.padding == 1) {
+      this.padding = 2;
+      this.flushPartialQuantum();
+      return;
+    }
+    if (this.quantumCount == 3 && this.padding == 0) {
+      this.padding = 1;
+      this.flushPartialQuantum();
+      return;
+    }
+    throw new IllegalArgumentException("Misplaced Base64 padding");
+  }
+
+  private void flushPartialQuantum()
+  {
+    switch (this.quantumCount) {
+      case 2: {
+        this.onByte(this.quantum >> 4);
+        break;
+      }
+      case 3: {
+        this.onByte(this.quantum >> 10);
+        this.onByte(this.quantum >> 2);
+        break;
+      }
+      default: {
+        break;
+      }
+    }
+    this.quantum = 0;
+    this.quantumCount = 0;
+  }
+
+  private void onByte(
+    final int octet)
+  {
+    this.value |= (long) (octet & 0xff) << (this.valueBytes * 8);
+    ++this.valueBytes;
+    if (this.valueBytes == this.componentBytes) {
+      this.components.addBits(this.value);
+      this.value = 0L;
+      this.valueBytes = 0;
+    }
+  }
+
+  @Override
+  public void finish()
+  {
+    if (this.padding == 1 && this.quantumCount == 2) {
+      throw new IllegalArgumentException("Incomplete Base64 padding");
+    }
+    if (this.quantumCount == 1) {
+      throw new IllegalArgumentException("Truncated Base64 data");
+    }
+
+    this.flushPartialQuantum();
+
+    if (this.valueBytes != 0) {
+      throw new IllegalArgumentException(String.format(
+        "Packed data ends with an incomplete %d-byte value",
+        Integer.valueOf(this.componentBytes)));
+    }
+    this.components.finish();
+  }
+}
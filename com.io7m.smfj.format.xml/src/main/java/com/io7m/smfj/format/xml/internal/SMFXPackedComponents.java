@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+import com.io7m.smfj.core.SMFBinary16;
+import com.io7m.smfj.core.SMFComponentType;
+import java.util.Objects;
+
+/**
+ * A receiver of packed component values. Components are accumulated until a
+ * complete element (such as a single vertex attribute value, or a triangle)
+ * is available, at which point the element is delivered to the subclass.
+ */
+
+public abstract class SMFXPackedComponents
+{
+  private final SMFComponentType componentType;
+  private final int componentCount;
+  private final int componentSizeBits;
+  private final long elementsExpected;
+  private final double[] doubles;
+  private final long[] longs;
+  private int component;
+  private long elements;
+
+  protected SMFXPackedComponents(
+    final SMFComponentType inComponentType,
+    final int inComponentCount,
+    final int inComponentSizeBits,
+    final long inElementsExpected)
+  {
+    this.componentType =
+      Objects.requireNonNull(inComponentType, "componentType");
+    this.componentCount = inComponentCount;
+    this.componentSizeBits = inComponentSizeBits;
+    this.elementsExpected = inElementsExpected;
+    this.doubles = new double[inComponentCount];
+    this.longs = new long[inComponentCount];
+  }
+
+  /**
+   * @return The size in bits of each component
+   */
+
+  public final int componentSizeBits()
+  {
+    return this.componentSizeBits;
+  }
+
+  /**
+   * Add a component given as text.
+   *
+   * @param text The text
+   *
+   * @throws IllegalArgumentException If the text cannot be parsed, or too
+   *                                  many elements are provided
+   */
+
+  public final void addText(
+    final String text)
+    throws IllegalArgumentException
+  {
+    switch (this.componentType) {
+      case ELEMENT_TYPE_INTEGER_SIGNED: {
+        this.longs[this.component] = Long.parseLong(text);
+        break;
+      }
+      case ELEMENT_TYPE_INTEGER_UNSIGNED: {
+        this.longs[this.component] = Long.parseUnsignedLong(text);
+        break;
+      }
+      case ELEMENT_TYPE_FLOATING: {
+        this.doubles[this.component] = Double.parseDouble(text);
+        break;
+      }
+    }
+    this.advance();
+  }
+
+  /**
+   * Add a component given as the raw bits of a little-endian value of
+   * {@link #componentSizeBits()} bits. The bits are zero-extended.
+   *
+   * @param bits The raw bits
+   *
+   * @throws IllegalArgumentException If too many elements are provided
+   */
+
+  public final void addBits(
+    final long bits)
+    throws IllegalArgumentException
+  {
+    final int size = this.componentSizeBits;
+    switch (this.componentType) {
+      case ELEMENT_TYPE_INTEGER_SIGNED: {
+        final int shift = 64 - size;
+        this.longs[this.component] = (bits << shift) >> shift;
+        break;
+      }
+      case ELEMENT_TYPE_INTEGER_UNSIGNED: {
+        this.longs[this.component] = bits;
+        break;
+      }
+      case ELEMENT_TYPE_FLOATING: {
+        this.doubles[this.component] = unpackFloat(bits, size);
+        break;
+      }
+    }
+    this.advance();
+  }
+
+  private static double unpackFloat(
+    final long bits,
+    final int size)
+  {
+    switch (size) {
+      case 16:
+        return SMFBinary16.unpack((char) bits);
+      case 32:
+        return Float.intBitsToFloat((int) bits);
+      case 64:
+        return Double.longBitsToDouble(bits);
+      default:
+        throw new IllegalArgumentException(
+          String.format("Unsupported floating point size: %d", Integer.valueOf(size)));
+    }
+  }
+
+  private void advance()
+  {
+    ++this.component;
+    if (this.component == this.componentCount) {
+      this.component = 0;
+      if (Long.compareUnsigned(this.elements, this.elementsExpected) >= 0) {
+        throw new IllegalArgumentException(String.format(
+          "Packed data contains more than the expected %s elements",
+          Long.toUnsignedString(this.elementsExpected)));
+      }
+      ++this.elements;
+      this.onElement();
+    }
+  }
+
+  /**
+   * Check that exactly the expected number of complete elements have been
+   * received.
+   *
+   * @throws IllegalArgumentException If the data is incomplete
+   */
+
+  public final void finish()
+    throws IllegalArgumentException
+  {
+    if (this.component != 0) {
+      throw new IllegalArgumentException(String.format(
+        "Packed data ends with an incomplete element (%d of %d components)",
+        Integer.valueOf(this.component),
+        Integer.valueOf(this.componentCount)));
+    }
+    if (this.elements != this.elementsExpected) {
+      throw new IllegalArgumentException(String.format(
+        "Expected %s elements of packed data, but %s were provided",
+        Long.toUnsignedString(this.elementsExpected),
+        Long.toUnsignedString(this.elements)));
+    }
+  }
+
+  /**
+   * @param index The component index
+   *
+   * @return The floating point component at {@code index} of the current
+   * element
+   */
+
+  protected final double componentDouble(
+    final int index)
+  {
+    return this.doubles[index];
+  }
+
+  /**
+   * @param index The component index
+   *
+   * @return The integer component at {@code index} of the current element
+   */
+
+  protected final long componentLong(
+    final int index)
+  {
+    return this.longs[index];
+  }
+
+  /**
+   * A complete element has been received.
+   */
+
+  protected abstract void onElement();
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+/**
+ * A decoder of packed data. Character data is delivered in arbitrarily sized
+ * chunks as it is received from the XML parser, and decoded components are
+ * passed on to a {@link SMFXPackedComponents} receiver.
+ */
+
+public interface SMFXPackedDecoderType
+{
+  /**
+   * Receive a chunk of character data.
+   *
+   * @param data   The character buffer
+   * @param offset The offset of the chunk within the buffer
+   * @param length The length of the chunk
+   *
+   * @throws IllegalArgumentException If the data is malformed
+   */
+
+  void onCharacters(
+    char[] data,
+    int offset,
+    int length)
+    throws IllegalArgumentException;
+
+  /**
+   * Indicate that all character data has been received.
+   *
+   * @throws IllegalArgumentException If the data is malformed or incomplete
+   */
+
+  void finish()
+    throws IllegalArgumentException;
+}
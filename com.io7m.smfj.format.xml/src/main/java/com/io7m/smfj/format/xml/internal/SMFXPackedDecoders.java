@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.smfj.format.xml.SMFFormatXMLPackedEncoding;
+
+/**
+ * Functions to create decoders for packed data.
+ */
+
+public final class SMFXPackedDecoders
+{
+  private SMFXPackedDecoders()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Create a decoder for the named encoding.
+   *
+   * @param encoding   The encoding name, as it appears in documents
+   * @param components The receiver of decoded components
+   *
+   * @return A decoder
+   *
+   * @throws IllegalArgumentException If the encoding is not recognized
+   */
+
+  public static SMFXPackedDecoderType create(
+    final String encoding,
+    final SMFXPackedComponents components)
+    throws IllegalArgumentException
+  {
+    switch (SMFFormatXMLPackedEncoding.valueOf(encoding)) {
+      case PACKED_ENCODING_TEXT:
+        return new SMFXPackedTextDecoder(components);
+      case PACKED_ENCODING_BASE64_LITTLE_ENDIAN:
+        return new SMFXPackedBase64Decoder(components);
+    }
+    throw new UnreachableCodeException();
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+import java.util.Objects;
+
+/**
+ * A decoder for packed data given as whitespace-separated decimal text.
+ */
+
+public final class SMFXPackedTextDecoder implements SMFXPackedDecoderType
+{
+  private static final int TOKEN_LIMIT = 128;
+
+  private final SMFXPackedComponents components;
+  private final StringBuilder token;
+
+  /**
+   * Construct a decoder.
+   *
+   * @param inComponents The receiver of decoded components
+   */
+
+  public SMFXPackedTextDecoder(
+    final SMFXPackedComponents inComponents)
+  {
+    this.components = Objects.requireNonNull(inComponents, "components");
+    this.token = new StringBuilder(32);
+  }
+
+  private static boolean isSpace(
+    final char c)
+  {
+    return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+  }
+
+  @Override
+  public void onCharacters(
+    final char[] data,
+    final int offset,
+    final int length)
+  {
+    final int end = offset + length;
+    for (int index = offset; index < end; ++index) {
+      final char c = data[index];
+      if (isSpace(c)) {
+        this.flushToken();
+      } else {
+        if (this.token.length() == TOKEN_LIMIT) {
+          throw new IllegalArgumentException(String.format(
+            "Packed value exceeds the maximum length of %d characters",
+            Integer.valueOf(TOKEN_LIMIT)));
+        }
+        this.token.append(c);
+      }
+    }
+  }
+
+  private void flushToken()
+  {
+    if (this.token.length() > 0) {
+      this.components.addText(this.token.toString());
+      this.token.setLength(0);
+    }
+  }
+
+  @Override
+  public void finish()
+  {
+    this.flushToken();
+    this.components.finish();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.smfj.core.SMFComponentType;
+import com.io7m.smfj.core.SMFTriangles;
+import com.io7m.smfj.format.support.SMFTriangleTracker;
+import com.io7m.smfj.parser.api.SMFParserEventsDataTrianglesType;
+import java.net.URI;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Packed triangles, checked by a triangle tracker and delivered to a
+ * triangle receiver.
+ */
+
+public final class SMFXPackedTriangles extends SMFXPackedComponents
+{
+  private final SMFTriangleTracker tracker;
+  private final SMFParserEventsDataTrianglesType events;
+  private final Supplier<LexicalPosition<URI>> lexical;
+
+  /**
+   * Construct a receiver.
+   *
+   * @param inTriangles The triangle specification
+   * @param inTracker   The triangle tracker
+   * @param inEvents    The triangle receiver
+   * @param inLexical   A supplier of the current lexical position
+   */
+
+  public SMFXPackedTriangles(
+    final SMFTriangles inTriangles,
+    final SMFTriangleTracker inTracker,
+    final SMFParserEventsDataTrianglesType inEvents,
+    final Supplier<LexicalPosition<URI>> inLexical)
+  {
+    super(
+      SMFComponentType.ELEMENT_TYPE_INTEGER_UNSIGNED,
+      3,
+      inTriangles.triangleIndexSizeBits(),
+      inTriangles.triangleCount());
+
+    this.tracker = Objects.requireNonNull(inTracker, "tracker");
+    this.events = Objects.requireNonNull(inEvents, "events");
+    this.lexical = Objects.requireNonNull(inLexical, "lexical");
+  }
+
+  @Override
+  protected void onElement()
+  {
+    final long v0 = this.componentLong(0);
+    final long v1 = this.componentLong(1);
+    final long v2 = this.componentLong(2);
+    this.tracker.addTriangle(this.lexical, v0, v1, v2);
+    this.events.onDataTriangle(v0, v1, v2);
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.smfj.core.SMFBinary16;
+import com.io7m.smfj.core.SMFComponentType;
+import com.io7m.smfj.format.xml.SMFFormatXMLPackedEncoding;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A writer of packed component values. Components are written as text
+ * content of the current element through a bulk writer.
+ */
+
+public abstract class SMFXPackedWriter
+{
+  private final SMFXBulkWriter writer;
+  private final SMFComponentType componentType;
+  private final int componentSizeBits;
+
+  private SMFXPackedWriter(
+    final SMFXBulkWriter inWriter,
+    final SMFComponentType inComponentType,
+    final int inComponentSizeBits)
+  {
+    this.writer =
+      Objects.requireNonNull(inWriter, "writer");
+    this.componentType =
+      Objects.requireNonNull(inComponentType, "componentType");
+    this.componentSizeBits = inComponentSizeBits;
+  }
+
+  /**
+   * Create a packed writer.
+   *
+   * @param encoding          The encoding
+   * @param writer            The bulk writer
+   * @param componentType     The type of the components
+   * @param componentSizeBits The size of the components
+   *
+   * @return A packed writer
+   */
+
+  public static SMFXPackedWriter create(
+    final SMFFormatXMLPackedEncoding encoding,
+    final SMFXBulkWriter writer,
+    final SMFComponentType componentType,
+    final int componentSizeBits)
+  {
+    switch (encoding) {
+      case PACKED_ENCODING_TEXT:
+        return new Text(writer, componentType, componentSizeBits);
+      case PACKED_ENCODING_BASE64_LITTLE_ENDIAN:
+        return new Base64LE(writer, componentType, componentSizeBits);
+    }
+    throw new UnreachableCodeException();
+  }
+
+  protected final SMFXBulkWriter writer()
+  {
+    return this.writer;
+  }
+
+  protected final SMFComponentType componentType()
+  {
+    return this.componentType;
+  }
+
+  protected final int componentSizeBits()
+  {
+    return this.componentSizeBits;
+  }
+
+  /**
+   * Write a floating point component.
+   *
+   * @param value The value
+   *
+   * @throws IOException On errors
+   */
+
+  public abstract void writeFloat(double value)
+    throws IOException;
+
+  /**
+   * Write an integer component. The value is interpreted as signed or
+   * unsigned according to the component type.
+   *
+   * @param value The value
+   *
+   * @throws IOException On errors
+   */
+
+  public abstract void writeInteger(long value)
+    throws IOException;
+
+  /**
+   * Indicate that all of the components of an element have been written.
+   *
+   * @throws IOException On errors
+   */
+
+  public abstract void endElement()
+    throws IOException;
+
+  /**
+   * Write any buffered data.
+   *
+   * @throws IOException On errors
+   */
+
+  public abstract void finish()
+    throws IOException;
+
+  private static final class Text extends SMFXPackedWriter
+  {
+    private boolean elementStarted;
+
+    Text(
+      final SMFXBulkWriter inWriter,
+      final SMFComponentType inComponentType,
+      final int inComponentSizeBits)
+    {
+      super(inWriter, inComponentType, inComponentSizeBits);
+    }
+
+    private void separate()
+      throws IOException
+    {
+      if (this.elementStarted) {
+        this.writer().writeASCII(' ');
+      } else {
+        this.writer().writeASCII('\n');
+      }
+      this.elementStarted = true;
+    }
+
+    @Override
+    public void writeFloat(final double value)
+      throws IOException
+    {
+      this.separate();
+      this.writer().writeDouble(value);
+    }
+
+    @Override
+    public void writeInteger(final long value)
+      throws IOException
+    {
+      this.separate();
+      if (this.componentType() == SMFComponentType.ELEMENT_TYPE_INTEGER_UNSIGNED) {
+        this.writer().writeUnsigned(value);
+      } else {
+        this.writer().writeSigned(value);
+      }
+    }
+
+    @Override
+    public void endElement()
+    {
+      this.elementStarted = false;
+    }
+
+    @Override
+    public void finish()
+      throws IOException
+    {
+      this.writer().writeASCII('\n');
+    }
+  }
+
+  private static final class Base64LE extends SMFXPackedWriter
+  {
+    private static final byte[] ALPHABET =
+      SMFXBulkWriter.ascii(
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/");
+
+    private static final int LINE_BYTES = 57;
+    private static final int LINE_CHARS = 77;
+
+    private final byte[] bytes;
+    private final byte[] line;
+    private final int componentBytes;
+    private int byteCount;
+
+    Base64LE(
+      final SMFXBulkWriter inWriter,
+      final SMFComponentType inComponentType,
+      final int inComponentSizeBits)
+    {
+      super(inWriter, inComponentType, inComponentSizeBits);
+      this.bytes = new byte[LINE_BYTES];
+      this.line = new byte[LINE_CHARS];
+      this.componentBytes = inComponentSizeBits / 8;
+    }
+
+    @Override
+    public void writeFloat(final double value)
+      throws IOException
+    {
+      switch (this.componentSizeBits()) {
+        case 16: {
+          this.writeBits(SMFBinary16.pack(value));
+          break;
+        }
+        case 32: {
+          this.writeBits(Float.floatToRawIntBits((float) value) & 0xffff_ffffL);
+          break;
+        }
+        default: {
+          this.writeBits(Double.doubleToRawLongBits(value));
+          break;
+        }
+      }
+    }
+
+    @Override
+    public void writeInteger(final long value)
+      throws IOException
+    {
+      this.writeBits(value);
+    }
+
+    private void writeBits(
+      final long bits)
+      throws IOException
+    {
+      for (int index = 0; index < this.componentBytes; ++index) {
+        this.bytes[this.byteCount] = (byte) (bits >>> (index * 8));
+        ++this.byteCount;
+        if (this.byteCount == LINE_BYTES) {
+          this.writeLine();
+        }
+      }
+    }
+
+    private void writeLine()
+      throws IOException
+    {
+      this.line[0] = (byte) '\n';
+      int out = 1;
+
+      int index = 0;
+      for (; index + 3 <= this.byteCount; index += 3) {
+        final int quantum =
+          ((this.bytes[index] & 0xff) << 16)
+            + ((this.bytes[index + 1] & 0xff) << 8)
+            + (this.bytes[index + 2] & 0xff);
+        this.line[out] = ALPHABET[(quantum >>> 18) & 0x3f];
+        this.line[out + 1] = ALPHABET[(quantum >>> 12) & 0x3f];
+        this.line[out + 2] = ALPHABET[(quantum >>> 6) & 0x3f];
+        this.line[out + 3] = ALPHABET[quantum & 0x3f];
+        out += 4;
+      }
+
+      final int remaining = this.byteCount - index;
+      if (remaining > 0) {
+        int quantum = (this.bytes[index] & 0xff) << 16;
+        if (remaining == 2) {
+          quantum += (this.bytes[index + 1] & 0xff) << 8;
+        }
+        this.line[out] = ALPHABET[(quantum >>> 18) & 0x3f];
+        this.line[out + 1] = ALPHABET[(quantum >>> 12) & 0x3f];
+        this.line[out + 2] =
+          remaining == 2 ? ALPHABET[(quantum >>> 6) & 0x3f] : (byte) '=';
+        this.line[out + 3] = (byte) '=';
+        out += 4;
+      }
+
+      this.writer().writeBytes(this.line, 0, out);
+      this.byteCount = 0;
+    }
+
+    @Override
+    public void endElement()
+    {
+
+    }
+
+    @Override
+    public void finish()
+      throws IOException
+    {
+      if (this.byteCount > 0) {
+        this.writeLine();
+      }
+      this.writer().writeASCII('\n');
+    }
+  }
+}
@@ -21,6 +21,7 @@ import com.io7m.blackthorne.api.BTContentHandler;
 import com.io7m.blackthorne.api.BTParseError;
 import com.io7m.blackthorne.api.BTQualifiedName;
 import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.smfj.core.SMFFormatVersion;
 import com.io7m.smfj.parser.api.SMFParseError;
 import com.io7m.smfj.parser.api.SMFParseErrors;
 import com.io7m.smfj.parser.api.SMFParseWarning;
@@ -75,7 +76,11 @@ public final class SMFXParser implements SMFParserSequentialType
         Map.ofEntries(
           Map.entry(
             BTQualifiedName.of(SMFX.namespaceURI2p0(), "SMF"),
-            c -> new SMFX(c, this.events)
+            c -> new SMFX(c, this.events, SMFFormatVersion.of(2, 0))
+          ),
+          Map.entry(
+            BTQualifiedName.of(SMFX.namespaceURI2p1(), "SMF"),
+            c -> new SMFX(c, this.events, SMFFormatVersion.of(2, 1))
           )
         )
       );
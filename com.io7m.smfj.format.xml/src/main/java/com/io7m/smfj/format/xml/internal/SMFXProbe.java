@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.InputSource;
@@ -97,6 +98,7 @@ public final class SMFXProbe
   {
     final var errors = new ArrayList<SMFErrorType>();
     final var warnings = new ArrayList<SMFWarningType>();
+    final var version = new AtomicReference<SMFFormatVersion>();
 
     final var contentHandler =
       new BTContentHandler<>(
@@ -105,7 +107,17 @@ public final class SMFXProbe
         Map.ofEntries(
           Map.entry(
             BTQualifiedName.of(SMFX.namespaceURI2p0(), "SMF"),
-            SMFXIgnoring::new
+            c -> {
+              version.set(SMFFormatVersion.of(2, 0));
+              return new SMFXIgnoring(c);
+            }
+          ),
+          Map.entry(
+            BTQualifiedName.of(SMFX.namespaceURI2p1(), "SMF"),
+            c -> {
+              version.set(SMFFormatVersion.of(2, 1));
+              return new SMFXIgnoring(c);
+            }
           )
         )
       );
@@ -122,9 +134,14 @@ public final class SMFXProbe
       if (!errors.isEmpty()) {
         return SMFPartialLogged.failed(errors, warnings);
       }
+      if (version.get() == null) {
+        errors.add(SMFParseErrors.errorWithMessage(
+          "No recognized root element"));
+        return SMFPartialLogged.failed(errors, warnings);
+      }
       return SMFPartialLogged.succeeded(SMFVersionProbed.of(
         this.parsers,
-        SMFFormatVersion.of(2, 0)
+        version.get()
       ));
     } catch (final SAXParseException e) {
       final SMFParseError error =
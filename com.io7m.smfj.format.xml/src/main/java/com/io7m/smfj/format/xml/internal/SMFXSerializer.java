@@ -20,15 +20,19 @@ package com.io7m.smfj.format.xml.internal;
 
 import com.io7m.smfj.core.SMFAttribute;
 import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFComponentType;
 import com.io7m.smfj.core.SMFCoordinateSystem;
 import com.io7m.smfj.core.SMFHeader;
 import com.io7m.smfj.core.SMFSchemaIdentifier;
 import com.io7m.smfj.core.SMFTriangles;
+import com.io7m.smfj.core.SMFFormatVersion;
+import com.io7m.smfj.format.xml.SMFFormatXMLPackedEncoding;
 import com.io7m.smfj.serializer.api.SMFSerializerDataAttributesNonInterleavedType;
 import com.io7m.smfj.serializer.api.SMFSerializerDataAttributesValuesType;
 import com.io7m.smfj.serializer.api.SMFSerializerDataTrianglesType;
 import com.io7m.smfj.serializer.api.SMFSerializerType;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Base64;
 import java.util.List;
 import java.util.Objects;
@@ -39,17 +43,30 @@ import javax.xml.stream.XMLStreamWriter;
 public final class SMFXSerializer implements SMFSerializerType
 {
   private final XMLStreamWriter writer;
+  private final SMFXBulkWriter bulk;
+  private final String namespace;
+  private final boolean packed;
+  private final SMFFormatXMLPackedEncoding encoding;
+  private SMFHeader headerCurrent;
 
   public SMFXSerializer(
+    final SMFFormatVersion inVersion,
+    final SMFFormatXMLPackedEncoding inEncoding,
+    final OutputStream inStream,
     final XMLStreamWriter inWriter)
   {
+    Objects.requireNonNull(inVersion, "version");
+    this.encoding = Objects.requireNonNull(inEncoding, "encoding");
     this.writer = Objects.requireNonNull(inWriter, "writer");
+    this.bulk = new SMFXBulkWriter(inStream);
+    this.namespace = SMFX.namespaceURIOf(inVersion);
+    this.packed = SMFX.supportsPacked(this.namespace);
   }
 
   public SMFXSerializer start()
     throws XMLStreamException
   {
-    final var namespaceURI = SMFX.namespaceURI2p0();
+    final var namespaceURI = this.namespace;
 
     this.writer.writeStartDocument("UTF-8", "1.0");
     this.writer.setPrefix("sx", namespaceURI);
@@ -63,8 +80,10 @@ public final class SMFXSerializer implements SMFSerializerType
     final SMFHeader header)
     throws IllegalStateException, IOException
   {
+    this.headerCurrent = Objects.requireNonNull(header, "header");
+
     try {
-      final var namespaceURI = SMFX.namespaceURI2p0();
+      final var namespaceURI = this.namespace;
       this.writer.writeStartElement("sx", "Header", namespaceURI);
       this.writer.writeAttribute(
         "vertexCount",
@@ -178,26 +197,38 @@ public final class SMFXSerializer implements SMFSerializerType
     this.writer.writeEndElement();
   }
 
+  private SMFHeader header()
+  {
+    if (this.headerCurrent == null) {
+      throw new IllegalStateException("A header has not been serialized");
+    }
+    return this.headerCurrent;
+  }
+
   @Override
   public SMFSerializerDataAttributesNonInterleavedType serializeVertexDataNonInterleavedStart()
     throws IllegalStateException, IOException
   {
-    try {
-      return new DataAttributesNonInterleaved(this.writer).start();
-    } catch (final Exception e) {
-      throw new IOException(e);
-    }
+    return new DataAttributesNonInterleaved(
+      this.writer,
+      this.bulk,
+      this.namespace,
+      this.header(),
+      this.packed ? this.encoding : null)
+      .start();
   }
 
   @Override
   public SMFSerializerDataTrianglesType serializeTrianglesStart()
     throws IllegalStateException, IOException
   {
-    try {
-      return new DataTriangles(this.writer).start();
-    } catch (final Exception e) {
-      throw new IOException(e);
+    final var header = this.header();
+    if (this.packed) {
+      return new DataTrianglesPacked(
+        this.writer, this.bulk, this.namespace, header.triangles(), this.encoding)
+        .start();
     }
+    return new DataTriangles(this.writer, this.bulk, this.namespace).start();
   }
 
   @Override
@@ -207,7 +238,7 @@ public final class SMFXSerializer implements SMFSerializerType
     throws IllegalStateException, IOException
   {
     try {
-      final var namespaceURI = SMFX.namespaceURI2p0();
+      final var namespaceURI = this.namespace;
       this.writer.writeStartElement("sx", "Metadata", namespaceURI);
       this.writeSchemaIdentifier(namespaceURI, schema);
       this.writer.writeStartElement("sx", "Base64Data", namespaceURI);
@@ -224,9 +255,9 @@ public final class SMFXSerializer implements SMFSerializerType
     throws IOException
   {
     try {
-      this.writer.flush();
       this.writer.writeEndElement();
       this.writer.writeEndDocument();
+      this.writer.flush();
     } catch (final Exception e) {
       throw new IOException(e);
     }
@@ -235,14 +266,53 @@ public final class SMFXSerializer implements SMFSerializerType
   private static final class DataAttributeValues
     implements SMFSerializerDataAttributesValuesType
   {
+    private static final byte[] FLOAT1 =
+      SMFXBulkWriter.ascii("<sx:AttributeFloat1 c0=\"");
+    private static final byte[] FLOAT2 =
+      SMFXBulkWriter.ascii("<sx:AttributeFloat2 c0=\"");
+    private static final byte[] FLOAT3 =
+      SMFXBulkWriter.ascii("<sx:AttributeFloat3 c0=\"");
+    private static final byte[] FLOAT4 =
+      SMFXBulkWriter.ascii("<sx:AttributeFloat4 c0=\"");
+    private static final byte[] SIGNED1 =
+      SMFXBulkWriter.ascii("<sx:AttributeIntegerSigned1 c0=\"");
+    private static final byte[] SIGNED2 =
+      SMFXBulkWriter.ascii("<sx:AttributeIntegerSigned2 c0=\"");
+    private static final byte[] SIGNED3 =
+      SMFXBulkWriter.ascii("<sx:AttributeIntegerSigned3 c0=\"");
+    private static final byte[] SIGNED4 =
+      SMFXBulkWriter.ascii("<sx:AttributeIntegerSigned4 c0=\"");
+    private static final byte[] UNSIGNED1 =
+      SMFXBulkWriter.ascii("<sx:AttributeIntegerUnsigned1 c0=\"");
+    private static final byte[] UNSIGNED2 =
+      SMFXBulkWriter.ascii("<sx:AttributeIntegerUnsigned2 c0=\"");
+    private static final byte[] UNSIGNED3 =
+      SMFXBulkWriter.ascii("<sx:AttributeIntegerUnsigned3 c0=\"");
+    private static final byte[] UNSIGNED4 =
+      SMFXBulkWriter.ascii("<sx:AttributeIntegerUnsigned4 c0=\"");
+    private static final byte[] C1 =
+      SMFXBulkWriter.ascii("\" c1=\"");
+    private static final byte[] C2 =
+      SMFXBulkWriter.ascii("\" c2=\"");
+    private static final byte[] C3 =
+      SMFXBulkWriter.ascii("\" c3=\"");
+    private static final byte[] END =
+      SMFXBulkWriter.ascii("\"/>");
+
     private final XMLStreamWriter writer;
+    private final SMFXBulkWriter bulk;
+    private final String namespaceURI;
     private final SMFAttributeName name;
 
     DataAttributeValues(
       final XMLStreamWriter inWriter,
+      final SMFXBulkWriter inBulk,
+      final String inNamespaceURI,
       final SMFAttributeName inName)
     {
       this.writer = Objects.requireNonNull(inWriter, "writer");
+      this.bulk = Objects.requireNonNull(inBulk, "bulk");
+      this.namespaceURI = Objects.requireNonNull(inNamespaceURI, "namespaceURI");
       this.name = Objects.requireNonNull(inName, "inName");
     }
 
@@ -250,12 +320,12 @@ public final class SMFXSerializer implements SMFSerializerType
       throws IOException
     {
       try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
         this.writer.writeStartElement(
-          "sx", "AttributeData", namespaceURI);
+          "sx", "AttributeData", this.namespaceURI);
         this.writer.writeAttribute("name", this.name.value());
+        this.bulk.begin(this.writer);
         return this;
-      } catch (final Exception e) {
+      } catch (final XMLStreamException e) {
         throw new IOException(e);
       }
     }
@@ -268,18 +338,16 @@ public final class SMFXSerializer implements SMFSerializerType
       final double w)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeFloat4", namespaceURI);
-        this.writer.writeAttribute("c0", Double.toString(x));
-        this.writer.writeAttribute("c1", Double.toString(y));
-        this.writer.writeAttribute("c2", Double.toString(z));
-        this.writer.writeAttribute("c3", Double.toString(w));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(FLOAT4);
+      b.writeDouble(x);
+      b.writeTemplate(C1);
+      b.writeDouble(y);
+      b.writeTemplate(C2);
+      b.writeDouble(z);
+      b.writeTemplate(C3);
+      b.writeDouble(w);
+      b.writeTemplate(END);
     }
 
     @Override
@@ -289,17 +357,14 @@ public final class SMFXSerializer implements SMFSerializerType
       final double z)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeFloat3", namespaceURI);
-        this.writer.writeAttribute("c0", Double.toString(x));
-        this.writer.writeAttribute("c1", Double.toString(y));
-        this.writer.writeAttribute("c2", Double.toString(z));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(FLOAT3);
+      b.writeDouble(x);
+      b.writeTemplate(C1);
+      b.writeDouble(y);
+      b.writeTemplate(C2);
+      b.writeDouble(z);
+      b.writeTemplate(END);
     }
 
     @Override
@@ -308,31 +373,22 @@ public final class SMFXSerializer implements SMFSerializerType
       final double y)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeFloat2", namespaceURI);
-        this.writer.writeAttribute("c0", Double.toString(x));
-        this.writer.writeAttribute("c1", Double.toString(y));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(FLOAT2);
+      b.writeDouble(x);
+      b.writeTemplate(C1);
+      b.writeDouble(y);
+      b.writeTemplate(END);
     }
 
     @Override
     public void serializeValueFloat1(final double x)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeFloat1", namespaceURI);
-        this.writer.writeAttribute("c0", Double.toString(x));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(FLOAT1);
+      b.writeDouble(x);
+      b.writeTemplate(END);
     }
 
     @Override
@@ -343,18 +399,16 @@ public final class SMFXSerializer implements SMFSerializerType
       final long w)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeIntegerSigned4", namespaceURI);
-        this.writer.writeAttribute("c0", Long.toString(x));
-        this.writer.writeAttribute("c1", Long.toString(y));
-        this.writer.writeAttribute("c2", Long.toString(z));
-        this.writer.writeAttribute("c3", Long.toString(w));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(SIGNED4);
+      b.writeSigned(x);
+      b.writeTemplate(C1);
+      b.writeSigned(y);
+      b.writeTemplate(C2);
+      b.writeSigned(z);
+      b.writeTemplate(C3);
+      b.writeSigned(w);
+      b.writeTemplate(END);
     }
 
     @Override
@@ -364,17 +418,14 @@ public final class SMFXSerializer implements SMFSerializerType
       final long z)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeIntegerSigned3", namespaceURI);
-        this.writer.writeAttribute("c0", Long.toString(x));
-        this.writer.writeAttribute("c1", Long.toString(y));
-        this.writer.writeAttribute("c2", Long.toString(z));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(SIGNED3);
+      b.writeSigned(x);
+      b.writeTemplate(C1);
+      b.writeSigned(y);
+      b.writeTemplate(C2);
+      b.writeSigned(z);
+      b.writeTemplate(END);
     }
 
     @Override
@@ -383,31 +434,22 @@ public final class SMFXSerializer implements SMFSerializerType
       final long y)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeIntegerSigned2", namespaceURI);
-        this.writer.writeAttribute("c0", Long.toString(x));
-        this.writer.writeAttribute("c1", Long.toString(y));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(SIGNED2);
+      b.writeSigned(x);
+      b.writeTemplate(C1);
+      b.writeSigned(y);
+      b.writeTemplate(END);
     }
 
     @Override
     public void serializeValueIntegerSigned1(final long x)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeIntegerSigned1", namespaceURI);
-        this.writer.writeAttribute("c0", Long.toString(x));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(SIGNED1);
+      b.writeSigned(x);
+      b.writeTemplate(END);
     }
 
     @Override
@@ -418,18 +460,16 @@ public final class SMFXSerializer implements SMFSerializerType
       final long w)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeIntegerUnsigned4", namespaceURI);
-        this.writer.writeAttribute("c0", Long.toUnsignedString(x));
-        this.writer.writeAttribute("c1", Long.toUnsignedString(y));
-        this.writer.writeAttribute("c2", Long.toUnsignedString(z));
-        this.writer.writeAttribute("c3", Long.toUnsignedString(w));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(UNSIGNED4);
+      b.writeUnsigned(x);
+      b.writeTemplate(C1);
+      b.writeUnsigned(y);
+      b.writeTemplate(C2);
+      b.writeUnsigned(z);
+      b.writeTemplate(C3);
+      b.writeUnsigned(w);
+      b.writeTemplate(END);
     }
 
     @Override
@@ -439,17 +479,14 @@ public final class SMFXSerializer implements SMFSerializerType
       final long z)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeIntegerUnsigned3", namespaceURI);
-        this.writer.writeAttribute("c0", Long.toUnsignedString(x));
-        this.writer.writeAttribute("c1", Long.toUnsignedString(y));
-        this.writer.writeAttribute("c2", Long.toUnsignedString(z));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(UNSIGNED3);
+      b.writeUnsigned(x);
+      b.writeTemplate(C1);
+      b.writeUnsigned(y);
+      b.writeTemplate(C2);
+      b.writeUnsigned(z);
+      b.writeTemplate(END);
     }
 
     @Override
@@ -458,31 +495,22 @@ public final class SMFXSerializer implements SMFSerializerType
       final long y)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeIntegerUnsigned2", namespaceURI);
-        this.writer.writeAttribute("c0", Long.toUnsignedString(x));
-        this.writer.writeAttribute("c1", Long.toUnsignedString(y));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(UNSIGNED2);
+      b.writeUnsigned(x);
+      b.writeTemplate(C1);
+      b.writeUnsigned(y);
+      b.writeTemplate(END);
     }
 
     @Override
     public void serializeValueIntegerUnsigned1(final long x)
       throws IOException, IllegalArgumentException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "AttributeIntegerUnsigned1", namespaceURI);
-        this.writer.writeAttribute("c0", Long.toUnsignedString(x));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(UNSIGNED1);
+      b.writeUnsigned(x);
+      b.writeTemplate(END);
     }
 
     @Override
@@ -490,8 +518,9 @@ public final class SMFXSerializer implements SMFSerializerType
       throws IOException
     {
       try {
+        this.bulk.end();
         this.writer.writeEndElement();
-      } catch (final Exception e) {
+      } catch (final XMLStreamException e) {
         throw new IOException(e);
       }
     }
@@ -500,23 +529,38 @@ public final class SMFXSerializer implements SMFSerializerType
   private static final class DataTriangles
     implements SMFSerializerDataTrianglesType
   {
+    private static final byte[] TRIANGLE =
+      SMFXBulkWriter.ascii("<sx:Triangle v0=\"");
+    private static final byte[] V1 =
+      SMFXBulkWriter.ascii("\" v1=\"");
+    private static final byte[] V2 =
+      SMFXBulkWriter.ascii("\" v2=\"");
+    private static final byte[] END =
+      SMFXBulkWriter.ascii("\"/>");
+
     private final XMLStreamWriter writer;
+    private final SMFXBulkWriter bulk;
+    private final String namespaceURI;
 
     DataTriangles(
-      final XMLStreamWriter inWriter)
+      final XMLStreamWriter inWriter,
+      final SMFXBulkWriter inBulk,
+      final String inNamespaceURI)
     {
       this.writer = Objects.requireNonNull(inWriter, "writer");
+      this.bulk = Objects.requireNonNull(inBulk, "bulk");
+      this.namespaceURI = Objects.requireNonNull(inNamespaceURI, "namespaceURI");
     }
 
     DataTriangles start()
       throws IOException
     {
       try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
         this.writer.writeStartElement(
-          "sx", "Triangles", namespaceURI);
+          "sx", "Triangles", this.namespaceURI);
+        this.bulk.begin(this.writer);
         return this;
-      } catch (final Exception e) {
+      } catch (final XMLStreamException e) {
         throw new IOException(e);
       }
     }
@@ -528,17 +572,14 @@ public final class SMFXSerializer implements SMFSerializerType
       final long v2)
       throws IOException, IllegalStateException
     {
-      try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
-        this.writer.writeStartElement(
-          "sx", "Triangle", namespaceURI);
-        this.writer.writeAttribute("v0", Long.toUnsignedString(v0));
-        this.writer.writeAttribute("v1", Long.toUnsignedString(v1));
-        this.writer.writeAttribute("v2", Long.toUnsignedString(v2));
-        this.writer.writeEndElement();
-      } catch (final Exception e) {
-        throw new IOException(e);
-      }
+      final var b = this.bulk;
+      b.writeTemplate(TRIANGLE);
+      b.writeUnsigned(v0);
+      b.writeTemplate(V1);
+      b.writeUnsigned(v1);
+      b.writeTemplate(V2);
+      b.writeUnsigned(v2);
+      b.writeTemplate(END);
     }
 
     @Override
@@ -546,8 +587,9 @@ public final class SMFXSerializer implements SMFSerializerType
       throws IOException
     {
       try {
+        this.bulk.end();
         this.writer.writeEndElement();
-      } catch (final Exception e) {
+      } catch (final XMLStreamException e) {
         throw new IOException(e);
       }
     }
@@ -557,22 +599,33 @@ public final class SMFXSerializer implements SMFSerializerType
     implements SMFSerializerDataAttributesNonInterleavedType
   {
     private final XMLStreamWriter writer;
+    private final SMFXBulkWriter bulk;
+    private final String namespaceURI;
+    private final SMFHeader header;
+    private final SMFFormatXMLPackedEncoding encoding;
 
     DataAttributesNonInterleaved(
-      final XMLStreamWriter inWriter)
+      final XMLStreamWriter inWriter,
+      final SMFXBulkWriter inBulk,
+      final String inNamespaceURI,
+      final SMFHeader inHeader,
+      final SMFFormatXMLPackedEncoding inEncoding)
     {
       this.writer = Objects.requireNonNull(inWriter, "writer");
+      this.bulk = Objects.requireNonNull(inBulk, "bulk");
+      this.namespaceURI = Objects.requireNonNull(inNamespaceURI, "namespaceURI");
+      this.header = Objects.requireNonNull(inHeader, "header");
+      this.encoding = inEncoding;
     }
 
     DataAttributesNonInterleaved start()
       throws IOException
     {
       try {
-        final var namespaceURI = SMFX.namespaceURI2p0();
         this.writer.writeStartElement(
-          "sx", "VertexDataNonInterleaved", namespaceURI);
+          "sx", "VertexDataNonInterleaved", this.namespaceURI);
         return this;
-      } catch (final Exception e) {
+      } catch (final XMLStreamException e) {
         throw new IOException(e);
       }
     }
@@ -581,21 +634,371 @@ public final class SMFXSerializer implements SMFSerializerType
     public SMFSerializerDataAttributesValuesType serializeData(
       final SMFAttributeName name)
       throws IllegalArgumentException, IllegalStateException, IOException
+    {
+      if (this.encoding != null) {
+        final var attribute = this.header.attributesByName().get(name);
+        if (attribute == null) {
+          throw new IllegalArgumentException(
+            String.format("No attribute named '%s' was declared", name.value()));
+        }
+        return new DataAttributeValuesPacked(
+          this.writer, this.bulk, this.namespaceURI, attribute, this.encoding)
+          .start();
+      }
+
+      return new DataAttributeValues(
+        this.writer, this.bulk, this.namespaceURI, name)
+        .start();
+    }
+
+    @Override
+    public void close()
+      throws IOException
+    {
+      try {
+        this.writer.writeEndElement();
+      } catch (final XMLStreamException e) {
+        throw new IOException(e);
+      }
+    }
+  }
+
+  private static final class DataAttributeValuesPacked
+    implements SMFSerializerDataAttributesValuesType
+  {
+    private final XMLStreamWriter writer;
+    private final SMFXBulkWriter bulk;
+    private final String namespace;
+    private final SMFAttribute attribute;
+    private final SMFFormatXMLPackedEncoding encoding;
+    private SMFXPackedWriter packed;
+
+    DataAttributeValuesPacked(
+      final XMLStreamWriter inWriter,
+      final SMFXBulkWriter inBulk,
+      final String inNamespaceURI,
+      final SMFAttribute inAttribute,
+      final SMFFormatXMLPackedEncoding inEncoding)
+    {
+      this.writer = Objects.requireNonNull(inWriter, "writer");
+      this.bulk = Objects.requireNonNull(inBulk, "bulk");
+      this.namespace = Objects.requireNonNull(inNamespaceURI, "namespaceURI");
+      this.attribute = Objects.requireNonNull(inAttribute, "attribute");
+      this.encoding = Objects.requireNonNull(inEncoding, "encoding");
+    }
+
+    DataAttributeValuesPacked start()
+      throws IOException
+    {
+      try {
+        final var namespaceURI = this.namespace;
+        this.writer.writeStartElement(
+          "sx", "AttributeData", namespaceURI);
+        this.writer.writeAttribute("name", this.attribute.name().value());
+        this.writer.writeStartElement(
+          "sx", "Packed", namespaceURI);
+        this.writer.writeAttribute("encoding", this.encoding.toString());
+        this.bulk.begin(this.writer);
+        this.packed = SMFXPackedWriter.create(
+          this.encoding,
+          this.bulk,
+          this.attribute.componentType(),
+          this.attribute.componentSizeBits());
+        return this;
+      } catch (final XMLStreamException e) {
+        throw new IOException(e);
+      }
+    }
+
+    private void checkFloat(
+      final int count)
+    {
+      if (this.attribute.componentType() != SMFComponentType.ELEMENT_TYPE_FLOATING
+        || this.attribute.componentCount() != count) {
+        throw this.wrongType("floating point", count);
+      }
+    }
+
+    private void checkInteger(
+      final int count)
+    {
+      if (this.attribute.componentType() == SMFComponentType.ELEMENT_TYPE_FLOATING
+        || this.attribute.componentCount() != count) {
+        throw this.wrongType("integer", count);
+      }
+    }
+
+    private IllegalArgumentException wrongType(
+      final String kind,
+      final int count)
+    {
+      return new IllegalArgumentException(
+        String.format(
+          "Attribute '%s' is of type %s with %d components, but %d %s components were provided",
+          this.attribute.name().value(),
+          this.attribute.componentType(),
+          Integer.valueOf(this.attribute.componentCount()),
+          Integer.valueOf(count),
+          kind));
+    }
+
+    @Override
+    public void serializeValueFloat4(
+      final double x,
+      final double y,
+      final double z,
+      final double w)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.checkFloat(4);
+      this.packed.writeFloat(x);
+      this.packed.writeFloat(y);
+      this.packed.writeFloat(z);
+      this.packed.writeFloat(w);
+      this.packed.endElement();
+    }
+
+    @Override
+    public void serializeValueFloat3(
+      final double x,
+      final double y,
+      final double z)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.checkFloat(3);
+      this.packed.writeFloat(x);
+      this.packed.writeFloat(y);
+      this.packed.writeFloat(z);
+      this.packed.endElement();
+    }
+
+    @Override
+    public void serializeValueFloat2(
+      final double x,
+      final double y)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.checkFloat(2);
+      this.packed.writeFloat(x);
+      this.packed.writeFloat(y);
+      this.packed.endElement();
+    }
+
+    @Override
+    public void serializeValueFloat1(final double x)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.checkFloat(1);
+      this.packed.writeFloat(x);
+      this.packed.endElement();
+    }
+
+    private void writeInteger4(
+      final long x,
+      final long y,
+      final long z,
+      final long w)
+      throws IOException
+    {
+      this.checkInteger(4);
+      this.packed.writeInteger(x);
+      this.packed.writeInteger(y);
+      this.packed.writeInteger(z);
+      this.packed.writeInteger(w);
+      this.packed.endElement();
+    }
+
+    private void writeInteger3(
+      final long x,
+      final long y,
+      final long z)
+      throws IOException
+    {
+      this.checkInteger(3);
+      this.packed.writeInteger(x);
+      this.packed.writeInteger(y);
+      this.packed.writeInteger(z);
+      this.packed.endElement();
+    }
+
+    private void writeInteger2(
+      final long x,
+      final long y)
+      throws IOException
+    {
+      this.checkInteger(2);
+      this.packed.writeInteger(x);
+      this.packed.writeInteger(y);
+      this.packed.endElement();
+    }
+
+    private void writeInteger1(
+      final long x)
+      throws IOException
+    {
+      this.checkInteger(1);
+      this.packed.writeInteger(x);
+      this.packed.endElement();
+    }
+
+    @Override
+    public void serializeValueIntegerSigned4(
+      final long x,
+      final long y,
+      final long z,
+      final long w)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.writeInteger4(x, y, z, w);
+    }
+
+    @Override
+    public void serializeValueIntegerSigned3(
+      final long x,
+      final long y,
+      final long z)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.writeInteger3(x, y, z);
+    }
+
+    @Override
+    public void serializeValueIntegerSigned2(
+      final long x,
+      final long y)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.writeInteger2(x, y);
+    }
+
+    @Override
+    public void serializeValueIntegerSigned1(final long x)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.writeInteger1(x);
+    }
+
+    @Override
+    public void serializeValueIntegerUnsigned4(
+      final long x,
+      final long y,
+      final long z,
+      final long w)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.writeInteger4(x, y, z, w);
+    }
+
+    @Override
+    public void serializeValueIntegerUnsigned3(
+      final long x,
+      final long y,
+      final long z)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.writeInteger3(x, y, z);
+    }
+
+    @Override
+    public void serializeValueIntegerUnsigned2(
+      final long x,
+      final long y)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.writeInteger2(x, y);
+    }
+
+    @Override
+    public void serializeValueIntegerUnsigned1(final long x)
+      throws IOException, IllegalArgumentException, IllegalStateException
+    {
+      this.writeInteger1(x);
+    }
+
+    @Override
+    public void close()
+      throws IOException
+    {
+      try {
+        this.packed.finish();
+        this.bulk.end();
+        this.writer.writeEndElement();
+        this.writer.writeEndElement();
+      } catch (final XMLStreamException e) {
+        throw new IOException(e);
+      }
+    }
+  }
+
+  private static final class DataTrianglesPacked
+    implements SMFSerializerDataTrianglesType
+  {
+    private final XMLStreamWriter writer;
+    private final SMFXBulkWriter bulk;
+    private final String namespace;
+    private final SMFTriangles triangles;
+    private final SMFFormatXMLPackedEncoding encoding;
+    private SMFXPackedWriter packed;
+
+    DataTrianglesPacked(
+      final XMLStreamWriter inWriter,
+      final SMFXBulkWriter inBulk,
+      final String inNamespaceURI,
+      final SMFTriangles inTriangles,
+      final SMFFormatXMLPackedEncoding inEncoding)
+    {
+      this.writer = Objects.requireNonNull(inWriter, "writer");
+      this.bulk = Objects.requireNonNull(inBulk, "bulk");
+      this.namespace = Objects.requireNonNull(inNamespaceURI, "namespaceURI");
+      this.triangles = Objects.requireNonNull(inTriangles, "triangles");
+      this.encoding = Objects.requireNonNull(inEncoding, "encoding");
+    }
+
+    DataTrianglesPacked start()
+      throws IOException
     {
       try {
-        return new DataAttributeValues(this.writer, name).start();
-      } catch (final Exception e) {
+        final var namespaceURI = this.namespace;
+        this.writer.writeStartElement(
+          "sx", "Triangles", namespaceURI);
+        this.writer.writeStartElement(
+          "sx", "Packed", namespaceURI);
+        this.writer.writeAttribute("encoding", this.encoding.toString());
+        this.bulk.begin(this.writer);
+        this.packed = SMFXPackedWriter.create(
+          this.encoding,
+          this.bulk,
+          SMFComponentType.ELEMENT_TYPE_INTEGER_UNSIGNED,
+          this.triangles.triangleIndexSizeBits());
+        return this;
+      } catch (final XMLStreamException e) {
         throw new IOException(e);
       }
     }
 
+    @Override
+    public void serializeTriangle(
+      final long v0,
+      final long v1,
+      final long v2)
+      throws IOException, IllegalStateException
+    {
+      this.packed.writeInteger(v0);
+      this.packed.writeInteger(v1);
+      this.packed.writeInteger(v2);
+      this.packed.endElement();
+    }
+
     @Override
     public void close()
       throws IOException
     {
       try {
+        this.packed.finish();
+        this.bulk.end();
+        this.writer.writeEndElement();
         this.writer.writeEndElement();
-      } catch (final Exception e) {
+      } catch (final XMLStreamException e) {
         throw new IOException(e);
       }
     }
@@ -0,0 +1,1023 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.format.xml.internal;
+
+import com.io7m.jcoords.core.conversion.CAxis;
+import com.io7m.jcoords.core.conversion.CAxisSystem;
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.smfj.core.SMFAttribute;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFComponentType;
+import com.io7m.smfj.core.SMFCoordinateSystem;
+import com.io7m.smfj.core.SMFFaceWindingOrder;
+import com.io7m.smfj.core.SMFFormatVersion;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFSchemaIdentifier;
+import com.io7m.smfj.core.SMFSchemaName;
+import com.io7m.smfj.core.SMFTriangles;
+import com.io7m.smfj.format.support.SMFTriangleTracker;
+import com.io7m.smfj.parser.api.SMFParseError;
+import com.io7m.smfj.parser.api.SMFParseErrors;
+import com.io7m.smfj.parser.api.SMFParserEventsBodyType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataAttributeValuesIgnoringReceiver;
+import com.io7m.smfj.parser.api.SMFParserEventsDataAttributeValuesType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataAttributesNonInterleavedIgnoringReceiver;
+import com.io7m.smfj.parser.api.SMFParserEventsDataAttributesNonInterleavedType;
+import com.io7m.smfj.parser.api.SMFParserEventsDataTrianglesIgnoringReceiver;
+import com.io7m.smfj.parser.api.SMFParserEventsDataTrianglesType;
+import com.io7m.smfj.parser.api.SMFParserEventsErrorType;
+import com.io7m.smfj.parser.api.SMFParserEventsHeaderIgnoringReceiver;
+import com.io7m.smfj.parser.api.SMFParserEventsHeaderType;
+import com.io7m.smfj.parser.api.SMFParserEventsType;
+import com.io7m.smfj.parser.api.SMFParserSequentialType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A streaming (StAX) parser for the XML format.
+ *
+ * The parser walks the document directly rather than dispatching each element
+ * through a handler stack. Vertex and triangle elements are consumed in tight
+ * loops: the element expected for an attribute is determined once from the
+ * header, and the positions of the component attributes are resolved once
+ * and reused for as long as subsequent elements present their attributes in
+ * the same order. The structural constraints expressed by the XML schema are
+ * checked directly, and document type declarations are rejected.
+ */
+
+public final class SMFXStreamParser implements SMFParserSequentialType
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFXStreamParser.class);
+
+  private static final String[] COMPONENT_NAMES = {"c0", "c1", "c2", "c3"};
+  private static final String[] TRIANGLE_NAMES = {"v0", "v1", "v2"};
+
+  private final SMFParserEventsType events;
+  private final URI source;
+  private final Optional<URI> sourceOpt;
+  private final XMLStreamReader reader;
+  private final InputStream stream;
+  private final int[] componentIndices;
+  private final int[] triangleIndices;
+  private int componentIndicesCount;
+  private int triangleIndicesCount;
+  private String namespaceURI;
+  private SMFFormatVersion version;
+  private boolean packedPermitted;
+  private SMFHeader header;
+  private SMFParserEventsHeaderType eventsHeader;
+  private SMFParserEventsBodyType eventsBody;
+  private SMFTriangleTracker triangleTracker;
+
+  /**
+   * Construct a parser.
+   *
+   * @param inEvents The event receiver
+   * @param inSource The source URI
+   * @param inReader The stream reader
+   * @param inStream The underlying input stream
+   */
+
+  public SMFXStreamParser(
+    final SMFParserEventsType inEvents,
+    final URI inSource,
+    final XMLStreamReader inReader,
+    final InputStream inStream)
+  {
+    this.events =
+      Objects.requireNonNull(inEvents, "events");
+    this.source =
+      Objects.requireNonNull(inSource, "inSource");
+    this.reader =
+      Objects.requireNonNull(inReader, "reader");
+    this.stream =
+      Objects.requireNonNull(inStream, "stream");
+
+    this.sourceOpt = Optional.of(this.source);
+    this.componentIndices = new int[COMPONENT_NAMES.length];
+    this.triangleIndices = new int[TRIANGLE_NAMES.length];
+    this.componentIndicesCount = -1;
+    this.triangleIndicesCount = -1;
+    this.namespaceURI = SMFX.namespaceURI2p0();
+    this.version = SMFFormatVersion.of(2, 0);
+  }
+
+  private static String valueElementName(
+    final SMFAttribute attribute)
+  {
+    switch (attribute.componentType()) {
+      case ELEMENT_TYPE_INTEGER_SIGNED:
+        return "AttributeIntegerSigned" + attribute.componentCount();
+      case ELEMENT_TYPE_INTEGER_UNSIGNED:
+        return "AttributeIntegerUnsigned" + attribute.componentCount();
+      case ELEMENT_TYPE_FLOATING:
+        return "AttributeFloat" + attribute.componentCount();
+    }
+    throw new IllegalStateException(
+      String.format("Unrecognized component type: %s", attribute.componentType()));
+  }
+
+  @Override
+  public void parse()
+  {
+    try {
+      this.parseDocument();
+      LOG.debug("parsing completed");
+    } catch (final ParseFailure e) {
+      this.events.onError(SMFParseError.of(
+        e.lexical,
+        e.getMessage(),
+        Optional.ofNullable((Exception) e.getCause())
+      ));
+      if (e instanceof ErrorLimitReached) {
+        this.events.onFinish();
+      }
+    } catch (final XMLStreamException e) {
+      this.events.onError(SMFParseError.of(
+        this.lexicalOf(e.getLocation()),
+        e.getMessage(),
+        Optional.of(e)
+      ));
+    } catch (final Exception e) {
+      this.events.onError(SMFParseErrors.errorException(e));
+    }
+  }
+
+  private LexicalPosition<URI> lexicalOf(
+    final Location location)
+  {
+    if (location == null) {
+      return LexicalPosition.of(-1, -1, this.sourceOpt);
+    }
+    return LexicalPosition.of(
+      location.getLineNumber(),
+      location.getColumnNumber(),
+      this.sourceOpt);
+  }
+
+  private LexicalPosition<URI> lexical()
+  {
+    return this.lexicalOf(this.reader.getLocation());
+  }
+
+  private ParseFailure failure(
+    final String message)
+  {
+    return new ParseFailure(this.lexical(), message, null);
+  }
+
+  private ParseFailure failure(
+    final Exception cause)
+  {
+    return new ParseFailure(this.lexical(), cause.getMessage(), cause);
+  }
+
+  private void parseDocument()
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+    while (r.hasNext()) {
+      final int event = r.next();
+      switch (event) {
+        case XMLStreamConstants.DTD:
+          throw this.failure("Document type declarations are not permitted");
+        case XMLStreamConstants.START_ELEMENT:
+          if (SMFX.namespaceURI2p1().equals(r.getNamespaceURI())) {
+            this.namespaceURI = SMFX.namespaceURI2p1();
+            this.version = SMFFormatVersion.of(2, 1);
+          }
+          this.packedPermitted = SMFX.supportsPacked(this.namespaceURI);
+          this.checkStart("SMF");
+          if (this.parseSMF()) {
+            this.parseEpilogue();
+          } else {
+            r.close();
+          }
+          return;
+        default:
+          break;
+      }
+    }
+    throw this.failure("Document has no root element");
+  }
+
+  private void parseEpilogue()
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+    while (r.hasNext()) {
+      if (r.next() == XMLStreamConstants.DTD) {
+        throw this.failure("Document type declarations are not permitted");
+      }
+    }
+  }
+
+  private void checkStart(
+    final String name)
+    throws ParseFailure
+  {
+    if (!this.isStart(this.reader.getEventType(), name)) {
+      throw this.unexpectedElement(name);
+    }
+  }
+
+  private boolean isStart(
+    final int event,
+    final String name)
+  {
+    final var r = this.reader;
+    return event == XMLStreamConstants.START_ELEMENT
+      && name.equals(r.getLocalName())
+      && this.namespaceURI.equals(r.getNamespaceURI());
+  }
+
+  private ParseFailure unexpectedElement(
+    final String expected)
+  {
+    final var r = this.reader;
+    if (r.getEventType() == XMLStreamConstants.END_ELEMENT) {
+      return this.failure(String.format(
+        "Unexpected end of element {%s}%s; expected an element {%s}%s",
+        r.getNamespaceURI(),
+        r.getLocalName(),
+        this.namespaceURI,
+        expected));
+    }
+    return this.failure(String.format(
+      "Unexpected element {%s}%s; expected {%s}%s",
+      r.getNamespaceURI(),
+      r.getLocalName(),
+      this.namespaceURI,
+      expected));
+  }
+
+  private void finishEmpty()
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+    final var name = r.getLocalName();
+    if (r.nextTag() != XMLStreamConstants.END_ELEMENT) {
+      throw this.failure(String.format(
+        "Unexpected element {%s}%s; element %s must be empty",
+        r.getNamespaceURI(),
+        r.getLocalName(),
+        name));
+    }
+  }
+
+  private String attribute(
+    final String name)
+    throws ParseFailure
+  {
+    final var value = this.reader.getAttributeValue(null, name);
+    if (value == null) {
+      throw this.failure(String.format(
+        "Element %s is missing the required attribute '%s'",
+        this.reader.getLocalName(),
+        name));
+    }
+    return value;
+  }
+
+  /**
+   * Parse the root element. If the receiver declines the body, parsing stops
+   * immediately after the header and nothing further is read.
+   *
+   * @return {@code true} if the whole root element was parsed
+   */
+
+  private boolean parseSMF()
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+
+    this.events.onStart();
+    this.eventsHeader =
+      this.events.onVersionReceived(this.version)
+        .orElse(new SMFParserEventsHeaderIgnoringReceiver(this.events));
+
+    r.nextTag();
+    this.checkStart("Header");
+    this.parseHeader();
+
+    this.triangleTracker =
+      new SMFTriangleTracker(
+        (lexical, message) -> {
+          this.events.onError(
+            SMFParseError.of(lexical, message, Optional.empty()));
+        },
+        this.header.vertexCount(),
+        this.header.triangles().triangleCount());
+
+    final var eventsBodyOpt = this.eventsHeader.onHeaderParsed(this.header);
+    if (eventsBodyOpt.isEmpty()) {
+      this.events.onFinish();
+      return false;
+    }
+    this.eventsBody = eventsBodyOpt.get();
+
+    int event = r.nextTag();
+    if (this.isStart(event, "VertexDataNonInterleaved")) {
+      this.parseVertexDataNonInterleaved();
+      event = r.nextTag();
+    }
+    if (this.isStart(event, "Triangles")) {
+      this.parseTriangles();
+      event = r.nextTag();
+    }
+    while (this.isStart(event, "Metadata")) {
+      this.parseMetadata();
+      event = r.nextTag();
+    }
+    if (event != XMLStreamConstants.END_ELEMENT) {
+      throw this.unexpectedElement("Metadata");
+    }
+
+    this.triangleTracker.check(this.lexical());
+    this.events.onFinish();
+    return true;
+  }
+
+  private void parseHeader()
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+    final var builder = SMFHeader.builder();
+
+    try {
+      builder.setVertexCount(
+        Long.parseUnsignedLong(this.attribute("vertexCount")));
+
+      final var endianness = this.attribute("endianness");
+      switch (endianness) {
+        case "BIG_ENDIAN": {
+          builder.setDataByteOrder(ByteOrder.BIG_ENDIAN);
+          break;
+        }
+        case "LITTLE_ENDIAN": {
+          builder.setDataByteOrder(ByteOrder.LITTLE_ENDIAN);
+          break;
+        }
+        default: {
+          throw new IllegalArgumentException(
+            String.format("Unrecognized endianness: %s", endianness));
+        }
+      }
+    } catch (final IllegalArgumentException e) {
+      throw this.failure(e);
+    }
+
+    r.nextTag();
+    this.checkStart("CoordinateSystem");
+    builder.setCoordinateSystem(this.parseCoordinateSystem());
+
+    r.nextTag();
+    this.checkStart("TriangleSpecification");
+    builder.setTriangles(this.parseTriangleSpecification());
+
+    int event = r.nextTag();
+    if (this.isStart(event, "SchemaIdentifier")) {
+      builder.setSchemaIdentifier(this.parseSchemaIdentifier());
+      event = r.nextTag();
+    }
+
+    if (!this.isStart(event, "Attributes")) {
+      throw this.unexpectedElement("Attributes");
+    }
+    builder.setAttributesInOrder(this.parseAttributes());
+
+    if (r.nextTag() != XMLStreamConstants.END_ELEMENT) {
+      throw this.failure(String.format(
+        "Unexpected element {%s}%s in Header",
+        r.getNamespaceURI(),
+        r.getLocalName()));
+    }
+
+    try {
+      this.header = builder.build();
+    } catch (final IllegalArgumentException | IllegalStateException e) {
+      throw this.failure(e);
+    }
+  }
+
+  private SMFCoordinateSystem parseCoordinateSystem()
+    throws XMLStreamException, ParseFailure
+  {
+    final SMFCoordinateSystem result;
+    try {
+      final var right =
+        CAxis.valueOf(this.attribute("right"));
+      final var up =
+        CAxis.valueOf(this.attribute("up"));
+      final var forward =
+        CAxis.valueOf(this.attribute("forward"));
+      final var winding =
+        SMFFaceWindingOrder.valueOf(this.attribute("windingOrder"));
+
+      result = SMFCoordinateSystem.builder()
+        .setAxes(CAxisSystem.of(right, up, forward))
+        .setWindingOrder(winding)
+        .build();
+    } catch (final IllegalArgumentException e) {
+      throw this.failure(e);
+    }
+
+    this.finishEmpty();
+    return result;
+  }
+
+  private SMFTriangles parseTriangleSpecification()
+    throws XMLStreamException, ParseFailure
+  {
+    final long count;
+    final int sizeBits;
+    try {
+      count = Long.parseUnsignedLong(this.attribute("count"));
+      sizeBits = Integer.parseUnsignedInt(this.attribute("sizeBits"));
+    } catch (final NumberFormatException e) {
+      throw this.failure(e);
+    }
+
+    this.finishEmpty();
+
+    try {
+      return SMFTriangles.builder()
+        .setTriangleCount(count)
+        .setTriangleIndexSizeBits(sizeBits)
+        .build();
+    } catch (final Exception e) {
+      this.events.onError(SMFParseErrors.errorException(e));
+      return SMFTriangles.of(0L, 32);
+    }
+  }
+
+  private SMFSchemaIdentifier parseSchemaIdentifier()
+    throws XMLStreamException, ParseFailure
+  {
+    final SMFSchemaIdentifier result;
+    try {
+      result = SMFSchemaIdentifier.builder()
+        .setName(SMFSchemaName.of(this.attribute("name")))
+        .setVersionMajor(
+          Integer.parseUnsignedInt(this.attribute("versionMajor")))
+        .setVersionMinor(
+          Integer.parseUnsignedInt(this.attribute("versionMinor")))
+        .build();
+    } catch (final IllegalArgumentException e) {
+      throw this.failure(e);
+    }
+
+    this.finishEmpty();
+    return result;
+  }
+
+  private ArrayList<SMFAttribute> parseAttributes()
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+    final var attributes = new ArrayList<SMFAttribute>();
+
+    while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      this.checkStart("Attribute");
+      try {
+        attributes.add(
+          SMFAttribute.builder()
+            .setName(SMFAttributeName.of(this.attribute("name")))
+            .setComponentType(
+              SMFComponentType.valueOf(this.attribute("componentKind")))
+            .setComponentCount(
+              Integer.parseUnsignedInt(this.attribute("componentCount")))
+            .setComponentSizeBits(
+              Integer.parseUnsignedInt(this.attribute("componentSizeBits")))
+            .build());
+      } catch (final IllegalArgumentException e) {
+        throw this.failure(e);
+      }
+      this.finishEmpty();
+    }
+    return attributes;
+  }
+
+  private void parseVertexDataNonInterleaved()
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+    final Map<SMFAttributeName, SMFAttribute> attributes =
+      this.header.attributesByName();
+    final Set<SMFAttributeName> seen = new HashSet<>(attributes.size());
+
+    final SMFParserEventsDataAttributesNonInterleavedType eventsNI =
+      this.eventsBody.onAttributesNonInterleaved()
+        .orElse(new SMFParserEventsDataAttributesNonInterleavedIgnoringReceiver(
+          this.eventsBody));
+
+    while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      this.checkStart("AttributeData");
+
+      final SMFAttributeName name;
+      try {
+        name = SMFAttributeName.of(this.attribute("name"));
+      } catch (final IllegalArgumentException e) {
+        throw this.failure(e);
+      }
+
+      final var attribute = attributes.get(name);
+      if (attribute == null) {
+        throw this.failure(String.format(
+          "Data was provided for an undeclared attribute '%s'",
+          name.value()));
+      }
+      if (!seen.add(name)) {
+        throw this.failure(String.format(
+          "Data was provided more than once for attribute '%s'",
+          name.value()));
+      }
+
+      final SMFParserEventsDataAttributeValuesType eventsValues =
+        eventsNI.onDataAttributeStart(attribute)
+          .orElse(new SMFParserEventsDataAttributeValuesIgnoringReceiver(
+            eventsNI));
+
+      this.parseAttributeValues(attribute, eventsValues);
+      eventsValues.onDataAttributeValueFinish();
+    }
+
+    eventsNI.onDataAttributesNonInterleavedFinish();
+  }
+
+  private void parseAttributeValues(
+    final SMFAttribute attribute,
+    final SMFParserEventsDataAttributeValuesType values)
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+    final var elementName = valueElementName(attribute);
+    final var namespace = this.namespaceURI;
+    final var type = attribute.componentType();
+    final var count = attribute.componentCount();
+
+    int event = r.nextTag();
+    if (this.packedPermitted && this.isStart(event, "Packed")) {
+      this.parsePacked(
+        new SMFXPackedAttributeValues(
+          attribute, this.header.vertexCount(), values));
+      this.finishAfterPacked();
+      return;
+    }
+
+    this.componentIndicesCount = -1;
+
+    for (; event == XMLStreamConstants.START_ELEMENT; event = r.nextTag()) {
+      if (!(elementName.equals(r.getLocalName())
+        && namespace.equals(r.getNamespaceURI()))) {
+        throw this.unexpectedElement(elementName);
+      }
+
+      this.resolveComponentIndices(count);
+
+      try {
+        switch (type) {
+          case ELEMENT_TYPE_FLOATING: {
+            this.deliverFloat(values, count);
+            break;
+          }
+          case ELEMENT_TYPE_INTEGER_SIGNED: {
+            this.deliverIntegerSigned(values, count);
+            break;
+          }
+          case ELEMENT_TYPE_INTEGER_UNSIGNED: {
+            this.deliverIntegerUnsigned(values, count);
+            break;
+          }
+        }
+      } catch (final NumberFormatException e) {
+        throw this.failure(e);
+      }
+
+      this.finishEmpty();
+    }
+  }
+
+  /**
+   * Resolve the positions of the component attributes on the current element.
+   * The positions resolved for the previous element are reused if the current
+   * element has the same number of attributes and the names at the resolved
+   * positions still match; this is the common case as serializers write
+   * attributes in a fixed order.
+   */
+
+  private void resolveComponentIndices(
+    final int count)
+    throws ParseFailure
+  {
+    this.componentIndicesCount =
+      this.resolveIndices(
+        COMPONENT_NAMES,
+        count,
+        this.componentIndices,
+        this.componentIndicesCount);
+  }
+
+  private int resolveIndices(
+    final String[] names,
+    final int count,
+    final int[] indices,
+    final int previousAttributeCount)
+    throws ParseFailure
+  {
+    final var r = this.reader;
+    final int attributeCount = r.getAttributeCount();
+
+    if (attributeCount == previousAttributeCount) {
+      boolean matches = true;
+      for (int index = 0; index < count; ++index) {
+        if (!names[index].equals(r.getAttributeLocalName(indices[index]))) {
+          matches = false;
+          break;
+        }
+      }
+      if (matches) {
+        return attributeCount;
+      }
+    }
+
+    for (int index = 0; index < count; ++index) {
+      indices[index] = -1;
+    }
+
+    for (int attr = 0; attr < attributeCount; ++attr) {
+      final var attrName = r.getAttributeLocalName(attr);
+      for (int index = 0; index < count; ++index) {
+        if (names[index].equals(attrName)) {
+          indices[index] = attr;
+          break;
+        }
+      }
+    }
+
+    for (int index = 0; index < count; ++index) {
+      if (indices[index] < 0) {
+        throw this.failure(String.format(
+          "Element %s is missing the required attribute '%s'",
+          r.getLocalName(),
+          names[index]));
+      }
+    }
+    return attributeCount;
+  }
+
+  private double componentDouble(
+    final int component)
+  {
+    return Double.parseDouble(
+      this.reader.getAttributeValue(this.componentIndices[component]));
+  }
+
+  private long componentSigned(
+    final int component)
+  {
+    return Long.parseLong(
+      this.reader.getAttributeValue(this.componentIndices[component]));
+  }
+
+  private long componentUnsigned(
+    final int component)
+  {
+    return Long.parseUnsignedLong(
+      this.reader.getAttributeValue(this.componentIndices[component]));
+  }
+
+  private void deliverFloat(
+    final SMFParserEventsDataAttributeValuesType values,
+    final int count)
+  {
+    switch (count) {
+      case 1: {
+        values.onDataAttributeValueFloat1(
+          this.componentDouble(0));
+        break;
+      }
+      case 2: {
+        values.onDataAttributeValueFloat2(
+          this.componentDouble(0),
+          this.componentDouble(1));
+        break;
+      }
+      case 3: {
+        values.onDataAttributeValueFloat3(
+          this.componentDouble(0),
+          this.componentDouble(1),
+          this.componentDouble(2));
+        break;
+      }
+      default: {
+        values.onDataAttributeValueFloat4(
+          this.componentDouble(0),
+          this.componentDouble(1),
+          this.componentDouble(2),
+          this.componentDouble(3));
+        break;
+      }
+    }
+  }
+
+  private void deliverIntegerSigned(
+    final SMFParserEventsDataAttributeValuesType values,
+    final int count)
+  {
+    switch (count) {
+      case 1: {
+        values.onDataAttributeValueIntegerSigned1(
+          this.componentSigned(0));
+        break;
+      }
+      case 2: {
+        values.onDataAttributeValueIntegerSigned2(
+          this.componentSigned(0),
+          this.componentSigned(1));
+        break;
+      }
+      case 3: {
+        values.onDataAttributeValueIntegerSigned3(
+          this.componentSigned(0),
+          this.componentSigned(1),
+          this.componentSigned(2));
+        break;
+      }
+      default: {
+        values.onDataAttributeValueIntegerSigned4(
+          this.componentSigned(0),
+          this.componentSigned(1),
+          this.componentSigned(2),
+          this.componentSigned(3));
+        break;
+      }
+    }
+  }
+
+  /*
+   * Unsigned values are delivered through the signed callbacks, in the same
+   * manner as the SAX handlers.
+   */
+
+  private void deliverIntegerUnsigned(
+    final SMFParserEventsDataAttributeValuesType values,
+    final int count)
+  {
+    switch (count) {
+      case 1: {
+        values.onDataAttributeValueIntegerSigned1(
+          this.componentUnsigned(0));
+        break;
+      }
+      case 2: {
+        values.onDataAttributeValueIntegerSigned2(
+          this.componentUnsigned(0),
+          this.componentUnsigned(1));
+        break;
+      }
+      case 3: {
+        values.onDataAttributeValueIntegerSigned3(
+          this.componentUnsigned(0),
+          this.componentUnsigned(1),
+          this.componentUnsigned(2));
+        break;
+      }
+      default: {
+        values.onDataAttributeValueIntegerSigned4(
+          this.componentUnsigned(0),
+          this.componentUnsigned(1),
+          this.componentUnsigned(2),
+          this.componentUnsigned(3));
+        break;
+      }
+    }
+  }
+
+  private void parseTriangles()
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+    final var namespace = this.namespaceURI;
+    final var tracker = this.triangleTracker;
+    final var indices = this.triangleIndices;
+
+    final SMFParserEventsDataTrianglesType eventsTriangles =
+      this.eventsBody.onTriangles()
+        .orElse(new SMFParserEventsDataTrianglesIgnoringReceiver(
+          this.eventsBody));
+
+    int event = r.nextTag();
+    if (this.packedPermitted && this.isStart(event, "Packed")) {
+      this.parsePacked(
+        new SMFXPackedTriangles(
+          this.header.triangles(), tracker, eventsTriangles, this::lexical));
+      this.finishAfterPacked();
+      eventsTriangles.onDataTrianglesFinish();
+      return;
+    }
+
+    this.triangleIndicesCount = -1;
+
+    final Supplier<LexicalPosition<URI>> lexical = this::lexical;
+    for (; event == XMLStreamConstants.START_ELEMENT; event = r.nextTag()) {
+      this.checkErrorLimit(eventsTriangles);
+      if (!("Triangle".equals(r.getLocalName())
+        && namespace.equals(r.getNamespaceURI()))) {
+        throw this.unexpectedElement("Triangle");
+      }
+
+      this.triangleIndicesCount =
+        this.resolveIndices(
+          TRIANGLE_NAMES,
+          TRIANGLE_NAMES.length,
+          indices,
+          this.triangleIndicesCount);
+
+      final long v0;
+      final long v1;
+      final long v2;
+      try {
+        v0 = Long.parseUnsignedLong(r.getAttributeValue(indices[0]));
+        v1 = Long.parseUnsignedLong(r.getAttributeValue(indices[1]));
+        v2 = Long.parseUnsignedLong(r.getAttributeValue(indices[2]));
+      } catch (final NumberFormatException e) {
+        throw this.failure(e);
+      }
+
+      tracker.addTriangle(lexical, v0, v1, v2);
+      eventsTriangles.onDataTriangle(v0, v1, v2);
+      this.finishEmpty();
+    }
+
+    eventsTriangles.onDataTrianglesFinish();
+  }
+
+  private void parsePacked(
+    final SMFXPackedComponents components)
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+
+    try {
+      final var decoder =
+        SMFXPackedDecoders.create(this.attribute("encoding"), components);
+
+      while (true) {
+        switch (r.next()) {
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+          case XMLStreamConstants.SPACE: {
+            this.checkErrorLimit(this.events);
+            decoder.onCharacters(
+              r.getTextCharacters(),
+              r.getTextStart(),
+              r.getTextLength());
+            break;
+          }
+          case XMLStreamConstants.COMMENT:
+          case XMLStreamConstants.PROCESSING_INSTRUCTION: {
+            break;
+          }
+          case XMLStreamConstants.END_ELEMENT: {
+            decoder.finish();
+            return;
+          }
+          default: {
+            throw this.failure("Packed data must consist only of text");
+          }
+        }
+      }
+    } catch (final IllegalArgumentException e) {
+      throw this.failure(e);
+    }
+  }
+
+  private void checkErrorLimit(
+    final SMFParserEventsErrorType receiver)
+    throws ParseFailure
+  {
+    if (receiver.errorLimitReached()) {
+      throw new ErrorLimitReached(this.lexical());
+    }
+  }
+
+  private void finishAfterPacked()
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+    if (r.nextTag() != XMLStreamConstants.END_ELEMENT) {
+      throw this.failure(String.format(
+        "Unexpected element {%s}%s; packed data must be the only child of its parent",
+        r.getNamespaceURI(),
+        r.getLocalName()));
+    }
+  }
+
+  private void parseMetadata()
+    throws XMLStreamException, ParseFailure
+  {
+    final var r = this.reader;
+
+    r.nextTag();
+    this.checkStart("SchemaIdentifier");
+    final var schemaId = this.parseSchemaIdentifier();
+
+    r.nextTag();
+    this.checkStart("Base64Data");
+
+    final byte[] data;
+    try {
+      data = Base64.getDecoder().decode(r.getElementText().trim());
+    } catch (final IllegalArgumentException e) {
+      throw this.failure(e);
+    }
+
+    this.eventsBody.onMeta(schemaId)
+      .ifPresent(e -> e.onMetaData(schemaId, data));
+
+    if (r.nextTag() != XMLStreamConstants.END_ELEMENT) {
+      throw this.failure(String.format(
+        "Unexpected element {%s}%s in Metadata",
+        r.getNamespaceURI(),
+        r.getLocalName()));
+    }
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    try {
+      this.reader.close();
+    } catch (final XMLStreamException e) {
+      throw new IOException(e);
+    } finally {
+      this.stream.close();
+    }
+  }
+
+  private static class ParseFailure extends Exception
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final LexicalPosition<URI> lexical;
+
+    ParseFailure(
+      final LexicalPosition<URI> inLexical,
+      final String message,
+      final Exception cause)
+    {
+      super(message, cause);
+      this.lexical = Objects.requireNonNull(inLexical, "lexical");
+    }
+  }
+
+  /**
+   * Raised once the receiver has stopped accepting errors. Unlike other
+   * failures, the receiver is still told that parsing has finished.
+   */
+
+  private static final class ErrorLimitReached extends ParseFailure
+  {
+    private static final long serialVersionUID = 1L;
+
+    ErrorLimitReached(
+      final LexicalPosition<URI> inLexical)
+    {
+      super(inLexical, "Too many errors; parsing was stopped", null);
+    }
+  }
+}
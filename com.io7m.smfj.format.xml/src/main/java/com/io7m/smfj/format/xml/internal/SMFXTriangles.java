@@ -21,6 +21,7 @@ import com.io7m.blackthorne.api.BTElementHandlerConstructorType;
 import com.io7m.blackthorne.api.BTElementHandlerType;
 import com.io7m.blackthorne.api.BTElementParsingContextType;
 import com.io7m.blackthorne.api.BTQualifiedName;
+import com.io7m.smfj.core.SMFTriangles;
 import com.io7m.smfj.core.SMFVoid;
 import com.io7m.smfj.format.support.SMFTriangleTracker;
 import com.io7m.smfj.parser.api.SMFParserEventsBodyType;
@@ -36,13 +37,21 @@ public final class SMFXTriangles
 {
   private final SMFParserEventsBodyType eventsBody;
   private final SMFTriangleTracker triangleTracker;
+  private final String namespaceURI;
+  private final SMFTriangles triangles;
   private SMFParserEventsDataTrianglesType eventsTriangles;
 
   public SMFXTriangles(
     final BTElementParsingContextType context,
+    final String inNamespaceURI,
+    final SMFTriangles inTriangles,
     final SMFTriangleTracker inTriangleTracker,
     final SMFParserEventsBodyType inBodyEvents)
   {
+    this.namespaceURI =
+      Objects.requireNonNull(inNamespaceURI, "namespaceURI");
+    this.triangles =
+      Objects.requireNonNull(inTriangles, "triangles");
     this.triangleTracker =
       Objects.requireNonNull(inTriangleTracker, "triangleTracker");
     this.eventsBody =
@@ -53,13 +62,30 @@ public final class SMFXTriangles
   public Map<BTQualifiedName, BTElementHandlerConstructorType<?, ?>> onChildHandlersRequested(
     final BTElementParsingContextType context)
   {
-    return Map.ofEntries(
-      Map.entry(
-        BTQualifiedName.of(SMFX.namespaceURI2p0(), "Triangle"),
+    final var triangle =
+      Map.<BTQualifiedName, BTElementHandlerConstructorType<?, ?>>entry(
+        BTQualifiedName.of(this.namespaceURI, "Triangle"),
         c -> new SMFXTriangle(
           context,
           this.triangleTracker,
           this.eventsTriangles)
+      );
+
+    if (!SMFX.supportsPacked(this.namespaceURI)) {
+      return Map.ofEntries(triangle);
+    }
+
+    return Map.ofEntries(
+      triangle,
+      Map.entry(
+        BTQualifiedName.of(this.namespaceURI, "Packed"),
+        c -> new SMFXPacked(
+          c,
+          new SMFXPackedTriangles(
+            this.triangles,
+            this.triangleTracker,
+            this.eventsTriangles,
+            () -> SMFXLexical.ofLocator(c.documentLocator())))
       )
     );
   }
@@ -22,6 +22,8 @@ import com.io7m.smfj.core.SMFFormatVersion;
 import com.io7m.smfj.core.SMFHeader;
 import com.io7m.smfj.core.SMFSchemaIdentifier;
 import com.io7m.smfj.core.SMFWarningType;
+import com.io7m.smfj.parser.api.SMFErrorCollector;
+import com.io7m.smfj.parser.api.SMFErrorLimits;
 import com.io7m.smfj.parser.api.SMFParserEventsBodyType;
 import com.io7m.smfj.parser.api.SMFParserEventsDataAttributeValuesType;
 import com.io7m.smfj.parser.api.SMFParserEventsDataAttributesNonInterleavedType;
@@ -35,7 +37,6 @@ import com.io7m.smfj.serializer.api.SMFSerializerType;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -54,18 +55,17 @@ public final class SMFFCopier
   SMFParserEventsDataAttributeValuesType
 {
   private final SMFSerializerType serializer;
-  private List<SMFWarningType> warnings;
-  private List<SMFErrorType> errors;
+  private final SMFErrorCollector errors;
   private SMFSerializerDataAttributesNonInterleavedType serializer_data_noninterleaved;
   private SMFSerializerDataTrianglesType serializer_triangles;
   private SMFSerializerDataAttributesValuesType serializer_attribute;
 
   private SMFFCopier(
-    final SMFSerializerType in_serializer)
+    final SMFSerializerType in_serializer,
+    final SMFErrorLimits in_limits)
   {
     this.serializer = Objects.requireNonNull(in_serializer, "Serializer");
-    this.errors = new ArrayList<>();
-    this.warnings = new ArrayList<>();
+    this.errors = SMFErrorCollector.create(in_limits);
   }
 
   /**
@@ -79,14 +79,31 @@ public final class SMFFCopier
   public static SMFFCopierType create(
     final SMFSerializerType in_serializer)
   {
-    return new SMFFCopier(in_serializer);
+    return create(in_serializer, SMFErrorLimits.builder().build());
+  }
+
+  /**
+   * Create a new copier. Parsing will be asked to stop once the error limit
+   * has been reached.
+   *
+   * @param in_serializer The serializer
+   * @param in_limits     The limits on the number of recorded errors and
+   *                      warnings
+   *
+   * @return A new copier
+   */
+
+  public static SMFFCopierType create(
+    final SMFSerializerType in_serializer,
+    final SMFErrorLimits in_limits)
+  {
+    return new SMFFCopier(in_serializer, in_limits);
   }
 
   @Override
   public void onStart()
   {
     this.errors.clear();
-    this.warnings.clear();
   }
 
   @Override
@@ -110,14 +127,20 @@ public final class SMFFCopier
   public void onError(
     final SMFErrorType e)
   {
-    this.errors.add(e);
+    this.errors.addError(e);
   }
 
   @Override
   public void onWarning(
     final SMFWarningType w)
   {
-    this.warnings.add(w);
+    this.errors.addWarning(w);
+  }
+
+  @Override
+  public boolean errorLimitReached()
+  {
+    return this.errors.errorLimitReached();
   }
 
   @Override
@@ -330,13 +353,13 @@ public final class SMFFCopier
   @Override
   public List<SMFErrorType> errors()
   {
-    return List.copyOf(this.errors);
+    return this.errors.errors();
   }
 
   @Override
   public List<SMFWarningType> warnings()
   {
-    return List.copyOf(this.warnings);
+    return this.errors.warnings();
   }
 
   @Override
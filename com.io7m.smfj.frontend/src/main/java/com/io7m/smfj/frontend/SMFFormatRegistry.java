@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.frontend;
+
+import com.io7m.smfj.core.SMFFormatVersion;
+import com.io7m.smfj.parser.api.SMFParserProviderType;
+import com.io7m.smfj.serializer.api.SMFSerializerProviderType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.SortedSet;
+
+/**
+ * An immutable registry of parser and serializer providers, indexed by
+ * format name, suffix, and MIME type.
+ *
+ * <p>The process-wide registry returned by {@link #serviceLoaded()} is
+ * built from {@link ServiceLoader} the first time it is requested and is
+ * shared by all subsequent lookups.</p>
+ */
+
+public final class SMFFormatRegistry
+{
+  private final SMFProviderIndex<SMFParserProviderType> parsers;
+  private final SMFProviderIndex<SMFSerializerProviderType> serializers;
+
+  private SMFFormatRegistry(
+    final List<SMFParserProviderType> in_parsers,
+    final List<SMFSerializerProviderType> in_serializers)
+  {
+    this.parsers = new SMFProviderIndex<>(
+      in_parsers,
+      SMFParserProviderType::parserFormat,
+      SMFParserProviderType::parserSupportedVersions);
+    this.serializers = new SMFProviderIndex<>(
+      in_serializers,
+      SMFSerializerProviderType::serializerFormat,
+      SMFSerializerProviderType::serializerSupportedVersions);
+  }
+
+  /**
+   * Create a registry from the given providers.
+   *
+   * @param parsers     The parser providers
+   * @param serializers The serializer providers
+   *
+   * @return A new registry
+   */
+
+  public static SMFFormatRegistry create(
+    final List<SMFParserProviderType> parsers,
+    final List<SMFSerializerProviderType> serializers)
+  {
+    return new SMFFormatRegistry(parsers, serializers);
+  }
+
+  /**
+   * @return The process-wide registry of providers available via
+   * {@link ServiceLoader}
+   */
+
+  public static SMFFormatRegistry serviceLoaded()
+  {
+    return ServiceLoaded.REGISTRY;
+  }
+
+  private static <T> List<T> load(
+    final Class<T> clazz)
+  {
+    final List<T> providers = new ArrayList<>(8);
+    ServiceLoader.load(clazz).forEach(providers::add);
+    return providers;
+  }
+
+  /**
+   * @return The parser providers, in the order they were registered
+   */
+
+  public List<SMFParserProviderType> parserProviders()
+  {
+    return this.parsers.providers();
+  }
+
+  /**
+   * @return The serializer providers, in the order they were registered
+   */
+
+  public List<SMFSerializerProviderType> serializerProviders()
+  {
+    return this.serializers.providers();
+  }
+
+  /**
+   * @param provider A registered parser provider
+   *
+   * @return The versions supported by the given parser provider
+   */
+
+  public SortedSet<SMFFormatVersion> parserVersions(
+    final SMFParserProviderType provider)
+  {
+    return this.parsers.versions(provider);
+  }
+
+  /**
+   * @param provider A registered serializer provider
+   *
+   * @return The versions supported by the given serializer provider
+   */
+
+  public SortedSet<SMFFormatVersion> serializerVersions(
+    final SMFSerializerProviderType provider)
+  {
+    return this.serializers.versions(provider);
+  }
+
+  /**
+   * @param name The format name
+   *
+   * @return The parser provider with the given format name
+   */
+
+  public Optional<SMFParserProviderType> parserForName(
+    final String name)
+  {
+    return this.parsers.byName(name);
+  }
+
+  /**
+   * @param suffix The file suffix, without a leading dot
+   *
+   * @return The parser provider with the given file suffix
+   */
+
+  public Optional<SMFParserProviderType> parserForSuffix(
+    final String suffix)
+  {
+    return this.parsers.bySuffix(suffix);
+  }
+
+  /**
+   * @param mime The MIME type
+   *
+   * @return The parser provider with the given MIME type
+   */
+
+  public Optional<SMFParserProviderType> parserForMimeType(
+    final String mime)
+  {
+    return this.parsers.byMimeType(mime);
+  }
+
+  /**
+   * @param name The format name
+   *
+   * @return The serializer provider with the given format name
+   */
+
+  public Optional<SMFSerializerProviderType> serializerForName(
+    final String name)
+  {
+    return this.serializers.byName(name);
+  }
+
+  /**
+   * @param suffix The file suffix, without a leading dot
+   *
+   * @return The serializer provider with the given file suffix
+   */
+
+  public Optional<SMFSerializerProviderType> serializerForSuffix(
+    final String suffix)
+  {
+    return this.serializers.bySuffix(suffix);
+  }
+
+  /**
+   * @param mime The MIME type
+   *
+   * @return The serializer provider with the given MIME type
+   */
+
+  public Optional<SMFSerializerProviderType> serializerForMimeType(
+    final String mime)
+  {
+    return this.serializers.byMimeType(mime);
+  }
+
+  private static final class ServiceLoaded
+  {
+    private static final SMFFormatRegistry REGISTRY =
+      create(
+        load(SMFParserProviderType.class),
+        load(SMFSerializerProviderType.class));
+
+    private ServiceLoaded()
+    {
+
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.frontend;
+
+import com.io7m.smfj.core.SMFFormatDescription;
+import com.io7m.smfj.core.SMFFormatVersion;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * An immutable index of providers by format name, suffix, and MIME type.
+ * Where more than one provider has the same key, the provider supporting
+ * the highest format version is indexed, with earlier providers winning
+ * ties.
+ *
+ * @param <T> The type of providers
+ */
+
+final class SMFProviderIndex<T>
+{
+  private final List<T> providers;
+  private final Map<T, SortedSet<SMFFormatVersion>> versions;
+  private final Map<String, T> by_name;
+  private final Map<String, T> by_suffix;
+  private final Map<String, T> by_mime;
+
+  SMFProviderIndex(
+    final List<T> in_providers,
+    final Function<T, SMFFormatDescription> in_format,
+    final Function<T, SortedSet<SMFFormatVersion>> in_versions)
+  {
+    Objects.requireNonNull(in_providers, "providers");
+    Objects.requireNonNull(in_format, "format");
+    Objects.requireNonNull(in_versions, "versions");
+
+    this.providers = List.copyOf(in_providers);
+    this.versions = new IdentityHashMap<>(this.providers.size());
+    this.by_name = new HashMap<>(this.providers.size());
+    this.by_suffix = new HashMap<>(this.providers.size());
+    this.by_mime = new HashMap<>(this.providers.size());
+
+    for (final T provider : this.providers) {
+      this.versions.put(
+        provider,
+        Collections.unmodifiableSortedSet(
+          new TreeSet<>(in_versions.apply(provider))));
+    }
+
+    for (final T provider : this.providers) {
+      final SMFFormatDescription format = in_format.apply(provider);
+      this.index(this.by_name, format.name(), provider);
+      this.index(this.by_suffix, format.suffix(), provider);
+      this.index(this.by_mime, format.mimeType(), provider);
+    }
+  }
+
+  private void index(
+    final Map<String, T> map,
+    final String key,
+    final T provider)
+  {
+    final T existing = map.get(key);
+    if (existing == null || this.isNewer(provider, existing)) {
+      map.put(key, provider);
+    }
+  }
+
+  private boolean isNewer(
+    final T provider,
+    final T existing)
+  {
+    final SortedSet<SMFFormatVersion> provider_versions =
+      this.versions.get(provider);
+    final SortedSet<SMFFormatVersion> existing_versions =
+      this.versions.get(existing);
+
+    if (provider_versions.isEmpty()) {
+      return false;
+    }
+    if (existing_versions.isEmpty()) {
+      return true;
+    }
+    return provider_versions.last().compareTo(existing_versions.last()) > 0;
+  }
+
+  List<T> providers()
+  {
+    return this.providers;
+  }
+
+  SortedSet<SMFFormatVersion> versions(
+    final T provider)
+  {
+    Objects.requireNonNull(provider, "provider");
+    final SortedSet<SMFFormatVersion> result = this.versions.get(provider);
+    if (result == null) {
+      throw new IllegalArgumentException(
+        "Provider is not registered: " + provider);
+    }
+    return result;
+  }
+
+  Optional<T> byName(
+    final String name)
+  {
+    return Optional.ofNullable(
+      this.by_name.get(Objects.requireNonNull(name, "name")));
+  }
+
+  Optional<T> bySuffix(
+    final String suffix)
+  {
+    return Optional.ofNullable(
+      this.by_suffix.get(Objects.requireNonNull(suffix, "suffix")));
+  }
+
+  Optional<T> byMimeType(
+    final String mime)
+  {
+    return Optional.ofNullable(
+      this.by_mime.get(Objects.requireNonNull(mime, "mime")));
+  }
+}
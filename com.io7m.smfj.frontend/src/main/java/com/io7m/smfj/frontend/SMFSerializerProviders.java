@@ -17,10 +17,9 @@
 package com.io7m.smfj.frontend;
 
 import com.io7m.smfj.serializer.api.SMFSerializerProviderType;
-import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.ServiceLoader;
-import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,61 +55,51 @@ public final class SMFSerializerProviders
     final Optional<String> format_opt,
     final String file)
   {
-    final ServiceLoader<SMFSerializerProviderType> loader =
-      ServiceLoader.load(SMFSerializerProviderType.class);
+    return findSerializerProvider(
+      SMFFormatRegistry.serviceLoaded(), format_opt, file);
+  }
 
+  /**
+   * Try to find a serializer provider in the given registry. If a format name is
+   * not specified, the format is inferred from the suffix of the given file.
+   *
+   * @param registry   The provider registry
+   * @param format_opt An optional format name.
+   * @param file       A file name
+   *
+   * @return A serializer provider, if a suitable one is available
+   */
+
+  public static Optional<SMFSerializerProviderType> findSerializerProvider(
+    final SMFFormatRegistry registry,
+    final Optional<String> format_opt,
+    final String file)
+  {
+    Objects.requireNonNull(registry, "registry");
+    Objects.requireNonNull(format_opt, "format_opt");
+    Objects.requireNonNull(file, "file");
+
+    final Optional<SMFSerializerProviderType> result;
     if (!format_opt.isPresent()) {
       LOG.debug("attempting to infer format from file suffix");
       final int index = file.lastIndexOf('.');
-      if (index != -1) {
-        final String suffix = file.substring(index + 1);
-
-        final var providersWithFormat =
-          loader.stream()
-            .map(ServiceLoader.Provider::get)
-            .filter(p -> p.serializerFormat().suffix().equals(suffix))
-            .collect(Collectors.toList());
-
-        return findBestProviderFromList(providersWithFormat);
+      if (index == -1) {
+        LOG.error("File {} does not have a recognized suffix", file);
+        return Optional.empty();
       }
-
-      LOG.error("File {} does not have a recognized suffix", file);
+      result = registry.serializerForSuffix(file.substring(index + 1));
     } else {
       final String format = format_opt.get();
       LOG.debug("attempting to find provider for {}", format);
-
-      final var providersWithFormat =
-        loader.stream()
-          .map(ServiceLoader.Provider::get)
-          .filter(p -> p.serializerFormat().name().equals(format))
-          .collect(Collectors.toList());
-
-      return findBestProviderFromList(providersWithFormat);
+      result = registry.serializerForName(format);
     }
 
-    return Optional.empty();
-  }
-
-  private static Optional<SMFSerializerProviderType> findBestProviderFromList(
-    final List<SMFSerializerProviderType> providersWithFormat)
-  {
-    if (providersWithFormat.isEmpty()) {
+    if (result.isEmpty()) {
       LOG.error("no provider has the specified format");
-      return Optional.empty();
-    }
-
-    SMFSerializerProviderType providerBest = providersWithFormat.get(0);
-    for (final var providerNow : providersWithFormat) {
-      final var versionBest =
-        providerBest.serializerSupportedVersions().last();
-      final var versionNow =
-        providerNow.serializerSupportedVersions().last();
-      if (versionNow.compareTo(versionBest) > 0) {
-        providerBest = providerNow;
-      }
+      return result;
     }
 
-    LOG.debug("using provider: {}", providerBest);
-    return Optional.of(providerBest);
+    LOG.debug("using provider: {}", result.get());
+    return result;
   }
 }
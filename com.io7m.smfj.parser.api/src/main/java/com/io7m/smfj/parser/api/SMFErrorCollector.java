@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.parser.api;
+
+import com.io7m.jlexing.core.LexicalPositions;
+import com.io7m.smfj.core.SMFErrorType;
+import com.io7m.smfj.core.SMFWarningType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A collector of errors and warnings that records at most a bounded number of
+ * each. Messages received after a limit is reached are counted but not kept,
+ * and are summarized by a single extra message.
+ */
+
+public final class SMFErrorCollector
+{
+  private final SMFErrorLimits limits;
+  private final List<SMFErrorType> errors;
+  private final List<SMFWarningType> warnings;
+  private long errorCount;
+  private long warningCount;
+
+  private SMFErrorCollector(
+    final SMFErrorLimits inLimits)
+  {
+    this.limits = Objects.requireNonNull(inLimits, "limits");
+    this.errors = new ArrayList<>();
+    this.warnings = new ArrayList<>();
+  }
+
+  /**
+   * Create a new collector.
+   *
+   * @param limits The limits
+   *
+   * @return A new collector
+   */
+
+  public static SMFErrorCollector create(
+    final SMFErrorLimits limits)
+  {
+    return new SMFErrorCollector(limits);
+  }
+
+  /**
+   * @return The limits used by this collector
+   */
+
+  public SMFErrorLimits limits()
+  {
+    return this.limits;
+  }
+
+  /**
+   * Record an error.
+   *
+   * @param error The error
+   */
+
+  public void addError(
+    final SMFErrorType error)
+  {
+    Objects.requireNonNull(error, "error");
+    if (this.errors.size() < this.limits.errors()) {
+      this.errors.add(error);
+    }
+    this.errorCount = Math.addExact(this.errorCount, 1L);
+  }
+
+  /**
+   * Record a warning.
+   *
+   * @param warning The warning
+   */
+
+  public void addWarning(
+    final SMFWarningType warning)
+  {
+    Objects.requireNonNull(warning, "warning");
+    if (this.warnings.size() < this.limits.warnings()) {
+      this.warnings.add(warning);
+    }
+    this.warningCount = Math.addExact(this.warningCount, 1L);
+  }
+
+  /**
+   * Discard all recorded errors and warnings.
+   */
+
+  public void clear()
+  {
+    this.errors.clear();
+    this.warnings.clear();
+    this.errorCount = 0L;
+    this.warningCount = 0L;
+  }
+
+  /**
+   * @return The total number of errors received, including those that were
+   * not recorded
+   */
+
+  public long errorCount()
+  {
+    return this.errorCount;
+  }
+
+  /**
+   * @return The total number of warnings received, including those that were
+   * not recorded
+   */
+
+  public long warningCount()
+  {
+    return this.warningCount;
+  }
+
+  /**
+   * @return {@code true} if the error limit has been reached
+   */
+
+  public boolean errorLimitReached()
+  {
+    return this.errorCount >= this.limits.errors();
+  }
+
+  /**
+   * @return {@code true} if no errors have been received
+   */
+
+  public boolean hasNoErrors()
+  {
+    return this.errorCount == 0L;
+  }
+
+  /**
+   * @return The recorded errors, followed by a summary of the errors that
+   * were not recorded if the error limit was exceeded
+   */
+
+  public List<SMFErrorType> errors()
+  {
+    final long unrecorded = this.errorCount - (long) this.errors.size();
+    if (unrecorded == 0L) {
+      return List.copyOf(this.errors);
+    }
+
+    final List<SMFErrorType> result = new ArrayList<>(this.errors);
+    result.add(SMFParseError.of(
+      LexicalPositions.zero(),
+      String.format(
+        "The error limit (%d) was reached; %,d further errors were not recorded",
+        Integer.valueOf(this.limits.errors()),
+        Long.valueOf(unrecorded)),
+      Optional.empty()));
+    return List.copyOf(result);
+  }
+
+  /**
+   * @return The recorded warnings, followed by a summary of the warnings that
+   * were not recorded if the warning limit was exceeded
+   */
+
+  public List<SMFWarningType> warnings()
+  {
+    final long unrecorded = this.warningCount - (long) this.warnings.size();
+    if (unrecorded == 0L) {
+      return List.copyOf(this.warnings);
+    }
+
+    final List<SMFWarningType> result = new ArrayList<>(this.warnings);
+    result.add(SMFParseWarning.of(
+      LexicalPositions.zero(),
+      String.format(
+        "The warning limit (%d) was reached; %,d further warnings were not recorded",
+        Integer.valueOf(this.limits.warnings()),
+        Long.valueOf(unrecorded)),
+      Optional.empty()));
+    return List.copyOf(result);
+  }
+}
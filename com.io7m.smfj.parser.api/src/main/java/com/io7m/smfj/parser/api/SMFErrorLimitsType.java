@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.parser.api;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import org.immutables.value.Value;
+
+/**
+ * Limits on the number of errors and warnings that will be recorded for a
+ * single parse. Malformed files can produce an error for every element they
+ * contain, and recording all of them can easily require more memory than the
+ * mesh itself.
+ */
+
+@Value.Immutable
+@ImmutablesStyleType
+public interface SMFErrorLimitsType
+{
+  /**
+   * @return The maximum number of errors that will be recorded
+   */
+
+  @Value.Parameter
+  @Value.Default
+  default int errors()
+  {
+    return 1000;
+  }
+
+  /**
+   * @return The maximum number of warnings that will be recorded
+   */
+
+  @Value.Parameter
+  @Value.Default
+  default int warnings()
+  {
+    return 1000;
+  }
+
+  /**
+   * Check preconditions for the type.
+   */
+
+  @Value.Check
+  default void checkPreconditions()
+  {
+    if (this.errors() < 1) {
+      throw new IllegalArgumentException(
+        String.format("Error limit %d must be at least 1", this.errors()));
+    }
+    if (this.warnings() < 1) {
+      throw new IllegalArgumentException(
+        String.format("Warning limit %d must be at least 1", this.warnings()));
+    }
+  }
+}
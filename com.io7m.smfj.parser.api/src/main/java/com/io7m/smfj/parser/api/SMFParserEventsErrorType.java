@@ -44,4 +44,19 @@ public interface SMFParserEventsErrorType
 
   void onWarning(
     SMFWarningType w);
+
+  /**
+   * Parsers call this method periodically while parsing. A receiver that has
+   * received as many errors as it is prepared to record can return {@code true}
+   * to ask the parser to stop early; the parser will still call
+   * {@link SMFParserEventsType#onFinish()}.
+   *
+   * @return {@code true} if the receiver does not want to receive any further
+   * errors and parsing should stop
+   */
+
+  default boolean errorLimitReached()
+  {
+    return false;
+  }
 }
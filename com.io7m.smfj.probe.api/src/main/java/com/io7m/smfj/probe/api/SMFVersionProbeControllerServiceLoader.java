@@ -19,41 +19,42 @@ package com.io7m.smfj.probe.api;
 import com.io7m.smfj.core.SMFPartialLogged;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.ServiceLoader;
 import java.util.function.Supplier;
 
 /**
- * A probe controller that uses {@link ServiceLoader}.
+ * A probe controller that uses {@link ServiceLoader}. Providers are loaded
+ * once, when the controller is constructed.
  */
 
 public final class SMFVersionProbeControllerServiceLoader
   implements SMFVersionProbeControllerType
 {
+  private final List<SMFVersionProbeProviderType> probes;
+
   /**
    * Construct a new probe controller.
    */
 
   public SMFVersionProbeControllerServiceLoader()
-  {
-
-  }
-
-  @Override
-  public SMFPartialLogged<SMFVersionProbed> probe(
-    final Supplier<InputStream> streams)
   {
     final ServiceLoader<SMFVersionProbeProviderType> loader =
       ServiceLoader.load(SMFVersionProbeProviderType.class);
 
-    final Collection<SMFVersionProbeProviderType> probes =
-      new ArrayList<>(4);
+    final List<SMFVersionProbeProviderType> loaded = new ArrayList<>(4);
     final Iterator<SMFVersionProbeProviderType> iter = loader.iterator();
     while (iter.hasNext()) {
-      probes.add(iter.next());
+      loaded.add(iter.next());
     }
+    this.probes = List.copyOf(loaded);
+  }
 
-    return SMFVersionProbeControllers.probe(streams, probes);
+  @Override
+  public SMFPartialLogged<SMFVersionProbed> probe(
+    final Supplier<InputStream> streams)
+  {
+    return SMFVersionProbeControllers.probe(streams, this.probes);
   }
 }
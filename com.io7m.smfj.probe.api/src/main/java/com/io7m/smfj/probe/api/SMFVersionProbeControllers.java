@@ -23,9 +23,12 @@ import com.io7m.smfj.core.SMFPartialLogged;
 import com.io7m.smfj.core.SMFWarningType;
 import com.io7m.smfj.parser.api.SMFParseError;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -34,10 +37,24 @@ import static com.io7m.smfj.parser.api.SMFParseErrors.errorWithMessage;
 
 /**
  * Functions for implementing version probe controllers.
+ *
+ * <p>A file is opened once and a bounded prefix of it is read. Providers
+ * whose magic numbers match the prefix are tried first, followed by all of
+ * the remaining providers in their original order. The first provider to be
+ * tried receives the prefix followed by the rest of the already-open
+ * stream; the file is only re-opened if that provider fails and the file is
+ * larger than the prefix.</p>
  */
 
 final class SMFVersionProbeControllers
 {
+  /**
+   * The maximum number of bytes read from the start of a file before any
+   * provider is tried.
+   */
+
+  static final int PREFIX_SIZE = 4096;
+
   private SMFVersionProbeControllers()
   {
     throw new UnreachableCodeException();
@@ -58,21 +75,29 @@ final class SMFVersionProbeControllers
   {
     final List<SMFWarningType> warnings = new ArrayList<>();
     final List<SMFErrorType> errors = new ArrayList<>();
-    for (final SMFVersionProbeProviderType probe : probes) {
-      try (InputStream stream = streams.get()) {
-        final var r = probe.probe(stream);
-        if (r.isFailed()) {
-          errors.addAll(r.errors());
-          warnings.addAll(r.warnings());
-        } else {
-          return r;
+
+    final InputStream stream = streams.get();
+    try {
+      final byte[] prefix = stream.readNBytes(PREFIX_SIZE);
+      final Source source = new Source(streams, stream, prefix);
+
+      for (final SMFVersionProbeProviderType probe : order(prefix, probes)) {
+        try (InputStream input = source.open()) {
+          final var r = probe.probe(input);
+          if (r.isFailed()) {
+            errors.addAll(r.errors());
+            warnings.addAll(r.warnings());
+          } else {
+            return r;
+          }
+        } catch (final IOException e) {
+          errors.add(error(e));
         }
-      } catch (final IOException e) {
-        errors.add(SMFParseError.of(
-          LexicalPositions.zero(),
-          e.getMessage(),
-          Optional.of(e)));
       }
+    } catch (final IOException e) {
+      errors.add(error(e));
+    } finally {
+      close(stream, errors);
     }
 
     if (errors.isEmpty()) {
@@ -80,4 +105,95 @@ final class SMFVersionProbeControllers
     }
     return SMFPartialLogged.failed(errors, warnings);
   }
+
+  private static void close(
+    final InputStream stream,
+    final List<SMFErrorType> errors)
+  {
+    try {
+      stream.close();
+    } catch (final IOException e) {
+      final boolean reported =
+        errors.stream()
+          .anyMatch(error -> error.exception().orElse(null) == e);
+      if (!reported) {
+        errors.add(error(e));
+      }
+    }
+  }
+
+  private static SMFErrorType error(
+    final IOException e)
+  {
+    return SMFParseError.of(
+      LexicalPositions.zero(),
+      e.getMessage(),
+      Optional.of(e));
+  }
+
+  private static List<SMFVersionProbeProviderType> order(
+    final byte[] prefix,
+    final Iterable<SMFVersionProbeProviderType> probes)
+  {
+    final List<SMFVersionProbeProviderType> matched = new ArrayList<>();
+    final List<SMFVersionProbeProviderType> others = new ArrayList<>();
+    for (final SMFVersionProbeProviderType probe : probes) {
+      if (matchesAny(prefix, probe.probeMagicNumbers())) {
+        matched.add(probe);
+      } else {
+        others.add(probe);
+      }
+    }
+    matched.addAll(others);
+    return matched;
+  }
+
+  private static boolean matchesAny(
+    final byte[] prefix,
+    final List<byte[]> magics)
+  {
+    for (final byte[] magic : magics) {
+      if (magic.length > 0
+        && magic.length <= prefix.length
+        && Arrays.equals(magic, 0, magic.length, prefix, 0, magic.length)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The source of streams for successive providers.
+   */
+
+  private static final class Source
+  {
+    private final Supplier<InputStream> streams;
+    private final InputStream stream;
+    private final byte[] prefix;
+    private boolean stream_used;
+
+    Source(
+      final Supplier<InputStream> in_streams,
+      final InputStream in_stream,
+      final byte[] in_prefix)
+    {
+      this.streams = in_streams;
+      this.stream = in_stream;
+      this.prefix = in_prefix;
+    }
+
+    InputStream open()
+    {
+      if (this.prefix.length < PREFIX_SIZE) {
+        return new ByteArrayInputStream(this.prefix);
+      }
+      if (!this.stream_used) {
+        this.stream_used = true;
+        return new SequenceInputStream(
+          new ByteArrayInputStream(this.prefix), this.stream);
+      }
+      return this.streams.get();
+    }
+  }
 }
@@ -18,6 +18,7 @@ package com.io7m.smfj.probe.api;
 
 import com.io7m.smfj.core.SMFPartialLogged;
 import java.io.InputStream;
+import java.util.List;
 import org.osgi.annotation.versioning.ProviderType;
 
 /**
@@ -36,4 +37,18 @@ public interface SMFVersionProbeProviderType
    */
 
   SMFPartialLogged<SMFVersionProbed> probe(InputStream stream);
+
+  /**
+   * The magic numbers with which files that this provider can probe are
+   * expected to begin. Probe controllers try providers with a magic number
+   * matching the start of a file before any other providers. The returned
+   * arrays must not be modified.
+   *
+   * @return The list of magic numbers (empty if the format has none)
+   */
+
+  default List<byte[]> probeMagicNumbers()
+  {
+    return List.of();
+  }
 }
@@ -31,6 +31,8 @@ import com.io7m.smfj.core.SMFFormatVersion;
 import com.io7m.smfj.core.SMFHeader;
 import com.io7m.smfj.core.SMFSchemaIdentifier;
 import com.io7m.smfj.core.SMFWarningType;
+import com.io7m.smfj.parser.api.SMFErrorCollector;
+import com.io7m.smfj.parser.api.SMFErrorLimits;
 import com.io7m.smfj.parser.api.SMFParserEventsBodyType;
 import com.io7m.smfj.parser.api.SMFParserEventsDataAttributeValuesType;
 import com.io7m.smfj.parser.api.SMFParserEventsDataAttributesNonInterleavedType;
@@ -63,9 +65,8 @@ public final class SMFMemoryMeshProducer
     LoggerFactory.getLogger(SMFMemoryMeshProducer.class);
 
   private final List<Object> elements;
-  private final List<SMFErrorType> errors;
+  private final SMFErrorCollector errors;
   private final List<SMFMetadata> metadata;
-  private final List<SMFWarningType> warnings;
   private final List<Vector3L> triangles;
   private final Map<SMFAttributeName, SMFAttributeArrayType> arrays;
   private SMFAttribute attribute_current;
@@ -74,11 +75,11 @@ public final class SMFMemoryMeshProducer
   private boolean finished;
   private boolean started;
 
-  private SMFMemoryMeshProducer()
+  private SMFMemoryMeshProducer(
+    final SMFErrorLimits limits)
   {
     this.started = false;
-    this.errors = new ArrayList<>();
-    this.warnings = new ArrayList<>();
+    this.errors = SMFErrorCollector.create(limits);
     this.arrays = new HashMap<>();
     this.triangles = new ArrayList<>();
     this.metadata = new ArrayList<>();
@@ -91,21 +92,42 @@ public final class SMFMemoryMeshProducer
 
   public static SMFMemoryMeshProducerType create()
   {
-    return new SMFMemoryMeshProducer();
+    return create(SMFErrorLimits.builder().build());
+  }
+
+  /**
+   * Create a new memory mesh producer. Parsing will be asked to stop once the
+   * error limit has been reached.
+   *
+   * @param limits The limits on the number of recorded errors and warnings
+   *
+   * @return A new memory mesh producer
+   */
+
+  public static SMFMemoryMeshProducerType create(
+    final SMFErrorLimits limits)
+  {
+    return new SMFMemoryMeshProducer(limits);
   }
 
   @Override
   public void onError(
     final SMFErrorType e)
   {
-    this.errors.add(e);
+    this.errors.addError(e);
   }
 
   @Override
   public void onWarning(
     final SMFWarningType w)
   {
-    this.warnings.add(w);
+    this.errors.addWarning(w);
+  }
+
+  @Override
+  public boolean errorLimitReached()
+  {
+    return this.errors.errorLimitReached();
   }
 
   @Override
@@ -128,7 +150,7 @@ public final class SMFMemoryMeshProducer
   @Override
   public void onFinish()
   {
-    if (this.errors.isEmpty()) {
+    if (this.errors.hasNoErrors()) {
       for (final var arrayEntry : this.arrays.entrySet()) {
         final var attributeName = arrayEntry.getKey();
         if (!this.header.attributesByName().containsKey(attributeName)) {
@@ -161,13 +183,13 @@ public final class SMFMemoryMeshProducer
   @Override
   public List<SMFErrorType> errors()
   {
-    return List.copyOf(this.errors);
+    return this.errors.errors();
   }
 
   @Override
   public List<SMFWarningType> warnings()
   {
-    return List.copyOf(this.warnings);
+    return this.errors.warnings();
   }
 
   @Override
@@ -187,7 +209,7 @@ public final class SMFMemoryMeshProducer
     Preconditions.checkPrecondition(
       this.finished, "Mesh parsing has not yet finished");
 
-    if (this.errors.isEmpty()) {
+    if (this.errors.hasNoErrors()) {
       return this.mesh;
     }
     throw new IllegalStateException("Mesh parsing failed");
@@ -0,0 +1,420 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector2D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector2L;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector4D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector4L;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.smfj.core.SMFAttribute;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFComponentType;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating1;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating1Type;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating2;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating2Type;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3Type;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating4;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating4Type;
+import com.io7m.smfj.processing.api.SMFAttributeArrayIntegerSigned1;
+import com.io7m.smfj.processing.api.SMFAttributeArrayIntegerSigned2;
+import com.io7m.smfj.processing.api.SMFAttributeArrayIntegerSigned3;
+import com.io7m.smfj.processing.api.SMFAttributeArrayIntegerSigned4;
+import com.io7m.smfj.processing.api.SMFAttributeArrayIntegerUnsigned1;
+import com.io7m.smfj.processing.api.SMFAttributeArrayIntegerUnsigned2;
+import com.io7m.smfj.processing.api.SMFAttributeArrayIntegerUnsigned3;
+import com.io7m.smfj.processing.api.SMFAttributeArrayIntegerUnsigned4;
+import com.io7m.smfj.processing.api.SMFAttributeArrayType;
+import com.io7m.smfj.processing.api.SMFProcessingError;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.io7m.smfj.processing.api.SMFFilterCommandChecks.checkAttributeExists;
+
+/**
+ * Functions over attribute arrays of any type.
+ */
+
+final class SMFAttributeArrays
+{
+  private SMFAttributeArrays()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Construct a new array by selecting elements from an existing array. The
+   * element at index {@code i} of the result is the element at index
+   * {@code sources[i]} of {@code array}; elements may be selected more than
+   * once or not at all.
+   *
+   * @param array   The source array
+   * @param sources The source index of each element of the result
+   *
+   * @return A new array of the same type
+   */
+
+  static SMFAttributeArrayType gather(
+    final SMFAttributeArrayType array,
+    final int[] sources)
+  {
+    return array.<int[], SMFAttributeArrayType, RuntimeException>matchArray(
+      sources,
+      (s, a) -> SMFAttributeArrayFloating4.of(gather(a.values(), s)),
+      (s, a) -> SMFAttributeArrayFloating3.of(gather(a.values(), s)),
+      (s, a) -> SMFAttributeArrayFloating2.of(gather(a.values(), s)),
+      (s, a) -> SMFAttributeArrayFloating1.of(gather(a.values(), s)),
+      (s, a) -> SMFAttributeArrayIntegerUnsigned4.of(gather(a.values(), s)),
+      (s, a) -> SMFAttributeArrayIntegerUnsigned3.of(gather(a.values(), s)),
+      (s, a) -> SMFAttributeArrayIntegerUnsigned2.of(gather(a.values(), s)),
+      (s, a) -> SMFAttributeArrayIntegerUnsigned1.of(gather(a.values(), s)),
+      (s, a) -> SMFAttributeArrayIntegerSigned4.of(gather(a.values(), s)),
+      (s, a) -> SMFAttributeArrayIntegerSigned3.of(gather(a.values(), s)),
+      (s, a) -> SMFAttributeArrayIntegerSigned2.of(gather(a.values(), s)),
+      (s, a) -> SMFAttributeArrayIntegerSigned1.of(gather(a.values(), s)));
+  }
+
+  /**
+   * Apply {@link #gather(SMFAttributeArrayType, int[])} to every array of a
+   * mesh.
+   *
+   * @param arrays  The arrays
+   * @param sources The source index of each element of the results
+   *
+   * @return The new arrays
+   */
+
+  static Map<SMFAttributeName, SMFAttributeArrayType> gatherAll(
+    final Map<SMFAttributeName, SMFAttributeArrayType> arrays,
+    final int[] sources)
+  {
+    final Map<SMFAttributeName, SMFAttributeArrayType> result =
+      new HashMap<>(arrays.size());
+    for (final var entry : arrays.entrySet()) {
+      result.put(entry.getKey(), gather(entry.getValue(), sources));
+    }
+    return result;
+  }
+
+  /**
+   * Flatten a three-component floating point array into consecutive
+   * {@code (x, y, z)} triples.
+   *
+   * @param array The array
+   *
+   * @return The components of every element, in order
+   *
+   * @throws IllegalArgumentException If the array is not a three-component
+   *                                  floating point array
+   */
+
+  static double[] flatten3(
+    final SMFAttributeArrayType array)
+    throws IllegalArgumentException
+  {
+    if (!(array instanceof SMFAttributeArrayFloating3Type)) {
+      throw new IllegalArgumentException(
+        "Attribute must be a three-component floating point attribute");
+    }
+
+    final List<Vector3D> values =
+      ((SMFAttributeArrayFloating3Type) array).values();
+    final double[] result = new double[Math.multiplyExact(values.size(), 3)];
+    for (int index = 0; index < values.size(); ++index) {
+      final Vector3D value = values.get(index);
+      final int base = index * 3;
+      result[base] = value.x();
+      result[base + 1] = value.y();
+      result[base + 2] = value.z();
+    }
+    return result;
+  }
+
+  /**
+   * Flatten a four-component floating point array into consecutive
+   * {@code (x, y, z, w)} quadruples.
+   *
+   * @param array The array
+   *
+   * @return The components of every element, in order
+   *
+   * @throws IllegalArgumentException If the array is not a four-component
+   *                                  floating point array
+   */
+
+  static double[] flatten4(
+    final SMFAttributeArrayType array)
+    throws IllegalArgumentException
+  {
+    if (!(array instanceof SMFAttributeArrayFloating4Type)) {
+      throw new IllegalArgumentException(
+        "Attribute must be a four-component floating point attribute");
+    }
+
+    final List<Vector4D> values =
+      ((SMFAttributeArrayFloating4Type) array).values();
+    final double[] result = new double[Math.multiplyExact(values.size(), 4)];
+    for (int index = 0; index < values.size(); ++index) {
+      final Vector4D value = values.get(index);
+      final int base = index * 4;
+      result[base] = value.x();
+      result[base + 1] = value.y();
+      result[base + 2] = value.z();
+      result[base + 3] = value.w();
+    }
+    return result;
+  }
+
+  /**
+   * Flatten a floating point array of any component count into consecutive
+   * elements.
+   *
+   * @param array The array
+   *
+   * @return The components of every element, in order
+   *
+   * @throws IllegalArgumentException If the array is not a floating point
+   *                                  array
+   */
+
+  static double[] flattenFloating(
+    final SMFAttributeArrayType array)
+    throws IllegalArgumentException
+  {
+    if (array instanceof SMFAttributeArrayFloating1Type) {
+      final List<Double> values =
+        ((SMFAttributeArrayFloating1Type) array).values();
+      final double[] result = new double[values.size()];
+      for (int index = 0; index < values.size(); ++index) {
+        result[index] = values.get(index).doubleValue();
+      }
+      return result;
+    }
+
+    if (array instanceof SMFAttributeArrayFloating2Type) {
+      final List<Vector2D> values =
+        ((SMFAttributeArrayFloating2Type) array).values();
+      final double[] result = new double[Math.multiplyExact(values.size(), 2)];
+      for (int index = 0; index < values.size(); ++index) {
+        final Vector2D value = values.get(index);
+        result[index * 2] = value.x();
+        result[index * 2 + 1] = value.y();
+      }
+      return result;
+    }
+
+    if (array instanceof SMFAttributeArrayFloating4Type) {
+      return flatten4(array);
+    }
+    return flatten3(array);
+  }
+
+  /**
+   * The inverse of {@link #flattenFloating(SMFAttributeArrayType)}.
+   *
+   * @param values Consecutive elements
+   * @param count  The number of components in each element, in the range
+   *               {@code [1, 4]}
+   *
+   * @return A floating point array
+   */
+
+  static SMFAttributeArrayType floating(
+    final double[] values,
+    final int count)
+  {
+    switch (count) {
+      case 1: {
+        final List<Double> result = new ArrayList<>(values.length);
+        for (final double value : values) {
+          result.add(Double.valueOf(value));
+        }
+        return SMFAttributeArrayFloating1.of(result);
+      }
+      case 2: {
+        final List<Vector2D> result = new ArrayList<>(values.length / 2);
+        for (int base = 0; base < values.length; base += 2) {
+          result.add(Vector2D.of(values[base], values[base + 1]));
+        }
+        return SMFAttributeArrayFloating2.of(result);
+      }
+      case 3: {
+        final List<Vector3D> result = new ArrayList<>(values.length / 3);
+        for (int base = 0; base < values.length; base += 3) {
+          result.add(
+            Vector3D.of(values[base], values[base + 1], values[base + 2]));
+        }
+        return SMFAttributeArrayFloating3.of(result);
+      }
+      case 4: {
+        final List<Vector4D> result = new ArrayList<>(values.length / 4);
+        for (int base = 0; base < values.length; base += 4) {
+          result.add(Vector4D.of(
+            values[base], values[base + 1], values[base + 2], values[base + 3]));
+        }
+        return SMFAttributeArrayFloating4.of(result);
+      }
+      default: {
+        throw new UnreachableCodeException();
+      }
+    }
+  }
+
+  /**
+   * Construct an integer array from consecutive elements.
+   *
+   * @param values Consecutive elements
+   * @param count  The number of components in each element, in the range
+   *               {@code [1, 4]}
+   * @param signed {@code true} if the array is signed
+   *
+   * @return An integer array
+   */
+
+  static SMFAttributeArrayType integers(
+    final long[] values,
+    final int count,
+    final boolean signed)
+  {
+    switch (count) {
+      case 1: {
+        final List<Long> result = new ArrayList<>(values.length);
+        for (final long value : values) {
+          result.add(Long.valueOf(value));
+        }
+        return signed
+          ? SMFAttributeArrayIntegerSigned1.of(result)
+          : SMFAttributeArrayIntegerUnsigned1.of(result);
+      }
+      case 2: {
+        final List<Vector2L> result = new ArrayList<>(values.length / 2);
+        for (int base = 0; base < values.length; base += 2) {
+          result.add(Vector2L.of(values[base], values[base + 1]));
+        }
+        return signed
+          ? SMFAttributeArrayIntegerSigned2.of(result)
+          : SMFAttributeArrayIntegerUnsigned2.of(result);
+      }
+      case 3: {
+        final List<Vector3L> result = new ArrayList<>(values.length / 3);
+        for (int base = 0; base < values.length; base += 3) {
+          result.add(
+            Vector3L.of(values[base], values[base + 1], values[base + 2]));
+        }
+        return signed
+          ? SMFAttributeArrayIntegerSigned3.of(result)
+          : SMFAttributeArrayIntegerUnsigned3.of(result);
+      }
+      case 4: {
+        final List<Vector4L> result = new ArrayList<>(values.length / 4);
+        for (int base = 0; base < values.length; base += 4) {
+          result.add(Vector4L.of(
+            values[base], values[base + 1], values[base + 2], values[base + 3]));
+        }
+        return signed
+          ? SMFAttributeArrayIntegerSigned4.of(result)
+          : SMFAttributeArrayIntegerUnsigned4.of(result);
+      }
+      default: {
+        throw new UnreachableCodeException();
+      }
+    }
+  }
+
+  /**
+   * Check that a mesh has a three-component floating point attribute with
+   * the given name, such as a position attribute.
+   *
+   * @param header The mesh header
+   * @param name   The attribute name
+   *
+   * @return The errors, if any
+   */
+
+  static List<SMFProcessingError> checkFloating3(
+    final SMFHeader header,
+    final SMFAttributeName name)
+  {
+    return checkFloating(header, name, 3, 3);
+  }
+
+  /**
+   * Check that a mesh has a floating point attribute with the given name
+   * and a component count in the range {@code [minimum, maximum]}.
+   *
+   * @param header  The mesh header
+   * @param name    The attribute name
+   * @param minimum The minimum component count
+   * @param maximum The maximum component count
+   *
+   * @return The errors, if any
+   */
+
+  static List<SMFProcessingError> checkFloating(
+    final SMFHeader header,
+    final SMFAttributeName name,
+    final int minimum,
+    final int maximum)
+  {
+    final var attributes = header.attributesByName();
+    final List<SMFProcessingError> errors =
+      checkAttributeExists(List.of(), attributes, name);
+    if (!errors.isEmpty()) {
+      return errors;
+    }
+
+    final SMFAttribute attribute = attributes.get(name);
+    final int count = attribute.componentCount();
+    if (attribute.componentType() != SMFComponentType.ELEMENT_TYPE_FLOATING
+      || count < minimum
+      || count > maximum) {
+      final String components =
+        minimum == maximum
+          ? String.format("%d-component", Integer.valueOf(minimum))
+          : String.format(
+          "%d to %d component",
+          Integer.valueOf(minimum),
+          Integer.valueOf(maximum));
+      return List.of(SMFProcessingError.of(
+        String.format(
+          "Attribute %s must be a %s floating point attribute",
+          name.value(),
+          components),
+        Optional.empty()));
+    }
+    return List.of();
+  }
+
+  private static <T> List<T> gather(
+    final List<T> values,
+    final int[] sources)
+  {
+    final List<T> result = new ArrayList<>(sources.length);
+    for (final int source : sources) {
+      result.add(values.get(source));
+    }
+    return result;
+  }
+}
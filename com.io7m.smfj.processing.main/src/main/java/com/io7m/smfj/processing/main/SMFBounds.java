@@ -0,0 +1,273 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import java.util.function.BinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * The bounding volumes of a set of positions: an axis-aligned bounding
+ * box, the centroid, and a bounding sphere. Each pass over the positions
+ * is a reduction over fixed-size ranges of vertices, evaluated in parallel
+ * for large meshes. The sphere is the smaller of a sphere produced by
+ * Ritter's algorithm and the sphere centered on the bounding box that
+ * encloses every position.
+ */
+
+final class SMFBounds
+{
+  /**
+   * The number of vertices above which reductions are evaluated in
+   * parallel.
+   */
+
+  static final int PARALLEL_THRESHOLD = 1 << 16;
+
+  private static final int CHUNK_SIZE = 1 << 14;
+
+  private final double[] minimum;
+  private final double[] maximum;
+  private final double[] centroid;
+  private final double[] sphere;
+
+  private SMFBounds(
+    final double[] in_minimum,
+    final double[] in_maximum,
+    final double[] in_centroid,
+    final double[] in_sphere)
+  {
+    this.minimum = in_minimum;
+    this.maximum = in_maximum;
+    this.centroid = in_centroid;
+    this.sphere = in_sphere;
+  }
+
+  /**
+   * Compute the bounds of a non-empty set of positions.
+   *
+   * @param positions The positions as {@code (x, y, z)} triples
+   *
+   * @return The bounds
+   */
+
+  static SMFBounds compute(
+    final double[] positions)
+  {
+    final int count = positions.length / 3;
+    final double[] extent = reduce(
+      count,
+      (from, to) -> extent(positions, from, to),
+      SMFBounds::mergeExtent);
+
+    final double[] minimum = {extent[0], extent[1], extent[2]};
+    final double[] maximum = {extent[3], extent[4], extent[5]};
+    final double[] centroid = {
+      extent[6] / (double) count,
+      extent[7] / (double) count,
+      extent[8] / (double) count,
+    };
+
+    final double[] box_sphere = {
+      (minimum[0] + maximum[0]) * 0.5,
+      (minimum[1] + maximum[1]) * 0.5,
+      (minimum[2] + maximum[2]) * 0.5,
+      0.0,
+    };
+    box_sphere[3] = farthest(positions, box_sphere)[1];
+
+    final double[] ritter = ritter(positions);
+    final double[] sphere = ritter[3] < box_sphere[3] ? ritter : box_sphere;
+    return new SMFBounds(minimum, maximum, centroid, sphere);
+  }
+
+  private static double[] ritter(
+    final double[] positions)
+  {
+    final double[] point_x = {positions[0], positions[1], positions[2]};
+    final int y = (int) farthest(positions, point_x)[0];
+    final double[] point_y = {
+      positions[y * 3], positions[y * 3 + 1], positions[y * 3 + 2],
+    };
+    final int z = (int) farthest(positions, point_y)[0];
+
+    final double[] sphere = new double[4];
+    for (int k = 0; k < 3; ++k) {
+      sphere[k] = (point_y[k] + positions[z * 3 + k]) * 0.5;
+    }
+    sphere[3] = Math.sqrt(distanceSquared(positions, z, point_y)) * 0.5;
+
+    final int count = positions.length / 3;
+    for (int vertex = 0; vertex < count; ++vertex) {
+      final double distance =
+        Math.sqrt(distanceSquared(positions, vertex, sphere));
+      if (distance > sphere[3]) {
+        final double radius = (sphere[3] + distance) * 0.5;
+        final double shift = (radius - sphere[3]) / distance;
+        for (int k = 0; k < 3; ++k) {
+          sphere[k] += (positions[vertex * 3 + k] - sphere[k]) * shift;
+        }
+        sphere[3] = radius;
+      }
+    }
+
+    sphere[3] = farthest(positions, sphere)[1];
+    return sphere;
+  }
+
+  /**
+   * @return The index of the position farthest from {@code point}, and its
+   * distance from {@code point}
+   */
+
+  private static double[] farthest(
+    final double[] positions,
+    final double[] point)
+  {
+    final double[] result = reduce(
+      positions.length / 3,
+      (from, to) -> {
+        final double[] best = {(double) from, -1.0};
+        for (int vertex = from; vertex < to; ++vertex) {
+          final double d = distanceSquared(positions, vertex, point);
+          if (d > best[1]) {
+            best[0] = (double) vertex;
+            best[1] = d;
+          }
+        }
+        return best;
+      },
+      (x, y) -> y[1] > x[1] ? y : x);
+    result[1] = Math.sqrt(result[1]);
+    return result;
+  }
+
+  private static double distanceSquared(
+    final double[] positions,
+    final int vertex,
+    final double[] point)
+  {
+    final double dx = positions[vertex * 3] - point[0];
+    final double dy = positions[vertex * 3 + 1] - point[1];
+    final double dz = positions[vertex * 3 + 2] - point[2];
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+  /**
+   * @return The minimum and maximum of each component and the sum of each
+   * component over the given range of vertices
+   */
+
+  private static double[] extent(
+    final double[] positions,
+    final int from,
+    final int to)
+  {
+    final double[] result = new double[9];
+    for (int k = 0; k < 3; ++k) {
+      result[k] = Double.POSITIVE_INFINITY;
+      result[3 + k] = Double.NEGATIVE_INFINITY;
+    }
+    for (int vertex = from; vertex < to; ++vertex) {
+      for (int k = 0; k < 3; ++k) {
+        final double value = positions[vertex * 3 + k];
+        result[k] = Math.min(result[k], value);
+        result[3 + k] = Math.max(result[3 + k], value);
+        result[6 + k] += value;
+      }
+    }
+    return result;
+  }
+
+  private static double[] mergeExtent(
+    final double[] x,
+    final double[] y)
+  {
+    final double[] result = new double[9];
+    for (int k = 0; k < 3; ++k) {
+      result[k] = Math.min(x[k], y[k]);
+      result[3 + k] = Math.max(x[3 + k], y[3 + k]);
+      result[6 + k] = x[6 + k] + y[6 + k];
+    }
+    return result;
+  }
+
+  /**
+   * Evaluate {@code chunk} over consecutive ranges of vertices and combine
+   * the results, in parallel if there are enough vertices.
+   */
+
+  private static <T> T reduce(
+    final int count,
+    final ChunkFunctionType<T> chunk,
+    final BinaryOperator<T> combine)
+  {
+    final int chunks = Math.max(1, (count + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    final IntStream range = IntStream.range(0, chunks);
+    final IntStream stream =
+      count >= PARALLEL_THRESHOLD ? range.parallel() : range;
+    return stream
+      .mapToObj(index -> chunk.apply(
+        index * CHUNK_SIZE,
+        Math.min(count, (index + 1) * CHUNK_SIZE)))
+      .reduce(combine)
+      .orElseThrow();
+  }
+
+  /**
+   * @return The minimum of each component
+   */
+
+  double[] minimum()
+  {
+    return this.minimum.clone();
+  }
+
+  /**
+   * @return The maximum of each component
+   */
+
+  double[] maximum()
+  {
+    return this.maximum.clone();
+  }
+
+  /**
+   * @return The mean of the positions
+   */
+
+  double[] centroid()
+  {
+    return this.centroid.clone();
+  }
+
+  /**
+   * @return The center and radius of the bounding sphere
+   */
+
+  double[] sphere()
+  {
+    return this.sphere.clone();
+  }
+
+  private interface ChunkFunctionType<T>
+  {
+    T apply(
+      int from,
+      int to);
+  }
+}
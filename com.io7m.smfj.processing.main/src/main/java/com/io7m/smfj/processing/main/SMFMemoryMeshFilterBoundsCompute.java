@@ -0,0 +1,188 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.core.SMFSchemaIdentifier;
+import com.io7m.smfj.core.SMFSchemaName;
+import com.io7m.smfj.processing.api.SMFFilterCommandContext;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFMetadata;
+import com.io7m.smfj.processing.api.SMFProcessingError;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.smfj.processing.api.SMFFilterCommandParsing.errorExpectedGotValidation;
+
+/**
+ * A filter that computes the bounding volumes of a mesh from its position
+ * attribute, and stores them as a metadata block with the schema
+ * {@link #SCHEMA}. The mesh itself is not modified.
+ *
+ * The metadata is encoded in big-endian byte order as 64-bit floating
+ * point values: the minimum x, y and z of the axis-aligned bounding box,
+ * the maximum x, y and z, the centroid x, y and z of the vertices, and the
+ * center x, y, z and radius of a bounding sphere. Any existing metadata
+ * with the same schema is replaced.
+ */
+
+public final class SMFMemoryMeshFilterBoundsCompute implements
+  SMFMemoryMeshFilterType
+{
+  /**
+   * The command name.
+   */
+
+  public static final String NAME = "bounds-compute";
+
+  /**
+   * The schema of the generated metadata.
+   */
+
+  public static final SMFSchemaIdentifier SCHEMA =
+    SMFSchemaIdentifier.of(SMFSchemaName.of("com.io7m.smf.bounds"), 1, 0);
+
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterBoundsCompute.class);
+
+  private static final String SYNTAX = "<position-attribute>";
+
+  private final SMFAttributeName position;
+
+  private SMFMemoryMeshFilterBoundsCompute(
+    final SMFAttributeName in_position)
+  {
+    this.position = Objects.requireNonNull(in_position, "position");
+  }
+
+  /**
+   * Create a new filter.
+   *
+   * @param position The name of the three-component floating point position
+   *                 attribute
+   *
+   * @return A new filter
+   */
+
+  public static SMFMemoryMeshFilterType create(
+    final SMFAttributeName position)
+  {
+    return new SMFMemoryMeshFilterBoundsCompute(position);
+  }
+
+  /**
+   * Attempt to parse a command.
+   *
+   * @param file The file, if any
+   * @param line The line
+   * @param text The text
+   *
+   * @return A parsed command or a list of parse errors
+   */
+
+  public static SMFPartialLogged<SMFMemoryMeshFilterType> parse(
+    final Optional<URI> file,
+    final int line,
+    final List<String> text)
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(text, "text");
+
+    if (text.size() == 1) {
+      try {
+        return SMFPartialLogged.succeeded(
+          create(SMFAttributeName.of(text.get(0))));
+      } catch (final IllegalArgumentException e) {
+        return errorExpectedGotValidation(file, line, makeSyntax(), text);
+      }
+    }
+    return errorExpectedGotValidation(file, line, makeSyntax(), text);
+  }
+
+  private static String makeSyntax()
+  {
+    return NAME + " " + SYNTAX;
+  }
+
+  @Override
+  public String name()
+  {
+    return NAME;
+  }
+
+  @Override
+  public String syntax()
+  {
+    return makeSyntax();
+  }
+
+  @Override
+  public SMFPartialLogged<SMFMemoryMesh> filter(
+    final SMFFilterCommandContext context,
+    final SMFMemoryMesh m)
+  {
+    Objects.requireNonNull(context, "Context");
+    Objects.requireNonNull(m, "Mesh");
+
+    final SMFHeader header = m.header();
+    final List<SMFProcessingError> errors =
+      SMFAttributeArrays.checkFloating3(header, this.position);
+    if (!errors.isEmpty()) {
+      return SMFPartialLogged.failed(errors);
+    }
+    if (header.vertexCount() == 0L) {
+      return SMFPartialLogged.failed(
+        SMFProcessingError.of(
+          "Cannot compute the bounds of a mesh with no vertices",
+          Optional.empty()));
+    }
+
+    final SMFBounds bounds =
+      SMFBounds.compute(
+        SMFAttributeArrays.flatten3(m.arrays().get(this.position)));
+    final double[] sphere = bounds.sphere();
+    LOG.info(
+      "bounding sphere radius {}",
+      String.format("%.6f", Double.valueOf(sphere[3])));
+
+    final ByteBuffer data = ByteBuffer.allocate(13 * 8);
+    for (final double value : bounds.minimum()) {
+      data.putDouble(value);
+    }
+    for (final double value : bounds.maximum()) {
+      data.putDouble(value);
+    }
+    for (final double value : bounds.centroid()) {
+      data.putDouble(value);
+    }
+    for (final double value : sphere) {
+      data.putDouble(value);
+    }
+
+    return SMFPartialLogged.succeeded(
+      SMFMetadataBlocks.replace(m, SMFMetadata.of(SCHEMA, data.array())));
+  }
+}
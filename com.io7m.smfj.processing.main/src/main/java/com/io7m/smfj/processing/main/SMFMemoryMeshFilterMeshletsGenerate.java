@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.core.SMFSchemaIdentifier;
+import com.io7m.smfj.core.SMFSchemaName;
+import com.io7m.smfj.processing.api.SMFFilterCommandContext;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFMetadata;
+import com.io7m.smfj.processing.api.SMFProcessingError;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.smfj.processing.api.SMFFilterCommandParsing.errorExpectedGotValidation;
+
+/**
+ * A filter that partitions the triangles of a mesh into meshlets for
+ * cluster-based rendering, and stores them as a metadata block with the
+ * schema {@link #SCHEMA}. The mesh itself is not modified. Each meshlet
+ * references at most the configured number of vertices and triangles, and
+ * its triangles are expressed as 8-bit indices into its own vertex list.
+ *
+ * The metadata is encoded in big-endian byte order as an unsigned 32-bit
+ * meshlet count, followed by each meshlet. Each meshlet consists of an
+ * unsigned 32-bit vertex count and triangle count, a bounding sphere as
+ * four 32-bit floating point values (center x, y, z and radius), a normal
+ * cone as seven 32-bit floating point values (apex x, y, z, axis x, y, z
+ * and cutoff), the unsigned 32-bit mesh vertex index of each meshlet
+ * vertex, and then three unsigned 8-bit meshlet vertex indices for each
+ * triangle. A meshlet is entirely back-facing from a camera at {@code c}
+ * if {@code dot(normalize(apex - c), axis) >= cutoff}; a cutoff of
+ * {@code 1} indicates that the cone cannot be used for culling. Any
+ * existing metadata with the same schema is replaced.
+ */
+
+public final class SMFMemoryMeshFilterMeshletsGenerate implements
+  SMFMemoryMeshFilterType
+{
+  /**
+   * The command name.
+   */
+
+  public static final String NAME = "meshlets-generate";
+
+  /**
+   * The schema of the generated metadata.
+   */
+
+  public static final SMFSchemaIdentifier SCHEMA =
+    SMFSchemaIdentifier.of(SMFSchemaName.of("com.io7m.smf.meshlets"), 1, 0);
+
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterMeshletsGenerate.class);
+
+  private static final String SYNTAX =
+    "<position-attribute> <max-vertices> <max-triangles>";
+
+  private final SMFAttributeName position;
+  private final int maxVertices;
+  private final int maxTriangles;
+
+  private SMFMemoryMeshFilterMeshletsGenerate(
+    final SMFAttributeName in_position,
+    final int in_max_vertices,
+    final int in_max_triangles)
+  {
+    this.position = Objects.requireNonNull(in_position, "position");
+    this.maxVertices = in_max_vertices;
+    this.maxTriangles = in_max_triangles;
+  }
+
+  /**
+   * Create a new filter.
+   *
+   * @param position      The name of the three-component floating point
+   *                      position attribute
+   * @param max_vertices  The maximum number of vertices per meshlet, in the
+   *                      range {@code [3, 256]}
+   * @param max_triangles The maximum number of triangles per meshlet, at
+   *                      least {@code 1}
+   *
+   * @return A new filter
+   *
+   * @throws IllegalArgumentException If any argument is out of range
+   */
+
+  public static SMFMemoryMeshFilterType create(
+    final SMFAttributeName position,
+    final int max_vertices,
+    final int max_triangles)
+    throws IllegalArgumentException
+  {
+    if (max_vertices < 3 || max_vertices > SMFMeshlets.MAXIMUM_VERTICES) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Maximum vertex count %d must be in the range [3, %d]",
+          Integer.valueOf(max_vertices),
+          Integer.valueOf(SMFMeshlets.MAXIMUM_VERTICES)));
+    }
+    if (max_triangles < 1) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Maximum triangle count %d must be at least 1",
+          Integer.valueOf(max_triangles)));
+    }
+    return new SMFMemoryMeshFilterMeshletsGenerate(
+      position, max_vertices, max_triangles);
+  }
+
+  /**
+   * Attempt to parse a command.
+   *
+   * @param file The file, if any
+   * @param line The line
+   * @param text The text
+   *
+   * @return A parsed command or a list of parse errors
+   */
+
+  public static SMFPartialLogged<SMFMemoryMeshFilterType> parse(
+    final Optional<URI> file,
+    final int line,
+    final List<String> text)
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(text, "text");
+
+    if (text.size() == 3) {
+      try {
+        return SMFPartialLogged.succeeded(
+          create(
+            SMFAttributeName.of(text.get(0)),
+            Integer.parseInt(text.get(1)),
+            Integer.parseInt(text.get(2))));
+      } catch (final IllegalArgumentException e) {
+        return errorExpectedGotValidation(file, line, makeSyntax(), text);
+      }
+    }
+    return errorExpectedGotValidation(file, line, makeSyntax(), text);
+  }
+
+  private static String makeSyntax()
+  {
+    return NAME + " " + SYNTAX;
+  }
+
+  @Override
+  public String name()
+  {
+    return NAME;
+  }
+
+  @Override
+  public String syntax()
+  {
+    return makeSyntax();
+  }
+
+  @Override
+  public SMFPartialLogged<SMFMemoryMesh> filter(
+    final SMFFilterCommandContext context,
+    final SMFMemoryMesh m)
+  {
+    Objects.requireNonNull(context, "Context");
+    Objects.requireNonNull(m, "Mesh");
+
+    final SMFHeader header = m.header();
+    final List<SMFProcessingError> errors =
+      SMFAttributeArrays.checkFloating3(header, this.position);
+    if (!errors.isEmpty()) {
+      return SMFPartialLogged.failed(errors);
+    }
+
+    final int[] indices;
+    try {
+      indices = SMFTriangleArrays.flatten(m.triangles(), header.vertexCount());
+    } catch (final IllegalArgumentException e) {
+      return SMFPartialLogged.failed(
+        SMFProcessingError.of(e.getMessage(), Optional.of(e)));
+    }
+
+    final double[] positions =
+      SMFAttributeArrays.flatten3(m.arrays().get(this.position));
+    final List<SMFMeshlets.Meshlet> meshlets =
+      SMFMeshlets.build(
+        indices,
+        (int) header.vertexCount(),
+        this.maxVertices,
+        this.maxTriangles);
+
+    int size = 4;
+    long vertices = 0L;
+    for (final SMFMeshlets.Meshlet meshlet : meshlets) {
+      vertices += meshlet.vertices().length;
+      size = Math.addExact(size, 52);
+      size = Math.addExact(
+        size, Math.multiplyExact(meshlet.vertices().length, 4));
+      size = Math.addExact(size, meshlet.triangles().length);
+    }
+
+    final boolean clockwise = SMFOverdrawStatistics.isClockwise(m);
+    final ByteBuffer data = ByteBuffer.allocate(size);
+    data.putInt(meshlets.size());
+    for (final SMFMeshlets.Meshlet meshlet : meshlets) {
+      data.putInt(meshlet.vertices().length);
+      data.putInt(meshlet.triangles().length / 3);
+      for (final double bound : SMFMeshlets.bounds(meshlet, positions, clockwise)) {
+        data.putFloat((float) bound);
+      }
+      for (final int vertex : meshlet.vertices()) {
+        data.putInt(vertex);
+      }
+      data.put(meshlet.triangles());
+    }
+
+    if (!meshlets.isEmpty()) {
+      final double count = (double) meshlets.size();
+      LOG.info(
+        "{} meshlets, {} vertices and {} triangles per meshlet on average",
+        Integer.valueOf(meshlets.size()),
+        String.format("%.2f", Double.valueOf((double) vertices / count)),
+        String.format("%.2f", Double.valueOf((double) (indices.length / 3) / count)));
+    }
+
+    return SMFPartialLogged.succeeded(
+      SMFMetadataBlocks.replace(m, SMFMetadata.of(SCHEMA, data.array())));
+  }
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.smfj.core.SMFAttribute;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFBinary16;
+import com.io7m.smfj.core.SMFComponentType;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.core.SMFSchemaIdentifier;
+import com.io7m.smfj.core.SMFSchemaName;
+import com.io7m.smfj.processing.api.SMFAttributeArrayType;
+import com.io7m.smfj.processing.api.SMFFilterCommandContext;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFMetadata;
+import com.io7m.smfj.processing.api.SMFProcessingError;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.smfj.processing.api.SMFFilterCommandParsing.errorExpectedGotValidation;
+
+/**
+ * A filter that quantizes a floating point attribute, converting its
+ * values and changing its type in the header accordingly. The largest
+ * quantization error is reported: the largest absolute difference between
+ * an original and a decoded component, or for octahedral encodings the
+ * largest angle in degrees between an original and a decoded vector.
+ *
+ * Attributes quantized to integers are described by a metadata block with
+ * the schema {@link #SCHEMA} that holds an entry for every quantized
+ * attribute. The metadata is encoded in big-endian byte order as an
+ * unsigned 32-bit entry count, followed by each entry. An entry consists
+ * of the attribute name and the policy name (such as {@code unorm16}),
+ * each as an unsigned 32-bit byte count followed by UTF-8 text, then an
+ * unsigned 32-bit component count and, for each component, a 64-bit
+ * floating point scale and bias. A component is decoded as
+ * {@code code * scale + bias}; for octahedral encodings, this yields the
+ * octahedral coordinates of a unit vector.
+ */
+
+public final class SMFMemoryMeshFilterQuantize implements
+  SMFMemoryMeshFilterType
+{
+  /**
+   * The command name.
+   */
+
+  public static final String NAME = "quantize";
+
+  /**
+   * The schema of the generated metadata.
+   */
+
+  public static final SMFSchemaIdentifier SCHEMA =
+    SMFSchemaIdentifier.of(SMFSchemaName.of("com.io7m.smf.quantization"), 1, 0);
+
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterQuantize.class);
+
+  private static final String SYNTAX = "<attribute> <policy>";
+
+  private final SMFAttributeName attribute;
+  private final SMFQuantizationPolicy policy;
+
+  private SMFMemoryMeshFilterQuantize(
+    final SMFAttributeName in_attribute,
+    final SMFQuantizationPolicy in_policy)
+  {
+    this.attribute = Objects.requireNonNull(in_attribute, "attribute");
+    this.policy = Objects.requireNonNull(in_policy, "policy");
+  }
+
+  /**
+   * Create a new filter.
+   *
+   * @param attribute The name of the floating point attribute
+   * @param policy    The quantization policy
+   *
+   * @return A new filter
+   */
+
+  public static SMFMemoryMeshFilterType create(
+    final SMFAttributeName attribute,
+    final SMFQuantizationPolicy policy)
+  {
+    return new SMFMemoryMeshFilterQuantize(attribute, policy);
+  }
+
+  /**
+   * Attempt to parse a command.
+   *
+   * @param file The file, if any
+   * @param line The line
+   * @param text The text
+   *
+   * @return A parsed command or a list of parse errors
+   */
+
+  public static SMFPartialLogged<SMFMemoryMeshFilterType> parse(
+    final Optional<URI> file,
+    final int line,
+    final List<String> text)
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(text, "text");
+
+    if (text.size() == 2) {
+      try {
+        return SMFPartialLogged.succeeded(
+          create(
+            SMFAttributeName.of(text.get(0)),
+            SMFQuantizationPolicy.fromName(text.get(1))));
+      } catch (final IllegalArgumentException e) {
+        return errorExpectedGotValidation(file, line, makeSyntax(), text);
+      }
+    }
+    return errorExpectedGotValidation(file, line, makeSyntax(), text);
+  }
+
+  private static String makeSyntax()
+  {
+    return NAME + " " + SYNTAX + " ("
+      + List.of(SMFQuantizationPolicy.values())
+      .stream()
+      .map(SMFQuantizationPolicy::toName)
+      .collect(Collectors.joining("|"))
+      + ")";
+  }
+
+  @Override
+  public String name()
+  {
+    return NAME;
+  }
+
+  @Override
+  public String syntax()
+  {
+    return makeSyntax();
+  }
+
+  @Override
+  public SMFPartialLogged<SMFMemoryMesh> filter(
+    final SMFFilterCommandContext context,
+    final SMFMemoryMesh m)
+  {
+    Objects.requireNonNull(context, "Context");
+    Objects.requireNonNull(m, "Mesh");
+
+    final SMFHeader header = m.header();
+    final List<SMFProcessingError> errors =
+      this.isOctahedral()
+        ? SMFAttributeArrays.checkFloating3(header, this.attribute)
+        : SMFAttributeArrays.checkFloating(header, this.attribute, 1, 4);
+    if (!errors.isEmpty()) {
+      return SMFPartialLogged.failed(errors);
+    }
+
+    final SMFAttribute original = header.attributesByName().get(this.attribute);
+    final double[] values =
+      SMFAttributeArrays.flattenFloating(m.arrays().get(this.attribute));
+    for (final double value : values) {
+      if (!Double.isFinite(value)) {
+        return SMFPartialLogged.failed(SMFProcessingError.of(
+          String.format(
+            "Attribute %s contains non-finite values",
+            this.attribute.value()),
+          Optional.empty()));
+      }
+    }
+
+    if (this.policy == SMFQuantizationPolicy.QUANTIZE_FLOAT16) {
+      return this.quantizeFloat16(m, original, values);
+    }
+    return this.quantizeInteger(m, original, values);
+  }
+
+  private boolean isOctahedral()
+  {
+    return this.policy == SMFQuantizationPolicy.QUANTIZE_OCTAHEDRAL8
+      || this.policy == SMFQuantizationPolicy.QUANTIZE_OCTAHEDRAL16;
+  }
+
+  private boolean isSigned()
+  {
+    return this.policy != SMFQuantizationPolicy.QUANTIZE_UNORM8
+      && this.policy != SMFQuantizationPolicy.QUANTIZE_UNORM16;
+  }
+
+  private SMFPartialLogged<SMFMemoryMesh> quantizeInteger(
+    final SMFMemoryMesh m,
+    final SMFAttribute original,
+    final double[] values)
+  {
+    final SMFQuantization.Result result = this.quantize(values, original);
+    final boolean signed = this.isSigned();
+    final int count = this.isOctahedral() ? 2 : original.componentCount();
+    final SMFAttribute quantized =
+      SMFAttribute.of(
+        this.attribute,
+        signed
+          ? SMFComponentType.ELEMENT_TYPE_INTEGER_SIGNED
+          : SMFComponentType.ELEMENT_TYPE_INTEGER_UNSIGNED,
+        count,
+        this.policy.componentSizeBits());
+
+    this.logError(result.error(), this.isOctahedral() ? " degrees" : "");
+
+    final Map<String, byte[]> entries;
+    try {
+      entries = entries(m.metadata());
+    } catch (final BufferUnderflowException
+      | IllegalArgumentException
+      | NegativeArraySizeException e) {
+      return SMFPartialLogged.failed(SMFProcessingError.of(
+        "Existing quantization metadata is malformed", Optional.of(e)));
+    }
+    entries.put(this.attribute.value(), this.entry(result));
+
+    final SMFMemoryMesh mesh =
+      replaceAttribute(
+        m,
+        original,
+        quantized,
+        SMFAttributeArrays.integers(result.codes(), count, signed));
+    return SMFPartialLogged.succeeded(
+      SMFMetadataBlocks.replace(mesh, metadata(entries)));
+  }
+
+  private SMFQuantization.Result quantize(
+    final double[] values,
+    final SMFAttribute original)
+  {
+    final int bits = this.policy.componentSizeBits();
+    switch (this.policy) {
+      case QUANTIZE_UNORM8:
+      case QUANTIZE_UNORM16:
+        return SMFQuantization.unorm(values, original.componentCount(), bits);
+      case QUANTIZE_SNORM8:
+      case QUANTIZE_SNORM16:
+        return SMFQuantization.snorm(values, original.componentCount(), bits);
+      case QUANTIZE_OCTAHEDRAL8:
+      case QUANTIZE_OCTAHEDRAL16:
+        return SMFQuantization.octahedral(values, bits);
+      case QUANTIZE_FLOAT16:
+        break;
+    }
+
+    throw new UnreachableCodeException();
+  }
+
+  private SMFPartialLogged<SMFMemoryMesh> quantizeFloat16(
+    final SMFMemoryMesh m,
+    final SMFAttribute original,
+    final double[] values)
+  {
+    double error = 0.0;
+    final double[] rounded = new double[values.length];
+    for (int index = 0; index < values.length; ++index) {
+      rounded[index] = SMFBinary16.round(values[index]);
+      if (Double.isInfinite(rounded[index])) {
+        return SMFPartialLogged.failed(SMFProcessingError.of(
+          String.format(
+            "Attribute %s contains values out of range for 16-bit floating point",
+            this.attribute.value()),
+          Optional.empty()));
+      }
+      error = Math.max(error, Math.abs(rounded[index] - values[index]));
+    }
+
+    this.logError(error, "");
+    return SMFPartialLogged.succeeded(
+      replaceAttribute(
+        m,
+        original,
+        original.withComponentSizeBits(16),
+        SMFAttributeArrays.floating(rounded, original.componentCount())));
+  }
+
+  private void logError(
+    final double error,
+    final String unit)
+  {
+    LOG.info(
+      "{}: {} maximum error {}{}",
+      this.attribute.value(),
+      this.policy.toName(),
+      String.format("%.9f", Double.valueOf(error)),
+      unit);
+  }
+
+  private static SMFMemoryMesh replaceAttribute(
+    final SMFMemoryMesh m,
+    final SMFAttribute original,
+    final SMFAttribute replacement,
+    final SMFAttributeArrayType array)
+  {
+    final SMFHeader header = m.header();
+    final List<SMFAttribute> attributes =
+      header.attributesInOrder()
+        .stream()
+        .map(existing -> Objects.equals(existing, original) ? replacement : existing)
+        .collect(Collectors.toList());
+
+    return SMFMemoryMesh.builder()
+      .from(m)
+      .setHeader(header.withAttributesInOrder(attributes))
+      .putArrays(replacement.name(), array)
+      .build();
+  }
+
+  private byte[] entry(
+    final SMFQuantization.Result result)
+  {
+    final byte[] name = this.attribute.value().getBytes(StandardCharsets.UTF_8);
+    final byte[] policy_name =
+      this.policy.toName().getBytes(StandardCharsets.UTF_8);
+    final double[] scales = result.scales();
+    final double[] biases = result.biases();
+
+    final ByteBuffer data =
+      ByteBuffer.allocate(
+        12 + name.length + policy_name.length + scales.length * 16);
+    data.putInt(name.length);
+    data.put(name);
+    data.putInt(policy_name.length);
+    data.put(policy_name);
+    data.putInt(scales.length);
+    for (int component = 0; component < scales.length; ++component) {
+      data.putDouble(scales[component]);
+      data.putDouble(biases[component]);
+    }
+    return data.array();
+  }
+
+  /**
+   * @return The entries of any existing quantization metadata, by attribute
+   * name
+   */
+
+  private static Map<String, byte[]> entries(
+    final List<SMFMetadata> metadata)
+  {
+    final Map<String, byte[]> entries = new LinkedHashMap<>();
+    for (final SMFMetadata existing : metadata) {
+      if (!Objects.equals(existing.schema(), SCHEMA)) {
+        continue;
+      }
+
+      final ByteBuffer data = ByteBuffer.wrap(existing.data());
+      final int count = data.getInt();
+      for (int index = 0; index < count; ++index) {
+        final int start = data.position();
+        final byte[] name = new byte[data.getInt()];
+        data.get(name);
+        final int policy_length = data.getInt();
+        data.position(data.position() + policy_length);
+        final int components = data.getInt();
+        data.position(data.position() + components * 16);
+
+        final byte[] entry = new byte[data.position() - start];
+        data.position(start);
+        data.get(entry);
+        entries.put(
+          StandardCharsets.UTF_8.decode(ByteBuffer.wrap(name)).toString(),
+          entry);
+      }
+    }
+    return entries;
+  }
+
+  private static SMFMetadata metadata(
+    final Map<String, byte[]> entries)
+  {
+    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    data.writeBytes(ByteBuffer.allocate(4).putInt(entries.size()).array());
+    for (final byte[] entry : entries.values()) {
+      data.writeBytes(entry);
+    }
+    return SMFMetadata.of(SCHEMA, data.toByteArray());
+  }
+}
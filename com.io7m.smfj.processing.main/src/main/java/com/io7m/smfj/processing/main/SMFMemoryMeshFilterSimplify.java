@@ -0,0 +1,299 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.core.SMFTriangles;
+import com.io7m.smfj.processing.api.SMFFilterCommandContext;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFProcessingError;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.smfj.processing.api.SMFFilterCommandParsing.errorExpectedGotValidation;
+
+/**
+ * A filter that reduces the number of triangles in a mesh using quadric
+ * error metrics. Simplification stops when the number of triangles has
+ * been reduced to the target ratio of the original count, or when no
+ * further triangles can be removed without exceeding the maximum error.
+ * The error is expressed as a fraction of the largest extent of the
+ * mesh's bounding box. Vertices on attribute seams (vertices that share a
+ * position with another vertex) only move along the seam, together with
+ * the other vertices at the same position, and vertices on the border of
+ * the mesh may optionally be locked. Vertices that are no longer referenced
+ * by any triangle are removed. A mesh that gives every triangle corner its
+ * own vertex has a seam at every edge and cannot be simplified; such meshes
+ * should first be welded with {@link SMFMemoryMeshFilterVerticesWeld}.
+ */
+
+public final class SMFMemoryMeshFilterSimplify implements
+  SMFMemoryMeshFilterType
+{
+  /**
+   * The command name.
+   */
+
+  public static final String NAME = "simplify";
+
+  /**
+   * The keyword that locks border vertices.
+   */
+
+  public static final String LOCK_BORDERS = "lock-borders";
+
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterSimplify.class);
+
+  private static final String SYNTAX =
+    "<position-attribute> <target-ratio> <max-error> [lock-borders]";
+
+  private final SMFAttributeName position;
+  private final double ratio;
+  private final double maxError;
+  private final boolean lockBorders;
+
+  private SMFMemoryMeshFilterSimplify(
+    final SMFAttributeName in_position,
+    final double in_ratio,
+    final double in_max_error,
+    final boolean in_lock_borders)
+  {
+    this.position = Objects.requireNonNull(in_position, "position");
+    this.ratio = in_ratio;
+    this.maxError = in_max_error;
+    this.lockBorders = in_lock_borders;
+  }
+
+  /**
+   * Create a new filter.
+   *
+   * @param position     The name of the three-component floating point
+   *                     position attribute
+   * @param ratio        The target number of triangles as a fraction of the
+   *                     original number, in the range {@code [0, 1]}
+   * @param max_error    The largest permitted error as a fraction of the
+   *                     extent of the mesh, non-negative
+   * @param lock_borders {@code true} if border vertices must not move
+   *
+   * @return A new filter
+   *
+   * @throws IllegalArgumentException If the ratio or error is out of range
+   */
+
+  public static SMFMemoryMeshFilterType create(
+    final SMFAttributeName position,
+    final double ratio,
+    final double max_error,
+    final boolean lock_borders)
+    throws IllegalArgumentException
+  {
+    checkRatio(ratio);
+    checkMaxError(max_error);
+    return new SMFMemoryMeshFilterSimplify(
+      position, ratio, max_error, lock_borders);
+  }
+
+  static void checkRatio(
+    final double ratio)
+  {
+    if (!(ratio >= 0.0 && ratio <= 1.0)) {
+      throw new IllegalArgumentException(String.format(
+        "Target ratio %f must be in the range [0, 1]",
+        Double.valueOf(ratio)));
+    }
+  }
+
+  static void checkMaxError(
+    final double max_error)
+  {
+    if (!(max_error >= 0.0)) {
+      throw new IllegalArgumentException(String.format(
+        "Maximum error %f must be non-negative",
+        Double.valueOf(max_error)));
+    }
+  }
+
+  static boolean parseLockBorders(
+    final String text)
+  {
+    if (Objects.equals(text, LOCK_BORDERS)) {
+      return true;
+    }
+    throw new IllegalArgumentException(
+      String.format("Expected %s, got %s", LOCK_BORDERS, text));
+  }
+
+  /**
+   * Attempt to parse a command.
+   *
+   * @param file The file, if any
+   * @param line The line
+   * @param text The text
+   *
+   * @return A parsed command or a list of parse errors
+   */
+
+  public static SMFPartialLogged<SMFMemoryMeshFilterType> parse(
+    final Optional<URI> file,
+    final int line,
+    final List<String> text)
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(text, "text");
+
+    if (text.size() == 3 || text.size() == 4) {
+      try {
+        return SMFPartialLogged.succeeded(
+          create(
+            SMFAttributeName.of(text.get(0)),
+            Double.parseDouble(text.get(1)),
+            Double.parseDouble(text.get(2)),
+            text.size() == 4 && parseLockBorders(text.get(3))));
+      } catch (final IllegalArgumentException e) {
+        return errorExpectedGotValidation(file, line, makeSyntax(), text);
+      }
+    }
+    return errorExpectedGotValidation(file, line, makeSyntax(), text);
+  }
+
+  private static String makeSyntax()
+  {
+    return NAME + " " + SYNTAX;
+  }
+
+  @Override
+  public String name()
+  {
+    return NAME;
+  }
+
+  @Override
+  public String syntax()
+  {
+    return makeSyntax();
+  }
+
+  @Override
+  public SMFPartialLogged<SMFMemoryMesh> filter(
+    final SMFFilterCommandContext context,
+    final SMFMemoryMesh m)
+  {
+    Objects.requireNonNull(context, "Context");
+    Objects.requireNonNull(m, "Mesh");
+
+    final SMFHeader header = m.header();
+    final List<SMFProcessingError> errors =
+      SMFAttributeArrays.checkFloating3(header, this.position);
+    if (!errors.isEmpty()) {
+      return SMFPartialLogged.failed(errors);
+    }
+
+    final int[] indices;
+    try {
+      indices = SMFTriangleArrays.flatten(m.triangles(), header.vertexCount());
+    } catch (final IllegalArgumentException e) {
+      return SMFPartialLogged.failed(
+        SMFProcessingError.of(e.getMessage(), Optional.of(e)));
+    }
+
+    final int vertex_count = (int) header.vertexCount();
+    final double[] positions =
+      SMFAttributeArrays.flatten3(m.arrays().get(this.position));
+    final double extent = SMFSimplifier.extent(positions);
+
+    final SMFSimplifier simplifier =
+      SMFSimplifier.create(indices, positions, vertex_count, this.lockBorders);
+    simplifier.simplify(
+      (int) Math.floor(this.ratio * (double) (indices.length / 3)),
+      this.maxError * extent);
+
+    final int[] simplified = simplifier.indices();
+    LOG.info(
+      "simplified {} triangles to {} (error {})",
+      Integer.valueOf(indices.length / 3),
+      Integer.valueOf(simplified.length / 3),
+      String.format("%.6f", Double.valueOf(relative(simplifier, extent))));
+
+    if (simplified.length == indices.length) {
+      return SMFPartialLogged.succeeded(m);
+    }
+    return SMFPartialLogged.succeeded(compact(m, simplified));
+  }
+
+  static double relative(
+    final SMFSimplifier simplifier,
+    final double extent)
+  {
+    return extent > 0.0 ? simplifier.error() / extent : 0.0;
+  }
+
+  /**
+   * Remove the vertices that are not referenced by the given triangles,
+   * preserving the order of the remaining vertices.
+   */
+
+  private static SMFMemoryMesh compact(
+    final SMFMemoryMesh m,
+    final int[] indices)
+  {
+    final int vertex_count = (int) m.header().vertexCount();
+    final boolean[] referenced = new boolean[vertex_count];
+    for (final int vertex : indices) {
+      referenced[vertex] = true;
+    }
+
+    final int[] remap = new int[vertex_count];
+    final int[] sources = new int[vertex_count];
+    int count = 0;
+    for (int vertex = 0; vertex < vertex_count; ++vertex) {
+      if (referenced[vertex]) {
+        remap[vertex] = count;
+        sources[count] = vertex;
+        ++count;
+      }
+    }
+
+    for (int index = 0; index < indices.length; ++index) {
+      indices[index] = remap[indices[index]];
+    }
+
+    final SMFHeader header = m.header();
+    final SMFTriangles triangles =
+      SMFTriangles.of(
+        (long) (indices.length / 3),
+        header.triangles().triangleIndexSizeBits());
+
+    return SMFMemoryMesh.builder()
+      .from(m)
+      .setHeader(
+        header.withVertexCount((long) count).withTriangles(triangles))
+      .setArrays(
+        SMFAttributeArrays.gatherAll(m.arrays(), Arrays.copyOf(sources, count)))
+      .setTriangles(SMFTriangleArrays.triangles(indices))
+      .build();
+  }
+}
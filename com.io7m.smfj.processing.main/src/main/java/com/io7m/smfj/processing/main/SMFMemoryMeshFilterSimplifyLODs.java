@@ -0,0 +1,253 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.core.SMFSchemaIdentifier;
+import com.io7m.smfj.core.SMFSchemaName;
+import com.io7m.smfj.processing.api.SMFFilterCommandContext;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFMetadata;
+import com.io7m.smfj.processing.api.SMFProcessingError;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.smfj.processing.api.SMFFilterCommandParsing.errorExpectedGotValidation;
+
+/**
+ * A filter that generates a chain of simplified levels of detail for a
+ * mesh using the same method as {@link SMFMemoryMeshFilterSimplify}, and
+ * stores them as a metadata block with the schema {@link #SCHEMA}. The mesh
+ * itself is not modified. Each level is simplified from the previous level
+ * to the target ratio of the previous level's triangle count, and the
+ * levels share the vertices of the mesh.
+ *
+ * The metadata is encoded in big-endian byte order as an unsigned 32-bit
+ * level count, followed by each level in order of decreasing detail. Each
+ * level consists of its error as a 64-bit floating point fraction of the
+ * extent of the mesh, an unsigned 32-bit triangle count, and then three
+ * unsigned 32-bit vertex indices for each triangle. Any existing metadata
+ * with the same schema is replaced.
+ */
+
+public final class SMFMemoryMeshFilterSimplifyLODs implements
+  SMFMemoryMeshFilterType
+{
+  /**
+   * The command name.
+   */
+
+  public static final String NAME = "simplify-lods";
+
+  /**
+   * The schema of the generated metadata.
+   */
+
+  public static final SMFSchemaIdentifier SCHEMA =
+    SMFSchemaIdentifier.of(SMFSchemaName.of("com.io7m.smf.lods"), 1, 0);
+
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterSimplifyLODs.class);
+
+  private static final String SYNTAX =
+    "<position-attribute> <target-ratio> <max-error> <levels> [lock-borders]";
+
+  private final SMFAttributeName position;
+  private final double ratio;
+  private final double maxError;
+  private final int levels;
+  private final boolean lockBorders;
+
+  private SMFMemoryMeshFilterSimplifyLODs(
+    final SMFAttributeName in_position,
+    final double in_ratio,
+    final double in_max_error,
+    final int in_levels,
+    final boolean in_lock_borders)
+  {
+    this.position = Objects.requireNonNull(in_position, "position");
+    this.ratio = in_ratio;
+    this.maxError = in_max_error;
+    this.levels = in_levels;
+    this.lockBorders = in_lock_borders;
+  }
+
+  /**
+   * Create a new filter.
+   *
+   * @param position     The name of the three-component floating point
+   *                     position attribute
+   * @param ratio        The target number of triangles of each level as a
+   *                     fraction of the number in the previous level, in the
+   *                     range {@code [0, 1]}
+   * @param max_error    The largest permitted error as a fraction of the
+   *                     extent of the mesh, non-negative
+   * @param levels       The number of levels to generate, at least
+   *                     {@code 1}
+   * @param lock_borders {@code true} if border vertices must not move
+   *
+   * @return A new filter
+   *
+   * @throws IllegalArgumentException If any argument is out of range
+   */
+
+  public static SMFMemoryMeshFilterType create(
+    final SMFAttributeName position,
+    final double ratio,
+    final double max_error,
+    final int levels,
+    final boolean lock_borders)
+    throws IllegalArgumentException
+  {
+    SMFMemoryMeshFilterSimplify.checkRatio(ratio);
+    SMFMemoryMeshFilterSimplify.checkMaxError(max_error);
+    if (levels < 1) {
+      throw new IllegalArgumentException(
+        String.format("Level count %d must be at least 1", levels));
+    }
+    return new SMFMemoryMeshFilterSimplifyLODs(
+      position, ratio, max_error, levels, lock_borders);
+  }
+
+  /**
+   * Attempt to parse a command.
+   *
+   * @param file The file, if any
+   * @param line The line
+   * @param text The text
+   *
+   * @return A parsed command or a list of parse errors
+   */
+
+  public static SMFPartialLogged<SMFMemoryMeshFilterType> parse(
+    final Optional<URI> file,
+    final int line,
+    final List<String> text)
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(text, "text");
+
+    if (text.size() == 4 || text.size() == 5) {
+      try {
+        return SMFPartialLogged.succeeded(
+          create(
+            SMFAttributeName.of(text.get(0)),
+            Double.parseDouble(text.get(1)),
+            Double.parseDouble(text.get(2)),
+            Integer.parseInt(text.get(3)),
+            text.size() == 5
+              && SMFMemoryMeshFilterSimplify.parseLockBorders(text.get(4))));
+      } catch (final IllegalArgumentException e) {
+        return errorExpectedGotValidation(file, line, makeSyntax(), text);
+      }
+    }
+    return errorExpectedGotValidation(file, line, makeSyntax(), text);
+  }
+
+  private static String makeSyntax()
+  {
+    return NAME + " " + SYNTAX;
+  }
+
+  @Override
+  public String name()
+  {
+    return NAME;
+  }
+
+  @Override
+  public String syntax()
+  {
+    return makeSyntax();
+  }
+
+  @Override
+  public SMFPartialLogged<SMFMemoryMesh> filter(
+    final SMFFilterCommandContext context,
+    final SMFMemoryMesh m)
+  {
+    Objects.requireNonNull(context, "Context");
+    Objects.requireNonNull(m, "Mesh");
+
+    final SMFHeader header = m.header();
+    final List<SMFProcessingError> errors =
+      SMFAttributeArrays.checkFloating3(header, this.position);
+    if (!errors.isEmpty()) {
+      return SMFPartialLogged.failed(errors);
+    }
+
+    final int[] indices;
+    try {
+      indices = SMFTriangleArrays.flatten(m.triangles(), header.vertexCount());
+    } catch (final IllegalArgumentException e) {
+      return SMFPartialLogged.failed(
+        SMFProcessingError.of(e.getMessage(), Optional.of(e)));
+    }
+
+    final double[] positions =
+      SMFAttributeArrays.flatten3(m.arrays().get(this.position));
+    final double extent = SMFSimplifier.extent(positions);
+    final SMFSimplifier simplifier =
+      SMFSimplifier.create(
+        indices, positions, (int) header.vertexCount(), this.lockBorders);
+
+    final List<int[]> lods = new ArrayList<>(this.levels);
+    final double[] lod_errors = new double[this.levels];
+    int size = 4;
+    for (int level = 0; level < this.levels; ++level) {
+      final int previous = simplifier.indices().length / 3;
+      simplifier.simplify(
+        (int) Math.floor(this.ratio * (double) previous),
+        this.maxError * extent);
+
+      final int[] lod = simplifier.indices();
+      lods.add(lod);
+      lod_errors[level] = SMFMemoryMeshFilterSimplify.relative(simplifier, extent);
+      size = Math.addExact(size, Math.addExact(12, Math.multiplyExact(lod.length, 4)));
+
+      LOG.info(
+        "level {}: {} triangles (error {})",
+        Integer.valueOf(level + 1),
+        Integer.valueOf(lod.length / 3),
+        String.format("%.6f", Double.valueOf(lod_errors[level])));
+    }
+
+    final ByteBuffer data = ByteBuffer.allocate(size);
+    data.putInt(this.levels);
+    for (int level = 0; level < this.levels; ++level) {
+      final int[] lod = lods.get(level);
+      data.putDouble(lod_errors[level]);
+      data.putInt(lod.length / 3);
+      for (final int index : lod) {
+        data.putInt(index);
+      }
+    }
+
+    return SMFPartialLogged.succeeded(
+      SMFMetadataBlocks.replace(m, SMFMetadata.of(SCHEMA, data.array())));
+  }
+}
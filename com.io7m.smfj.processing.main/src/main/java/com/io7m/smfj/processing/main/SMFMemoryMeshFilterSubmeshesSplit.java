@@ -0,0 +1,313 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.core.SMFSchemaIdentifier;
+import com.io7m.smfj.core.SMFSchemaName;
+import com.io7m.smfj.processing.api.SMFFilterCommandContext;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFMetadata;
+import com.io7m.smfj.processing.api.SMFProcessingError;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.smfj.processing.api.SMFFilterCommandParsing.errorExpectedGotValidation;
+
+/**
+ * A filter that partitions a mesh into submeshes that each reference at
+ * most a given number of vertices, so that each submesh can be drawn with
+ * 16-bit indices relative to its first vertex. Triangles are assigned to
+ * submeshes in their existing order, so any cache optimization is
+ * preserved. The vertices of each submesh are stored contiguously in the
+ * order of their first use, and vertices shared by several submeshes are
+ * duplicated into each of them. Vertices not referenced by any triangle
+ * are removed. A mesh that already has few enough vertices becomes a
+ * single submesh, and the order of its remaining vertices is preserved.
+ *
+ * The submeshes are described by a metadata block with the schema
+ * {@link #SCHEMA}, encoded in big-endian byte order as an unsigned 32-bit
+ * submesh count followed by, for each submesh, its first triangle, its
+ * triangle count, its first vertex and its vertex count as unsigned 32-bit
+ * integers. The triangles of the mesh keep absolute vertex indices, so the
+ * mesh remains an ordinary triangle list; a renderer drawing a submesh with
+ * 16-bit indices subtracts the first vertex of the submesh from each index
+ * (or uses it as a base vertex). Any existing metadata with the same schema
+ * is replaced.
+ */
+
+public final class SMFMemoryMeshFilterSubmeshesSplit implements
+  SMFMemoryMeshFilterType
+{
+  /**
+   * The command name.
+   */
+
+  public static final String NAME = "submeshes-split";
+
+  /**
+   * The schema of the generated metadata.
+   */
+
+  public static final SMFSchemaIdentifier SCHEMA =
+    SMFSchemaIdentifier.of(SMFSchemaName.of("com.io7m.smf.submeshes"), 1, 0);
+
+  /**
+   * The largest number of vertices that 16-bit indices can address.
+   */
+
+  public static final int MAXIMUM_VERTICES = 65536;
+
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterSubmeshesSplit.class);
+
+  private static final String SYNTAX = "<max-vertices>";
+
+  private final int maxVertices;
+
+  private SMFMemoryMeshFilterSubmeshesSplit(
+    final int in_max_vertices)
+  {
+    this.maxVertices = in_max_vertices;
+  }
+
+  /**
+   * Create a new filter.
+   *
+   * @param max_vertices The maximum number of vertices per submesh, in the
+   *                     range {@code [3, 65536]}
+   *
+   * @return A new filter
+   *
+   * @throws IllegalArgumentException If the vertex count is out of range
+   */
+
+  public static SMFMemoryMeshFilterType create(
+    final int max_vertices)
+    throws IllegalArgumentException
+  {
+    if (max_vertices < 3 || max_vertices > MAXIMUM_VERTICES) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Maximum vertex count %d must be in the range [3, %d]",
+          Integer.valueOf(max_vertices),
+          Integer.valueOf(MAXIMUM_VERTICES)));
+    }
+    return new SMFMemoryMeshFilterSubmeshesSplit(max_vertices);
+  }
+
+  /**
+   * Attempt to parse a command.
+   *
+   * @param file The file, if any
+   * @param line The line
+   * @param text The text
+   *
+   * @return A parsed command or a list of parse errors
+   */
+
+  public static SMFPartialLogged<SMFMemoryMeshFilterType> parse(
+    final Optional<URI> file,
+    final int line,
+    final List<String> text)
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(text, "text");
+
+    if (text.size() == 1) {
+      try {
+        return SMFPartialLogged.succeeded(
+          create(Integer.parseInt(text.get(0))));
+      } catch (final IllegalArgumentException e) {
+        return errorExpectedGotValidation(file, line, makeSyntax(), text);
+      }
+    }
+    return errorExpectedGotValidation(file, line, makeSyntax(), text);
+  }
+
+  private static String makeSyntax()
+  {
+    return NAME + " " + SYNTAX;
+  }
+
+  @Override
+  public String name()
+  {
+    return NAME;
+  }
+
+  @Override
+  public String syntax()
+  {
+    return makeSyntax();
+  }
+
+  @Override
+  public SMFPartialLogged<SMFMemoryMesh> filter(
+    final SMFFilterCommandContext context,
+    final SMFMemoryMesh m)
+  {
+    Objects.requireNonNull(context, "Context");
+    Objects.requireNonNull(m, "Mesh");
+
+    final SMFHeader header = m.header();
+    final int[] indices;
+    try {
+      indices = SMFTriangleArrays.flatten(m.triangles(), header.vertexCount());
+    } catch (final IllegalArgumentException e) {
+      return SMFPartialLogged.failed(
+        SMFProcessingError.of(e.getMessage(), Optional.of(e)));
+    }
+
+    final int vertex_count = (int) header.vertexCount();
+    final List<int[]> submeshes = new ArrayList<>();
+    final int[] sources;
+    if (vertex_count <= this.maxVertices) {
+      sources = referenced(indices, vertex_count);
+      submeshes.add(new int[]{0, indices.length / 3, 0, sources.length});
+    } else {
+      sources = this.split(indices, vertex_count, submeshes);
+    }
+    LOG.info(
+      "split {} vertices into {} submeshes with {} vertices in total",
+      Integer.valueOf(vertex_count),
+      Integer.valueOf(submeshes.size()),
+      Integer.valueOf(sources.length));
+
+    final SMFMemoryMesh split =
+      SMFMemoryMesh.builder()
+        .from(m)
+        .setHeader(header.withVertexCount((long) sources.length))
+        .setArrays(SMFAttributeArrays.gatherAll(m.arrays(), sources))
+        .setTriangles(SMFTriangleArrays.triangles(indices))
+        .build();
+
+    return SMFPartialLogged.succeeded(
+      SMFMetadataBlocks.replace(split, metadata(submeshes)));
+  }
+
+  /**
+   * Remove the vertices that are not referenced by any triangle, preserving
+   * the order of the remaining vertices and rewriting {@code indices} in
+   * place to refer to them.
+   *
+   * @return The source vertex of each remaining vertex
+   */
+
+  private static int[] referenced(
+    final int[] indices,
+    final int vertex_count)
+  {
+    final boolean[] used = new boolean[vertex_count];
+    for (final int vertex : indices) {
+      used[vertex] = true;
+    }
+
+    final int[] remap = new int[vertex_count];
+    final int[] sources = new int[vertex_count];
+    int count = 0;
+    for (int vertex = 0; vertex < vertex_count; ++vertex) {
+      if (used[vertex]) {
+        remap[vertex] = count;
+        sources[count] = vertex;
+        ++count;
+      }
+    }
+
+    for (int index = 0; index < indices.length; ++index) {
+      indices[index] = remap[indices[index]];
+    }
+    return Arrays.copyOf(sources, count);
+  }
+
+  /**
+   * Assign the triangles to submeshes in order, rewriting {@code indices}
+   * in place to refer to the new vertices and appending a {@code (first
+   * triangle, triangle count, first vertex, vertex count)} description of
+   * each submesh to {@code submeshes}.
+   *
+   * @return The source vertex of each new vertex
+   */
+
+  private int[] split(
+    final int[] indices,
+    final int vertex_count,
+    final List<int[]> submeshes)
+  {
+    final int[] local = new int[vertex_count];
+    final int[] local_stamp = new int[vertex_count];
+    int[] sources = new int[vertex_count];
+    int source_count = 0;
+    int[] submesh = {0, 0, 0, 0};
+
+    for (int base = 0; base < indices.length; base += 3) {
+      int added = 0;
+      for (int corner = 0; corner < 3; ++corner) {
+        if (local_stamp[indices[base + corner]] != submeshes.size() + 1) {
+          ++added;
+        }
+      }
+
+      if (submesh[3] + added > this.maxVertices) {
+        submeshes.add(submesh);
+        submesh = new int[]{base / 3, 0, source_count, 0};
+      }
+
+      for (int corner = 0; corner < 3; ++corner) {
+        final int vertex = indices[base + corner];
+        if (local_stamp[vertex] != submeshes.size() + 1) {
+          local_stamp[vertex] = submeshes.size() + 1;
+          local[vertex] = source_count;
+          if (source_count == sources.length) {
+            sources = Arrays.copyOf(sources, sources.length * 2);
+          }
+          sources[source_count] = vertex;
+          ++source_count;
+          ++submesh[3];
+        }
+        indices[base + corner] = local[vertex];
+      }
+      ++submesh[1];
+    }
+
+    submeshes.add(submesh);
+    return Arrays.copyOf(sources, source_count);
+  }
+
+  private static SMFMetadata metadata(
+    final List<int[]> submeshes)
+  {
+    final ByteBuffer data = ByteBuffer.allocate(4 + submeshes.size() * 16);
+    data.putInt(submeshes.size());
+    for (final int[] submesh : submeshes) {
+      for (final int value : submesh) {
+        data.putInt(value);
+      }
+    }
+    return SMFMetadata.of(SCHEMA, data.array());
+  }
+}
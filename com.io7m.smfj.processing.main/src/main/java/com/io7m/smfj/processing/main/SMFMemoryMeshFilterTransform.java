@@ -0,0 +1,329 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.jtensors.core.unparameterized.matrices.Matrix4x4D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFAttributeArrayType;
+import com.io7m.smfj.processing.api.SMFFilterCommandContext;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFProcessingError;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.smfj.processing.api.SMFFilterCommandParsing.errorExpectedGotValidation;
+
+/**
+ * A filter that applies an affine transformation to the attributes of a
+ * mesh. Positions are transformed by the matrix, normals by the inverse
+ * transpose of its upper-left 3x3 part, and tangents by its upper-left 3x3
+ * part; normals and tangents are optionally renormalized. If the matrix
+ * reverses the handedness of the coordinate system, the winding order of
+ * every triangle is reversed so that front faces remain front-facing.
+ */
+
+public final class SMFMemoryMeshFilterTransform implements
+  SMFMemoryMeshFilterType
+{
+  /**
+   * The command name.
+   */
+
+  public static final String NAME = "transform";
+
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterTransform.class);
+
+  private static final String SYNTAX =
+    "<m00> <m01> <m02> <m03> <m10> ... <m33> "
+      + "<attribute>=<position|normal|tangent> ... [renormalize]";
+
+  private static final String RENORMALIZE = "renormalize";
+
+  private final double[] matrix;
+  private final Map<SMFAttributeName, SMFTransformAttributeKind> attributes;
+  private final boolean renormalize;
+
+  private SMFMemoryMeshFilterTransform(
+    final double[] in_matrix,
+    final Map<SMFAttributeName, SMFTransformAttributeKind> in_attributes,
+    final boolean in_renormalize)
+  {
+    this.matrix = Objects.requireNonNull(in_matrix, "matrix");
+    this.attributes = Objects.requireNonNull(in_attributes, "attributes");
+    this.renormalize = in_renormalize;
+  }
+
+  /**
+   * Create a new filter.
+   *
+   * @param matrix      An affine matrix
+   * @param attributes  The attributes to transform, and how to transform
+   *                    them
+   * @param renormalize {@code true} if normals and tangents should be
+   *                    renormalized after transformation
+   *
+   * @return A new filter
+   *
+   * @throws IllegalArgumentException If the matrix is not affine or has
+   *                                  non-finite elements, or no attributes
+   *                                  are given
+   */
+
+  public static SMFMemoryMeshFilterType create(
+    final Matrix4x4D matrix,
+    final Map<SMFAttributeName, SMFTransformAttributeKind> attributes,
+    final boolean renormalize)
+    throws IllegalArgumentException
+  {
+    Objects.requireNonNull(matrix, "matrix");
+    Objects.requireNonNull(attributes, "attributes");
+
+    final double[] elements = {
+      matrix.r0c0(), matrix.r0c1(), matrix.r0c2(), matrix.r0c3(),
+      matrix.r1c0(), matrix.r1c1(), matrix.r1c2(), matrix.r1c3(),
+      matrix.r2c0(), matrix.r2c1(), matrix.r2c2(), matrix.r2c3(),
+      matrix.r3c0(), matrix.r3c1(), matrix.r3c2(), matrix.r3c3(),
+    };
+    for (final double element : elements) {
+      if (!Double.isFinite(element)) {
+        throw new IllegalArgumentException(
+          "Matrix elements must be finite");
+      }
+    }
+    if (elements[12] != 0.0
+      || elements[13] != 0.0
+      || elements[14] != 0.0
+      || elements[15] != 1.0) {
+      throw new IllegalArgumentException(
+        "The bottom row of the matrix must be (0, 0, 0, 1)");
+    }
+    if (attributes.isEmpty()) {
+      throw new IllegalArgumentException(
+        "At least one attribute must be specified");
+    }
+    return new SMFMemoryMeshFilterTransform(
+      elements, new LinkedHashMap<>(attributes), renormalize);
+  }
+
+  /**
+   * Attempt to parse a command.
+   *
+   * @param file The file, if any
+   * @param line The line
+   * @param text The text
+   *
+   * @return A parsed command or a list of parse errors
+   */
+
+  public static SMFPartialLogged<SMFMemoryMeshFilterType> parse(
+    final Optional<URI> file,
+    final int line,
+    final List<String> text)
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(text, "text");
+
+    if (text.size() >= 17) {
+      try {
+        final double[] e = new double[16];
+        for (int index = 0; index < 16; ++index) {
+          e[index] = Double.parseDouble(text.get(index));
+        }
+
+        final boolean renormalize =
+          Objects.equals(text.get(text.size() - 1), RENORMALIZE);
+        final int end = renormalize ? text.size() - 1 : text.size();
+        final Map<SMFAttributeName, SMFTransformAttributeKind> attributes =
+          new LinkedHashMap<>();
+        for (final String argument : text.subList(16, end)) {
+          parseAttribute(attributes, argument);
+        }
+
+        return SMFPartialLogged.succeeded(
+          create(
+            Matrix4x4D.of(
+              e[0], e[1], e[2], e[3],
+              e[4], e[5], e[6], e[7],
+              e[8], e[9], e[10], e[11],
+              e[12], e[13], e[14], e[15]),
+            attributes,
+            renormalize));
+      } catch (final IllegalArgumentException e) {
+        return errorExpectedGotValidation(file, line, makeSyntax(), text);
+      }
+    }
+    return errorExpectedGotValidation(file, line, makeSyntax(), text);
+  }
+
+  private static void parseAttribute(
+    final Map<SMFAttributeName, SMFTransformAttributeKind> attributes,
+    final String argument)
+  {
+    final int separator = argument.indexOf('=');
+    if (separator < 0) {
+      throw new IllegalArgumentException(
+        "Expected <attribute>=<kind>: " + argument);
+    }
+
+    final SMFAttributeName name =
+      SMFAttributeName.of(argument.substring(0, separator));
+    if (attributes.containsKey(name)) {
+      throw new IllegalArgumentException(
+        "Attribute specified more than once: " + name.value());
+    }
+    attributes.put(
+      name,
+      SMFTransformAttributeKind.fromName(argument.substring(separator + 1)));
+  }
+
+  private static String makeSyntax()
+  {
+    return NAME + " " + SYNTAX;
+  }
+
+  @Override
+  public String name()
+  {
+    return NAME;
+  }
+
+  @Override
+  public String syntax()
+  {
+    return makeSyntax();
+  }
+
+  @Override
+  public SMFPartialLogged<SMFMemoryMesh> filter(
+    final SMFFilterCommandContext context,
+    final SMFMemoryMesh m)
+  {
+    Objects.requireNonNull(context, "Context");
+    Objects.requireNonNull(m, "Mesh");
+
+    final double[] linear = SMFTransforms.upper3x3(this.matrix);
+    final double determinant = SMFTransforms.determinant(linear);
+    final List<SMFProcessingError> errors = this.check(m.header(), determinant);
+    if (!errors.isEmpty()) {
+      return SMFPartialLogged.failed(errors);
+    }
+
+    final SMFMemoryMesh.Builder builder = SMFMemoryMesh.builder().from(m);
+    for (final var entry : this.attributes.entrySet()) {
+      final SMFAttributeName name = entry.getKey();
+      builder.putArrays(
+        name,
+        this.transform(
+          m.arrays().get(name),
+          m.header().attributesByName().get(name).componentCount(),
+          entry.getValue(),
+          linear,
+          determinant));
+    }
+
+    final boolean flip = determinant < 0.0;
+    if (flip) {
+      final List<Vector3L> triangles = new ArrayList<>(m.triangles().size());
+      for (final Vector3L triangle : m.triangles()) {
+        triangles.add(Vector3L.of(triangle.x(), triangle.z(), triangle.y()));
+      }
+      builder.setTriangles(triangles);
+    }
+
+    LOG.info(
+      "transformed {} attributes (determinant {}{})",
+      Integer.valueOf(this.attributes.size()),
+      String.format("%.6f", Double.valueOf(determinant)),
+      flip ? ", winding reversed" : "");
+    return SMFPartialLogged.succeeded(builder.build());
+  }
+
+  private List<SMFProcessingError> check(
+    final SMFHeader header,
+    final double determinant)
+  {
+    final List<SMFProcessingError> errors = new ArrayList<>();
+    for (final var entry : this.attributes.entrySet()) {
+      if (entry.getValue() == SMFTransformAttributeKind.TRANSFORM_TANGENT) {
+        errors.addAll(
+          SMFAttributeArrays.checkFloating(header, entry.getKey(), 3, 4));
+      } else {
+        errors.addAll(
+          SMFAttributeArrays.checkFloating3(header, entry.getKey()));
+      }
+    }
+
+    if (determinant == 0.0
+      && this.attributes.containsValue(
+      SMFTransformAttributeKind.TRANSFORM_NORMAL)) {
+      errors.add(SMFProcessingError.of(
+        "Normals cannot be transformed by a singular matrix",
+        Optional.empty()));
+    }
+    return errors;
+  }
+
+  private SMFAttributeArrayType transform(
+    final SMFAttributeArrayType array,
+    final int stride,
+    final SMFTransformAttributeKind kind,
+    final double[] linear,
+    final double determinant)
+  {
+    final double[] values =
+      stride == 4
+        ? SMFAttributeArrays.flatten4(array)
+        : SMFAttributeArrays.flatten3(array);
+
+    switch (kind) {
+      case TRANSFORM_POSITION: {
+        SMFTransforms.affine(this.matrix, values, stride);
+        break;
+      }
+      case TRANSFORM_NORMAL: {
+        SMFTransforms.linear(
+          SMFTransforms.inverseTranspose(linear),
+          values,
+          stride,
+          this.renormalize);
+        break;
+      }
+      case TRANSFORM_TANGENT: {
+        SMFTransforms.linear(linear, values, stride, this.renormalize);
+        if (stride == 4 && determinant < 0.0) {
+          SMFTransforms.negateW(values);
+        }
+        break;
+      }
+    }
+
+    return SMFAttributeArrays.floating(values, stride);
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFFilterCommandContext;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFProcessingError;
+import java.net.URI;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.smfj.processing.api.SMFFilterCommandParsing.errorExpectedGotValidation;
+
+/**
+ * A filter that reorders triangles to improve the hit rate of the GPU
+ * post-transform vertex cache and then sorts clusters of triangles so that
+ * those most likely to occlude the rest of the mesh are drawn first,
+ * reducing pixel overdraw when rendering opaque geometry.
+ */
+
+public final class SMFMemoryMeshFilterTrianglesReorderOverdraw implements
+  SMFMemoryMeshFilterType
+{
+  /**
+   * The command name.
+   */
+
+  public static final String NAME = "triangles-reorder-overdraw";
+
+  /**
+   * The smallest permitted threshold.
+   */
+
+  public static final double MINIMUM_THRESHOLD = 1.0;
+
+  /**
+   * The resolution of the views used to estimate overdraw.
+   */
+
+  public static final int OVERDRAW_RESOLUTION = 256;
+
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterTrianglesReorderOverdraw.class);
+
+  private static final String SYNTAX =
+    "<position-attribute> <cache-size> <threshold>";
+
+  private final SMFAttributeName position;
+  private final int cacheSize;
+  private final double threshold;
+
+  private SMFMemoryMeshFilterTrianglesReorderOverdraw(
+    final SMFAttributeName in_position,
+    final int in_cache_size,
+    final double in_threshold)
+  {
+    this.position = Objects.requireNonNull(in_position, "position");
+    this.cacheSize = in_cache_size;
+    this.threshold = in_threshold;
+  }
+
+  /**
+   * Create a new filter.
+   *
+   * @param position   The name of the three-component floating point
+   *                   position attribute
+   * @param cache_size The number of entries in the modelled vertex cache
+   * @param threshold  The factor by which the average cache miss ratio of a
+   *                   cluster may exceed that of the cache-optimized order;
+   *                   larger values trade cache efficiency for less overdraw
+   *
+   * @return A new filter
+   *
+   * @throws IllegalArgumentException If the cache size is less than {@link
+   *                                  SMFMemoryMeshFilterTrianglesReorderCache#MINIMUM_CACHE_SIZE}
+   *                                  or the threshold is not a finite value
+   *                                  of at least {@link #MINIMUM_THRESHOLD}
+   */
+
+  public static SMFMemoryMeshFilterType create(
+    final SMFAttributeName position,
+    final int cache_size,
+    final double threshold)
+    throws IllegalArgumentException
+  {
+    final int minimum = SMFMemoryMeshFilterTrianglesReorderCache.MINIMUM_CACHE_SIZE;
+    if (cache_size < minimum) {
+      throw new IllegalArgumentException(String.format(
+        "Cache size %d must be at least %d",
+        Integer.valueOf(cache_size),
+        Integer.valueOf(minimum)));
+    }
+    if (!Double.isFinite(threshold) || threshold < MINIMUM_THRESHOLD) {
+      throw new IllegalArgumentException(String.format(
+        "Threshold %f must be a finite value of at least %f",
+        Double.valueOf(threshold),
+        Double.valueOf(MINIMUM_THRESHOLD)));
+    }
+    return new SMFMemoryMeshFilterTrianglesReorderOverdraw(
+      position, cache_size, threshold);
+  }
+
+  /**
+   * Attempt to parse a command.
+   *
+   * @param file The file, if any
+   * @param line The line
+   * @param text The text
+   *
+   * @return A parsed command or a list of parse errors
+   */
+
+  public static SMFPartialLogged<SMFMemoryMeshFilterType> parse(
+    final Optional<URI> file,
+    final int line,
+    final List<String> text)
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(text, "text");
+
+    if (text.size() == 3) {
+      try {
+        return SMFPartialLogged.succeeded(
+          create(
+            SMFAttributeName.of(text.get(0)),
+            Integer.parseInt(text.get(1)),
+            Double.parseDouble(text.get(2))));
+      } catch (final IllegalArgumentException e) {
+        return errorExpectedGotValidation(file, line, makeSyntax(), text);
+      }
+    }
+    return errorExpectedGotValidation(file, line, makeSyntax(), text);
+  }
+
+  private static String makeSyntax()
+  {
+    return NAME + " " + SYNTAX;
+  }
+
+  @Override
+  public String name()
+  {
+    return NAME;
+  }
+
+  @Override
+  public String syntax()
+  {
+    return makeSyntax();
+  }
+
+  @Override
+  public SMFPartialLogged<SMFMemoryMesh> filter(
+    final SMFFilterCommandContext context,
+    final SMFMemoryMesh m)
+  {
+    Objects.requireNonNull(context, "Context");
+    Objects.requireNonNull(m, "Mesh");
+
+    final List<SMFProcessingError> errors =
+      SMFAttributeArrays.checkFloating3(m.header(), this.position);
+    if (!errors.isEmpty()) {
+      return SMFPartialLogged.failed(errors);
+    }
+
+    final int[] indices;
+    try {
+      indices = SMFTriangleArrays.flatten(m.triangles(), m.header().vertexCount());
+    } catch (final IllegalArgumentException e) {
+      return SMFPartialLogged.failed(
+        SMFProcessingError.of(e.getMessage(), Optional.of(e)));
+    }
+
+    final int vertex_count = (int) m.header().vertexCount();
+    final double[] positions =
+      SMFAttributeArrays.flatten3(m.arrays().get(this.position));
+    final boolean clockwise = SMFOverdrawStatistics.isClockwise(m);
+
+    final SMFTipsify.Result result =
+      SMFTipsify.optimize(indices, vertex_count, this.cacheSize);
+    final int[] cached = SMFTriangleArrays.reorder(indices, result.order());
+    final int[] clusters =
+      SMFOverdrawClusters.split(
+        cached, vertex_count, result.clusters(), this.cacheSize, this.threshold);
+    final int[] sorted =
+      SMFOverdrawClusters.sort(cached, positions, clockwise, clusters);
+
+    final int[] order = new int[sorted.length];
+    for (int index = 0; index < sorted.length; ++index) {
+      order[index] = result.order()[sorted[index]];
+    }
+
+    final int[] reordered = SMFTriangleArrays.reorder(indices, order);
+    LOG.info(
+      "{} clusters ({} before splitting)",
+      Integer.valueOf(clusters.length),
+      Integer.valueOf(result.clusters().length));
+
+    /*
+     * Measuring overdraw rasterizes the whole mesh, so only do it when the
+     * results will actually be logged.
+     */
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(
+        "before: {}, {}",
+        SMFVertexCacheStatistics.measure(indices, vertex_count, this.cacheSize),
+        SMFOverdrawStatistics.measure(
+          indices, positions, clockwise, OVERDRAW_RESOLUTION));
+      LOG.debug(
+        "after:  {}, {}",
+        SMFVertexCacheStatistics.measure(reordered, vertex_count, this.cacheSize),
+        SMFOverdrawStatistics.measure(
+          reordered, positions, clockwise, OVERDRAW_RESOLUTION));
+    }
+
+    return SMFPartialLogged.succeeded(
+      m.withTriangles(SMFTriangleArrays.reorder(m.triangles(), order)));
+  }
+}
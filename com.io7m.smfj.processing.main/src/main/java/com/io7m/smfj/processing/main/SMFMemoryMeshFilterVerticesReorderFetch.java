@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFFilterCommandContext;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFProcessingError;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.smfj.processing.api.SMFFilterCommandParsing.errorExpectedGotValidation;
+
+/**
+ * A filter that renumbers vertices in the order in which the triangles first
+ * reference them, so that vertex data is fetched close to sequentially.
+ * Vertices that are not referenced by any triangle are placed after all of
+ * the referenced vertices, in their original order. Best run after
+ * {@link SMFMemoryMeshFilterTrianglesReorderCache}.
+ */
+
+public final class SMFMemoryMeshFilterVerticesReorderFetch implements
+  SMFMemoryMeshFilterType
+{
+  /**
+   * The command name.
+   */
+
+  public static final String NAME = "vertices-reorder-fetch";
+
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterVerticesReorderFetch.class);
+
+  private static final String SYNTAX = "";
+
+  private SMFMemoryMeshFilterVerticesReorderFetch()
+  {
+
+  }
+
+  /**
+   * Create a new filter.
+   *
+   * @return A new filter
+   */
+
+  public static SMFMemoryMeshFilterType create()
+  {
+    return new SMFMemoryMeshFilterVerticesReorderFetch();
+  }
+
+  /**
+   * Attempt to parse a command.
+   *
+   * @param file The file, if any
+   * @param line The line
+   * @param text The text
+   *
+   * @return A parsed command or a list of parse errors
+   */
+
+  public static SMFPartialLogged<SMFMemoryMeshFilterType> parse(
+    final Optional<URI> file,
+    final int line,
+    final List<String> text)
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(text, "text");
+
+    if (text.isEmpty()) {
+      return SMFPartialLogged.succeeded(create());
+    }
+    return errorExpectedGotValidation(file, line, makeSyntax(), text);
+  }
+
+  private static String makeSyntax()
+  {
+    return NAME + " " + SYNTAX;
+  }
+
+  @Override
+  public String name()
+  {
+    return NAME;
+  }
+
+  @Override
+  public String syntax()
+  {
+    return makeSyntax();
+  }
+
+  @Override
+  public SMFPartialLogged<SMFMemoryMesh> filter(
+    final SMFFilterCommandContext context,
+    final SMFMemoryMesh m)
+  {
+    Objects.requireNonNull(context, "Context");
+    Objects.requireNonNull(m, "Mesh");
+
+    final int[] indices;
+    try {
+      indices = SMFTriangleArrays.flatten(m.triangles(), m.header().vertexCount());
+    } catch (final IllegalArgumentException e) {
+      return SMFPartialLogged.failed(
+        SMFProcessingError.of(e.getMessage(), Optional.of(e)));
+    }
+
+    final int vertex_count = (int) m.header().vertexCount();
+    final int[] remap = firstUseOrder(indices, vertex_count);
+
+    final int[] sources = new int[vertex_count];
+    boolean identity = true;
+    for (int vertex = 0; vertex < vertex_count; ++vertex) {
+      sources[remap[vertex]] = vertex;
+      identity = identity && remap[vertex] == vertex;
+    }
+
+    if (identity) {
+      return SMFPartialLogged.succeeded(m);
+    }
+
+    for (int index = 0; index < indices.length; ++index) {
+      indices[index] = remap[indices[index]];
+    }
+
+    return SMFPartialLogged.succeeded(
+      m.withArrays(SMFAttributeArrays.gatherAll(m.arrays(), sources))
+        .withTriangles(SMFTriangleArrays.triangles(indices)));
+  }
+
+  /**
+   * @return The new index of each vertex
+   */
+
+  private static int[] firstUseOrder(
+    final int[] indices,
+    final int vertex_count)
+  {
+    final int[] remap = new int[vertex_count];
+    Arrays.fill(remap, -1);
+
+    int next = 0;
+    for (final int vertex : indices) {
+      if (remap[vertex] == -1) {
+        remap[vertex] = next;
+        ++next;
+      }
+    }
+
+    final int referenced = next;
+    for (int vertex = 0; vertex < vertex_count; ++vertex) {
+      if (remap[vertex] == -1) {
+        remap[vertex] = next;
+        ++next;
+      }
+    }
+
+    LOG.info(
+      "{} vertices referenced, {} unreferenced",
+      Integer.valueOf(referenced),
+      Integer.valueOf(vertex_count - referenced));
+    return remap;
+  }
+}
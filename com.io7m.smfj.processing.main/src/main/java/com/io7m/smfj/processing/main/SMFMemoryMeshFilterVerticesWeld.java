@@ -0,0 +1,255 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.core.SMFTriangles;
+import com.io7m.smfj.processing.api.SMFFilterCommandContext;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFProcessingError;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.smfj.processing.api.SMFFilterCommandChecks.checkAttributeExists;
+import static com.io7m.smfj.processing.api.SMFFilterCommandParsing.errorExpectedGotValidation;
+
+/**
+ * A filter that merges vertices that have identical values for all
+ * attributes, or for a selected set of attributes, optionally within a
+ * per-attribute epsilon. Each vertex is merged into the lowest-numbered
+ * remaining vertex for which every component of every compared attribute
+ * differs by at most the epsilon of that attribute. Merging is therefore
+ * not transitive: two vertices merged into the same vertex may differ by
+ * up to twice the epsilon. Triangles are remapped onto the remaining
+ * vertices, and triangles that become degenerate are removed. The merged
+ * vertex keeps the values of the lowest-numbered vertex that was merged
+ * into it.
+ */
+
+public final class SMFMemoryMeshFilterVerticesWeld implements
+  SMFMemoryMeshFilterType
+{
+  /**
+   * The command name.
+   */
+
+  public static final String NAME = "vertices-weld";
+
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterVerticesWeld.class);
+
+  private static final String SYNTAX = "[<attribute>[=<epsilon>] ...]";
+
+  private final Map<SMFAttributeName, Double> epsilons;
+
+  private SMFMemoryMeshFilterVerticesWeld(
+    final Map<SMFAttributeName, Double> in_epsilons)
+  {
+    this.epsilons = Objects.requireNonNull(in_epsilons, "epsilons");
+  }
+
+  /**
+   * Create a new filter.
+   *
+   * @param epsilons The attributes to compare, and the epsilon value for
+   *                 each; if empty, all attributes are compared exactly
+   *
+   * @return A new filter
+   *
+   * @throws IllegalArgumentException If an epsilon value is negative or not
+   *                                  finite
+   */
+
+  public static SMFMemoryMeshFilterType create(
+    final Map<SMFAttributeName, Double> epsilons)
+    throws IllegalArgumentException
+  {
+    Objects.requireNonNull(epsilons, "epsilons");
+
+    for (final var entry : epsilons.entrySet()) {
+      final double epsilon = entry.getValue().doubleValue();
+      if (!Double.isFinite(epsilon) || epsilon < 0.0) {
+        throw new IllegalArgumentException(String.format(
+          "Epsilon %f for attribute %s must be finite and non-negative",
+          Double.valueOf(epsilon),
+          entry.getKey().value()));
+      }
+    }
+    return new SMFMemoryMeshFilterVerticesWeld(
+      new LinkedHashMap<>(epsilons));
+  }
+
+  /**
+   * Attempt to parse a command.
+   *
+   * @param file The file, if any
+   * @param line The line
+   * @param text The text
+   *
+   * @return A parsed command or a list of parse errors
+   */
+
+  public static SMFPartialLogged<SMFMemoryMeshFilterType> parse(
+    final Optional<URI> file,
+    final int line,
+    final List<String> text)
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(text, "text");
+
+    try {
+      final Map<SMFAttributeName, Double> epsilons = new LinkedHashMap<>();
+      for (final String argument : text) {
+        final int separator = argument.indexOf('=');
+        if (separator == -1) {
+          epsilons.put(SMFAttributeName.of(argument), Double.valueOf(0.0));
+        } else {
+          epsilons.put(
+            SMFAttributeName.of(argument.substring(0, separator)),
+            Double.valueOf(argument.substring(separator + 1)));
+        }
+      }
+      return SMFPartialLogged.succeeded(create(epsilons));
+    } catch (final IllegalArgumentException e) {
+      return errorExpectedGotValidation(file, line, makeSyntax(), text);
+    }
+  }
+
+  private static String makeSyntax()
+  {
+    return NAME + " " + SYNTAX;
+  }
+
+  @Override
+  public String name()
+  {
+    return NAME;
+  }
+
+  @Override
+  public String syntax()
+  {
+    return makeSyntax();
+  }
+
+  @Override
+  public SMFPartialLogged<SMFMemoryMesh> filter(
+    final SMFFilterCommandContext context,
+    final SMFMemoryMesh m)
+  {
+    Objects.requireNonNull(context, "Context");
+    Objects.requireNonNull(m, "Mesh");
+
+    final SMFHeader header = m.header();
+    List<SMFProcessingError> errors = List.of();
+    for (final SMFAttributeName name : this.epsilons.keySet()) {
+      errors = checkAttributeExists(errors, header.attributesByName(), name);
+    }
+    if (!errors.isEmpty()) {
+      return SMFPartialLogged.failed(errors);
+    }
+
+    final int[] indices;
+    try {
+      indices = SMFTriangleArrays.flatten(m.triangles(), header.vertexCount());
+    } catch (final IllegalArgumentException e) {
+      return SMFPartialLogged.failed(
+        SMFProcessingError.of(e.getMessage(), Optional.of(e)));
+    }
+
+    final int vertex_count = (int) header.vertexCount();
+    final SMFVertexWelding.Result result =
+      SMFVertexWelding.weld(this.attributes(m), vertex_count);
+    final int[] sources = result.sources();
+
+    final List<Vector3L> triangles = remapTriangles(indices, result.remap());
+    LOG.info(
+      "welded {} vertices to {} ({} degenerate triangles removed)",
+      Integer.valueOf(vertex_count),
+      Integer.valueOf(sources.length),
+      Integer.valueOf(indices.length / 3 - triangles.size()));
+
+    if (sources.length == vertex_count && triangles.size() * 3 == indices.length) {
+      return SMFPartialLogged.succeeded(m);
+    }
+
+    final SMFTriangles triangle_info =
+      SMFTriangles.of(
+        (long) triangles.size(),
+        header.triangles().triangleIndexSizeBits());
+
+    return SMFPartialLogged.succeeded(
+      SMFMemoryMesh.builder()
+        .from(m)
+        .setHeader(
+          header.withVertexCount((long) sources.length)
+            .withTriangles(triangle_info))
+        .setArrays(SMFAttributeArrays.gatherAll(m.arrays(), sources))
+        .setTriangles(triangles)
+        .build());
+  }
+
+  /**
+   * @return The remapped triangles, excluding any that became degenerate
+   */
+
+  private static List<Vector3L> remapTriangles(
+    final int[] indices,
+    final int[] remap)
+  {
+    final List<Vector3L> triangles = new ArrayList<>(indices.length / 3);
+    for (int base = 0; base < indices.length; base += 3) {
+      final int a = remap[indices[base]];
+      final int b = remap[indices[base + 1]];
+      final int c = remap[indices[base + 2]];
+      if (a != b && b != c && a != c) {
+        triangles.add(Vector3L.of((long) a, (long) b, (long) c));
+      }
+    }
+    return triangles;
+  }
+
+  private List<SMFVertexWelding.Attribute> attributes(
+    final SMFMemoryMesh m)
+  {
+    final List<SMFVertexWelding.Attribute> attributes = new ArrayList<>();
+    if (this.epsilons.isEmpty()) {
+      for (final var array : m.arrays().values()) {
+        attributes.add(SMFVertexWelding.attribute(array, 0.0));
+      }
+    } else {
+      for (final var entry : this.epsilons.entrySet()) {
+        attributes.add(SMFVertexWelding.attribute(
+          m.arrays().get(entry.getKey()),
+          entry.getValue().doubleValue()));
+      }
+    }
+    return attributes;
+  }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Partitioning of a triangle list into meshlets: small groups of
+ * triangles that reference a bounded number of vertices, addressed by
+ * local 8-bit indices. Meshlets are grown greedily from a seed triangle
+ * by repeatedly adding the adjacent triangle that requires the fewest new
+ * vertices, which keeps them spatially compact and their culling bounds
+ * tight.
+ */
+
+final class SMFMeshlets
+{
+  /**
+   * The largest number of vertices that local 8-bit indices can address.
+   */
+
+  static final int MAXIMUM_VERTICES = 256;
+
+  private final int[] indices;
+  private final int maxVertices;
+  private final int maxTriangles;
+  private final SMFTriangleArrays.Adjacency adjacency;
+  private final boolean[] emitted;
+  private final int[] local;
+  private final int[] localStamp;
+  private final List<Meshlet> meshlets;
+  private int[] vertices;
+  private int vertexCount;
+  private byte[] triangles;
+  private int triangleCount;
+  private int cursor;
+
+  private SMFMeshlets(
+    final int[] in_indices,
+    final int in_vertex_count,
+    final int in_max_vertices,
+    final int in_max_triangles)
+  {
+    this.indices = in_indices;
+    this.maxVertices = in_max_vertices;
+    this.maxTriangles = in_max_triangles;
+    this.adjacency = SMFTriangleArrays.adjacency(in_indices, in_vertex_count);
+    this.emitted = new boolean[in_indices.length / 3];
+    this.local = new int[in_vertex_count];
+    this.localStamp = new int[in_vertex_count];
+    this.meshlets = new ArrayList<>();
+    this.vertices = new int[in_max_vertices];
+    this.triangles = new byte[in_max_triangles * 3];
+  }
+
+  /**
+   * Partition the given triangles into meshlets.
+   *
+   * @param indices       The triangle indices
+   * @param vertex_count  The number of vertices
+   * @param max_vertices  The maximum number of vertices per meshlet, in the
+   *                      range {@code [3, MAXIMUM_VERTICES]}
+   * @param max_triangles The maximum number of triangles per meshlet
+   *
+   * @return The meshlets, covering every triangle exactly once
+   */
+
+  static List<Meshlet> build(
+    final int[] indices,
+    final int vertex_count,
+    final int max_vertices,
+    final int max_triangles)
+  {
+    return new SMFMeshlets(indices, vertex_count, max_vertices, max_triangles)
+      .run();
+  }
+
+  private List<Meshlet> run()
+  {
+    int triangle = this.nextSeed();
+    while (triangle >= 0) {
+      this.add(triangle);
+      triangle = this.nextAdjacent();
+      if (triangle < 0) {
+        this.flush();
+        triangle = this.nextSeed();
+      }
+    }
+    return this.meshlets;
+  }
+
+  private int nextSeed()
+  {
+    while (this.cursor < this.emitted.length) {
+      if (!this.emitted[this.cursor]) {
+        return this.cursor;
+      }
+      ++this.cursor;
+    }
+    return -1;
+  }
+
+  /**
+   * @return The unemitted triangle adjacent to the current meshlet that
+   * needs the fewest new vertices, or {@code -1} if the meshlet is full or
+   * no adjacent triangle fits
+   */
+
+  private int nextAdjacent()
+  {
+    if (this.triangleCount == this.maxTriangles) {
+      return -1;
+    }
+
+    int best = -1;
+    int best_cost = Integer.MAX_VALUE;
+    for (int index = 0; index < this.vertexCount && best_cost > 0; ++index) {
+      final int vertex = this.vertices[index];
+      final int end = this.adjacency.end(vertex);
+      for (int a = this.adjacency.start(vertex); a < end; ++a) {
+        final int triangle = this.adjacency.triangle(a);
+        if (!this.emitted[triangle]) {
+          final int cost = this.newVertices(triangle);
+          if (cost < best_cost && this.vertexCount + cost <= this.maxVertices) {
+            best = triangle;
+            best_cost = cost;
+          }
+        }
+      }
+    }
+    return best;
+  }
+
+  private int newVertices(
+    final int triangle)
+  {
+    int count = 0;
+    for (int corner = 0; corner < 3; ++corner) {
+      if (!this.contains(this.indices[triangle * 3 + corner])) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  private boolean contains(
+    final int vertex)
+  {
+    return this.localStamp[vertex] == this.meshlets.size() + 1;
+  }
+
+  private void add(
+    final int triangle)
+  {
+    if (this.vertexCount + this.newVertices(triangle) > this.maxVertices
+      || this.triangleCount == this.maxTriangles) {
+      this.flush();
+    }
+
+    this.emitted[triangle] = true;
+    for (int corner = 0; corner < 3; ++corner) {
+      final int vertex = this.indices[triangle * 3 + corner];
+      if (!this.contains(vertex)) {
+        this.localStamp[vertex] = this.meshlets.size() + 1;
+        this.local[vertex] = this.vertexCount;
+        this.vertices[this.vertexCount] = vertex;
+        ++this.vertexCount;
+      }
+      this.triangles[this.triangleCount * 3 + corner] =
+        (byte) this.local[vertex];
+    }
+    ++this.triangleCount;
+  }
+
+  private void flush()
+  {
+    if (this.triangleCount > 0) {
+      this.meshlets.add(new Meshlet(
+        Arrays.copyOf(this.vertices, this.vertexCount),
+        Arrays.copyOf(this.triangles, this.triangleCount * 3)));
+      this.vertexCount = 0;
+      this.triangleCount = 0;
+    }
+  }
+
+  /**
+   * Compute culling bounds for a meshlet: a bounding sphere, and a normal
+   * cone such that the meshlet is entirely back-facing from a camera at
+   * {@code c} if {@code dot(normalize(apex - c), axis) >= cutoff}.
+   *
+   * @param meshlet   The meshlet
+   * @param positions The vertex positions as {@code (x, y, z)} triples
+   * @param clockwise {@code true} if front faces have clockwise winding
+   *
+   * @return The sphere center and radius, then the cone apex, axis and
+   * cutoff; a cutoff of {@code 1} means that the cone cannot be used to
+   * cull the meshlet
+   */
+
+  static double[] bounds(
+    final Meshlet meshlet,
+    final double[] positions,
+    final boolean clockwise)
+  {
+    final double[] result = new double[11];
+    sphere(meshlet, positions, result);
+    result[4] = result[0];
+    result[5] = result[1];
+    result[6] = result[2];
+    result[10] = 1.0;
+
+    final int count = meshlet.triangles().length / 3;
+    final double[] normals = new double[count * 3];
+    final double[] axis = new double[3];
+    for (int triangle = 0; triangle < count; ++triangle) {
+      normal(meshlet, positions, triangle, clockwise, normals);
+      for (int k = 0; k < 3; ++k) {
+        axis[k] += normals[triangle * 3 + k];
+      }
+    }
+
+    final double length = Math.sqrt(dot(axis, 0, axis, 0));
+    if (length > 0.0) {
+      for (int k = 0; k < 3; ++k) {
+        axis[k] /= length;
+      }
+      cone(meshlet, positions, normals, axis, result);
+    }
+    return result;
+  }
+
+  private static void cone(
+    final Meshlet meshlet,
+    final double[] positions,
+    final double[] normals,
+    final double[] axis,
+    final double[] result)
+  {
+    final int count = normals.length / 3;
+    double minimum = 1.0;
+    for (int triangle = 0; triangle < count; ++triangle) {
+      minimum = Math.min(minimum, dot(normals, triangle * 3, axis, 0));
+    }
+    if (minimum <= 0.0) {
+      return;
+    }
+
+    final byte[] triangles = meshlet.triangles();
+    double maximum_t = 0.0;
+    for (int triangle = 0; triangle < count; ++triangle) {
+      final int p = meshlet.vertices()[triangles[triangle * 3] & 0xff] * 3;
+      double dc = 0.0;
+      for (int k = 0; k < 3; ++k) {
+        dc += (result[k] - positions[p + k]) * normals[triangle * 3 + k];
+      }
+      final double dn = dot(normals, triangle * 3, axis, 0);
+      maximum_t = Math.max(maximum_t, dc / dn);
+    }
+
+    for (int k = 0; k < 3; ++k) {
+      result[4 + k] = result[k] - axis[k] * maximum_t;
+      result[7 + k] = axis[k];
+    }
+    result[10] = Math.sqrt(1.0 - minimum * minimum);
+  }
+
+  private static void sphere(
+    final Meshlet meshlet,
+    final double[] positions,
+    final double[] result)
+  {
+    final double[] min = {
+      Double.POSITIVE_INFINITY,
+      Double.POSITIVE_INFINITY,
+      Double.POSITIVE_INFINITY,
+    };
+    final double[] max = {
+      Double.NEGATIVE_INFINITY,
+      Double.NEGATIVE_INFINITY,
+      Double.NEGATIVE_INFINITY,
+    };
+    for (final int vertex : meshlet.vertices()) {
+      for (int k = 0; k < 3; ++k) {
+        min[k] = Math.min(min[k], positions[vertex * 3 + k]);
+        max[k] = Math.max(max[k], positions[vertex * 3 + k]);
+      }
+    }
+
+    for (int k = 0; k < 3; ++k) {
+      result[k] = (min[k] + max[k]) * 0.5;
+    }
+
+    double radius = 0.0;
+    for (final int vertex : meshlet.vertices()) {
+      double distance = 0.0;
+      for (int k = 0; k < 3; ++k) {
+        final double d = positions[vertex * 3 + k] - result[k];
+        distance += d * d;
+      }
+      radius = Math.max(radius, distance);
+    }
+    result[3] = Math.sqrt(radius);
+  }
+
+  /**
+   * Write the unit normal of a front-facing meshlet triangle into
+   * {@code out}, or zero if the triangle has no area.
+   */
+
+  private static void normal(
+    final Meshlet meshlet,
+    final double[] positions,
+    final int triangle,
+    final boolean clockwise,
+    final double[] out)
+  {
+    final byte[] triangles = meshlet.triangles();
+    final int[] vertices = meshlet.vertices();
+    final int a = vertices[triangles[triangle * 3] & 0xff] * 3;
+    final int b = vertices[triangles[triangle * 3 + 1] & 0xff] * 3;
+    final int c = vertices[triangles[triangle * 3 + 2] & 0xff] * 3;
+
+    final double ab_x = positions[b] - positions[a];
+    final double ab_y = positions[b + 1] - positions[a + 1];
+    final double ab_z = positions[b + 2] - positions[a + 2];
+    final double ac_x = positions[c] - positions[a];
+    final double ac_y = positions[c + 1] - positions[a + 1];
+    final double ac_z = positions[c + 2] - positions[a + 2];
+
+    final double n_x = ab_y * ac_z - ab_z * ac_y;
+    final double n_y = ab_z * ac_x - ab_x * ac_z;
+    final double n_z = ab_x * ac_y - ab_y * ac_x;
+    final double length = Math.sqrt(n_x * n_x + n_y * n_y + n_z * n_z);
+    if (length > 0.0) {
+      final double scale = clockwise ? -length : length;
+      out[triangle * 3] = n_x / scale;
+      out[triangle * 3 + 1] = n_y / scale;
+      out[triangle * 3 + 2] = n_z / scale;
+    }
+  }
+
+  private static double dot(
+    final double[] x,
+    final int x_offset,
+    final double[] y,
+    final int y_offset)
+  {
+    return x[x_offset] * y[y_offset]
+      + x[x_offset + 1] * y[y_offset + 1]
+      + x[x_offset + 2] * y[y_offset + 2];
+  }
+
+  /**
+   * A meshlet.
+   */
+
+  static final class Meshlet
+  {
+    private final int[] vertices;
+    private final byte[] triangles;
+
+    Meshlet(
+      final int[] in_vertices,
+      final byte[] in_triangles)
+    {
+      this.vertices = in_vertices;
+      this.triangles = in_triangles;
+    }
+
+    /**
+     * @return The mesh vertex referenced by each local vertex
+     */
+
+    int[] vertices()
+    {
+      return this.vertices;
+    }
+
+    /**
+     * @return The local vertex indices of each triangle, as unsigned bytes
+     */
+
+    byte[] triangles()
+    {
+      return this.triangles;
+    }
+  }
+}
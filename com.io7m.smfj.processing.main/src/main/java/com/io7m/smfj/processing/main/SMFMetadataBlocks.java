@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMetadata;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Functions over the metadata of meshes.
+ */
+
+final class SMFMetadataBlocks
+{
+  private SMFMetadataBlocks()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Add a metadata block to a mesh, replacing any existing blocks that have
+   * the same schema.
+   *
+   * @param mesh  The mesh
+   * @param block The metadata block
+   *
+   * @return A mesh with the given metadata block
+   */
+
+  static SMFMemoryMesh replace(
+    final SMFMemoryMesh mesh,
+    final SMFMetadata block)
+  {
+    final List<SMFMetadata> metadata = new ArrayList<>();
+    for (final SMFMetadata existing : mesh.metadata()) {
+      if (!Objects.equals(existing.schema(), block.schema())) {
+        metadata.add(existing);
+      }
+    }
+    metadata.add(block);
+    return SMFMemoryMesh.builder()
+      .from(mesh)
+      .setMetadata(metadata)
+      .build();
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Functions that divide a cache-optimized triangle order into clusters and
+ * sort those clusters to reduce overdraw. The approach follows Sander,
+ * Nehab and Barczak, "Fast Triangle Reordering for Vertex Locality and
+ * Reduced Overdraw" (SIGGRAPH 2007).
+ */
+
+final class SMFOverdrawClusters
+{
+  private SMFOverdrawClusters()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Divide the given clusters further. Each cluster is walked with a
+   * freshly flushed vertex cache, and a new cluster is started as soon as
+   * the average cache miss ratio of the current cluster falls to
+   * {@code threshold} times the ratio of the whole order. Larger thresholds
+   * therefore produce more, smaller clusters, which give more freedom to
+   * reduce overdraw at the cost of more cache misses.
+   *
+   * @param indices      The triangle indices in their current order
+   * @param vertex_count The number of vertices
+   * @param hard         The existing cluster starts, in ascending order,
+   *                     beginning with {@code 0}
+   * @param cache_size   The size of the modelled cache
+   * @param threshold    The threshold, at least {@code 1.0}
+   *
+   * @return The cluster starts, in ascending order
+   */
+
+  static int[] split(
+    final int[] indices,
+    final int vertex_count,
+    final int[] hard,
+    final int cache_size,
+    final double threshold)
+  {
+    final int triangle_count = indices.length / 3;
+    final double limit =
+      threshold
+        * SMFVertexCacheStatistics.measure(indices, vertex_count, cache_size)
+        .acmr();
+
+    final int[] stamps = new int[vertex_count];
+    int[] result = new int[Math.max(1, hard.length)];
+    int result_count = 0;
+    int miss_count = 0;
+
+    for (int cluster = 0; cluster < hard.length; ++cluster) {
+      final int end = end(hard, cluster, triangle_count);
+
+      int start = hard[cluster];
+      int base = miss_count;
+      for (int triangle = start; triangle < end; ++triangle) {
+        for (int corner = 0; corner < 3; ++corner) {
+          final int vertex = indices[triangle * 3 + corner];
+          final int stamp = stamps[vertex];
+          if (stamp <= base || miss_count - stamp >= cache_size) {
+            ++miss_count;
+            stamps[vertex] = miss_count;
+          }
+        }
+
+        final int size = triangle + 1 - start;
+        final boolean split = miss_count - base <= limit * (double) size;
+        if (split || triangle + 1 == end) {
+          if (result_count == result.length) {
+            result = Arrays.copyOf(result, Math.multiplyExact(result_count, 2));
+          }
+          result[result_count] = start;
+          ++result_count;
+          start = triangle + 1;
+          base = miss_count;
+        }
+      }
+    }
+    return Arrays.copyOf(result, result_count);
+  }
+
+  /**
+   * Sort clusters so that those most likely to occlude the rest of the mesh
+   * are drawn first. The occlusion potential of a cluster is the distance
+   * of its centroid from the centroid of the mesh, measured along the
+   * average normal of the cluster: clusters on the outside of the mesh and
+   * facing away from its center score highest.
+   *
+   * @param indices   The triangle indices in their current order
+   * @param positions The vertex positions as {@code (x, y, z)} triples
+   * @param clockwise {@code true} if front faces have clockwise winding
+   * @param starts    The cluster starts, in ascending order
+   *
+   * @return The new order, as the current position of each triangle
+   */
+
+  static int[] sort(
+    final int[] indices,
+    final double[] positions,
+    final boolean clockwise,
+    final int[] starts)
+  {
+    final double[] potentials =
+      potentials(indices, positions, clockwise, starts);
+
+    final Integer[] clusters = new Integer[starts.length];
+    for (int cluster = 0; cluster < starts.length; ++cluster) {
+      clusters[cluster] = Integer.valueOf(cluster);
+    }
+    Arrays.sort(
+      clusters,
+      Comparator.comparingDouble((Integer c) -> potentials[c.intValue()])
+        .reversed());
+
+    final int triangle_count = indices.length / 3;
+    final int[] order = new int[triangle_count];
+    int count = 0;
+    for (final Integer boxed : clusters) {
+      final int cluster = boxed.intValue();
+      final int end = end(starts, cluster, triangle_count);
+      for (int triangle = starts[cluster]; triangle < end; ++triangle) {
+        order[count] = triangle;
+        ++count;
+      }
+    }
+    return order;
+  }
+
+  private static double[] potentials(
+    final int[] indices,
+    final double[] positions,
+    final boolean clockwise,
+    final int[] starts)
+  {
+    final int triangle_count = indices.length / 3;
+    final double[] mesh_centroid = new double[4];
+    final double[] mesh_normal = new double[3];
+    for (int triangle = 0; triangle < triangle_count; ++triangle) {
+      accumulate(indices, positions, triangle, mesh_centroid, mesh_normal);
+    }
+
+    final double[] centroid = new double[4];
+    final double[] normal = new double[3];
+    final double[] potentials = new double[starts.length];
+    for (int cluster = 0; cluster < starts.length; ++cluster) {
+      Arrays.fill(centroid, 0.0);
+      Arrays.fill(normal, 0.0);
+      final int end = end(starts, cluster, triangle_count);
+      for (int triangle = starts[cluster]; triangle < end; ++triangle) {
+        accumulate(indices, positions, triangle, centroid, normal);
+      }
+
+      final double length = Math.sqrt(dot(normal, normal));
+      if (length > 0.0) {
+        double potential = 0.0;
+        for (int axis = 0; axis < 3; ++axis) {
+          final double offset =
+            centroid(centroid, axis) - centroid(mesh_centroid, axis);
+          potential += offset * (normal[axis] / length);
+        }
+        potentials[cluster] = clockwise ? -potential : potential;
+      }
+    }
+    return potentials;
+  }
+
+  private static int end(
+    final int[] starts,
+    final int cluster,
+    final int triangle_count)
+  {
+    return cluster + 1 < starts.length ? starts[cluster + 1] : triangle_count;
+  }
+
+  /**
+   * Add the centroid of a triangle, weighted by twice its area, to the
+   * first three elements of {@code centroid} and the weight to the fourth,
+   * and add its unnormalized face normal to {@code normal}.
+   */
+
+  private static void accumulate(
+    final int[] indices,
+    final double[] positions,
+    final int triangle,
+    final double[] centroid,
+    final double[] normal)
+  {
+    final int a = indices[triangle * 3] * 3;
+    final int b = indices[triangle * 3 + 1] * 3;
+    final int c = indices[triangle * 3 + 2] * 3;
+
+    final double ab_x = positions[b] - positions[a];
+    final double ab_y = positions[b + 1] - positions[a + 1];
+    final double ab_z = positions[b + 2] - positions[a + 2];
+    final double ac_x = positions[c] - positions[a];
+    final double ac_y = positions[c + 1] - positions[a + 1];
+    final double ac_z = positions[c + 2] - positions[a + 2];
+
+    final double n_x = ab_y * ac_z - ab_z * ac_y;
+    final double n_y = ab_z * ac_x - ab_x * ac_z;
+    final double n_z = ab_x * ac_y - ab_y * ac_x;
+    final double area = Math.sqrt(n_x * n_x + n_y * n_y + n_z * n_z);
+
+    for (int axis = 0; axis < 3; ++axis) {
+      final double mean =
+        (positions[a + axis] + positions[b + axis] + positions[c + axis]) / 3.0;
+      centroid[axis] += mean * area;
+    }
+    centroid[3] += area;
+    normal[0] += n_x;
+    normal[1] += n_y;
+    normal[2] += n_z;
+  }
+
+  private static double centroid(
+    final double[] weighted,
+    final int axis)
+  {
+    return weighted[3] > 0.0 ? weighted[axis] / weighted[3] : 0.0;
+  }
+
+  private static double dot(
+    final double[] x,
+    final double[] y)
+  {
+    return x[0] * y[0] + x[1] * y[1] + x[2] * y[2];
+  }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFFaceWindingOrder;
+import com.io7m.smfj.processing.api.SMFAttributeArrayType;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An estimate of the pixel overdraw produced by drawing the triangles of a
+ * mesh in order. The mesh is rasterized with back-face culling and a depth
+ * test from the six axis-aligned directions into square depth buffers, and
+ * the number of pixels that pass the depth test is compared with the number
+ * of pixels that are finally covered.
+ */
+
+public final class SMFOverdrawStatistics
+{
+  /**
+   * The smallest permitted resolution.
+   */
+
+  public static final int MINIMUM_RESOLUTION = 1;
+
+  private final int resolution;
+  private final long shaded;
+  private final long covered;
+
+  private SMFOverdrawStatistics(
+    final int in_resolution,
+    final long in_shaded,
+    final long in_covered)
+  {
+    this.resolution = in_resolution;
+    this.shaded = in_shaded;
+    this.covered = in_covered;
+  }
+
+  /**
+   * Estimate the overdraw of the given mesh.
+   *
+   * @param mesh       The mesh
+   * @param position   The name of the three-component floating point
+   *                   position attribute
+   * @param resolution The width and height of each simulated view
+   *
+   * @return The overdraw statistics
+   *
+   * @throws IllegalArgumentException If the position attribute does not
+   *                                  exist or is of the wrong type, if a
+   *                                  triangle refers to a nonexistent
+   *                                  vertex, or if the resolution is less
+   *                                  than {@link #MINIMUM_RESOLUTION}
+   */
+
+  public static SMFOverdrawStatistics measure(
+    final SMFMemoryMesh mesh,
+    final SMFAttributeName position,
+    final int resolution)
+    throws IllegalArgumentException
+  {
+    Objects.requireNonNull(mesh, "mesh");
+    Objects.requireNonNull(position, "position");
+
+    final SMFAttributeArrayType array = mesh.arrays().get(position);
+    if (array == null) {
+      throw new IllegalArgumentException(
+        String.format("Mesh has no attribute named %s", position.value()));
+    }
+
+    return measure(
+      SMFTriangleArrays.flatten(mesh.triangles(), mesh.header().vertexCount()),
+      SMFAttributeArrays.flatten3(array),
+      isClockwise(mesh),
+      resolution);
+  }
+
+  static boolean isClockwise(
+    final SMFMemoryMesh mesh)
+  {
+    return mesh.header().coordinateSystem().windingOrder()
+      == SMFFaceWindingOrder.FACE_WINDING_ORDER_CLOCKWISE;
+  }
+
+  static SMFOverdrawStatistics measure(
+    final int[] indices,
+    final double[] positions,
+    final boolean clockwise,
+    final int resolution)
+  {
+    if (resolution < MINIMUM_RESOLUTION) {
+      throw new IllegalArgumentException(String.format(
+        "Resolution %d must be at least %d",
+        Integer.valueOf(resolution),
+        Integer.valueOf(MINIMUM_RESOLUTION)));
+    }
+
+    final View view = new View(indices, positions, clockwise, resolution);
+    for (int axis = 0; axis < 3; ++axis) {
+      view.render(axis, true);
+      view.render(axis, false);
+    }
+    return new SMFOverdrawStatistics(resolution, view.shaded, view.covered);
+  }
+
+  /**
+   * @return The width and height of each simulated view
+   */
+
+  public int resolution()
+  {
+    return this.resolution;
+  }
+
+  /**
+   * @return The number of pixels that passed the depth test, summed over
+   * all views
+   */
+
+  public long shaded()
+  {
+    return this.shaded;
+  }
+
+  /**
+   * @return The number of distinct pixels covered by the mesh, summed over
+   * all views
+   */
+
+  public long covered()
+  {
+    return this.covered;
+  }
+
+  /**
+   * @return The ratio of shaded pixels to covered pixels, where {@code 1.0}
+   * means that no pixel was shaded more than once
+   */
+
+  public double overdraw()
+  {
+    if (this.covered == 0L) {
+      return 0.0;
+    }
+    return (double) this.shaded / (double) this.covered;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "overdraw %.3f (%d shaded, %d covered, resolution %d)",
+      Double.valueOf(this.overdraw()),
+      Long.valueOf(this.shaded),
+      Long.valueOf(this.covered),
+      Integer.valueOf(this.resolution));
+  }
+
+  private static final class View
+  {
+    private final int[] indices;
+    private final double[] positions;
+    private final boolean clockwise;
+    private final int resolution;
+    private final float[] depth;
+    private final double[] screen;
+    private long shaded;
+    private long covered;
+
+    View(
+      final int[] in_indices,
+      final double[] in_positions,
+      final boolean in_clockwise,
+      final int in_resolution)
+    {
+      this.indices = in_indices;
+      this.positions = in_positions;
+      this.clockwise = in_clockwise;
+      this.resolution = in_resolution;
+      this.depth = new float[Math.multiplyExact(in_resolution, in_resolution)];
+      this.screen = new double[9];
+    }
+
+    /**
+     * Render the mesh as seen from infinitely far away along the positive
+     * or negative direction of the given axis.
+     */
+
+    void render(
+      final int axis,
+      final boolean positive)
+    {
+      final int axis_u = (axis + 1) % 3;
+      final int axis_v = (axis + 2) % 3;
+
+      double min_u = Double.POSITIVE_INFINITY;
+      double min_v = Double.POSITIVE_INFINITY;
+      double max_u = Double.NEGATIVE_INFINITY;
+      double max_v = Double.NEGATIVE_INFINITY;
+      for (final int vertex : this.indices) {
+        final double u = this.positions[vertex * 3 + axis_u];
+        final double v = this.positions[vertex * 3 + axis_v];
+        min_u = Math.min(min_u, u);
+        min_v = Math.min(min_v, v);
+        max_u = Math.max(max_u, u);
+        max_v = Math.max(max_v, v);
+      }
+
+      final double extent = Math.max(max_u - min_u, max_v - min_v);
+      if (!(extent > 0.0)) {
+        return;
+      }
+
+      final double scale = (double) this.resolution / extent;
+      final double sign = positive ? -1.0 : 1.0;
+      Arrays.fill(this.depth, Float.POSITIVE_INFINITY);
+
+      for (int base = 0; base < this.indices.length; base += 3) {
+        if (this.facing(base, axis, positive)) {
+          for (int corner = 0; corner < 3; ++corner) {
+            final int offset = this.indices[base + corner] * 3;
+            this.screen[corner * 3] =
+              (this.positions[offset + axis_u] - min_u) * scale;
+            this.screen[corner * 3 + 1] =
+              (this.positions[offset + axis_v] - min_v) * scale;
+            this.screen[corner * 3 + 2] =
+              sign * this.positions[offset + axis];
+          }
+          this.rasterize();
+        }
+      }
+
+      for (final float value : this.depth) {
+        if (value != Float.POSITIVE_INFINITY) {
+          ++this.covered;
+        }
+      }
+    }
+
+    private boolean facing(
+      final int base,
+      final int axis,
+      final boolean positive)
+    {
+      final int a = this.indices[base] * 3;
+      final int b = this.indices[base + 1] * 3;
+      final int c = this.indices[base + 2] * 3;
+      final int axis_u = (axis + 1) % 3;
+      final int axis_v = (axis + 2) % 3;
+
+      final double ab_u = this.positions[b + axis_u] - this.positions[a + axis_u];
+      final double ab_v = this.positions[b + axis_v] - this.positions[a + axis_v];
+      final double ac_u = this.positions[c + axis_u] - this.positions[a + axis_u];
+      final double ac_v = this.positions[c + axis_v] - this.positions[a + axis_v];
+
+      double normal = ab_u * ac_v - ab_v * ac_u;
+      if (this.clockwise) {
+        normal = -normal;
+      }
+      return positive ? normal > 0.0 : normal < 0.0;
+    }
+
+    private void rasterize()
+    {
+      final double[] s = this.screen;
+      final double area =
+        (s[3] - s[0]) * (s[7] - s[1]) - (s[6] - s[0]) * (s[4] - s[1]);
+      if (area == 0.0) {
+        return;
+      }
+
+      final int last = this.resolution - 1;
+      final int x0 = clamp((int) Math.floor(min3(s[0], s[3], s[6])), last);
+      final int x1 = clamp((int) Math.ceil(max3(s[0], s[3], s[6])), last);
+      final int y0 = clamp((int) Math.floor(min3(s[1], s[4], s[7])), last);
+      final int y1 = clamp((int) Math.ceil(max3(s[1], s[4], s[7])), last);
+
+      for (int y = y0; y <= y1; ++y) {
+        final double py = (double) y + 0.5;
+        for (int x = x0; x <= x1; ++x) {
+          final double px = (double) x + 0.5;
+          final double w0 = edge(s[3], s[4], s[6], s[7], px, py) / area;
+          final double w1 = edge(s[6], s[7], s[0], s[1], px, py) / area;
+          final double w2 = edge(s[0], s[1], s[3], s[4], px, py) / area;
+          if (w0 >= 0.0 && w1 >= 0.0 && w2 >= 0.0) {
+            this.test(y * this.resolution + x, w0 * s[2] + w1 * s[5] + w2 * s[8]);
+          }
+        }
+      }
+    }
+
+    private void test(
+      final int pixel,
+      final double z)
+    {
+      final float value = (float) z;
+      if (value < this.depth[pixel]) {
+        this.depth[pixel] = value;
+        ++this.shaded;
+      }
+    }
+
+    private static double edge(
+      final double ax,
+      final double ay,
+      final double bx,
+      final double by,
+      final double px,
+      final double py)
+    {
+      return (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+    }
+
+    private static int clamp(
+      final int value,
+      final int last)
+    {
+      return Math.max(0, Math.min(value, last));
+    }
+
+    private static double min3(
+      final double a,
+      final double b,
+      final double c)
+    {
+      return Math.min(a, Math.min(b, c));
+    }
+
+    private static double max3(
+      final double a,
+      final double b,
+      final double c)
+    {
+      return Math.max(a, Math.max(b, c));
+    }
+  }
+}
@@ -94,6 +94,50 @@ public final class SMFProcessingMainCommands extends
       Map.entry(
         SMFMemoryMeshFilterTrianglesOptimize.NAME,
         SMFMemoryMeshFilterTrianglesOptimize::parse
+      ),
+      Map.entry(
+        SMFMemoryMeshFilterTrianglesReorderCache.NAME,
+        SMFMemoryMeshFilterTrianglesReorderCache::parse
+      ),
+      Map.entry(
+        SMFMemoryMeshFilterVerticesReorderFetch.NAME,
+        SMFMemoryMeshFilterVerticesReorderFetch::parse
+      ),
+      Map.entry(
+        SMFMemoryMeshFilterTrianglesReorderOverdraw.NAME,
+        SMFMemoryMeshFilterTrianglesReorderOverdraw::parse
+      ),
+      Map.entry(
+        SMFMemoryMeshFilterVerticesWeld.NAME,
+        SMFMemoryMeshFilterVerticesWeld::parse
+      ),
+      Map.entry(
+        SMFMemoryMeshFilterSimplify.NAME,
+        SMFMemoryMeshFilterSimplify::parse
+      ),
+      Map.entry(
+        SMFMemoryMeshFilterSimplifyLODs.NAME,
+        SMFMemoryMeshFilterSimplifyLODs::parse
+      ),
+      Map.entry(
+        SMFMemoryMeshFilterMeshletsGenerate.NAME,
+        SMFMemoryMeshFilterMeshletsGenerate::parse
+      ),
+      Map.entry(
+        SMFMemoryMeshFilterSubmeshesSplit.NAME,
+        SMFMemoryMeshFilterSubmeshesSplit::parse
+      ),
+      Map.entry(
+        SMFMemoryMeshFilterBoundsCompute.NAME,
+        SMFMemoryMeshFilterBoundsCompute::parse
+      ),
+      Map.entry(
+        SMFMemoryMeshFilterTransform.NAME,
+        SMFMemoryMeshFilterTransform::parse
+      ),
+      Map.entry(
+        SMFMemoryMeshFilterQuantize.NAME,
+        SMFMemoryMeshFilterQuantize::parse
       )
     );
   }
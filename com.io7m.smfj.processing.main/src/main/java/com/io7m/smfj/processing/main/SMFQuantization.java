@@ -0,0 +1,260 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.junreachable.UnreachableCodeException;
+
+/**
+ * Quantization of packed floating point components. Each integer
+ * quantization produces codes that are decoded per component as
+ * {@code code * scale + bias}, and reports the largest difference between
+ * the decoded and original values.
+ */
+
+final class SMFQuantization
+{
+  private SMFQuantization()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Quantize components to unsigned normalized integers over the range of
+   * each component.
+   *
+   * @param values The values
+   * @param count  The number of components in each element
+   * @param bits   The size of each integer in bits
+   *
+   * @return The quantized values
+   */
+
+  static Result unorm(
+    final double[] values,
+    final int count,
+    final int bits)
+  {
+    final long maximum_code = (1L << bits) - 1L;
+    final Result result = new Result(values.length, count);
+    for (int component = 0; component < count; ++component) {
+      double minimum = Double.POSITIVE_INFINITY;
+      double maximum = Double.NEGATIVE_INFINITY;
+      for (int index = component; index < values.length; index += count) {
+        minimum = Math.min(minimum, values[index]);
+        maximum = Math.max(maximum, values[index]);
+      }
+      if (minimum > maximum) {
+        continue;
+      }
+
+      final double scale = (maximum - minimum) / (double) maximum_code;
+      result.scales[component] = scale;
+      result.biases[component] = minimum;
+      for (int index = component; index < values.length; index += count) {
+        final long code =
+          scale > 0.0
+            ? Math.min(maximum_code, Math.round((values[index] - minimum) / scale))
+            : 0L;
+        result.set(index, component, code, values[index]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Quantize components to signed normalized integers over the largest
+   * magnitude of each component.
+   *
+   * @param values The values
+   * @param count  The number of components in each element
+   * @param bits   The size of each integer in bits
+   *
+   * @return The quantized values
+   */
+
+  static Result snorm(
+    final double[] values,
+    final int count,
+    final int bits)
+  {
+    final long maximum_code = (1L << (bits - 1)) - 1L;
+    final Result result = new Result(values.length, count);
+    for (int component = 0; component < count; ++component) {
+      double magnitude = 0.0;
+      for (int index = component; index < values.length; index += count) {
+        magnitude = Math.max(magnitude, Math.abs(values[index]));
+      }
+
+      final double scale = magnitude / (double) maximum_code;
+      result.scales[component] = scale;
+      for (int index = component; index < values.length; index += count) {
+        final long code =
+          scale > 0.0 ? clamp(Math.round(values[index] / scale), maximum_code) : 0L;
+        result.set(index, component, code, values[index]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Encode three-component vectors as two signed normalized integers using
+   * an octahedral mapping. Vectors are normalized before encoding, and the
+   * reported error is the largest angle in degrees between an original and
+   * a decoded vector.
+   *
+   * @param values The vectors as {@code (x, y, z)} triples
+   * @param bits   The size of each integer in bits
+   *
+   * @return The quantized values
+   */
+
+  static Result octahedral(
+    final double[] values,
+    final int bits)
+  {
+    final long maximum_code = (1L << (bits - 1)) - 1L;
+    final double scale = 1.0 / (double) maximum_code;
+    final Result result = new Result(values.length / 3 * 2, 2);
+    result.scales[0] = scale;
+    result.scales[1] = scale;
+
+    for (int vertex = 0; vertex < values.length / 3; ++vertex) {
+      final double x = values[vertex * 3];
+      final double y = values[vertex * 3 + 1];
+      final double z = values[vertex * 3 + 2];
+      final double sum = Math.abs(x) + Math.abs(y) + Math.abs(z);
+      if (sum == 0.0) {
+        continue;
+      }
+
+      double u = x / sum;
+      double v = y / sum;
+      if (z < 0.0) {
+        final double fu = (1.0 - Math.abs(v)) * Math.copySign(1.0, u);
+        final double fv = (1.0 - Math.abs(u)) * Math.copySign(1.0, v);
+        u = fu;
+        v = fv;
+      }
+
+      final long code_u = clamp(Math.round(u / scale), maximum_code);
+      final long code_v = clamp(Math.round(v / scale), maximum_code);
+      result.codes[vertex * 2] = code_u;
+      result.codes[vertex * 2 + 1] = code_v;
+
+      final double[] decoded =
+        decodeOctahedral((double) code_u * scale, (double) code_v * scale);
+      final double length = Math.sqrt(x * x + y * y + z * z);
+      final double cosine =
+        (decoded[0] * x + decoded[1] * y + decoded[2] * z) / length;
+      result.error = Math.max(
+        result.error,
+        Math.toDegrees(Math.acos(Math.max(-1.0, Math.min(1.0, cosine)))));
+    }
+    return result;
+  }
+
+  private static double[] decodeOctahedral(
+    final double u,
+    final double v)
+  {
+    double x = u;
+    double y = v;
+    final double z = 1.0 - Math.abs(x) - Math.abs(y);
+    final double t = Math.max(-z, 0.0);
+    x += x >= 0.0 ? -t : t;
+    y += y >= 0.0 ? -t : t;
+    final double length = Math.sqrt(x * x + y * y + z * z);
+    return new double[]{x / length, y / length, z / length};
+  }
+
+  private static long clamp(
+    final long code,
+    final long maximum_code)
+  {
+    return Math.max(-maximum_code, Math.min(maximum_code, code));
+  }
+
+  /**
+   * Quantized values.
+   */
+
+  static final class Result
+  {
+    private final long[] codes;
+    private final double[] scales;
+    private final double[] biases;
+    private double error;
+
+    private Result(
+      final int size,
+      final int count)
+    {
+      this.codes = new long[size];
+      this.scales = new double[count];
+      this.biases = new double[count];
+    }
+
+    private void set(
+      final int index,
+      final int component,
+      final long code,
+      final double original)
+    {
+      this.codes[index] = code;
+      final double decoded =
+        (double) code * this.scales[component] + this.biases[component];
+      this.error = Math.max(this.error, Math.abs(decoded - original));
+    }
+
+    /**
+     * @return The quantized components, in order
+     */
+
+    long[] codes()
+    {
+      return this.codes;
+    }
+
+    /**
+     * @return The scale of each component
+     */
+
+    double[] scales()
+    {
+      return this.scales;
+    }
+
+    /**
+     * @return The bias of each component
+     */
+
+    double[] biases()
+    {
+      return this.biases;
+    }
+
+    /**
+     * @return The largest difference between a decoded and original value
+     */
+
+    double error()
+    {
+      return this.error;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.junreachable.UnreachableCodeException;
+
+/**
+ * The ways in which {@link SMFMemoryMeshFilterQuantize} can quantize an
+ * attribute.
+ */
+
+public enum SMFQuantizationPolicy
+{
+  /**
+   * Round floating point components to 16-bit floating point.
+   */
+
+  QUANTIZE_FLOAT16,
+
+  /**
+   * Map each component from its range to unsigned normalized 8-bit
+   * integers.
+   */
+
+  QUANTIZE_UNORM8,
+
+  /**
+   * Map each component from its range to unsigned normalized 16-bit
+   * integers.
+   */
+
+  QUANTIZE_UNORM16,
+
+  /**
+   * Map each component from its largest magnitude to signed normalized
+   * 8-bit integers.
+   */
+
+  QUANTIZE_SNORM8,
+
+  /**
+   * Map each component from its largest magnitude to signed normalized
+   * 16-bit integers.
+   */
+
+  QUANTIZE_SNORM16,
+
+  /**
+   * Encode unit vectors as two signed normalized 8-bit integers using an
+   * octahedral mapping.
+   */
+
+  QUANTIZE_OCTAHEDRAL8,
+
+  /**
+   * Encode unit vectors as two signed normalized 16-bit integers using an
+   * octahedral mapping.
+   */
+
+  QUANTIZE_OCTAHEDRAL16;
+
+  /**
+   * @param name A policy name such as "unorm16"
+   *
+   * @return The policy with the given name
+   *
+   * @throws IllegalArgumentException On unrecognized names
+   */
+
+  public static SMFQuantizationPolicy fromName(
+    final String name)
+    throws IllegalArgumentException
+  {
+    for (final SMFQuantizationPolicy policy : values()) {
+      if (policy.toName().equals(name)) {
+        return policy;
+      }
+    }
+    throw new IllegalArgumentException(
+      "Unrecognized quantization policy: " + name);
+  }
+
+  /**
+   * @return The policy as a humanly readable name such as "unorm16"
+   */
+
+  public String toName()
+  {
+    switch (this) {
+      case QUANTIZE_FLOAT16:
+        return "float16";
+      case QUANTIZE_UNORM8:
+        return "unorm8";
+      case QUANTIZE_UNORM16:
+        return "unorm16";
+      case QUANTIZE_SNORM8:
+        return "snorm8";
+      case QUANTIZE_SNORM16:
+        return "snorm16";
+      case QUANTIZE_OCTAHEDRAL8:
+        return "octahedral8";
+      case QUANTIZE_OCTAHEDRAL16:
+        return "octahedral16";
+    }
+
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * @return The size in bits of each quantized component
+   */
+
+  public int componentSizeBits()
+  {
+    switch (this) {
+      case QUANTIZE_UNORM8:
+      case QUANTIZE_SNORM8:
+      case QUANTIZE_OCTAHEDRAL8:
+        return 8;
+      case QUANTIZE_FLOAT16:
+      case QUANTIZE_UNORM16:
+      case QUANTIZE_SNORM16:
+      case QUANTIZE_OCTAHEDRAL16:
+        return 16;
+    }
+
+    throw new UnreachableCodeException();
+  }
+}
@@ -0,0 +1,635 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A mesh simplifier based on quadric error metrics (Garland and Heckbert,
+ * "Surface Simplification Using Quadric Error Metrics", SIGGRAPH 1997).
+ *
+ * Simplification proceeds by half-edge collapses: a vertex is merged into a
+ * neighbouring vertex, so no new vertices are created and every level of
+ * detail can share the original vertex data. Collapses are performed in
+ * passes, cheapest first, and a collapse is rejected if it would flip a
+ * triangle or exceed the error bound.
+ *
+ * Vertices that share a position with another vertex (that is, vertices on
+ * a seam in some other attribute such as texture coordinates or normals)
+ * are moved together: a collapse of such a vertex is only accepted if every
+ * vertex at its position has an edge to exactly one vertex at the target
+ * position, and each is then merged into that vertex. Seams therefore only
+ * shorten along their own length, and each side of a seam keeps its own
+ * attribute values. Quadrics are accumulated per position, so all of the
+ * vertices on a seam share the same error. Vertices on the border of the
+ * mesh are either locked, or are only allowed to move along the border.
+ */
+
+final class SMFSimplifier
+{
+  private static final double BORDER_WEIGHT = 10.0;
+  private static final int QUADRIC_SIZE = 11;
+  private static final int WEIGHT = 10;
+
+  private final double[] positions;
+  private final int vertexCount;
+  private final boolean lockBorders;
+  private final int[] classes;
+  private final int[] twins;
+  private final double[] quadrics;
+  private int[] indices;
+  private double error;
+
+  private SMFSimplifier(
+    final int[] in_indices,
+    final double[] in_positions,
+    final int in_vertex_count,
+    final boolean in_lock_borders)
+  {
+    this.indices = in_indices.clone();
+    this.positions = in_positions;
+    this.vertexCount = in_vertex_count;
+    this.lockBorders = in_lock_borders;
+
+    this.classes =
+      SMFVertexWelding.weld(
+        List.of(SMFVertexWelding.exact(in_positions, 3)),
+        in_vertex_count).remap();
+
+    final int[] firsts = new int[in_vertex_count];
+    Arrays.fill(firsts, -1);
+    this.twins = new int[in_vertex_count];
+    for (int vertex = 0; vertex < in_vertex_count; ++vertex) {
+      final int first = firsts[this.classes[vertex]];
+      if (first == -1) {
+        firsts[this.classes[vertex]] = vertex;
+        this.twins[vertex] = vertex;
+      } else {
+        this.twins[vertex] = this.twins[first];
+        this.twins[first] = vertex;
+      }
+    }
+
+    this.quadrics = new double[Math.multiplyExact(in_vertex_count, QUADRIC_SIZE)];
+    this.addTriangleQuadrics();
+  }
+
+  /**
+   * Create a simplifier.
+   *
+   * @param indices      The triangle indices
+   * @param positions    The vertex positions as {@code (x, y, z)} triples
+   * @param vertex_count The number of vertices
+   * @param lock_borders {@code true} if border vertices must not move
+   *
+   * @return A simplifier
+   */
+
+  static SMFSimplifier create(
+    final int[] indices,
+    final double[] positions,
+    final int vertex_count,
+    final boolean lock_borders)
+  {
+    return new SMFSimplifier(indices, positions, vertex_count, lock_borders);
+  }
+
+  /**
+   * @param positions The vertex positions as {@code (x, y, z)} triples
+   *
+   * @return The largest extent of the bounding box of the positions along
+   * any axis, used to express errors relative to the size of a mesh
+   */
+
+  static double extent(
+    final double[] positions)
+  {
+    double result = 0.0;
+    for (int axis = 0; axis < 3; ++axis) {
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int index = axis; index < positions.length; index += 3) {
+        min = Math.min(min, positions[index]);
+        max = Math.max(max, positions[index]);
+      }
+      result = Math.max(result, max - min);
+    }
+    return result;
+  }
+
+  /**
+   * @return The current triangle indices
+   */
+
+  int[] indices()
+  {
+    return this.indices.clone();
+  }
+
+  /**
+   * @return The largest error introduced by any collapse so far, as a
+   * distance in the units of the vertex positions
+   */
+
+  double error()
+  {
+    return Math.sqrt(this.error);
+  }
+
+  /**
+   * Simplify the mesh further, until it has at most {@code target_triangles}
+   * triangles or until no further collapses are possible without exceeding
+   * {@code max_error}.
+   *
+   * @param target_triangles The target number of triangles
+   * @param max_error        The largest permitted error, as a distance in the
+   *                         units of the vertex positions
+   */
+
+  void simplify(
+    final int target_triangles,
+    final double max_error)
+  {
+    final double limit = max_error * max_error;
+    while (this.indices.length / 3 > target_triangles) {
+      final int excess = this.indices.length / 3 - target_triangles;
+      if (this.pass(limit, Math.max(1, excess / 2)) == 0) {
+        break;
+      }
+    }
+  }
+
+  private int pass(
+    final double limit,
+    final int maximum_collapses)
+  {
+    final Borders borders = new Borders(this.indices, this.classes);
+    final SMFTriangleArrays.Adjacency adjacency =
+      SMFTriangleArrays.adjacency(this.indices, this.vertexCount);
+
+    final long[] candidates = this.candidates(borders);
+    Arrays.sort(candidates);
+
+    final int[] remap = new int[this.vertexCount];
+    for (int vertex = 0; vertex < this.vertexCount; ++vertex) {
+      remap[vertex] = vertex;
+    }
+    final boolean[] locked = new boolean[this.vertexCount];
+    final int[] targets = new int[this.vertexCount];
+
+    int collapses = 0;
+    for (final long candidate : candidates) {
+      final double cost = (double) Float.intBitsToFloat((int) (candidate >>> 32));
+      if (cost > limit || collapses >= maximum_collapses) {
+        break;
+      }
+
+      final int edge = (int) candidate;
+      final int source = this.indices[edge / 2];
+      final int target = this.indices[edgeEnd(edge / 2)];
+      final int from = (edge & 1) == 0 ? source : target;
+      final int to = (edge & 1) == 0 ? target : source;
+
+      if (this.movable(adjacency, remap, locked, targets, from, to)) {
+        int twin = from;
+        do {
+          remap[twin] = targets[twin];
+          locked[twin] = true;
+          locked[targets[twin]] = true;
+          twin = this.twins[twin];
+        } while (twin != from);
+
+        this.mergeQuadric(this.classes[to], this.classes[from]);
+        this.error = Math.max(this.error, cost);
+        ++collapses;
+      }
+    }
+
+    if (collapses > 0) {
+      this.apply(remap);
+    }
+    return collapses;
+  }
+
+  /**
+   * Produce the sorted candidate collapses for the current triangles. The
+   * candidate for corner {@code i} of the index array covers the edge
+   * from that corner to the next corner of the same triangle; the low bit
+   * of the candidate number selects the direction. Each candidate is packed
+   * with its cost in the high bits so that sorting orders by cost.
+   */
+
+  private long[] candidates(
+    final Borders borders)
+  {
+    final long[] result = new long[this.indices.length * 2];
+    int count = 0;
+    for (int corner = 0; corner < this.indices.length; ++corner) {
+      final int a = this.indices[corner];
+      final int b = this.indices[edgeEnd(corner)];
+      if (this.collapsible(borders, a, b)) {
+        result[count] = pack(this.cost(a, b), corner * 2);
+        ++count;
+      }
+      if (this.collapsible(borders, b, a)) {
+        result[count] = pack(this.cost(b, a), corner * 2 + 1);
+        ++count;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private static long pack(
+    final double cost,
+    final int candidate)
+  {
+    final float clamped = (float) Math.min(cost, Float.MAX_VALUE);
+    return ((long) Float.floatToIntBits(clamped) << 32)
+      | ((long) candidate & 0xffff_ffffL);
+  }
+
+  private static int edgeEnd(
+    final int corner)
+  {
+    return corner % 3 == 2 ? corner - 2 : corner + 1;
+  }
+
+  private boolean collapsible(
+    final Borders borders,
+    final int from,
+    final int to)
+  {
+    if (this.classes[from] == this.classes[to]) {
+      return false;
+    }
+
+    final int border_edges = borders.count(this.classes[from]);
+    if (border_edges == 0) {
+      return true;
+    }
+    if (this.lockBorders || border_edges != 2) {
+      return false;
+    }
+    return borders.isBorder(this.classes[from], this.classes[to]);
+  }
+
+  /**
+   * Determine whether {@code from}, and every vertex that shares its
+   * position, can be moved onto the position of {@code to}. Each such
+   * vertex must be unlocked, must have an edge to exactly one vertex at the
+   * position of {@code to}, and must not flip any triangle when moved onto
+   * that vertex. The chosen vertices are written to {@code targets}.
+   */
+
+  private boolean movable(
+    final SMFTriangleArrays.Adjacency adjacency,
+    final int[] remap,
+    final boolean[] locked,
+    final int[] targets,
+    final int from,
+    final int to)
+  {
+    int twin = from;
+    do {
+      if (locked[twin]) {
+        return false;
+      }
+      final int target = this.neighbourAt(adjacency, remap, twin, this.classes[to]);
+      if (target == -1 || locked[target]
+        || this.flips(adjacency, remap, twin, target)) {
+        return false;
+      }
+      targets[twin] = target;
+      twin = this.twins[twin];
+    } while (twin != from);
+    return true;
+  }
+
+  /**
+   * @return The single vertex with the given position class that shares a
+   * triangle with {@code vertex}, or {@code -1} if there is no such vertex
+   * or more than one
+   */
+
+  private int neighbourAt(
+    final SMFTriangleArrays.Adjacency adjacency,
+    final int[] remap,
+    final int vertex,
+    final int position_class)
+  {
+    int result = -1;
+    final int end = adjacency.end(vertex);
+    for (int index = adjacency.start(vertex); index < end; ++index) {
+      final int base = adjacency.triangle(index) * 3;
+      for (int corner = 0; corner < 3; ++corner) {
+        final int other = remap[this.indices[base + corner]];
+        if (this.classes[other] == position_class && other != result) {
+          if (result != -1) {
+            return -1;
+          }
+          result = other;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return {@code true} if moving {@code from} onto {@code to} would flip
+   * or collapse any triangle that does not contain both vertices
+   */
+
+  private boolean flips(
+    final SMFTriangleArrays.Adjacency adjacency,
+    final int[] remap,
+    final int from,
+    final int to)
+  {
+    final double[] before = new double[3];
+    final double[] after = new double[3];
+
+    final int end = adjacency.end(from);
+    for (int index = adjacency.start(from); index < end; ++index) {
+      final int base = adjacency.triangle(index) * 3;
+      final int a = remap[this.indices[base]];
+      final int b = remap[this.indices[base + 1]];
+      final int c = remap[this.indices[base + 2]];
+      if (a == to || b == to || c == to) {
+        continue;
+      }
+
+      this.normal(a, b, c, before);
+      this.normal(
+        a == from ? to : a,
+        b == from ? to : b,
+        c == from ? to : c,
+        after);
+
+      final double dot =
+        before[0] * after[0] + before[1] * after[1] + before[2] * after[2];
+      final double lengths =
+        Math.sqrt(dot3(before) * dot3(after));
+      if (dot <= 0.25 * lengths) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void apply(
+    final int[] remap)
+  {
+    int count = 0;
+    for (int base = 0; base < this.indices.length; base += 3) {
+      final int a = remap[this.indices[base]];
+      final int b = remap[this.indices[base + 1]];
+      final int c = remap[this.indices[base + 2]];
+      if (a != b && b != c && a != c) {
+        this.indices[count] = a;
+        this.indices[count + 1] = b;
+        this.indices[count + 2] = c;
+        count += 3;
+      }
+    }
+    this.indices = Arrays.copyOf(this.indices, count);
+  }
+
+  private void addTriangleQuadrics()
+  {
+    final Borders borders = new Borders(this.indices, this.classes);
+    final double[] normal = new double[3];
+
+    for (int base = 0; base < this.indices.length; base += 3) {
+      final int a = this.indices[base];
+      final int b = this.indices[base + 1];
+      final int c = this.indices[base + 2];
+
+      this.normal(a, b, c, normal);
+      final double length = Math.sqrt(dot3(normal));
+      if (length == 0.0) {
+        continue;
+      }
+      normal[0] /= length;
+      normal[1] /= length;
+      normal[2] /= length;
+
+      final double area = 0.5 * length;
+      final double d = -this.dotPosition(normal, a);
+      for (int corner = 0; corner < 3; ++corner) {
+        this.addPlane(
+          this.classes[this.indices[base + corner]],
+          normal[0], normal[1], normal[2], d, area);
+      }
+
+      for (int corner = 0; corner < 3; ++corner) {
+        final int from = this.indices[base + corner];
+        final int to = this.indices[base + (corner + 1) % 3];
+        if (borders.isBorder(this.classes[from], this.classes[to])) {
+          this.addBorderPlane(from, to, normal);
+        }
+      }
+    }
+  }
+
+  /**
+   * Add a plane that contains the border edge {@code (from, to)} and is
+   * perpendicular to the triangle, penalizing movement away from the
+   * border.
+   */
+
+  private void addBorderPlane(
+    final int from,
+    final int to,
+    final double[] normal)
+  {
+    final double ex = this.positions[to * 3] - this.positions[from * 3];
+    final double ey = this.positions[to * 3 + 1] - this.positions[from * 3 + 1];
+    final double ez = this.positions[to * 3 + 2] - this.positions[from * 3 + 2];
+
+    final double px = ey * normal[2] - ez * normal[1];
+    final double py = ez * normal[0] - ex * normal[2];
+    final double pz = ex * normal[1] - ey * normal[0];
+    final double length = Math.sqrt(px * px + py * py + pz * pz);
+    if (length == 0.0) {
+      return;
+    }
+
+    final double[] plane = {px / length, py / length, pz / length};
+    final double d = -this.dotPosition(plane, from);
+    final double weight = BORDER_WEIGHT * (ex * ex + ey * ey + ez * ez);
+    this.addPlane(
+      this.classes[from], plane[0], plane[1], plane[2], d, weight);
+    this.addPlane(
+      this.classes[to], plane[0], plane[1], plane[2], d, weight);
+  }
+
+  private void addPlane(
+    final int position_class,
+    final double a,
+    final double b,
+    final double c,
+    final double d,
+    final double weight)
+  {
+    final int q = position_class * QUADRIC_SIZE;
+    this.quadrics[q] += weight * a * a;
+    this.quadrics[q + 1] += weight * a * b;
+    this.quadrics[q + 2] += weight * a * c;
+    this.quadrics[q + 3] += weight * a * d;
+    this.quadrics[q + 4] += weight * b * b;
+    this.quadrics[q + 5] += weight * b * c;
+    this.quadrics[q + 6] += weight * b * d;
+    this.quadrics[q + 7] += weight * c * c;
+    this.quadrics[q + 8] += weight * c * d;
+    this.quadrics[q + 9] += weight * d * d;
+    this.quadrics[q + WEIGHT] += weight;
+  }
+
+  private void mergeQuadric(
+    final int target,
+    final int source)
+  {
+    final int t = target * QUADRIC_SIZE;
+    final int s = source * QUADRIC_SIZE;
+    for (int index = 0; index < QUADRIC_SIZE; ++index) {
+      this.quadrics[t + index] += this.quadrics[s + index];
+    }
+  }
+
+  /**
+   * @return The mean squared distance of the position of {@code to} from
+   * the planes accumulated at the position of {@code from}
+   */
+
+  private double cost(
+    final int from,
+    final int to)
+  {
+    final int q = this.classes[from] * QUADRIC_SIZE;
+    final double weight = this.quadrics[q + WEIGHT];
+    if (weight == 0.0) {
+      return 0.0;
+    }
+
+    final double x = this.positions[to * 3];
+    final double y = this.positions[to * 3 + 1];
+    final double z = this.positions[to * 3 + 2];
+    final double[] k = this.quadrics;
+    final double value =
+      k[q] * x * x + 2.0 * k[q + 1] * x * y + 2.0 * k[q + 2] * x * z
+        + 2.0 * k[q + 3] * x + k[q + 4] * y * y + 2.0 * k[q + 5] * y * z
+        + 2.0 * k[q + 6] * y + k[q + 7] * z * z + 2.0 * k[q + 8] * z
+        + k[q + 9];
+    return Math.max(0.0, value / weight);
+  }
+
+  private void normal(
+    final int a,
+    final int b,
+    final int c,
+    final double[] out)
+  {
+    final double[] p = this.positions;
+    final double ab_x = p[b * 3] - p[a * 3];
+    final double ab_y = p[b * 3 + 1] - p[a * 3 + 1];
+    final double ab_z = p[b * 3 + 2] - p[a * 3 + 2];
+    final double ac_x = p[c * 3] - p[a * 3];
+    final double ac_y = p[c * 3 + 1] - p[a * 3 + 1];
+    final double ac_z = p[c * 3 + 2] - p[a * 3 + 2];
+    out[0] = ab_y * ac_z - ab_z * ac_y;
+    out[1] = ab_z * ac_x - ab_x * ac_z;
+    out[2] = ab_x * ac_y - ab_y * ac_x;
+  }
+
+  private double dotPosition(
+    final double[] v,
+    final int vertex)
+  {
+    return v[0] * this.positions[vertex * 3]
+      + v[1] * this.positions[vertex * 3 + 1]
+      + v[2] * this.positions[vertex * 3 + 2];
+  }
+
+  private static double dot3(
+    final double[] v)
+  {
+    return v[0] * v[0] + v[1] * v[1] + v[2] * v[2];
+  }
+
+  /**
+   * The border edges of a mesh, with vertices identified by position. An
+   * edge is on the border if it is used by triangles in only one
+   * direction.
+   */
+
+  private static final class Borders
+  {
+    private final long[] edges;
+    private final int[] counts;
+
+    Borders(
+      final int[] indices,
+      final int[] classes)
+    {
+      this.edges = new long[indices.length];
+      for (int corner = 0; corner < indices.length; ++corner) {
+        this.edges[corner] =
+          key(classes[indices[corner]], classes[indices[edgeEnd(corner)]]);
+      }
+      Arrays.sort(this.edges);
+
+      this.counts = new int[classes.length];
+      for (final long edge : this.edges) {
+        final int from = (int) (edge >>> 32);
+        final int to = (int) edge;
+        if (Arrays.binarySearch(this.edges, key(to, from)) < 0) {
+          ++this.counts[from];
+          ++this.counts[to];
+        }
+      }
+    }
+
+    private static long key(
+      final int from,
+      final int to)
+    {
+      return ((long) from << 32) | ((long) to & 0xffff_ffffL);
+    }
+
+    int count(
+      final int position_class)
+    {
+      return this.counts[position_class];
+    }
+
+    /**
+     * @return {@code true} if the edge between the two vertices is used by
+     * triangles in only one direction
+     */
+
+    boolean isBorder(
+      final int from,
+      final int to)
+    {
+      final boolean forward = Arrays.binarySearch(this.edges, key(from, to)) >= 0;
+      final boolean reverse = Arrays.binarySearch(this.edges, key(to, from)) >= 0;
+      return forward != reverse;
+    }
+  }
+}
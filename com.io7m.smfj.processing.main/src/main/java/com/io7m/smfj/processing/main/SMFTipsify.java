@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.processing.main;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of the "Tipsify" vertex cache optimization algorithm
+ * described in "Fast Triangle Reordering for Vertex Locality and Reduced
+ * Overdraw" (Sander, Nehab, Barczak 2007). The algorithm runs in time linear
+ * in the number of triangles, and models a FIFO post-transform cache of a
+ * given size.
+ */
+
+final class SMFTipsify
+{
+  private final int[] indices;
+  private final SMFTriangleArrays.Adjacency adjacency;
+  private final int vertexCount;
+  private final int cacheSize;
+  private final int[] live;
+  private final int[] cacheTime;
+  private final boolean[] emitted;
+  private final int[] deadEnds;
+  private final int[] candidates;
+  private final int[] order;
+  private int[] clusters;
+  private int clusterCount;
+  private int deadEndCount;
+  private int candidateCount;
+  private int orderCount;
+  private int time;
+  private int cursor;
+
+  private SMFTipsify(
+    final int[] in_indices,
+    final int in_vertex_count,
+    final int in_cache_size)
+  {
+    this.indices = in_indices;
+    this.vertexCount = in_vertex_count;
+    this.cacheSize = in_cache_size;
+    this.adjacency = SMFTriangleArrays.adjacency(in_indices, in_vertex_count);
+
+    int maximum_degree = 0;
+    this.live = new int[in_vertex_count];
+    for (int vertex = 0; vertex < in_vertex_count; ++vertex) {
+      this.live[vertex] = this.adjacency.degree(vertex);
+      maximum_degree = Math.max(maximum_degree, this.live[vertex]);
+    }
+
+    final int triangle_count = in_indices.length / 3;
+    this.cacheTime = new int[in_vertex_count];
+    this.emitted = new boolean[triangle_count];
+    this.deadEnds = new int[in_indices.length];
+    this.candidates = new int[Math.multiplyExact(maximum_degree, 3)];
+    this.order = new int[triangle_count];
+    this.clusters = new int[16];
+  }
+
+  /**
+   * Compute a new triangle order.
+   *
+   * @param indices      The triangle indices
+   * @param vertex_count The number of vertices
+   * @param cache_size   The size of the modelled cache
+   *
+   * @return The new triangle order
+   */
+
+  static Result optimize(
+    final int[] indices,
+    final int vertex_count,
+    final int cache_size)
+  {
+    return new SMFTipsify(indices, vertex_count, cache_size).run();
+  }
+
+  private Result run()
+  {
+    this.time = this.cacheSize + 1;
+    this.cursor = 0;
+
+    int fanning = this.skipDeadEnd();
+    while (fanning >= 0) {
+      this.candidateCount = 0;
+      final int end = this.adjacency.end(fanning);
+      for (int index = this.adjacency.start(fanning); index < end; ++index) {
+        final int triangle = this.adjacency.triangle(index);
+        if (!this.emitted[triangle]) {
+          this.emit(triangle);
+        }
+      }
+      fanning = this.nextVertex();
+    }
+
+    return new Result(
+      this.order, Arrays.copyOf(this.clusters, this.clusterCount));
+  }
+
+  private void emit(
+    final int triangle)
+  {
+    this.emitted[triangle] = true;
+    this.order[this.orderCount] = triangle;
+    ++this.orderCount;
+
+    final int base = triangle * 3;
+    for (int corner = 0; corner < 3; ++corner) {
+      final int vertex = this.indices[base + corner];
+      this.deadEnds[this.deadEndCount] = vertex;
+      ++this.deadEndCount;
+      this.candidates[this.candidateCount] = vertex;
+      ++this.candidateCount;
+      --this.live[vertex];
+      if (this.time - this.cacheTime[vertex] > this.cacheSize) {
+        this.cacheTime[vertex] = this.time;
+        ++this.time;
+      }
+    }
+  }
+
+  private int nextVertex()
+  {
+    int best = -1;
+    int best_priority = -1;
+    for (int index = 0; index < this.candidateCount; ++index) {
+      final int vertex = this.candidates[index];
+      if (this.live[vertex] > 0) {
+        final int age = this.time - this.cacheTime[vertex];
+        final int priority =
+          age + 2 * this.live[vertex] <= this.cacheSize ? age : 0;
+        if (priority > best_priority) {
+          best = vertex;
+          best_priority = priority;
+        }
+      }
+    }
+
+    if (best == -1) {
+      best = this.skipDeadEnd();
+    }
+    return best;
+  }
+
+  /**
+   * Find a vertex with remaining triangles, first from the vertices most
+   * recently emitted and then in index order. Reaching this point means
+   * that the vertex cache will effectively be flushed, so the position in
+   * the output is recorded as the start of a new cluster.
+   */
+
+  private int skipDeadEnd()
+  {
+    if (this.orderCount < this.order.length) {
+      this.addCluster(this.orderCount);
+    }
+
+    while (this.deadEndCount > 0) {
+      --this.deadEndCount;
+      final int vertex = this.deadEnds[this.deadEndCount];
+      if (this.live[vertex] > 0) {
+        return vertex;
+      }
+    }
+
+    for (; this.cursor < this.vertexCount; ++this.cursor) {
+      if (this.live[this.cursor] > 0) {
+        return this.cursor;
+      }
+    }
+    return -1;
+  }
+
+  private void addCluster(
+    final int start)
+  {
+    if (this.clusterCount == this.clusters.length) {
+      this.clusters =
+        Arrays.copyOf(this.clusters, Math.multiplyExact(this.clusterCount, 2));
+    }
+    this.clusters[this.clusterCount] = start;
+    ++this.clusterCount;
+  }
+
+  /**
+   * The result of optimization.
+   */
+
+  static final class Result
+  {
+    private final int[] order;
+    private final int[] clusters;
+
+    private Result(
+      final int[] in_order,
+      final int[] in_clusters)
+    {
+      this.order = in_order;
+      this.clusters = in_clusters;
+    }
+
+    /**
+     * @return The index of the original triangle at each position
+     */
+
+    int[] order()
+    {
+      return this.order;
+    }
+
+    /**
+     * @return The positions in the new order at which the optimizer had to
+     * restart from a vertex outside of the cache, in ascending order
+     */
+
+    int[] clusters()
+    {
+      return this.clusters;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.junreachable.UnreachableCodeException;
+
+/**
+ * The ways in which an attribute can be transformed by
+ * {@link SMFMemoryMeshFilterTransform}.
+ */
+
+public enum SMFTransformAttributeKind
+{
+  /**
+   * The attribute holds points, which are transformed by the full affine
+   * matrix.
+   */
+
+  TRANSFORM_POSITION,
+
+  /**
+   * The attribute holds surface normals, which are transformed by the
+   * inverse transpose of the upper-left 3x3 part of the matrix.
+   */
+
+  TRANSFORM_NORMAL,
+
+  /**
+   * The attribute holds tangents, which are transformed by the upper-left
+   * 3x3 part of the matrix. The fourth component of four-component tangents
+   * is treated as the handedness of the bitangent, and is negated if the
+   * matrix changes the handedness of the coordinate system.
+   */
+
+  TRANSFORM_TANGENT;
+
+  /**
+   * @param name A kind name such as "position"
+   *
+   * @return The kind with the given name
+   *
+   * @throws IllegalArgumentException On unrecognized names
+   */
+
+  public static SMFTransformAttributeKind fromName(
+    final String name)
+    throws IllegalArgumentException
+  {
+    switch (name) {
+      case "position":
+        return TRANSFORM_POSITION;
+      case "normal":
+        return TRANSFORM_NORMAL;
+      case "tangent":
+        return TRANSFORM_TANGENT;
+      default: {
+        throw new IllegalArgumentException(
+          "Unrecognized attribute kind: " + name);
+      }
+    }
+  }
+
+  /**
+   * @return The kind as a humanly readable name such as "position"
+   */
+
+  public String toName()
+  {
+    switch (this) {
+      case TRANSFORM_POSITION:
+        return "position";
+      case TRANSFORM_NORMAL:
+        return "normal";
+      case TRANSFORM_TANGENT:
+        return "tangent";
+    }
+
+    throw new UnreachableCodeException();
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import java.util.stream.IntStream;
+
+/**
+ * Kernels that transform packed vectors in place. Each kernel is a simple
+ * loop over a flat array that the JIT compiler can unroll and vectorize,
+ * and large arrays are divided into fixed-size ranges of vectors that are
+ * transformed in parallel.
+ */
+
+final class SMFTransforms
+{
+  /**
+   * The number of vectors above which arrays are transformed in parallel.
+   */
+
+  static final int PARALLEL_THRESHOLD = 1 << 16;
+
+  private static final int CHUNK_SIZE = 1 << 14;
+
+  private SMFTransforms()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Transform the {@code (x, y, z)} part of each vector as a point.
+   *
+   * @param m      The upper three rows of an affine matrix, in row-major
+   *               order
+   * @param values The vectors
+   * @param stride The number of components in each vector
+   */
+
+  static void affine(
+    final double[] m,
+    final double[] values,
+    final int stride)
+  {
+    forRanges(values.length / stride, (from, to) -> {
+      for (int base = from * stride; base < to * stride; base += stride) {
+        final double x = values[base];
+        final double y = values[base + 1];
+        final double z = values[base + 2];
+        values[base] = m[0] * x + m[1] * y + m[2] * z + m[3];
+        values[base + 1] = m[4] * x + m[5] * y + m[6] * z + m[7];
+        values[base + 2] = m[8] * x + m[9] * y + m[10] * z + m[11];
+      }
+    });
+  }
+
+  /**
+   * Transform the {@code (x, y, z)} part of each vector as a direction,
+   * optionally normalizing the result. Vectors of length zero are left at
+   * zero.
+   *
+   * @param m         A 3x3 matrix in row-major order
+   * @param values    The vectors
+   * @param stride    The number of components in each vector
+   * @param normalize {@code true} if the results should be normalized
+   */
+
+  static void linear(
+    final double[] m,
+    final double[] values,
+    final int stride,
+    final boolean normalize)
+  {
+    forRanges(values.length / stride, (from, to) -> {
+      for (int base = from * stride; base < to * stride; base += stride) {
+        final double x = values[base];
+        final double y = values[base + 1];
+        final double z = values[base + 2];
+        final double rx = m[0] * x + m[1] * y + m[2] * z;
+        final double ry = m[3] * x + m[4] * y + m[5] * z;
+        final double rz = m[6] * x + m[7] * y + m[8] * z;
+        final double length = Math.sqrt(rx * rx + ry * ry + rz * rz);
+        final double scale = normalize && length > 0.0 ? 1.0 / length : 1.0;
+        values[base] = rx * scale;
+        values[base + 1] = ry * scale;
+        values[base + 2] = rz * scale;
+      }
+    });
+  }
+
+  /**
+   * Negate the fourth component of each vector.
+   *
+   * @param values The vectors
+   */
+
+  static void negateW(
+    final double[] values)
+  {
+    forRanges(values.length / 4, (from, to) -> {
+      for (int base = from * 4 + 3; base < to * 4; base += 4) {
+        values[base] = -values[base];
+      }
+    });
+  }
+
+  /**
+   * @param m A 4x4 matrix in row-major order
+   *
+   * @return The upper-left 3x3 part of the matrix in row-major order
+   */
+
+  static double[] upper3x3(
+    final double[] m)
+  {
+    return new double[]{
+      m[0], m[1], m[2],
+      m[4], m[5], m[6],
+      m[8], m[9], m[10],
+    };
+  }
+
+  /**
+   * @param m A 3x3 matrix in row-major order
+   *
+   * @return The determinant of the matrix
+   */
+
+  static double determinant(
+    final double[] m)
+  {
+    return m[0] * (m[4] * m[8] - m[5] * m[7])
+      - m[1] * (m[3] * m[8] - m[5] * m[6])
+      + m[2] * (m[3] * m[7] - m[4] * m[6]);
+  }
+
+  /**
+   * @param m A non-singular 3x3 matrix in row-major order
+   *
+   * @return The inverse transpose of the matrix in row-major order
+   */
+
+  static double[] inverseTranspose(
+    final double[] m)
+  {
+    final double d = determinant(m);
+    return new double[]{
+      (m[4] * m[8] - m[5] * m[7]) / d,
+      (m[5] * m[6] - m[3] * m[8]) / d,
+      (m[3] * m[7] - m[4] * m[6]) / d,
+      (m[2] * m[7] - m[1] * m[8]) / d,
+      (m[0] * m[8] - m[2] * m[6]) / d,
+      (m[1] * m[6] - m[0] * m[7]) / d,
+      (m[1] * m[5] - m[2] * m[4]) / d,
+      (m[2] * m[3] - m[0] * m[5]) / d,
+      (m[0] * m[4] - m[1] * m[3]) / d,
+    };
+  }
+
+  private static void forRanges(
+    final int count,
+    final RangeConsumerType consumer)
+  {
+    final int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    final IntStream range = IntStream.range(0, chunks);
+    final IntStream stream =
+      count >= PARALLEL_THRESHOLD ? range.parallel() : range;
+    stream.forEach(index -> consumer.accept(
+      index * CHUNK_SIZE,
+      Math.min(count, (index + 1) * CHUNK_SIZE)));
+  }
+
+  private interface RangeConsumerType
+  {
+    void accept(
+      int from,
+      int to);
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.junreachable.UnreachableCodeException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Functions over flat arrays of triangle indices. Filters that need to walk
+ * the triangles of a mesh many times convert the triangle list to an array of
+ * {@code int} indices once, where each triangle {@code t} occupies the
+ * elements {@code [3t, 3t + 2]}.
+ */
+
+final class SMFTriangleArrays
+{
+  private SMFTriangleArrays()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Flatten a list of triangles.
+   *
+   * @param triangles    The triangles
+   * @param vertex_count The number of vertices in the mesh
+   *
+   * @return An array of indices
+   *
+   * @throws IllegalArgumentException If a triangle refers to a nonexistent
+   *                                  vertex, or the mesh is too large
+   */
+
+  static int[] flatten(
+    final List<Vector3L> triangles,
+    final long vertex_count)
+    throws IllegalArgumentException
+  {
+    if (Long.compareUnsigned(vertex_count, Integer.MAX_VALUE) > 0) {
+      throw new IllegalArgumentException(String.format(
+        "Meshes with %s vertices are too large to be processed",
+        Long.toUnsignedString(vertex_count)));
+    }
+
+    final int[] indices = new int[Math.multiplyExact(triangles.size(), 3)];
+    for (int index = 0; index < triangles.size(); ++index) {
+      final Vector3L triangle = triangles.get(index);
+      final int base = index * 3;
+      indices[base] = checkVertex(index, triangle.x(), vertex_count);
+      indices[base + 1] = checkVertex(index, triangle.y(), vertex_count);
+      indices[base + 2] = checkVertex(index, triangle.z(), vertex_count);
+    }
+    return indices;
+  }
+
+  private static int checkVertex(
+    final int triangle,
+    final long vertex,
+    final long vertex_count)
+  {
+    if (Long.compareUnsigned(vertex, vertex_count) >= 0) {
+      throw new IllegalArgumentException(String.format(
+        "Triangle %d points to nonexistent vertex %s",
+        Integer.valueOf(triangle),
+        Long.toUnsignedString(vertex)));
+    }
+    return (int) vertex;
+  }
+
+  /**
+   * Convert an array of indices back to a list of triangles.
+   *
+   * @param indices The indices
+   *
+   * @return A list of triangles
+   */
+
+  static List<Vector3L> triangles(
+    final int[] indices)
+  {
+    final int count = indices.length / 3;
+    final List<Vector3L> triangles = new ArrayList<>(count);
+    for (int index = 0; index < count; ++index) {
+      final int base = index * 3;
+      triangles.add(Vector3L.of(
+        (long) indices[base],
+        (long) indices[base + 1],
+        (long) indices[base + 2]));
+    }
+    return triangles;
+  }
+
+  /**
+   * Reorder a list of triangles.
+   *
+   * @param triangles The triangles
+   * @param order     The index of the original triangle that will appear at
+   *                  each position in the result
+   *
+   * @return The reordered triangles
+   */
+
+  static List<Vector3L> reorder(
+    final List<Vector3L> triangles,
+    final int[] order)
+  {
+    final List<Vector3L> result = new ArrayList<>(order.length);
+    for (final int triangle : order) {
+      result.add(triangles.get(triangle));
+    }
+    return result;
+  }
+
+  /**
+   * Reorder an array of triangle indices.
+   *
+   * @param indices The indices
+   * @param order   The index of the original triangle that will appear at
+   *                each position in the result
+   *
+   * @return The reordered indices
+   */
+
+  static int[] reorder(
+    final int[] indices,
+    final int[] order)
+  {
+    final int[] result = new int[indices.length];
+    for (int index = 0; index < order.length; ++index) {
+      System.arraycopy(indices, order[index] * 3, result, index * 3, 3);
+    }
+    return result;
+  }
+
+  /**
+   * Build the vertex-to-triangle adjacency of a mesh.
+   *
+   * @param indices      The indices
+   * @param vertex_count The number of vertices
+   *
+   * @return The adjacency
+   */
+
+  static Adjacency adjacency(
+    final int[] indices,
+    final int vertex_count)
+  {
+    final int[] offsets = new int[vertex_count + 1];
+    for (final int vertex : indices) {
+      ++offsets[vertex + 1];
+    }
+    for (int vertex = 0; vertex < vertex_count; ++vertex) {
+      offsets[vertex + 1] += offsets[vertex];
+    }
+
+    final int[] cursors = new int[vertex_count];
+    System.arraycopy(offsets, 0, cursors, 0, vertex_count);
+
+    final int[] triangles = new int[indices.length];
+    for (int index = 0; index < indices.length; ++index) {
+      final int vertex = indices[index];
+      triangles[cursors[vertex]] = index / 3;
+      ++cursors[vertex];
+    }
+    return new Adjacency(offsets, triangles);
+  }
+
+  /**
+   * The triangles that use each vertex, in compressed form: the triangles
+   * that use vertex {@code v} are the elements of {@link #triangles} in the
+   * range {@code [offsets[v], offsets[v + 1])}.
+   */
+
+  static final class Adjacency
+  {
+    private final int[] offsets;
+    private final int[] triangles;
+
+    private Adjacency(
+      final int[] in_offsets,
+      final int[] in_triangles)
+    {
+      this.offsets = in_offsets;
+      this.triangles = in_triangles;
+    }
+
+    int start(
+      final int vertex)
+    {
+      return this.offsets[vertex];
+    }
+
+    int end(
+      final int vertex)
+    {
+      return this.offsets[vertex + 1];
+    }
+
+    int triangle(
+      final int index)
+    {
+      return this.triangles[index];
+    }
+
+    int degree(
+      final int vertex)
+    {
+      return this.offsets[vertex + 1] - this.offsets[vertex];
+    }
+  }
+}
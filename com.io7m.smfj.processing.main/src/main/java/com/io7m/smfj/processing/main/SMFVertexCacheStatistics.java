@@ -0,0 +1,186 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Statistics describing how a triangle order would use a FIFO post-transform
+ * vertex cache of a given size.
+ */
+
+public final class SMFVertexCacheStatistics
+{
+  private final int cacheSize;
+  private final long triangles;
+  private final long vertices;
+  private final long misses;
+
+  private SMFVertexCacheStatistics(
+    final int in_cache_size,
+    final long in_triangles,
+    final long in_vertices,
+    final long in_misses)
+  {
+    this.cacheSize = in_cache_size;
+    this.triangles = in_triangles;
+    this.vertices = in_vertices;
+    this.misses = in_misses;
+  }
+
+  /**
+   * Simulate a FIFO vertex cache over the given triangles.
+   *
+   * @param triangles    The triangles
+   * @param vertex_count The number of vertices in the mesh
+   * @param cache_size   The number of entries in the cache
+   *
+   * @return The cache statistics
+   *
+   * @throws IllegalArgumentException If a triangle refers to a nonexistent
+   *                                  vertex or the cache size is not positive
+   */
+
+  public static SMFVertexCacheStatistics measure(
+    final List<Vector3L> triangles,
+    final long vertex_count,
+    final int cache_size)
+    throws IllegalArgumentException
+  {
+    Objects.requireNonNull(triangles, "triangles");
+    if (cache_size < 1) {
+      throw new IllegalArgumentException(String.format(
+        "Cache size %d must be positive",
+        Integer.valueOf(cache_size)));
+    }
+    return measure(
+      SMFTriangleArrays.flatten(triangles, vertex_count),
+      (int) vertex_count,
+      cache_size);
+  }
+
+  /*
+   * The filters that call this directly have already checked the cache size.
+   */
+
+  static SMFVertexCacheStatistics measure(
+    final int[] indices,
+    final int vertex_count,
+    final int cache_size)
+  {
+    /*
+     * Each vertex is stamped with the (one-based) miss number at which it
+     * entered the cache. A FIFO cache evicts a vertex after exactly
+     * cache_size further misses, so a vertex is resident if fewer than
+     * cache_size misses have happened since it was stamped.
+     */
+
+    final int[] stamps = new int[vertex_count];
+    int miss_count = 0;
+    for (final int vertex : indices) {
+      final int stamp = stamps[vertex];
+      if (stamp == 0 || miss_count - stamp >= cache_size) {
+        ++miss_count;
+        stamps[vertex] = miss_count;
+      }
+    }
+
+    long referenced = 0L;
+    for (final int stamp : stamps) {
+      if (stamp != 0) {
+        ++referenced;
+      }
+    }
+
+    return new SMFVertexCacheStatistics(
+      cache_size, indices.length / 3, referenced, miss_count);
+  }
+
+  /**
+   * @return The size of the simulated cache
+   */
+
+  public int cacheSize()
+  {
+    return this.cacheSize;
+  }
+
+  /**
+   * @return The number of triangles
+   */
+
+  public long triangles()
+  {
+    return this.triangles;
+  }
+
+  /**
+   * @return The number of distinct vertices referenced by the triangles
+   */
+
+  public long vertices()
+  {
+    return this.vertices;
+  }
+
+  /**
+   * @return The number of cache misses, and therefore vertex shader
+   * invocations
+   */
+
+  public long misses()
+  {
+    return this.misses;
+  }
+
+  /**
+   * @return The average cache miss ratio: the number of misses per triangle
+   */
+
+  public double acmr()
+  {
+    if (this.triangles == 0L) {
+      return 0.0;
+    }
+    return (double) this.misses / (double) this.triangles;
+  }
+
+  /**
+   * @return The average transformed vertex ratio: the number of misses per
+   * referenced vertex, where {@code 1.0} is optimal
+   */
+
+  public double atvr()
+  {
+    if (this.vertices == 0L) {
+      return 0.0;
+    }
+    return (double) this.misses / (double) this.vertices;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "ACMR %.3f, ATVR %.3f (cache size %d)",
+      Double.valueOf(this.acmr()),
+      Double.valueOf(this.atvr()),
+      Integer.valueOf(this.cacheSize));
+  }
+}
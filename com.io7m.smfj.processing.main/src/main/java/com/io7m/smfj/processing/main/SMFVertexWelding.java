@@ -0,0 +1,488 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.processing.main;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.smfj.processing.api.SMFAttributeArrayType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Functions to find vertices with equal attribute values, or values that
+ * lie within a per-attribute epsilon of each other. Vertices are grouped by
+ * hashing their exactly-compared components, together with the cells of a
+ * grid laid over the first attribute that is compared within an epsilon,
+ * into an open-addressing table. The grid cells are four epsilons wide, so
+ * any value within epsilon of a given value lies either in the same cell or
+ * in the neighbouring cell on the nearer side, and only those cells need to
+ * be searched. Candidate vertices found in those cells are then compared by
+ * their actual distances.
+ */
+
+final class SMFVertexWelding
+{
+  /**
+   * The number of vertices above which keys are hashed in parallel.
+   */
+
+  static final int PARALLEL_THRESHOLD = 1 << 16;
+
+  private SMFVertexWelding()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Produce a compared attribute from an attribute array. If {@code epsilon}
+   * is zero, components must be exactly equal for vertices to be merged
+   * (with positive and negative floating point zero being considered
+   * equal). Otherwise, each component of one vertex must lie within
+   * {@code epsilon} of the same component of the other.
+   *
+   * @param array   The array
+   * @param epsilon The non-negative epsilon value
+   *
+   * @return A compared attribute
+   */
+
+  static Attribute attribute(
+    final SMFAttributeArrayType array,
+    final double epsilon)
+  {
+    return array.<Double, Attribute, RuntimeException>matchArray(
+      Double.valueOf(epsilon),
+      (e, a) -> floating(a.values(), 4, e, (v, o) -> {
+        o[0] = v.x();
+        o[1] = v.y();
+        o[2] = v.z();
+        o[3] = v.w();
+      }),
+      (e, a) -> floating(a.values(), 3, e, (v, o) -> {
+        o[0] = v.x();
+        o[1] = v.y();
+        o[2] = v.z();
+      }),
+      (e, a) -> floating(a.values(), 2, e, (v, o) -> {
+        o[0] = v.x();
+        o[1] = v.y();
+      }),
+      (e, a) -> floating(a.values(), 1, e, (v, o) -> o[0] = v.doubleValue()),
+      (e, a) -> integer(a.values(), 4, e, (v, o) -> {
+        o[0] = v.x();
+        o[1] = v.y();
+        o[2] = v.z();
+        o[3] = v.w();
+      }),
+      (e, a) -> integer(a.values(), 3, e, (v, o) -> {
+        o[0] = v.x();
+        o[1] = v.y();
+        o[2] = v.z();
+      }),
+      (e, a) -> integer(a.values(), 2, e, (v, o) -> {
+        o[0] = v.x();
+        o[1] = v.y();
+      }),
+      (e, a) -> integer(a.values(), 1, e, (v, o) -> o[0] = v.longValue()),
+      (e, a) -> integer(a.values(), 4, e, (v, o) -> {
+        o[0] = v.x();
+        o[1] = v.y();
+        o[2] = v.z();
+        o[3] = v.w();
+      }),
+      (e, a) -> integer(a.values(), 3, e, (v, o) -> {
+        o[0] = v.x();
+        o[1] = v.y();
+        o[2] = v.z();
+      }),
+      (e, a) -> integer(a.values(), 2, e, (v, o) -> {
+        o[0] = v.x();
+        o[1] = v.y();
+      }),
+      (e, a) -> integer(a.values(), 1, e, (v, o) -> o[0] = v.longValue()));
+  }
+
+  /**
+   * Produce an exactly-compared attribute from an array of components.
+   *
+   * @param values The components of each element, in order
+   * @param width  The number of components per element
+   *
+   * @return A compared attribute
+   */
+
+  static Attribute exact(
+    final double[] values,
+    final int width)
+  {
+    final long[] keys = new long[values.length];
+    for (int index = 0; index < values.length; ++index) {
+      keys[index] = Double.doubleToLongBits(values[index] + 0.0);
+    }
+    return new Attribute(width, 0.0, keys, new double[0]);
+  }
+
+  private static <T> Attribute floating(
+    final List<T> values,
+    final int width,
+    final Double epsilon,
+    final BiConsumer<T, double[]> unpack)
+  {
+    final double e = epsilon.doubleValue();
+    final double[] components = new double[width];
+    final double[] result = new double[Math.multiplyExact(values.size(), width)];
+    for (int index = 0; index < values.size(); ++index) {
+      unpack.accept(values.get(index), components);
+      System.arraycopy(components, 0, result, index * width, width);
+    }
+    if (e > 0.0) {
+      return new Attribute(width, e, new long[0], result);
+    }
+    return exact(result, width);
+  }
+
+  private static <T> Attribute integer(
+    final List<T> values,
+    final int width,
+    final Double epsilon,
+    final BiConsumer<T, long[]> unpack)
+  {
+    final double e = epsilon.doubleValue();
+    final long[] components = new long[width];
+    final long[] result = new long[Math.multiplyExact(values.size(), width)];
+    for (int index = 0; index < values.size(); ++index) {
+      unpack.accept(values.get(index), components);
+      System.arraycopy(components, 0, result, index * width, width);
+    }
+    if (e > 0.0) {
+      final double[] reals = new double[result.length];
+      for (int index = 0; index < result.length; ++index) {
+        reals[index] = (double) result[index];
+      }
+      return new Attribute(width, e, new long[0], reals);
+    }
+    return new Attribute(width, 0.0, result, new double[0]);
+  }
+
+  /**
+   * Merge vertices. Each vertex, in index order, is merged into the
+   * lowest-numbered retained vertex whose compared attributes are all equal
+   * to (or within epsilon of) its own; if there is no such vertex, the
+   * vertex is retained. Retained vertices keep their relative order.
+   * Merging within an epsilon is not transitive: every merged vertex lies
+   * within epsilon of the vertex it was merged into, but two vertices merged
+   * into the same vertex may lie up to twice epsilon apart.
+   *
+   * @param attributes   The compared attributes
+   * @param vertex_count The number of vertices
+   *
+   * @return The result of welding
+   */
+
+  static Result weld(
+    final List<Attribute> attributes,
+    final int vertex_count)
+  {
+    final Attribute grid = gridAttribute(attributes);
+    final int grid_width = grid == null ? 0 : grid.width;
+    final int exact_width = exactWidth(attributes);
+    final int width = exact_width + grid_width;
+
+    final long[] packed = new long[Math.multiplyExact(vertex_count, width)];
+    final int[] sides = new int[vertex_count];
+    final int[] hashes = new int[vertex_count];
+    final IntStream range = IntStream.range(0, vertex_count);
+    final IntStream stream =
+      vertex_count >= PARALLEL_THRESHOLD ? range.parallel() : range;
+    stream.forEach(v -> {
+      sides[v] = pack(attributes, grid, v, packed, v * width);
+      hashes[v] = hash(packed, v * width, width);
+    });
+
+    final int doubled = Math.multiplyExact(Math.max(1, vertex_count), 2);
+    final int capacity = Integer.highestOneBit(doubled - 1) << 1;
+    final int mask = capacity - 1;
+    final int[] table = new int[capacity];
+    Arrays.fill(table, -1);
+    final int[] next = new int[vertex_count];
+
+    final int[] remap = new int[vertex_count];
+    final int[] sources = new int[vertex_count];
+    final long[] probe = new long[width];
+    int count = 0;
+
+    for (int vertex = 0; vertex < vertex_count; ++vertex) {
+      int best = -1;
+      int home = -1;
+
+      for (int cells = 0; cells < 1 << grid_width; ++cells) {
+        System.arraycopy(packed, vertex * width, probe, 0, width);
+        neighbour(probe, exact_width, grid_width, sides[vertex], cells);
+
+        final int h = cells == 0 ? hashes[vertex] : hash(probe, 0, width);
+        final int slot = find(table, h & mask, packed, probe);
+        if (table[slot] != -1) {
+          best = nearest(attributes, next, table[slot], vertex, best);
+        }
+        if (cells == 0) {
+          home = slot;
+        }
+      }
+
+      if (best == -1) {
+        next[vertex] = table[home];
+        table[home] = vertex;
+        remap[vertex] = count;
+        sources[count] = vertex;
+        ++count;
+      } else {
+        remap[vertex] = remap[best];
+      }
+    }
+
+    return new Result(remap, Arrays.copyOf(sources, count));
+  }
+
+  /**
+   * Move the grid components of {@code probe} into the neighbouring cells
+   * selected by {@code cells}, on the sides given by {@code sides}.
+   */
+
+  private static void neighbour(
+    final long[] probe,
+    final int exact_width,
+    final int grid_width,
+    final int sides,
+    final int cells)
+  {
+    for (int component = 0; component < grid_width; ++component) {
+      if ((cells & (1 << component)) != 0) {
+        probe[exact_width + component] +=
+          (sides & (1 << component)) != 0 ? 1L : -1L;
+      }
+    }
+  }
+
+  /**
+   * @return The slot holding the vertex whose cell is {@code probe}, or the
+   * empty slot at which such a vertex would be inserted
+   */
+
+  private static int find(
+    final int[] table,
+    final int start,
+    final long[] packed,
+    final long[] probe)
+  {
+    final int width = probe.length;
+    final int mask = table.length - 1;
+    int slot = start;
+    while (table[slot] != -1) {
+      final int head = table[slot];
+      if (Arrays.equals(
+        packed, head * width, head * width + width, probe, 0, width)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * @return The lowest-numbered vertex in the chain starting at
+   * {@code head} that lies within epsilon of {@code vertex}, or
+   * {@code best} if that is lower
+   */
+
+  private static int nearest(
+    final List<Attribute> attributes,
+    final int[] next,
+    final int head,
+    final int vertex,
+    final int best)
+  {
+    int result = best;
+    for (int other = head; other != -1; other = next[other]) {
+      if ((result == -1 || other < result)
+        && within(attributes, other, vertex)) {
+        result = other;
+      }
+    }
+    return result;
+  }
+
+  private static boolean within(
+    final List<Attribute> attributes,
+    final int a,
+    final int b)
+  {
+    for (final Attribute attribute : attributes) {
+      if (attribute.epsilon > 0.0) {
+        final int w = attribute.width;
+        for (int component = 0; component < w; ++component) {
+          final double x = attribute.values[a * w + component];
+          final double y = attribute.values[b * w + component];
+          if (Double.compare(x + 0.0, y + 0.0) != 0
+            && !(Math.abs(x - y) <= attribute.epsilon)) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  private static Attribute gridAttribute(
+    final List<Attribute> attributes)
+  {
+    for (final Attribute attribute : attributes) {
+      if (attribute.epsilon > 0.0) {
+        return attribute;
+      }
+    }
+    return null;
+  }
+
+  private static int exactWidth(
+    final List<Attribute> attributes)
+  {
+    int result = 0;
+    for (final Attribute attribute : attributes) {
+      if (attribute.epsilon == 0.0) {
+        result += attribute.width;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Write the exact keys and grid cells of a vertex into {@code packed}.
+   *
+   * @return A bit mask with one bit set for each grid component that lies in
+   * the upper half of its cell
+   */
+
+  private static int pack(
+    final List<Attribute> attributes,
+    final Attribute grid,
+    final int vertex,
+    final long[] packed,
+    final int offset)
+  {
+    int position = offset;
+    for (final Attribute attribute : attributes) {
+      if (attribute.epsilon == 0.0) {
+        final int w = attribute.width;
+        System.arraycopy(attribute.keys, vertex * w, packed, position, w);
+        position += w;
+      }
+    }
+
+    int sides = 0;
+    if (grid != null) {
+      final double size = grid.epsilon * 4.0;
+      for (int component = 0; component < grid.width; ++component) {
+        final double scaled =
+          grid.values[vertex * grid.width + component] / size;
+        final double cell = Math.floor(scaled);
+        packed[position + component] = (long) cell;
+        if (scaled - cell >= 0.5) {
+          sides |= 1 << component;
+        }
+      }
+    }
+    return sides;
+  }
+
+  private static int hash(
+    final long[] packed,
+    final int offset,
+    final int width)
+  {
+    long h = 0x9e3779b97f4a7c15L;
+    for (int index = offset; index < offset + width; ++index) {
+      h = (h ^ packed[index]) * 0xff51afd7ed558ccdL;
+      h ^= h >>> 32;
+    }
+    h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return (int) (h ^ (h >>> 33));
+  }
+
+  /**
+   * A compared attribute. Exactly-compared attributes are held as integer
+   * keys, and attributes compared within an epsilon are held as their
+   * component values.
+   */
+
+  static final class Attribute
+  {
+    private final int width;
+    private final double epsilon;
+    private final long[] keys;
+    private final double[] values;
+
+    private Attribute(
+      final int in_width,
+      final double in_epsilon,
+      final long[] in_keys,
+      final double[] in_values)
+    {
+      this.width = in_width;
+      this.epsilon = in_epsilon;
+      this.keys = in_keys;
+      this.values = in_values;
+    }
+  }
+
+  /**
+   * The result of welding.
+   */
+
+  static final class Result
+  {
+    private final int[] remap;
+    private final int[] sources;
+
+    private Result(
+      final int[] in_remap,
+      final int[] in_sources)
+    {
+      this.remap = in_remap;
+      this.sources = in_sources;
+    }
+
+    /**
+     * @return The new index of each original vertex
+     */
+
+    int[] remap()
+    {
+      return this.remap;
+    }
+
+    /**
+     * @return The original index of each retained vertex
+     */
+
+    int[] sources()
+    {
+      return this.sources;
+    }
+  }
+}
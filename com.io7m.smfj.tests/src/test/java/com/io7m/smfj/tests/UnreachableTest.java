@@ -20,10 +20,13 @@ package com.io7m.smfj.tests;
 
 import com.io7m.junreachable.UnreachableCodeException;
 import com.io7m.smfj.core.SMFAttributeNames;
+import com.io7m.smfj.core.SMFBinary16;
 import com.io7m.smfj.core.SMFSchemaNames;
 import com.io7m.smfj.core.SMFSupportedSizes;
 import com.io7m.smfj.format.binary2.internal.SMFB2Alignment;
+import com.io7m.smfj.format.obj.internal.SMFOBJArrays;
 import com.io7m.smfj.format.text.SMFBase64Lines;
+import com.io7m.smfj.format.xml.internal.SMFXPackedDecoders;
 import java.lang.reflect.InvocationTargetException;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Assertions;
@@ -39,8 +42,11 @@ public final class UnreachableTest
       SMFAttributeNames.class,
       SMFSchemaNames.class,
       SMFSupportedSizes.class,
+      SMFBinary16.class,
       SMFB2Alignment.class,
-      SMFBase64Lines.class
+      SMFOBJArrays.class,
+      SMFBase64Lines.class,
+      SMFXPackedDecoders.class
     ).map((Class<?> clazz) -> {
       final String name = "test" + clazz.getCanonicalName();
       return DynamicTest.dynamicTest(
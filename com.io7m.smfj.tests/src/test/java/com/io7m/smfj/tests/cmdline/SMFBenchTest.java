@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.cmdline;
+
+import com.io7m.smfj.cmdline.Main;
+import com.io7m.smfj.tests.TestDirectories;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for the {@code bench} command.
+ */
+
+public final class SMFBenchTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFBenchTest.class);
+
+  private static final String QUAD = String.join(
+    "\n",
+    "v 0 0 0",
+    "v 1 0 0",
+    "v 1 1 0",
+    "v 0 1 0",
+    "f 1 2 3",
+    "f 1 3 4",
+    "");
+
+  private Path directory;
+  private Path input;
+
+  @BeforeEach
+  public void setup()
+    throws Exception
+  {
+    this.directory = TestDirectories.temporaryDirectory();
+    this.input = this.directory.resolve("quad.obj");
+    Files.writeString(this.input, QUAD, StandardCharsets.UTF_8);
+  }
+
+  private static Result bench(
+    final String... arguments)
+  {
+    final List<String> args = new ArrayList<>();
+    args.add("bench");
+    args.addAll(List.of(arguments));
+
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    final int exitCode;
+    try (PrintStream stream =
+           new PrintStream(buffer, true, StandardCharsets.UTF_8)) {
+      exitCode = Main.run(args.toArray(new String[0]), stream);
+    }
+
+    final Result result = new Result();
+    result.exitCode = exitCode;
+    result.lines = List.of(buffer.toString(StandardCharsets.UTF_8).split("\n"));
+    LOG.debug("output: {}", result.lines);
+    return result;
+  }
+
+  private static final class Result
+  {
+    private int exitCode;
+    private List<String> lines;
+
+    Result()
+    {
+
+    }
+  }
+
+  private Result benchQuad()
+  {
+    return bench(
+      "--input-file", this.input.toString(),
+      "--warmup-iterations", "0",
+      "--iterations", "2",
+      "--output-json", this.directory.resolve("bench.json").toString());
+  }
+
+  private static List<String> columns(
+    final String line)
+  {
+    final List<String> columns = new ArrayList<>();
+    for (final String column : line.split(" : ")) {
+      columns.add(column.trim());
+    }
+    return columns;
+  }
+
+  /**
+   * A short run produces a summary line, a column header, and one row of
+   * seven columns for each workload.
+   */
+
+  @Test
+  public void testReportFormat()
+    throws Exception
+  {
+    final Result result = this.benchQuad();
+    Assertions.assertEquals(0, result.exitCode);
+
+    Assertions.assertEquals(
+      "# " + this.input + ": 4 vertices, 2 triangles, 0 warmup, 2 iterations",
+      result.lines.get(0));
+    Assertions.assertEquals(
+      List.of(
+        "# Name",
+        "Version",
+        "Workload",
+        "MB/s",
+        "Vertices/s",
+        "Triangles/s",
+        "Bytes/vertex"),
+      columns(result.lines.get(1)));
+
+    final List<String> workloads = new ArrayList<>();
+    for (final String line : result.lines.subList(2, result.lines.size())) {
+      final List<String> columns = columns(line);
+      Assertions.assertEquals(7, columns.size(), line);
+      workloads.add(columns.get(2));
+      for (final String number : columns.subList(3, 6)) {
+        Assertions.assertTrue(number.matches("[0-9]+(\\.[0-9]+)?"), line);
+      }
+    }
+
+    Assertions.assertTrue(workloads.contains("parse"), workloads::toString);
+    Assertions.assertTrue(workloads.contains("parse-mesh"), workloads::toString);
+    Assertions.assertTrue(workloads.contains("serialize"), workloads::toString);
+    Assertions.assertTrue(workloads.contains("copy"), workloads::toString);
+
+    final String json =
+      Files.readString(this.directory.resolve("bench.json"));
+    Assertions.assertTrue(json.contains("\"vertices\": 4,"), json);
+    Assertions.assertTrue(json.contains("\"iterations\": 2,"), json);
+    Assertions.assertTrue(json.contains("\"workload\": \"parse-mesh\""), json);
+  }
+
+  /**
+   * Allocation is reported as unavailable when the JVM cannot measure it.
+   */
+
+  @Test
+  public void testAllocationUnavailable()
+    throws Exception
+  {
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    Assumptions.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+
+    final var extended = (com.sun.management.ThreadMXBean) threads;
+    Assumptions.assumeTrue(extended.isThreadAllocatedMemorySupported());
+
+    final boolean enabled = extended.isThreadAllocatedMemoryEnabled();
+    final Result result;
+    try {
+      extended.setThreadAllocatedMemoryEnabled(false);
+      result = this.benchQuad();
+    } finally {
+      extended.setThreadAllocatedMemoryEnabled(enabled);
+    }
+
+    Assertions.assertEquals(0, result.exitCode);
+    for (final String line : result.lines.subList(2, result.lines.size())) {
+      Assertions.assertEquals("-", columns(line).get(6), line);
+    }
+
+    final String json =
+      Files.readString(this.directory.resolve("bench.json"));
+    Assertions.assertTrue(
+      json.contains("\"allocated_bytes_per_vertex\": null"), json);
+    Assertions.assertFalse(
+      json.matches("(?s).*\"allocated_bytes_per_vertex\": [0-9].*"), json);
+  }
+
+  /**
+   * Non-positive iteration counts are rejected.
+   */
+
+  @Test
+  public void testInvalidIterations()
+  {
+    final Result result = bench(
+      "--input-file", this.input.toString(),
+      "--iterations", "0");
+    Assertions.assertEquals(1, result.exitCode);
+    Assertions.assertEquals(List.of(""), result.lines);
+  }
+
+  /**
+   * A missing input file argument is rejected.
+   */
+
+  @Test
+  public void testMissingInput()
+  {
+    final Result result = bench("--iterations", "1");
+    Assertions.assertNotEquals(0, result.exitCode);
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.cmdline;
+
+import com.io7m.smfj.cmdline.Main;
+import com.io7m.smfj.tests.TestDirectories;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the {@code --watch} option of the {@code filter} command.
+ */
+
+public final class SMFFilterWatchTest
+{
+  private Path directory;
+  private Path input;
+  private Path output;
+  private ExecutorService executor;
+  private Future<Integer> watcher;
+
+  private static String triangle(
+    final double x)
+  {
+    return String.join(
+      "\n",
+      "smf 1 0",
+      "vertices 3",
+      "triangles 1 16",
+      "coordinates +x +y -z counter-clockwise",
+      "attribute \"x\" float 1 32",
+      "end",
+      "vertices-noninterleaved",
+      "attribute \"x\"",
+      Double.toString(x),
+      "1.0",
+      "2.0",
+      "end",
+      "triangles",
+      "0 1 2",
+      "end",
+      "");
+  }
+
+  @BeforeEach
+  public void setup()
+    throws Exception
+  {
+    this.directory = TestDirectories.temporaryDirectory().toAbsolutePath();
+    this.input = this.directory.resolve("triangle.smft");
+    this.output = this.directory.resolve("output.smft");
+    this.executor = Executors.newCachedThreadPool();
+
+    Files.writeString(this.input, triangle(0.0));
+    Files.writeString(
+      this.directory.resolve("commands.txt"),
+      "com.io7m.smf:triangles-optimize 16 no-validate\n");
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws Exception
+  {
+    this.executor.shutdownNow();
+    Assertions.assertTrue(
+      this.executor.awaitTermination(10L, TimeUnit.SECONDS),
+      "Watch stopped");
+  }
+
+  private void startWatching()
+    throws Exception
+  {
+    final String[] arguments = {
+      "filter",
+      "--input-file",
+      this.input.toString(),
+      "--commands",
+      this.directory.resolve("commands.txt").toString(),
+      "--output-file",
+      this.output.toString(),
+      "--watch",
+      "--watch-debounce-ms",
+      "10",
+    };
+
+    this.watcher = this.executor.submit(
+      () -> Integer.valueOf(Main.run(arguments, System.out)));
+    this.awaitOutput();
+  }
+
+  private void awaitOutput()
+    throws InterruptedException
+  {
+    final long deadline =
+      System.nanoTime() + Duration.ofSeconds(10L).toNanos();
+    while (!Files.exists(this.output)) {
+      Assertions.assertTrue(System.nanoTime() < deadline, "Output written");
+      Assertions.assertFalse(this.watcher.isDone(), "Still watching");
+      Thread.sleep(10L);
+    }
+  }
+
+  private void replaceInput(
+    final String text)
+    throws IOException
+  {
+    Files.deleteIfExists(this.output);
+    Files.writeString(this.input, text);
+  }
+
+  /**
+   * Changing the input file filters the mesh again.
+   */
+
+  @Test
+  public void testRerunOnChange()
+    throws Exception
+  {
+    this.startWatching();
+
+    this.replaceInput(triangle(5.0));
+    this.awaitOutput();
+
+    this.replaceInput(triangle(6.0));
+    this.awaitOutput();
+  }
+
+  /**
+   * An input file that cannot be parsed, such as one that an editor has
+   * only partially written, does not end the watch.
+   */
+
+  @Test
+  public void testSurviveBadSave()
+    throws Exception
+  {
+    this.startWatching();
+
+    final String text = triangle(5.0);
+    this.replaceInput(text.substring(0, text.length() / 2));
+    Thread.sleep(500L);
+    Assertions.assertFalse(this.watcher.isDone(), "Still watching");
+    Assertions.assertFalse(Files.exists(this.output));
+
+    this.replaceInput(text);
+    this.awaitOutput();
+  }
+}
@@ -0,0 +1,536 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.tests.cmdline;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.io7m.smfj.cmdline.Main;
+import com.io7m.smfj.tests.TestDirectories;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for the {@code serve} and {@code client} commands. The requests are
+ * written by hand so that changes to the wire format are noticed.
+ */
+
+public final class SMFServeTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFServeTest.class);
+
+  private static final int VERSION = 2;
+
+  private Path directory;
+  private Path stateFile;
+  private ExecutorService executor;
+  private Future<Integer> server;
+  private int port;
+  private String token;
+
+  private static final class Response
+  {
+    private int exitCode;
+    private String message;
+    private String output;
+
+    Response()
+    {
+
+    }
+  }
+
+  private static void writeRequest(
+    final Socket socket,
+    final int version,
+    final String token,
+    final String directory,
+    final List<String> arguments)
+    throws IOException
+  {
+    final DataOutputStream output =
+      new DataOutputStream(socket.getOutputStream());
+    output.writeInt(version);
+    output.writeUTF(token);
+    output.writeUTF(directory);
+    output.writeInt(arguments.size());
+    for (final String argument : arguments) {
+      output.writeUTF(argument);
+    }
+    output.flush();
+  }
+
+  private static Response readResponse(
+    final Socket socket)
+    throws IOException
+  {
+    final DataInputStream input = new DataInputStream(socket.getInputStream());
+    final Response response = new Response();
+    response.exitCode = input.readInt();
+    response.message = input.readUTF();
+    final byte[] data = input.readNBytes(input.readInt());
+    response.output =
+      StandardCharsets.UTF_8.decode(ByteBuffer.wrap(data)).toString();
+    return response;
+  }
+
+  private Response send(
+    final int version,
+    final String in_token,
+    final String in_directory,
+    final List<String> arguments)
+    throws IOException
+  {
+    try (Socket socket =
+           new Socket(InetAddress.getLoopbackAddress(), this.port)) {
+      writeRequest(socket, version, in_token, in_directory, arguments);
+      final Response response = readResponse(socket);
+      LOG.debug("response: {} {} {}",
+                Integer.valueOf(response.exitCode),
+                response.message,
+                response.output);
+      return response;
+    }
+  }
+
+  private Response send(
+    final String in_token,
+    final List<String> arguments)
+    throws IOException
+  {
+    return this.send(
+      VERSION, in_token, this.directory.toString(), arguments);
+  }
+
+  @BeforeEach
+  public void setup()
+    throws Exception
+  {
+    this.directory = TestDirectories.temporaryDirectory().toAbsolutePath();
+    this.stateFile = this.directory.resolve("state");
+    this.executor = Executors.newCachedThreadPool();
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws Exception
+  {
+    if (this.server != null && !this.server.isDone()) {
+
+      /*
+       * The server may still be busy with connections left over from the
+       * test, in which case the shutdown request is rejected and must be
+       * retried.
+       */
+
+      final long deadline =
+        System.nanoTime() + Duration.ofSeconds(10L).toNanos();
+      while (!this.shutdown()) {
+        Assertions.assertTrue(System.nanoTime() < deadline, "Server stopped");
+        Thread.sleep(10L);
+      }
+      this.server.get(10L, TimeUnit.SECONDS);
+    }
+    this.executor.shutdownNow();
+  }
+
+  private boolean shutdown()
+  {
+    try {
+      return this.send(this.token, List.of("shutdown")).exitCode == 0;
+    } catch (final IOException e) {
+      return false;
+    }
+  }
+
+  private void startServer(
+    final String... extra)
+    throws Exception
+  {
+    final List<String> arguments =
+      new ArrayList<>(List.of("serve", "--state-file", this.stateFile.toString()));
+    arguments.addAll(List.of(extra));
+
+    this.server = this.executor.submit(() -> Integer.valueOf(
+      Main.run(arguments.toArray(new String[0]), System.out)));
+
+    final long deadline =
+      System.nanoTime() + Duration.ofSeconds(10L).toNanos();
+    while (!Files.exists(this.stateFile)) {
+      Assertions.assertTrue(System.nanoTime() < deadline, "Server started");
+      Assertions.assertFalse(this.server.isDone(), "Server is running");
+      Thread.sleep(10L);
+    }
+
+    final Properties properties = new Properties();
+    try (InputStream stream = Files.newInputStream(this.stateFile)) {
+      properties.load(stream);
+    }
+    this.port = Integer.parseInt(properties.getProperty("port"));
+    this.token = properties.getProperty("token");
+  }
+
+  private void copyMesh()
+    throws IOException
+  {
+    try (InputStream stream = SMFServeTest.class.getResourceAsStream(
+      "/com/io7m/smfj/tests/bytebuffer/no_attributes.smft")) {
+      Files.copy(stream, this.directory.resolve("mesh.smft"));
+    }
+  }
+
+  /**
+   * Relative paths in jobs are resolved against the client's directory.
+   */
+
+  @Test
+  public void testJobRelativePath()
+    throws Exception
+  {
+    this.startServer();
+    this.copyMesh();
+
+    final Response response =
+      this.send(this.token, List.of("stat", "mesh.smft"));
+
+    Assertions.assertEquals("", response.message);
+    Assertions.assertEquals(0, response.exitCode);
+    Assertions.assertTrue(
+      response.output.contains(
+        this.directory.resolve("mesh.smft").toString()),
+      response.output);
+  }
+
+  /**
+   * Jobs do not change the process-wide logging level.
+   */
+
+  @Test
+  public void testJobLogLevelUnchanged()
+    throws Exception
+  {
+    this.startServer();
+    this.copyMesh();
+
+    final ch.qos.logback.classic.Logger root =
+      (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(
+        Logger.ROOT_LOGGER_NAME);
+    final ch.qos.logback.classic.Level level = root.getLevel();
+
+    final String other =
+      level.isGreaterOrEqual(ch.qos.logback.classic.Level.ERROR)
+        ? "trace" : "error";
+
+    final Response response =
+      this.send(
+        this.token,
+        List.of("stat", "--verbose", other, "mesh.smft"));
+
+    Assertions.assertEquals(0, response.exitCode);
+    Assertions.assertEquals(level, root.getLevel());
+  }
+
+  /**
+   * Requests with a relative working directory are not run.
+   */
+
+  @Test
+  public void testRelativeDirectoryRejected()
+    throws Exception
+  {
+    this.startServer();
+
+    Assertions.assertThrows(EOFException.class, () -> {
+      this.send(VERSION, this.token, "relative", List.of("list-formats"));
+    });
+  }
+
+  /**
+   * Requests with an unsupported protocol version are not run.
+   */
+
+  @Test
+  public void testVersionRejected()
+    throws Exception
+  {
+    this.startServer();
+
+    Assertions.assertThrows(EOFException.class, () -> {
+      this.send(
+        VERSION + 1,
+        this.token,
+        this.directory.toString(),
+        List.of("list-formats"));
+    });
+  }
+
+  /**
+   * Requests with the wrong token are rejected.
+   */
+
+  @Test
+  public void testTokenRejected()
+    throws Exception
+  {
+    this.startServer();
+    this.copyMesh();
+
+    final Response response =
+      this.send("not the token", List.of("stat", "mesh.smft"));
+
+    Assertions.assertEquals("Permission denied", response.message);
+    Assertions.assertEquals(1, response.exitCode);
+    Assertions.assertEquals("", response.output);
+  }
+
+  /**
+   * Commands that are not safe to run inside the server are rejected.
+   */
+
+  @Test
+  public void testServeRejected()
+    throws Exception
+  {
+    this.startServer();
+
+    final Response response = this.send(this.token, List.of("serve"));
+    Assertions.assertEquals(1, response.exitCode);
+  }
+
+  /**
+   * Filter jobs cannot watch files, as they would never complete.
+   */
+
+  @Test
+  public void testWatchRejected()
+    throws Exception
+  {
+    this.startServer("--threads", "1");
+    Files.writeString(
+      this.directory.resolve("triangle.smft"),
+      String.join(
+        "\n",
+        "smf 1 0",
+        "vertices 3",
+        "triangles 1 16",
+        "coordinates +x +y -z counter-clockwise",
+        "attribute \"x\" float 1 32",
+        "end",
+        "vertices-noninterleaved",
+        "attribute \"x\"",
+        "0.0",
+        "1.0",
+        "2.0",
+        "end",
+        "triangles",
+        "0 1 2",
+        "end",
+        ""));
+    Files.writeString(
+      this.directory.resolve("commands.txt"),
+      "com.io7m.smf:triangles-optimize 16 no-validate\n");
+
+    final List<String> arguments =
+      List.of(
+        "filter",
+        "--input-file",
+        "triangle.smft",
+        "--commands",
+        "commands.txt");
+
+    final Response unwatched = this.send(this.token, arguments);
+    Assertions.assertEquals(0, unwatched.exitCode);
+
+    final List<String> watched = new ArrayList<>(arguments);
+    watched.add("--watch");
+
+    final Response response = this.send(this.token, watched);
+    Assertions.assertTrue(
+      response.message.contains("--watch cannot be used in jobs"),
+      response.message);
+    Assertions.assertEquals(1, response.exitCode);
+
+    final Response next = this.send(this.token, List.of("list-formats"));
+    Assertions.assertEquals(0, next.exitCode);
+  }
+
+  /**
+   * Connections are rejected when every thread is busy and the queue is full.
+   */
+
+  @Test
+  public void testBusy()
+    throws Exception
+  {
+    this.startServer("--threads", "1", "--queue-size", "1");
+
+    /*
+     * The first connection occupies the only thread until it sends a
+     * request, and the second occupies the only queue slot.
+     */
+
+    try (Socket running =
+           new Socket(InetAddress.getLoopbackAddress(), this.port);
+         Socket queued =
+           new Socket(InetAddress.getLoopbackAddress(), this.port);
+         Socket rejected =
+           new Socket(InetAddress.getLoopbackAddress(), this.port)) {
+      final Response response = readResponse(rejected);
+
+      Assertions.assertEquals("Server is busy", response.message);
+      Assertions.assertEquals(1, response.exitCode);
+    }
+  }
+
+  /**
+   * The shutdown job stops the server and removes the state file.
+   */
+
+  @Test
+  public void testShutdown()
+    throws Exception
+  {
+    this.startServer();
+
+    final Response response = this.send(this.token, List.of("shutdown"));
+    Assertions.assertEquals("", response.message);
+    Assertions.assertEquals(0, response.exitCode);
+    Assertions.assertEquals(
+      Integer.valueOf(0),
+      this.server.get(10L, TimeUnit.SECONDS));
+    Assertions.assertFalse(Files.exists(this.stateFile));
+  }
+
+  /**
+   * The shutdown job is not accepted with the wrong token.
+   */
+
+  @Test
+  public void testShutdownTokenRejected()
+    throws Exception
+  {
+    this.startServer();
+
+    final Response response = this.send("not the token", List.of("shutdown"));
+    Assertions.assertEquals("Permission denied", response.message);
+    Assertions.assertFalse(this.server.isDone());
+    Assertions.assertTrue(Files.exists(this.stateFile));
+  }
+
+  /**
+   * The client command sends its working directory and relays the output.
+   */
+
+  @Test
+  public void testClient()
+    throws Exception
+  {
+    this.startServer();
+
+    final ByteArrayOutputStream buffer =
+      new ByteArrayOutputStream();
+    try (PrintStream stream =
+           new PrintStream(buffer, true, StandardCharsets.UTF_8)) {
+      final int exitCode =
+        Main.run(
+          new String[]{
+            "client",
+            "--state-file",
+            this.stateFile.toString(),
+            "--",
+            "list-formats",
+          },
+          stream);
+      Assertions.assertEquals(0, exitCode);
+    }
+
+    Assertions.assertNotEquals(0, buffer.size());
+  }
+
+  /**
+   * The errors logged by a failing job are relayed by the client.
+   */
+
+  @Test
+  public void testClientJobErrors()
+    throws Exception
+  {
+    this.startServer();
+
+    final ch.qos.logback.classic.Logger logger =
+      (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(
+        "com.io7m.smfj.cmdline.CommandClient");
+    final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    appender.start();
+    logger.addAppender(appender);
+
+    try {
+      final int exitCode =
+        Main.run(
+          new String[]{
+            "client",
+            "--state-file",
+            this.stateFile.toString(),
+            "--",
+            "filter",
+            "--input-file",
+            "nonexistent.smft",
+            "--commands",
+            "nonexistent.txt",
+            "--watch",
+          },
+          System.out);
+      Assertions.assertEquals(1, exitCode);
+    } finally {
+      logger.detachAppender(appender);
+      appender.stop();
+    }
+
+    Assertions.assertTrue(
+      appender.list.stream()
+        .anyMatch(event -> event.getLevel() == Level.ERROR
+          && event.getFormattedMessage()
+          .contains("ERROR: --watch cannot be used in jobs")),
+      "Error relayed");
+  }
+}
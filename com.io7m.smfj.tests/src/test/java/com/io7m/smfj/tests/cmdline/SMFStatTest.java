@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.tests.cmdline;
+
+import com.io7m.smfj.cmdline.Main;
+import com.io7m.smfj.tests.TestDirectories;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for the {@code stat} command.
+ */
+
+public final class SMFStatTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFStatTest.class);
+
+  private static final String XML_HEADER = String.join(
+    "\n",
+    "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>",
+    "<sx:SMF xmlns:sx=\"urn:com.io7m.smf:xml:2:1\">",
+    "  <sx:Header vertexCount=\"3\" endianness=\"BIG_ENDIAN\">",
+    "    <sx:CoordinateSystem right=\"AXIS_POSITIVE_X\"",
+    "                         up=\"AXIS_POSITIVE_Y\"",
+    "                         forward=\"AXIS_NEGATIVE_Z\"",
+    "                         windingOrder=\"FACE_WINDING_ORDER_COUNTER_CLOCKWISE\"/>",
+    "    <sx:TriangleSpecification count=\"1\" sizeBits=\"16\"/>",
+    "    <sx:Attributes>",
+    "      <sx:Attribute name=\"position\"",
+    "                    componentKind=\"ELEMENT_TYPE_FLOATING\"",
+    "                    componentCount=\"3\"",
+    "                    componentSizeBits=\"32\"/>",
+    "    </sx:Attributes>",
+    "  </sx:Header>",
+    "");
+
+  private Path directory;
+
+  @BeforeEach
+  public void setup()
+    throws Exception
+  {
+    this.directory = TestDirectories.temporaryDirectory();
+  }
+
+  private Result stat(
+    final Path file)
+  {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    final int exitCode;
+    try (PrintStream stream =
+           new PrintStream(buffer, true, StandardCharsets.UTF_8)) {
+      exitCode = Main.run(new String[]{"stat", file.toString()}, stream);
+    }
+
+    final Result result = new Result();
+    result.exitCode = exitCode;
+    result.lines = List.of(buffer.toString(StandardCharsets.UTF_8).split("\n"));
+    LOG.debug("output: {}", result.lines);
+    return result;
+  }
+
+  private static final class Result
+  {
+    private int exitCode;
+    private List<String> lines;
+
+    Result()
+    {
+
+    }
+  }
+
+  private void checkHeaderOnly(
+    final Path file,
+    final String text)
+    throws IOException
+  {
+    Files.writeString(file, text, StandardCharsets.UTF_8);
+
+    final Result result = this.stat(file);
+    Assertions.assertEquals(0, result.exitCode);
+    Assertions.assertEquals(2, result.lines.size());
+
+    final String line = result.lines.get(1);
+    Assertions.assertTrue(line.contains(",3,1,16,BIG_ENDIAN,12,"), line);
+    Assertions.assertTrue(line.endsWith(","), line);
+  }
+
+  /**
+   * Garbage after the header of an XML file is never read.
+   */
+
+  @Test
+  public void testXMLGarbageBody()
+    throws Exception
+  {
+    this.checkHeaderOnly(
+      this.directory.resolve("garbage.smfx"),
+      XML_HEADER + "  <sx:VertexData <<< &&& ]]> garbage </sx:Nothing>");
+  }
+
+  /**
+   * A truncated body in an XML file is never read.
+   */
+
+  @Test
+  public void testXMLTruncatedBody()
+    throws Exception
+  {
+    this.checkHeaderOnly(
+      this.directory.resolve("truncated.smfx"),
+      XML_HEADER + "  <sx:VertexDataNonInterleaved>\n    <sx:AttributeData na");
+  }
+
+  /**
+   * A text file whose body is missing does not produce errors, because the
+   * body is never read.
+   */
+
+  @Test
+  public void testTextMissingBody()
+    throws Exception
+  {
+    final Path file = this.directory.resolve("header.smft");
+    try (InputStream stream = SMFStatTest.class.getResourceAsStream(
+      "/com/io7m/smfj/tests/bytebuffer/triangle16.smft")) {
+      Files.copy(stream, file);
+    }
+
+    final List<String> lines = Files.readAllLines(file);
+    Files.write(file, lines.subList(0, lines.indexOf("end") + 1));
+
+    final Result result = this.stat(file);
+    Assertions.assertEquals(0, result.exitCode);
+    Assertions.assertEquals(2, result.lines.size());
+
+    final String line = result.lines.get(1);
+    Assertions.assertTrue(line.contains(",0,1,16,"), line);
+    Assertions.assertTrue(line.endsWith(","), line);
+  }
+}
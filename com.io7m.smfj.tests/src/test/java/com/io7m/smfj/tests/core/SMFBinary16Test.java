@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.core;
+
+import com.io7m.ieee754b16.Binary16;
+import com.io7m.smfj.core.SMFBinary16;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFBinary16Test
+{
+  private static boolean isNaN(
+    final int bits)
+  {
+    return (bits & 0x7c00) == 0x7c00 && (bits & 0x3ff) != 0;
+  }
+
+  private static double reference(
+    final int bits)
+  {
+    final double sign = (bits & 0x8000) == 0 ? 1.0 : -1.0;
+    final int exponent = (bits >>> 10) & 0x1f;
+    final int significand = bits & 0x3ff;
+    if (exponent == 0) {
+      return sign * Math.scalb((double) significand, -24);
+    }
+    if (exponent == 0x1f) {
+      return sign * Double.POSITIVE_INFINITY;
+    }
+    return sign * Math.scalb(1.0 + significand / 1024.0, exponent - 15);
+  }
+
+  @Test
+  public void testUnpackAgrees()
+  {
+    for (int bits = 0; bits <= 0xffff; ++bits) {
+      final char c = (char) bits;
+      if (isNaN(bits)) {
+        Assertions.assertTrue(Double.isNaN(SMFBinary16.unpack(c)));
+      } else {
+        Assertions.assertEquals(
+          reference(bits),
+          SMFBinary16.unpack(c),
+          Integer.toHexString(bits));
+      }
+    }
+  }
+
+  @Test
+  public void testRoundTripExact()
+  {
+    for (int bits = 0; bits <= 0xffff; ++bits) {
+      final char c = (char) bits;
+      if (!isNaN(bits)) {
+        Assertions.assertEquals(
+          (int) c,
+          (int) SMFBinary16.pack(SMFBinary16.unpack(c)),
+          Integer.toHexString(bits));
+      }
+    }
+  }
+
+  @Test
+  public void testRounding()
+  {
+    Assertions.assertEquals(1.0, SMFBinary16.unpack(SMFBinary16.pack(1.0002)));
+    Assertions.assertEquals(1.0009765625, SMFBinary16.unpack(SMFBinary16.pack(1.0007)));
+    Assertions.assertEquals(65504.0, SMFBinary16.unpack(SMFBinary16.pack(65519.0)));
+    Assertions.assertEquals(
+      Double.POSITIVE_INFINITY,
+      SMFBinary16.unpack(SMFBinary16.pack(65520.0)));
+    Assertions.assertEquals(
+      Double.NEGATIVE_INFINITY,
+      SMFBinary16.unpack(SMFBinary16.pack(-1.0e10)));
+    Assertions.assertTrue(Double.isNaN(SMFBinary16.unpack(SMFBinary16.pack(Double.NaN))));
+    Assertions.assertEquals(0x1, (int) SMFBinary16.pack(Math.scalb(1.0, -24)));
+    Assertions.assertEquals(0x0, (int) SMFBinary16.pack(Math.scalb(1.0, -26)));
+  }
+
+  /**
+   * Ties are rounded to the value with an even significand. The
+   * ieee754b16 library instead rounds ties away from zero, so the two
+   * disagree exactly at ties.
+   */
+
+  @Test
+  public void testRoundingTiesToEven()
+  {
+    final double tieDown = 1.0 + Math.scalb(1.0, -11);
+    final double tieUp = 1.0 + 3.0 * Math.scalb(1.0, -11);
+
+    Assertions.assertEquals(1.0, SMFBinary16.round(tieDown));
+    Assertions.assertEquals(-1.0, SMFBinary16.round(-tieDown));
+    Assertions.assertEquals(1.001953125, SMFBinary16.round(tieUp));
+    Assertions.assertEquals(
+      Math.scalb(2.0, -24),
+      SMFBinary16.round(Math.scalb(3.0, -25)));
+
+    Assertions.assertEquals(
+      1.0009765625,
+      Binary16.unpackDouble(Binary16.packDouble(tieDown)));
+    Assertions.assertEquals(
+      1.001953125,
+      Binary16.unpackDouble(Binary16.packDouble(tieUp)));
+  }
+
+  @Test
+  public void testRoundNonFinite()
+  {
+    Assertions.assertTrue(Double.isNaN(SMFBinary16.round(Double.NaN)));
+    Assertions.assertEquals(
+      Double.POSITIVE_INFINITY, SMFBinary16.round(Double.POSITIVE_INFINITY));
+    Assertions.assertEquals(
+      Double.NEGATIVE_INFINITY, SMFBinary16.round(-65520.0));
+    Assertions.assertEquals(65504.0, SMFBinary16.round(65519.0));
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.tests.format.obj;
+
+import com.io7m.smfj.format.obj.internal.SMFOBJByteParser;
+import com.io7m.smfj.format.obj.internal.SMFOBJByteParserReceiverType;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFOBJByteParserTest
+{
+  private static Receiver parse(
+    final String text)
+  {
+    final var receiver = new Receiver();
+    final var bytes = text.getBytes(StandardCharsets.UTF_8);
+    new SMFOBJByteParser(receiver)
+      .parse(ByteBuffer.wrap(bytes), 0, bytes.length, 1L);
+    return receiver;
+  }
+
+  private static String randomNumber(
+    final Random random)
+  {
+    final var text = new StringBuilder(32);
+    if (random.nextBoolean()) {
+      text.append('-');
+    }
+    final int whole = random.nextInt(12);
+    for (int index = 0; index < whole; ++index) {
+      text.append((char) ('0' + random.nextInt(10)));
+    }
+    text.append('.');
+    final int fraction = random.nextInt(20) + (whole == 0 ? 1 : 0);
+    for (int index = 0; index < fraction; ++index) {
+      text.append((char) ('0' + random.nextInt(10)));
+    }
+    if (random.nextInt(4) == 0) {
+      text.append(random.nextBoolean() ? 'e' : 'E');
+      text.append(random.nextInt(61) - 30);
+    }
+    return text.toString();
+  }
+
+  @Test
+  public void testNumbersExact()
+  {
+    final var random = new Random(0x0b1L);
+    final var expected = new ArrayList<Double>();
+    final var text = new StringBuilder(1 << 20);
+
+    for (int index = 0; index < 20000; ++index) {
+      final String number;
+      switch (index % 3) {
+        case 0:
+          number = Double.toString(random.nextDouble() * 1000.0 - 500.0);
+          break;
+        case 1:
+          number = Float.toString((float) random.nextGaussian());
+          break;
+        default:
+          number = randomNumber(random);
+          break;
+      }
+      expected.add(Double.valueOf(Double.parseDouble(number)));
+      text.append("vt ").append(number).append('\n');
+    }
+
+    final var receiver = parse(text.toString());
+    Assertions.assertEquals(List.of(), receiver.errors);
+    Assertions.assertEquals(expected, receiver.values);
+  }
+
+  @Test
+  public void testNumbersSpecial()
+  {
+    final var receiver =
+      parse("vt -0\nvt 0x1p3\nvt 1e400\nvt Infinity\nvt 2.5d\nvt +7\n");
+    Assertions.assertEquals(List.of(), receiver.errors);
+    Assertions.assertEquals(
+      List.of(
+        Double.valueOf(-0.0),
+        Double.valueOf(8.0),
+        Double.valueOf(Double.POSITIVE_INFINITY),
+        Double.valueOf(Double.POSITIVE_INFINITY),
+        Double.valueOf(2.5),
+        Double.valueOf(7.0)),
+      receiver.values);
+  }
+
+  @Test
+  public void testFaces()
+  {
+    final var receiver =
+      parse("f 1 2/3 4//5 6/7/8\r\nf -1/2/ 3/ 2147483647\n  \n# comment\n");
+    Assertions.assertEquals(List.of(), receiver.errors);
+    Assertions.assertEquals(
+      List.of(
+        "start 1", "1 0 0", "2 3 0", "4 0 5", "6 7 8", "finish 1",
+        "start 2", "-1 2 0", "3 0 0", "2147483647 0 0", "finish 2"),
+      receiver.faces);
+  }
+
+  @Test
+  public void testErrors()
+  {
+    final var receiver =
+      parse("f 1 2 3x\nf 2147483648\nv 1 2\nvn 1 2 z\nq\ng group\nf 1/2/3/4\nf 1/0 2 3");
+    Assertions.assertEquals(8, receiver.errors.size());
+    Assertions.assertEquals(List.of(), receiver.faces);
+    Assertions.assertEquals("7: Malformed face vertex", receiver.errors.get(6));
+    Assertions.assertEquals(
+      "8: Face vertex index 0 is not valid", receiver.errors.get(7));
+  }
+
+  private static final class Receiver implements SMFOBJByteParserReceiverType
+  {
+    private final List<Double> values = new ArrayList<>();
+    private final List<String> faces = new ArrayList<>();
+    private final List<String> errors = new ArrayList<>();
+
+    Receiver()
+    {
+
+    }
+
+    @Override
+    public void onPosition(
+      final double x,
+      final double y,
+      final double z)
+    {
+      this.values.add(Double.valueOf(x));
+      this.values.add(Double.valueOf(y));
+      this.values.add(Double.valueOf(z));
+    }
+
+    @Override
+    public void onNormal(
+      final double x,
+      final double y,
+      final double z)
+    {
+      this.onPosition(x, y, z);
+    }
+
+    @Override
+    public void onTextureCoordinates(
+      final double u,
+      final double v)
+    {
+      this.values.add(Double.valueOf(u));
+    }
+
+    @Override
+    public void onFaceStarted(
+      final long line)
+    {
+      this.faces.add("start " + line);
+    }
+
+    @Override
+    public void onFaceVertex(
+      final long line,
+      final int v,
+      final int vt,
+      final int vn)
+    {
+      this.faces.add(v + " " + vt + " " + vn);
+    }
+
+    @Override
+    public void onFaceFinished(
+      final long line)
+    {
+      this.faces.add("finish " + line);
+    }
+
+    @Override
+    public void onError(
+      final long line,
+      final String message)
+    {
+      this.errors.add(line + ": " + message);
+    }
+  }
+}
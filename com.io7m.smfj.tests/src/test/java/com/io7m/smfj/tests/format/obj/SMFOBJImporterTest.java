@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.tests.format.obj;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector2D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.format.obj.SMFFormatOBJ;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating2;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFMemoryMeshProducer;
+import com.io7m.smfj.processing.api.SMFMemoryMeshProducerType;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class SMFOBJImporterTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFOBJImporterTest.class);
+
+  private static final URI TEST = URI.create("urn:test");
+
+  private static final SMFAttributeName POSITION =
+    SMFAttributeName.of("position");
+  private static final SMFAttributeName NORMAL =
+    SMFAttributeName.of("normal");
+  private static final SMFAttributeName UV =
+    SMFAttributeName.of("uv:0");
+
+  private static InputStream resource(
+    final String name)
+    throws IOException
+  {
+    final var path = String.format("/com/io7m/smfj/tests/format/obj/%s", name);
+    final var url = SMFOBJImporterTest.class.getResource(path);
+    if (url == null) {
+      throw new FileNotFoundException(path);
+    }
+    return url.openStream();
+  }
+
+  private static SMFMemoryMeshProducerType parseStream(
+    final InputStream stream)
+    throws IOException
+  {
+    final var format = new SMFFormatOBJ();
+    final var meshes = SMFMemoryMeshProducer.create();
+    try (var parser = format.parserCreateSequential(meshes, TEST, stream)) {
+      parser.parse();
+    }
+    meshes.errors()
+      .forEach(e -> LOG.error("{}: ", e, e.exception().orElse(null)));
+    return meshes;
+  }
+
+  private static SMFMemoryMeshProducerType parse(
+    final String file)
+    throws IOException
+  {
+    try (var stream = resource(file)) {
+      return parseStream(stream);
+    }
+  }
+
+  private static List<Vector3D> float3(
+    final SMFMemoryMeshProducerType meshes,
+    final SMFAttributeName name)
+  {
+    return ((SMFAttributeArrayFloating3) meshes.mesh().arrays().get(name))
+      .values();
+  }
+
+  private static List<Vector2D> float2(
+    final SMFMemoryMeshProducerType meshes,
+    final SMFAttributeName name)
+  {
+    return ((SMFAttributeArrayFloating2) meshes.mesh().arrays().get(name))
+      .values();
+  }
+
+  @Test
+  public void testQuad()
+    throws Exception
+  {
+    final var meshes = parse("quad.obj");
+    Assertions.assertEquals(List.of(), meshes.errors());
+
+    final var mesh = meshes.mesh();
+    final var header = mesh.header();
+    Assertions.assertEquals(4L, header.vertexCount());
+    Assertions.assertEquals(2L, header.triangles().triangleCount());
+    Assertions.assertEquals(16L, header.triangles().triangleIndexSizeBits());
+    Assertions.assertEquals(
+      List.of(POSITION, NORMAL, UV),
+      header.attributesInOrder().stream().map(a -> a.name()).collect(Collectors.toList()));
+
+    Assertions.assertEquals(
+      List.of(Vector3L.of(0L, 1L, 2L), Vector3L.of(0L, 2L, 3L)),
+      mesh.triangles());
+    Assertions.assertEquals(
+      List.of(
+        Vector3D.of(0.0, 0.0, 0.0),
+        Vector3D.of(1.0, 0.0, 0.0),
+        Vector3D.of(1.0, 1.0, 0.0),
+        Vector3D.of(0.0, 1.0, 0.0)),
+      float3(meshes, POSITION));
+    Assertions.assertEquals(
+      List.of(
+        Vector3D.of(0.0, 0.0, 1.0),
+        Vector3D.of(0.0, 0.0, 1.0),
+        Vector3D.of(0.0, 0.0, 1.0),
+        Vector3D.of(0.0, 0.0, 1.0)),
+      float3(meshes, NORMAL));
+    Assertions.assertEquals(
+      List.of(
+        Vector2D.of(0.0, 0.0),
+        Vector2D.of(1.0, 0.0),
+        Vector2D.of(1.0, 1.0),
+        Vector2D.of(0.0, 1.0)),
+      float2(meshes, UV));
+  }
+
+  @Test
+  public void testSeams()
+    throws Exception
+  {
+    final var meshes = parse("seams.obj");
+    Assertions.assertEquals(List.of(), meshes.errors());
+
+    final var mesh = meshes.mesh();
+    Assertions.assertEquals(4L, mesh.header().vertexCount());
+    Assertions.assertEquals(
+      List.of(Vector3L.of(0L, 1L, 2L), Vector3L.of(3L, 1L, 0L)),
+      mesh.triangles());
+    Assertions.assertEquals(
+      Vector3D.of(1.0, 1.0, 0.0),
+      float3(meshes, POSITION).get(3));
+    Assertions.assertEquals(
+      Vector2D.of(0.5, 0.5),
+      float2(meshes, UV).get(3));
+  }
+
+  @Test
+  public void testPositionsOnlyShared()
+    throws Exception
+  {
+    final var meshes = parse("positions.obj");
+    Assertions.assertEquals(List.of(), meshes.errors());
+
+    final var mesh = meshes.mesh();
+    Assertions.assertEquals(4L, mesh.header().vertexCount());
+    Assertions.assertEquals(
+      List.of(POSITION),
+      mesh.header().attributesInOrder().stream().map(a -> a.name()).collect(Collectors.toList()));
+    Assertions.assertEquals(
+      List.of(Vector3L.of(0L, 1L, 2L), Vector3L.of(0L, 2L, 3L)),
+      mesh.triangles());
+  }
+
+  @Test
+  public void testInvalidMixedAttributes()
+    throws Exception
+  {
+    final var meshes = parse("invalid-mixed.obj");
+    Assertions.assertFalse(meshes.errors().isEmpty());
+  }
+
+  @Test
+  public void testInvalidIndex()
+    throws Exception
+  {
+    final var meshes = parse("invalid-index.obj");
+    Assertions.assertFalse(meshes.errors().isEmpty());
+  }
+
+  @Test
+  public void testGrid()
+    throws Exception
+  {
+    final int size = 100;
+    final var text = new StringBuilder(size * size * 64);
+    for (int y = 0; y <= size; ++y) {
+      for (int x = 0; x <= size; ++x) {
+        text.append(String.format("v %d %d 0%n", x, y));
+        text.append(String.format("vt %d %d%n", x, y));
+      }
+    }
+    text.append("vn 0 0 1\n");
+
+    final int stride = size + 1;
+    for (int y = 0; y < size; ++y) {
+      for (int x = 0; x < size; ++x) {
+        final int i0 = y * stride + x + 1;
+        final int i1 = i0 + 1;
+        final int i2 = i0 + stride + 1;
+        final int i3 = i0 + stride;
+        text.append(String.format(
+          "f %d/%d/1 %d/%d/1 %d/%d/1%n", i0, i0, i1, i1, i2, i2));
+        text.append(String.format(
+          "f %d/%d/1 %d/%d/1 %d/%d/1%n", i0, i0, i2, i2, i3, i3));
+      }
+    }
+
+    final var bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+    final var meshes = parseStream(new ByteArrayInputStream(bytes));
+    Assertions.assertEquals(List.of(), meshes.errors());
+
+    final var mesh = meshes.mesh();
+    final long vertices = (long) stride * (long) stride;
+    Assertions.assertEquals(vertices, mesh.header().vertexCount());
+    Assertions.assertEquals(16L, mesh.header().triangles().triangleIndexSizeBits());
+    Assertions.assertEquals(
+      (long) size * (long) size * 2L,
+      mesh.header().triangles().triangleCount());
+
+    final var positions = float3(meshes, POSITION);
+    final var uvs = float2(meshes, UV);
+    for (final Vector3L triangle : mesh.triangles()) {
+      for (final long index : new long[]{triangle.x(), triangle.y(), triangle.z()}) {
+        final var position = positions.get((int) index);
+        final var uv = uvs.get((int) index);
+        Assertions.assertEquals(position.x(), uv.x());
+        Assertions.assertEquals(position.y(), uv.y());
+      }
+    }
+  }
+}
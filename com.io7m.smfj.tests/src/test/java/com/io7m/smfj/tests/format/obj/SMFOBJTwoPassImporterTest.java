@@ -0,0 +1,317 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.tests.format.obj;
+
+import com.io7m.smfj.format.obj.SMFFormatOBJ;
+import com.io7m.smfj.parser.api.SMFErrorLimits;
+import com.io7m.smfj.parser.api.SMFParseError;
+import com.io7m.smfj.processing.api.SMFMemoryMeshProducer;
+import com.io7m.smfj.processing.api.SMFMemoryMeshProducerType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class SMFOBJTwoPassImporterTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFOBJTwoPassImporterTest.class);
+
+  private static final URI TEST = URI.create("urn:test");
+
+  private Path directory;
+
+  private static InputStream resource(
+    final String name)
+    throws IOException
+  {
+    final var path = String.format("/com/io7m/smfj/tests/format/obj/%s", name);
+    final var stream = SMFOBJTwoPassImporterTest.class.getResourceAsStream(path);
+    if (stream == null) {
+      throw new IOException(path);
+    }
+    return stream;
+  }
+
+  private static void logErrors(
+    final SMFMemoryMeshProducerType meshes)
+  {
+    meshes.errors()
+      .forEach(e -> LOG.error("{}: ", e, e.exception().orElse(null)));
+  }
+
+  private static SMFMemoryMeshProducerType parseSequential(
+    final Path file)
+    throws IOException
+  {
+    final var meshes = SMFMemoryMeshProducer.create();
+    try (var stream = Files.newInputStream(file)) {
+      try (var parser =
+             new SMFFormatOBJ().parserCreateSequential(meshes, TEST, stream)) {
+        parser.parse();
+      }
+    }
+    logErrors(meshes);
+    return meshes;
+  }
+
+  private static SMFMemoryMeshProducerType parseTwoPass(
+    final Path file)
+    throws IOException
+  {
+    final var meshes = SMFMemoryMeshProducer.create();
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      try (var parser =
+             new SMFFormatOBJ().parserCreateRandomAccess(meshes, TEST, channel)) {
+        parser.parse();
+      }
+      Assertions.assertEquals(0L, channel.position());
+    }
+    logErrors(meshes);
+    return meshes;
+  }
+
+  private Path copy(
+    final String name)
+    throws IOException
+  {
+    final var file = this.directory.resolve(name);
+    try (var stream = resource(name)) {
+      Files.copy(stream, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return file;
+  }
+
+  private static void checkSame(
+    final Path file)
+    throws IOException
+  {
+    final var sequential = parseSequential(file);
+    final var twoPass = parseTwoPass(file);
+
+    Assertions.assertEquals(List.of(), sequential.errors());
+    Assertions.assertEquals(List.of(), twoPass.errors());
+    Assertions.assertEquals(sequential.mesh(), twoPass.mesh());
+  }
+
+  @BeforeEach
+  public void setup()
+    throws IOException
+  {
+    this.directory = Files.createTempDirectory("smf-obj-");
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws IOException
+  {
+    try (var files = Files.list(this.directory)) {
+      for (final var file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(this.directory);
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> testSameAsSequential()
+  {
+    return Stream.of(
+      "quad.obj",
+      "seams.obj",
+      "positions.obj",
+      "trailing.obj",
+      "polygons.obj"
+    ).map(name -> DynamicTest.dynamicTest(
+      "testSameAsSequential_" + name,
+      () -> checkSame(this.copy(name))));
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> testInvalid()
+  {
+    return Stream.of(
+      "invalid-mixed.obj",
+      "invalid-index.obj"
+    ).map(name -> DynamicTest.dynamicTest(
+      "testInvalid_" + name,
+      () -> {
+        final var meshes = parseTwoPass(this.copy(name));
+        Assertions.assertFalse(meshes.errors().isEmpty());
+      }));
+  }
+
+  @Test
+  public void testUnrecognized()
+    throws Exception
+  {
+    final var file = this.directory.resolve("unrecognized.obj");
+    Files.writeString(
+      file,
+      "v 0 0 0\nv 1 0 0\nv 1 1 0\nxyz 1 2 3\nv 1 x 0\nf 1 2\nf 1 2 3\n",
+      StandardCharsets.UTF_8);
+
+    final var meshes = parseTwoPass(file);
+    Assertions.assertEquals(3, meshes.errors().size());
+  }
+
+  @Test
+  public void testErrorLimit()
+    throws Exception
+  {
+    final var file = this.directory.resolve("errors.obj");
+    Files.writeString(
+      file,
+      "v 1 x 0\n".repeat(10000),
+      StandardCharsets.UTF_8);
+
+    final var meshes = SMFMemoryMeshProducer.create(SMFErrorLimits.of(10, 10));
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      try (var parser =
+             new SMFFormatOBJ().parserCreateRandomAccess(meshes, TEST, channel)) {
+        parser.parse();
+      }
+    }
+
+    final var errors = meshes.errors();
+    Assertions.assertEquals(11, errors.size());
+    Assertions.assertEquals(
+      10, ((SMFParseError) errors.get(9)).lexical().line());
+    Assertions.assertTrue(
+      errors.get(10).message().contains("1 further errors"),
+      errors.get(10).message());
+  }
+
+  @Test
+  public void testRelativeIndices()
+    throws Exception
+  {
+    final var absolute = this.directory.resolve("absolute.obj");
+    Files.writeString(
+      absolute,
+      "v 0 0 0\nv 1 0 0\nv 1 1 0\nvt 0 0\nvt 1 0\nvt 1 1\nvn 0 0 1\n"
+        + "f 1/1/1 2/2/1 3/3/1\n",
+      StandardCharsets.UTF_8);
+    final var relative = this.directory.resolve("relative.obj");
+    Files.writeString(
+      relative,
+      "v 0 0 0\nv 1 0 0\nv 1 1 0\nvt 0 0\nvt 1 0\nvt 1 1\nvn 0 0 1\n"
+        + "f -3/1/-1 2/-2/1 -1/-1/1\n",
+      StandardCharsets.UTF_8);
+
+    final var expected = parseTwoPass(absolute);
+    final var received = parseTwoPass(relative);
+    Assertions.assertEquals(List.of(), expected.errors());
+    Assertions.assertEquals(List.of(), received.errors());
+    Assertions.assertEquals(expected.mesh(), received.mesh());
+  }
+
+  @Test
+  public void testRelativeIndicesOutOfRange()
+    throws Exception
+  {
+    final var file = this.directory.resolve("relative.obj");
+    Files.writeString(
+      file,
+      "v 0 0 0\nv 1 0 0\nvt 0 0\nvn 0 0 1\n"
+        + "f 1/-2/1 2/1/1 1/1/1\n"
+        + "f -3//1 1//1 2//1\n"
+        + "f 1/1/-2 2/1/1 1/1/1\n",
+      StandardCharsets.UTF_8);
+
+    final var meshes = parseTwoPass(file);
+    final var errors = meshes.errors();
+    Assertions.assertEquals(3, errors.size());
+    Assertions.assertTrue(
+      errors.get(0).message().contains(
+        "Texture coordinate index -2 is out of range (1 have been defined)"),
+      errors.get(0).message());
+    Assertions.assertTrue(
+      errors.get(1).message().contains(
+        "Position index -3 is out of range (2 have been defined)"),
+      errors.get(1).message());
+    Assertions.assertTrue(
+      errors.get(2).message().contains(
+        "Normal index -2 is out of range (1 have been defined)"),
+      errors.get(2).message());
+  }
+
+  @Test
+  public void testEmpty()
+    throws Exception
+  {
+    final var file = this.directory.resolve("empty.obj");
+    Files.writeString(file, "# Nothing\n", StandardCharsets.UTF_8);
+
+    final var meshes = parseTwoPass(file);
+    Assertions.assertEquals(List.of(), meshes.errors());
+    Assertions.assertEquals(0L, meshes.mesh().header().vertexCount());
+    Assertions.assertEquals(0L, meshes.mesh().header().triangles().triangleCount());
+  }
+
+  @Test
+  public void testLargeGrid()
+    throws Exception
+  {
+    final int size = 400;
+    final int stride = size + 1;
+    final var file = this.directory.resolve("grid.obj");
+
+    try (var writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      for (int y = 0; y <= size; ++y) {
+        for (int x = 0; x <= size; ++x) {
+          writer.write(String.format("v %d.125 %d.5 %s%n", x, y, Double.toString(x * 0.001)));
+          writer.write(String.format("vt %s %s%n", Double.toString(x / (double) size), Double.toString(y / (double) size)));
+        }
+      }
+      writer.write("vn 0 0 1\r\n");
+      for (int y = 0; y < size; ++y) {
+        for (int x = 0; x < size; ++x) {
+          final int i0 = y * stride + x + 1;
+          final int i1 = i0 + 1;
+          final int i2 = i0 + stride + 1;
+          final int i3 = i0 + stride;
+          writer.write(String.format(
+            "f %d/%d/1 %d/%d/1 %d/%d/1 %d/%d/1\r\n",
+            i0, i0, i1, i1, i2, i2, i3, i3));
+        }
+      }
+    }
+
+    final var meshes = parseTwoPass(file);
+    Assertions.assertEquals(List.of(), meshes.errors());
+    final var header = meshes.mesh().header();
+    Assertions.assertEquals(32L, header.triangles().triangleIndexSizeBits());
+    Assertions.assertEquals((long) size * (long) size, header.triangles().triangleCount());
+    Assertions.assertEquals((long) stride * (long) stride, header.vertexCount());
+  }
+}
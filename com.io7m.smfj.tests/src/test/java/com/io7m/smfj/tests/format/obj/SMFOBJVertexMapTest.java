@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.tests.format.obj;
+
+import com.io7m.smfj.format.obj.internal.SMFOBJVertexMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFOBJVertexMapTest
+{
+  @Test
+  public void testDistinctComponents()
+  {
+    final var map = new SMFOBJVertexMap(0);
+    Assertions.assertEquals(0, map.findOrInsert(1, 2, 3, 0));
+    Assertions.assertEquals(1, map.findOrInsert(1, 3, 2, 1));
+    Assertions.assertEquals(2, map.findOrInsert(2, 1, 3, 2));
+    Assertions.assertEquals(3, map.findOrInsert(1, -1, -1, 3));
+    Assertions.assertEquals(4, map.findOrInsert(1, -1, 3, 4));
+    Assertions.assertEquals(0, map.findOrInsert(1, 2, 3, 5));
+    Assertions.assertEquals(3, map.findOrInsert(1, -1, -1, 5));
+    Assertions.assertEquals(5, map.size());
+  }
+
+  @Test
+  public void testNegativeCandidate()
+  {
+    final var map = new SMFOBJVertexMap(0);
+    Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> map.findOrInsert(0, 0, 0, -1));
+  }
+
+  @Test
+  public void testAgreesWithHashMap()
+  {
+    final var random = new Random(0x5eedL);
+    final var map = new SMFOBJVertexMap(0);
+    final var expected = new HashMap<List<Integer>, Integer>();
+
+    for (int index = 0; index < 200_000; ++index) {
+      final int v = random.nextInt(5000);
+      final int vt = random.nextInt(40) - 1;
+      final int vn = random.nextInt(8) - 1;
+      final var key =
+        List.of(Integer.valueOf(v), Integer.valueOf(vt), Integer.valueOf(vn));
+
+      final int candidate = expected.size();
+      final Integer existing =
+        expected.putIfAbsent(key, Integer.valueOf(candidate));
+      final int result = map.findOrInsert(v, vt, vn, candidate);
+      if (existing == null) {
+        Assertions.assertEquals(candidate, result);
+      } else {
+        Assertions.assertEquals(existing.intValue(), result);
+      }
+    }
+
+    Assertions.assertEquals(expected.size(), map.size());
+  }
+}
@@ -17,7 +17,13 @@
 package com.io7m.smfj.tests.format.text;
 
 import com.io7m.smfj.format.text.SMFBase64Lines;
+import com.io7m.smfj.format.text.SMFBase64LinesDecoder;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.stream.Collectors;
 import net.java.quickcheck.QuickCheck;
 import net.java.quickcheck.characteristic.AbstractCharacteristic;
 import net.java.quickcheck.generator.support.ByteArrayGenerator;
@@ -54,4 +60,146 @@ public final class SMFBase64LinesTest
         }
       });
   }
+
+  @Test
+  public void testStreamingRoundTrip()
+  {
+    QuickCheck.forAllVerbose(
+      new ByteArrayGenerator(),
+      new AbstractCharacteristic<byte[]>()
+      {
+        @Override
+        protected void doSpecify(final byte[] data)
+          throws Throwable
+        {
+          final List<String> lines = writeLines(data);
+          Assertions.assertEquals(
+            SMFBase64Lines.base64LineCount(data.length),
+            lines.size());
+
+          final SMFBase64LinesDecoder decoder =
+            new SMFBase64LinesDecoder((long) lines.size());
+          for (final String line : lines) {
+            Assertions.assertTrue(line.length() <= 72);
+            decoder.addLine(line);
+          }
+          Assertions.assertArrayEquals(data, decoder.finish());
+        }
+      });
+  }
+
+  @Test
+  public void testStreamingMatchesLines()
+  {
+    QuickCheck.forAllVerbose(
+      new ByteArrayGenerator(),
+      new AbstractCharacteristic<byte[]>()
+      {
+        @Override
+        protected void doSpecify(final byte[] data)
+          throws Throwable
+        {
+          if (data.length > 0) {
+            Assertions.assertEquals(
+              SMFBase64Lines.toBase64Lines(data),
+              writeLines(data));
+          }
+        }
+      });
+  }
+
+  @Test
+  public void testStreamingEmpty()
+    throws Exception
+  {
+    Assertions.assertEquals(0, SMFBase64Lines.base64LineCount(0));
+    Assertions.assertEquals(List.of(), writeLines(new byte[0]));
+    Assertions.assertArrayEquals(
+      new byte[0], new SMFBase64LinesDecoder(0L).finish());
+  }
+
+  @Test
+  public void testDecoderUnalignedLines()
+  {
+    final SMFBase64LinesDecoder decoder = new SMFBase64LinesDecoder(3L);
+    decoder.addLine("aGVs");
+    decoder.addLine(" bG8taG ");
+    decoder.addLine("VsbG8K");
+    Assertions.assertArrayEquals(
+      "hello-hello\n".getBytes(StandardCharsets.US_ASCII),
+      decoder.finish());
+  }
+
+  @Test
+  public void testDecoderPadding()
+  {
+    final SMFBase64LinesDecoder decoder0 = new SMFBase64LinesDecoder(1L);
+    decoder0.addLine("AA==");
+    Assertions.assertArrayEquals(new byte[]{0}, decoder0.finish());
+
+    final SMFBase64LinesDecoder decoder1 = new SMFBase64LinesDecoder(1L);
+    decoder1.addLine("AAA=");
+    Assertions.assertArrayEquals(new byte[]{0, 0}, decoder1.finish());
+
+    final SMFBase64LinesDecoder decoder2 = new SMFBase64LinesDecoder(1L);
+    decoder2.addLine("AA");
+    Assertions.assertArrayEquals(new byte[]{0}, decoder2.finish());
+  }
+
+  @Test
+  public void testDecoderInvalidCharacter()
+  {
+    final SMFBase64LinesDecoder decoder = new SMFBase64LinesDecoder(1L);
+    Assertions.assertThrows(
+      IllegalArgumentException.class, () -> decoder.addLine("AA+A"));
+  }
+
+  @Test
+  public void testDecoderDataAfterPadding()
+  {
+    final SMFBase64LinesDecoder decoder = new SMFBase64LinesDecoder(2L);
+    decoder.addLine("AA==");
+    Assertions.assertThrows(
+      IllegalArgumentException.class, () -> decoder.addLine("AAAA"));
+  }
+
+  @Test
+  public void testDecoderBadPadding()
+  {
+    final SMFBase64LinesDecoder decoder0 = new SMFBase64LinesDecoder(1L);
+    Assertions.assertThrows(
+      IllegalArgumentException.class, () -> decoder0.addLine("A="));
+
+    final SMFBase64LinesDecoder decoder1 = new SMFBase64LinesDecoder(1L);
+    decoder1.addLine("AA=");
+    Assertions.assertThrows(IllegalArgumentException.class, decoder1::finish);
+  }
+
+  @Test
+  public void testDecoderTruncated()
+  {
+    final SMFBase64LinesDecoder decoder = new SMFBase64LinesDecoder(1L);
+    decoder.addLine("AAAAA");
+    Assertions.assertThrows(IllegalArgumentException.class, decoder::finish);
+  }
+
+  @Test
+  public void testDecoderFinished()
+  {
+    final SMFBase64LinesDecoder decoder = new SMFBase64LinesDecoder(1L);
+    decoder.finish();
+    Assertions.assertThrows(
+      IllegalStateException.class, () -> decoder.addLine("AAAA"));
+  }
+
+  private static List<String> writeLines(
+    final byte[] data)
+    throws IOException
+  {
+    final StringWriter output = new StringWriter();
+    try (BufferedWriter writer = new BufferedWriter(output)) {
+      SMFBase64Lines.writeBase64Lines(data, writer);
+    }
+    return output.toString().lines().collect(Collectors.toList());
+  }
 }
@@ -28,6 +28,7 @@ import com.io7m.smfj.format.text.v1.SMFTV1BodySectionParserMetadata;
 import com.io7m.smfj.parser.api.SMFParserEventsBodyType;
 import com.io7m.smfj.parser.api.SMFParserEventsDataMetaType;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.Assertions;
@@ -414,4 +415,110 @@ public final class SMFTV1BodyCommandMetadataTest
     Mockito.verify(this.eventsMeta, new Times(1))
       .onMetaData(id0, new byte[]{(byte) 0x0});
   }
+
+  @Test
+  public void testCorrectEmpty()
+    throws Exception
+  {
+    final SMFTLineReaderType reader =
+      SMFTLineReaderList.create(
+        URI.create("urn:x"),
+        List.of(
+          "end"),
+        0);
+
+    final SMFHeader.Builder header_b = SMFHeader.builder();
+    final SMFHeader header = header_b.build();
+
+    final SMFTV1BodySectionParserMetadata cmd =
+      new SMFTV1BodySectionParserMetadata(() -> header, reader);
+
+    final SMFSchemaIdentifier id0 =
+      SMFSchemaIdentifier.of(
+        SMFSchemaName.of("com.io7m.smf.example"), 1, 0);
+
+    Mockito.when(this.events.onMeta(id0))
+      .thenReturn(Optional.of(this.eventsMeta));
+
+    final SMFTParsingStatus r =
+      cmd.parse(
+        this.events,
+        List.of("metadata", "com.io7m.smf.example", "1", "0", "0"));
+    Assertions.assertEquals(SUCCESS, r);
+
+    Mockito.verify(this.eventsMeta, new Times(1))
+      .onMetaData(id0, new byte[0]);
+  }
+
+  @Test
+  public void testCorrectMultipleLines()
+    throws Exception
+  {
+    final SMFTLineReaderType reader =
+      SMFTLineReaderList.create(
+        URI.create("urn:x"),
+        List.of(
+          "aGVsbG8t",
+          "aGVsbG8K",
+          "end"),
+        0);
+
+    final SMFHeader.Builder header_b = SMFHeader.builder();
+    final SMFHeader header = header_b.build();
+
+    final SMFTV1BodySectionParserMetadata cmd =
+      new SMFTV1BodySectionParserMetadata(() -> header, reader);
+
+    final SMFSchemaIdentifier id0 =
+      SMFSchemaIdentifier.of(
+        SMFSchemaName.of("com.io7m.smf.example"), 1, 0);
+
+    Mockito.when(this.events.onMeta(id0))
+      .thenReturn(Optional.of(this.eventsMeta));
+
+    final SMFTParsingStatus r =
+      cmd.parse(
+        this.events,
+        List.of("metadata", "com.io7m.smf.example", "1", "0", "2"));
+    Assertions.assertEquals(SUCCESS, r);
+
+    Mockito.verify(this.eventsMeta, new Times(1))
+      .onMetaData(id0, "hello-hello\n".getBytes(StandardCharsets.US_ASCII));
+  }
+
+  @Test
+  public void testUnparseableTruncated()
+    throws Exception
+  {
+    final SMFTLineReaderType reader =
+      SMFTLineReaderList.create(
+        URI.create("urn:x"),
+        List.of(
+          "aGVsbG8tA",
+          "end"),
+        0);
+
+    final SMFHeader.Builder header_b = SMFHeader.builder();
+    final SMFHeader header = header_b.build();
+
+    final SMFTV1BodySectionParserMetadata cmd =
+      new SMFTV1BodySectionParserMetadata(() -> header, reader);
+
+    final SMFSchemaIdentifier id =
+      SMFSchemaIdentifier.of(
+        SMFSchemaName.of("com.io7m.smf.example"), 1, 0);
+
+    Mockito.when(this.events.onMeta(id))
+      .thenReturn(Optional.of(this.eventsMeta));
+
+    final SMFTParsingStatus r =
+      cmd.parse(
+        this.events,
+        List.of("metadata", "com.io7m.smf.example", "1", "0", "1"));
+    Assertions.assertEquals(FAILURE, r);
+
+    Mockito.verify(this.eventsMeta).onError(this.captor.capture());
+    Assertions.assertTrue(this.captor.getValue().message().contains(
+      "Cannot parse base64 encoded data"));
+  }
 }
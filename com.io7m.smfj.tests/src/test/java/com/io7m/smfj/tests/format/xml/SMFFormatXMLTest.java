@@ -18,16 +18,34 @@
 
 package com.io7m.smfj.tests.format.xml;
 
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFFormatVersion;
 import com.io7m.smfj.format.xml.SMFFormatXML;
+import com.io7m.smfj.format.xml.SMFFormatXMLPackedEncoding;
+import com.io7m.smfj.format.xml.SMFFormatXMLParserEngine;
+import com.io7m.smfj.parser.api.SMFErrorLimits;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
 import com.io7m.smfj.processing.api.SMFMemoryMeshProducer;
 import com.io7m.smfj.processing.api.SMFMemoryMeshProducerType;
+import com.io7m.smfj.processing.api.SMFMemoryMeshSerializer;
 import com.io7m.smfj.tests.processing.SMFMemoryMeshTesting;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DynamicTest;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,19 +76,61 @@ public final class SMFFormatXMLTest
       .forEach(e -> LOG.warn("{}: ", e, e.exception().orElse(null)));
   }
 
-  private static void checkFailure(final String file)
+  private static SMFMemoryMeshProducerType parse(
+    final SMFFormatXML format,
+    final String file)
     throws IOException
   {
-    final var format = new SMFFormatXML();
     final var meshes = SMFMemoryMeshProducer.create();
-
     try (var stream = resource(file)) {
       try (var parser = format.parserCreateSequential(meshes, TEST, stream)) {
         parser.parse();
       }
     }
     logEverything(meshes);
+    return meshes;
+  }
 
+  private static byte[] serialize(
+    final SMFFormatXML format,
+    final SMFFormatVersion version,
+    final SMFMemoryMesh mesh)
+    throws IOException
+  {
+    final var output = new ByteArrayOutputStream();
+    try (var serializer = format.serializerCreate(version, TEST, output)) {
+      SMFMemoryMeshSerializer.serialize(mesh, serializer);
+    }
+    return output.toByteArray();
+  }
+
+  private static SMFMemoryMeshProducerType parseBytes(
+    final SMFFormatXML format,
+    final byte[] data)
+    throws IOException
+  {
+    final var meshes = SMFMemoryMeshProducer.create();
+    try (var stream = new ByteArrayInputStream(data)) {
+      try (var parser = format.parserCreateSequential(meshes, TEST, stream)) {
+        parser.parse();
+      }
+    }
+    logEverything(meshes);
+    return meshes;
+  }
+
+  private static void checkFailure(final String file)
+    throws IOException
+  {
+    checkFailure(new SMFFormatXML(), file);
+  }
+
+  private static void checkFailure(
+    final SMFFormatXML format,
+    final String file)
+    throws IOException
+  {
+    final var meshes = parse(format, file);
     Assertions.assertFalse(
       meshes.errors().isEmpty(),
       "At least one error must have been logged");
@@ -141,4 +201,329 @@ public final class SMFFormatXMLTest
   {
     checkFailure("invalid6.smfx");
   }
+
+  @Test
+  public void testInvalid7()
+    throws Exception
+  {
+    checkFailure("invalid7.smfx");
+  }
+
+  @Test
+  public void testInvalid8()
+    throws Exception
+  {
+    checkFailure("invalid8.smfx");
+  }
+
+  @Test
+  public void testInvalid9()
+    throws Exception
+  {
+    checkFailure("invalid9.smfx");
+  }
+
+  @Test
+  public void testInvalid10()
+    throws Exception
+  {
+    checkFailure("invalid10.smfx");
+  }
+
+  @Test
+  public void testInvalid11()
+    throws Exception
+  {
+    checkFailure("invalid11.smfx");
+  }
+
+  @Test
+  public void testInvalid12()
+    throws Exception
+  {
+    checkFailure("invalid12.smfx");
+  }
+
+  @Test
+  public void testInvalid13()
+    throws Exception
+  {
+    checkFailure("invalid13.smfx");
+  }
+
+  @Test
+  public void testInvalid14()
+    throws Exception
+  {
+    checkFailure("invalid14.smfx");
+  }
+
+  @Test
+  public void testInvalid15()
+    throws Exception
+  {
+    checkFailure("invalid15.smfx");
+  }
+
+  @Test
+  public void testAllSAX()
+    throws Exception
+  {
+    final var format =
+      new SMFFormatXML(SMFFormatXMLParserEngine.PARSER_ENGINE_SAX);
+    final var meshes = parse(format, "all.smfx");
+    SMFMemoryMeshTesting.checkStandardMesh(meshes.mesh());
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> testInvalidSAX()
+  {
+    final var format =
+      new SMFFormatXML(SMFFormatXMLParserEngine.PARSER_ENGINE_SAX);
+
+    return IntStream.rangeClosed(0, 15)
+      .mapToObj(i -> String.format("invalid%d.smfx", Integer.valueOf(i)))
+      .map(file -> DynamicTest.dynamicTest(
+        "testInvalidSAX_" + file,
+        () -> checkFailure(format, file)));
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> testEnginesAgree()
+  {
+    final var formatSAX =
+      new SMFFormatXML(SMFFormatXMLParserEngine.PARSER_ENGINE_SAX);
+    final var formatStAX =
+      new SMFFormatXML(SMFFormatXMLParserEngine.PARSER_ENGINE_STAX);
+
+    return Stream.of(
+      "all.smfx",
+      "reordered.smfx",
+      "packed.smfx",
+      "packed-base64.smfx")
+      .map(file -> DynamicTest.dynamicTest(
+        "testEnginesAgree_" + file,
+        () -> {
+          final var meshesSAX = parse(formatSAX, file);
+          final var meshesStAX = parse(formatStAX, file);
+          Assertions.assertEquals(List.of(), meshesSAX.errors());
+          Assertions.assertEquals(List.of(), meshesStAX.errors());
+          Assertions.assertEquals(meshesSAX.mesh(), meshesStAX.mesh());
+        }));
+  }
+
+  @Test
+  public void testReorderedComponents()
+    throws Exception
+  {
+    final var meshes = parse(new SMFFormatXML(), "reordered.smfx");
+    Assertions.assertEquals(List.of(), meshes.errors());
+
+    final var mesh = meshes.mesh();
+    final var positions = (SMFAttributeArrayFloating3)
+      mesh.arrays().get(SMFAttributeName.of("position"));
+
+    Assertions.assertEquals(
+      List.of(
+        Vector3D.of(1.0, 2.0, 3.0),
+        Vector3D.of(4.0, 5.0, 6.0),
+        Vector3D.of(7.0, 8.0, 9.0)),
+      positions.values());
+
+    Assertions.assertEquals(
+      List.of(
+        Vector3L.of(0L, 1L, 2L),
+        Vector3L.of(2L, 1L, 0L)),
+      mesh.triangles());
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> testPackedEquivalent()
+  {
+    return Stream.of(
+      SMFFormatXMLParserEngine.PARSER_ENGINE_SAX,
+      SMFFormatXMLParserEngine.PARSER_ENGINE_STAX)
+      .flatMap(engine -> Stream.of("packed.smfx", "packed-base64.smfx")
+        .map(file -> DynamicTest.dynamicTest(
+          String.format("testPackedEquivalent_%s_%s", engine, file),
+          () -> {
+            final var format = new SMFFormatXML(engine);
+            final var expected = parse(format, "reordered.smfx");
+            final var received = parse(format, file);
+            Assertions.assertEquals(List.of(), received.errors());
+
+            final var meshExpected = expected.mesh();
+            final var meshReceived = received.mesh();
+            Assertions.assertEquals(meshExpected.arrays(), meshReceived.arrays());
+            Assertions.assertEquals(meshExpected.triangles(), meshReceived.triangles());
+          })));
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> testSerializeRoundTrip()
+  {
+    return Stream.of(SMFFormatXMLPackedEncoding.values())
+      .flatMap(encoding -> Stream.of(
+        SMFFormatVersion.of(2, 0),
+        SMFFormatVersion.of(2, 1))
+        .map(version -> DynamicTest.dynamicTest(
+          String.format("testSerializeRoundTrip_%s_%s", version, encoding),
+          () -> {
+            final var format =
+              new SMFFormatXML(
+                SMFFormatXMLParserEngine.PARSER_ENGINE_STAX, encoding);
+            final var original = parse(format, "all.smfx").mesh();
+            final var data = serialize(format, version, original);
+            final var text = new String(data, StandardCharsets.UTF_8);
+            LOG.debug("{}", text);
+
+            Assertions.assertEquals(
+              version.minor() >= 1,
+              text.contains("Packed"));
+
+            final var formatSAX =
+              new SMFFormatXML(SMFFormatXMLParserEngine.PARSER_ENGINE_SAX);
+            final var meshesSAX = parseBytes(formatSAX, data);
+            final var meshesStAX = parseBytes(format, data);
+            Assertions.assertEquals(List.of(), meshesSAX.errors());
+            Assertions.assertEquals(List.of(), meshesStAX.errors());
+            SMFMemoryMeshTesting.checkStandardMesh(meshesSAX.mesh());
+            SMFMemoryMeshTesting.checkStandardMesh(meshesStAX.mesh());
+            Assertions.assertEquals(meshesSAX.mesh(), meshesStAX.mesh());
+          })));
+  }
+
+  @Test
+  public void testPackedSmaller()
+    throws Exception
+  {
+    final var format = new SMFFormatXML();
+    final var original = parse(format, "all.smfx").mesh();
+    final var data20 = serialize(format, SMFFormatVersion.of(2, 0), original);
+    final var data21 = serialize(format, SMFFormatVersion.of(2, 1), original);
+    Assertions.assertTrue(
+      data21.length < data20.length,
+      String.format(
+        "Packed size %d must be smaller than %d",
+        Integer.valueOf(data21.length),
+        Integer.valueOf(data20.length)));
+  }
+
+  @Test
+  public void testSerializeUnsupported()
+  {
+    final var format = new SMFFormatXML();
+    Assertions.assertThrows(
+      UnsupportedOperationException.class,
+      () -> format.serializerCreate(
+        SMFFormatVersion.of(3, 0), TEST, new ByteArrayOutputStream()));
+  }
+
+  @Test
+  public void testProbePacked()
+    throws Exception
+  {
+    final var format = new SMFFormatXML();
+    try (var stream = resource("packed.smfx")) {
+      final var result = format.probe(stream);
+      Assertions.assertTrue(result.isSucceeded());
+      Assertions.assertEquals(SMFFormatVersion.of(2, 1), result.get().version());
+    }
+  }
+
+  @Test
+  public void testProbeAll()
+    throws Exception
+  {
+    final var format = new SMFFormatXML();
+    try (var stream = resource("all.smfx")) {
+      final var result = format.probe(stream);
+      Assertions.assertTrue(result.isSucceeded());
+      Assertions.assertEquals(SMFFormatVersion.of(2, 0), result.get().version());
+    }
+  }
+
+  @Test
+  public void testProbeLongProlog()
+    throws Exception
+  {
+    final var format = new SMFFormatXML();
+    final var text = new StringBuilder();
+    text.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    for (int index = 0; index < 200; ++index) {
+      text.append("<!-- A comment that pushes the root element along. -->\n");
+    }
+    try (var stream = resource("packed.smfx")) {
+      final var document = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+      text.append(document.substring(document.indexOf("<sx:SMF")));
+    }
+
+    final var data = text.toString().getBytes(StandardCharsets.UTF_8);
+    Assertions.assertTrue(data.length > 8192);
+
+    final var result = format.probe(new ByteArrayInputStream(data));
+    Assertions.assertTrue(result.isSucceeded());
+    Assertions.assertEquals(SMFFormatVersion.of(2, 1), result.get().version());
+  }
+
+  @Test
+  public void testProbeNotXML()
+  {
+    final var format = new SMFFormatXML();
+    final var result =
+      format.probe(new ByteArrayInputStream(
+        "smf 1 0\n".getBytes(StandardCharsets.UTF_8)));
+    Assertions.assertFalse(result.isSucceeded());
+  }
+
+  @Test
+  public void testProbeEmpty()
+  {
+    final var format = new SMFFormatXML();
+    final var result = format.probe(new ByteArrayInputStream(new byte[0]));
+    Assertions.assertFalse(result.isSucceeded());
+  }
+
+  @Test
+  public void testErrorLimitFinishes()
+    throws Exception
+  {
+    final var text = new StringBuilder(1024);
+    text.append("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+    text.append("<sx:SMF xmlns:sx=\"urn:com.io7m.smf:xml:2:1\">\n");
+    text.append("  <sx:Header vertexCount=\"3\" endianness=\"BIG_ENDIAN\">\n");
+    text.append("    <sx:CoordinateSystem right=\"AXIS_POSITIVE_X\"");
+    text.append(" up=\"AXIS_POSITIVE_Y\" forward=\"AXIS_NEGATIVE_Z\"");
+    text.append(" windingOrder=\"FACE_WINDING_ORDER_COUNTER_CLOCKWISE\"/>\n");
+    text.append("    <sx:TriangleSpecification count=\"1000\" sizeBits=\"16\"/>\n");
+    text.append("    <sx:Attributes/>\n");
+    text.append("  </sx:Header>\n");
+    text.append("  <sx:Triangles>\n");
+    for (int index = 0; index < 1000; ++index) {
+      text.append("    <sx:Triangle v0=\"7\" v1=\"8\" v2=\"9\"/>\n");
+    }
+    text.append("  </sx:Triangles>\n");
+    text.append("</sx:SMF>\n");
+
+    final var meshes =
+      SMFMemoryMeshProducer.create(SMFErrorLimits.of(5, 5));
+    final var data = text.toString().getBytes(StandardCharsets.UTF_8);
+    try (var stream = new ByteArrayInputStream(data)) {
+      try (var parser =
+             new SMFFormatXML().parserCreateSequential(meshes, TEST, stream)) {
+        parser.parse();
+      }
+    }
+    logEverything(meshes);
+
+    final var errors = meshes.errors();
+    Assertions.assertEquals(6, errors.size());
+    Assertions.assertTrue(
+      errors.get(5).message().contains("2 further errors"),
+      errors.get(5).message());
+
+    final var ex =
+      Assertions.assertThrows(IllegalStateException.class, meshes::mesh);
+    Assertions.assertEquals("Mesh parsing failed", ex.getMessage());
+  }
 }
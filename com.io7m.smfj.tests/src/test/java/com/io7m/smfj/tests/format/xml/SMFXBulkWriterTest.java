@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.format.xml;
+
+import com.io7m.smfj.format.xml.internal.SMFXBulkWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFXBulkWriterTest
+{
+  private interface WriteType
+  {
+    void write(SMFXBulkWriter writer)
+      throws IOException;
+  }
+
+  private static String written(
+    final WriteType f)
+    throws IOException
+  {
+    final var output = new ByteArrayOutputStream();
+    final var writer = new SMFXBulkWriter(output);
+    f.write(writer);
+    writer.end();
+    return output.toString(StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  public void testSigned()
+    throws IOException
+  {
+    final long[] values = {
+      0L,
+      1L,
+      -1L,
+      9L,
+      10L,
+      -10L,
+      1234567890L,
+      Long.MAX_VALUE,
+      Long.MIN_VALUE,
+      Long.MIN_VALUE + 1L,
+    };
+
+    for (final long value : values) {
+      Assertions.assertEquals(
+        Long.toString(value),
+        written(w -> w.writeSigned(value)));
+    }
+  }
+
+  @Test
+  public void testUnsigned()
+    throws IOException
+  {
+    final long[] values = {
+      0L,
+      1L,
+      -1L,
+      10L,
+      Long.MAX_VALUE,
+      Long.MIN_VALUE,
+      0xffff_ffffL,
+      -10L,
+    };
+
+    for (final long value : values) {
+      Assertions.assertEquals(
+        Long.toUnsignedString(value),
+        written(w -> w.writeUnsigned(value)));
+    }
+  }
+
+  @Test
+  public void testDouble()
+    throws IOException
+  {
+    final double[] values = {
+      0.0,
+      -0.0,
+      1.0,
+      0.1,
+      -123.456,
+      1.0e-10,
+      1.0e20,
+      Double.MIN_VALUE,
+      Double.MAX_VALUE,
+      Double.NaN,
+      Double.POSITIVE_INFINITY,
+      Double.NEGATIVE_INFINITY,
+      (double) 0.1f,
+    };
+
+    for (final double value : values) {
+      Assertions.assertEquals(
+        Double.toString(value),
+        written(w -> w.writeDouble(value)));
+    }
+  }
+
+  @Test
+  public void testLarge()
+    throws IOException
+  {
+    final var expected = new StringBuilder();
+    final var text =
+      written(w -> {
+        for (int index = 0; index < 100_000; ++index) {
+          w.writeSigned(index);
+          w.writeASCII(' ');
+        }
+      });
+
+    for (int index = 0; index < 100_000; ++index) {
+      expected.append(index);
+      expected.append(' ');
+    }
+    Assertions.assertEquals(expected.toString(), text);
+  }
+
+  @Test
+  public void testLargeTemplate()
+    throws IOException
+  {
+    final var data = new byte[200_000];
+    for (int index = 0; index < data.length; ++index) {
+      data[index] = (byte) ('a' + (index % 26));
+    }
+
+    final var text =
+      written(w -> {
+        w.writeASCII('<');
+        w.writeTemplate(data);
+        w.writeASCII('>');
+      });
+
+    Assertions.assertEquals(
+      "<" + new String(data, StandardCharsets.US_ASCII) + ">",
+      text);
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.format.xml;
+
+import com.io7m.smfj.core.SMFFormatVersion;
+import com.io7m.smfj.format.xml.internal.SMFXFastProbe;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.io7m.smfj.format.xml.internal.SMFXFastProbe.Kind.AMBIGUOUS;
+import static com.io7m.smfj.format.xml.internal.SMFXFastProbe.Kind.FOUND;
+import static com.io7m.smfj.format.xml.internal.SMFXFastProbe.Kind.NOT_SMF;
+
+public final class SMFXFastProbeTest
+{
+  private static SMFXFastProbe.Result scan(
+    final String text)
+  {
+    return scanBytes(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static SMFXFastProbe.Result scanBytes(
+    final byte[] data)
+  {
+    return SMFXFastProbe.scan(data, data.length);
+  }
+
+  private static void checkFound(
+    final SMFFormatVersion version,
+    final String text)
+  {
+    final var result = scan(text);
+    Assertions.assertEquals(FOUND, result.kind());
+    Assertions.assertEquals(Optional.of(version), result.version());
+  }
+
+  @Test
+  public void testFound20()
+  {
+    checkFound(
+      SMFFormatVersion.of(2, 0),
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<sx:SMF xmlns:sx=\"urn:com.io7m.smf:xml:2:0\">");
+  }
+
+  @Test
+  public void testFound21()
+  {
+    checkFound(
+      SMFFormatVersion.of(2, 1),
+      "<sx:SMF xmlns:sx='urn:com.io7m.smf:xml:2:1'>");
+  }
+
+  @Test
+  public void testFoundDefaultNamespace()
+  {
+    checkFound(
+      SMFFormatVersion.of(2, 1),
+      "<SMF xmlns=\"urn:com.io7m.smf:xml:2:1\"><Header/>");
+  }
+
+  @Test
+  public void testFoundPrologMisc()
+  {
+    checkFound(
+      SMFFormatVersion.of(2, 0),
+      "﻿<?xml version='1.0' encoding='utf-8' ?>\n"
+        + "<!-- A comment with <sx:SMF xmlns:sx=\"urn:x\"> -->\n"
+        + "<?something else?>\n"
+        + "<x:SMF\n  a = \"1\"\n  xmlns:sx=\"urn:other\"\n"
+        + "  xmlns:x=\"urn:com.io7m.smf:xml:2:0\"/>");
+  }
+
+  @Test
+  public void testNotXML()
+  {
+    Assertions.assertEquals(NOT_SMF, scan("smf 1 0\n").kind());
+    Assertions.assertEquals(
+      NOT_SMF,
+      scanBytes(new byte[]{(byte) 0x89, 'S', 'M', 'F'}).kind());
+    Assertions.assertEquals(
+      NOT_SMF,
+      scanBytes(new byte[]{(byte) 0xff, (byte) 0xd8, (byte) 0xff}).kind());
+  }
+
+  @Test
+  public void testNotSMF()
+  {
+    Assertions.assertEquals(
+      NOT_SMF,
+      scan("<sx:Other xmlns:sx=\"urn:com.io7m.smf:xml:2:0\">").kind());
+    Assertions.assertEquals(
+      NOT_SMF,
+      scan("<sx:SMF xmlns:sx=\"urn:com.io7m.smf:xml:9:0\">").kind());
+    Assertions.assertEquals(
+      NOT_SMF,
+      scan("<sx:SMF xmlns=\"urn:com.io7m.smf:xml:2:0\">").kind());
+    Assertions.assertEquals(
+      NOT_SMF,
+      scan("<SMF>").kind());
+  }
+
+  @Test
+  public void testAmbiguous()
+  {
+    Assertions.assertEquals(
+      AMBIGUOUS,
+      scan("").kind());
+    Assertions.assertEquals(
+      AMBIGUOUS,
+      scan("<!DOCTYPE x><sx:SMF xmlns:sx=\"urn:com.io7m.smf:xml:2:0\">").kind());
+    Assertions.assertEquals(
+      AMBIGUOUS,
+      scan("<!-- unterminated").kind());
+    Assertions.assertEquals(
+      AMBIGUOUS,
+      scan("<sx:SMF xmlns:sx=\"urn:com.io7m.smf:xml:2:0\"").kind());
+    Assertions.assertEquals(
+      AMBIGUOUS,
+      scan("<sx:SMF xmlns:sx=\"urn:com.io7m.smf&#x3a;xml:2:0\">").kind());
+    Assertions.assertEquals(
+      AMBIGUOUS,
+      scan("<sx:SMF xmlns:sx=\"a\" xmlns:sx=\"b\">").kind());
+    Assertions.assertEquals(
+      AMBIGUOUS,
+      scan("<?xml version=\"1.0\" encoding=\"ISO-8859-15\"?><sx:SMF/>").kind());
+    Assertions.assertEquals(
+      AMBIGUOUS,
+      scanBytes("<sx:SMF".getBytes(StandardCharsets.UTF_16LE)).kind());
+    Assertions.assertEquals(
+      AMBIGUOUS,
+      scanBytes("<sx:SMF".getBytes(StandardCharsets.UTF_16)).kind());
+  }
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.format.xml;
+
+import com.io7m.smfj.core.SMFAttribute;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFFormatVersion;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFTriangles;
+import com.io7m.smfj.format.xml.SMFFormatXML;
+import com.io7m.smfj.format.xml.SMFFormatXMLPackedEncoding;
+import com.io7m.smfj.format.xml.SMFFormatXMLParserEngine;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshProducer;
+import com.io7m.smfj.serializer.api.SMFSerializerType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.smfj.core.SMFComponentType.ELEMENT_TYPE_FLOATING;
+import static com.io7m.smfj.core.SMFComponentType.ELEMENT_TYPE_INTEGER_UNSIGNED;
+
+/**
+ * A simple throughput benchmark for the XML serializer. The serializer is
+ * compared against a reference writer that produces the same documents with
+ * one stream writer call per element and attribute, as the serializer did
+ * before bulk sections were written directly.
+ *
+ * The benchmark only runs if the {@code com.io7m.smfj.tests.xml_benchmark}
+ * system property is set to {@code true}. The mesh size and iteration count
+ * can be raised with the
+ * {@code com.io7m.smfj.tests.xml_benchmark.vertices} and
+ * {@code com.io7m.smfj.tests.xml_benchmark.iterations} system properties.
+ */
+
+public final class SMFXSerializerBenchmarkTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFXSerializerBenchmarkTest.class);
+
+  private static final URI TEST = URI.create("urn:test");
+  private static final String NAMESPACE = "urn:com.io7m.smf:xml:2:0";
+
+  private static final SMFAttributeName POSITION =
+    SMFAttributeName.of("position");
+  private static final SMFAttributeName NORMAL =
+    SMFAttributeName.of("normal");
+  private static final SMFAttributeName UV =
+    SMFAttributeName.of("uv");
+  private static final SMFAttributeName GROUP =
+    SMFAttributeName.of("group");
+
+  private static SMFHeader header(
+    final long vertices)
+  {
+    final var builder = SMFHeader.builder();
+    builder.setVertexCount(vertices);
+    builder.setTriangles(SMFTriangles.of(vertices - 2L, 32));
+    builder.addAttributesInOrder(
+      SMFAttribute.of(POSITION, ELEMENT_TYPE_FLOATING, 3, 32));
+    builder.addAttributesInOrder(
+      SMFAttribute.of(NORMAL, ELEMENT_TYPE_FLOATING, 3, 32));
+    builder.addAttributesInOrder(
+      SMFAttribute.of(UV, ELEMENT_TYPE_FLOATING, 2, 32));
+    builder.addAttributesInOrder(
+      SMFAttribute.of(GROUP, ELEMENT_TYPE_INTEGER_UNSIGNED, 1, 32));
+    return builder.build();
+  }
+
+  private static double value(
+    final long vertex,
+    final int component)
+  {
+    return (double) (float) Math.sin((double) vertex * 0.001 + component);
+  }
+
+  private static void serialize(
+    final SMFSerializerType serializer,
+    final SMFHeader header)
+    throws IOException
+  {
+    final long vertices = header.vertexCount();
+    serializer.serializeHeader(header);
+
+    try (var data = serializer.serializeVertexDataNonInterleavedStart()) {
+      try (var values = data.serializeData(POSITION)) {
+        for (long index = 0L; index < vertices; ++index) {
+          values.serializeValueFloat3(
+            value(index, 0), value(index, 1), value(index, 2));
+        }
+      }
+      try (var values = data.serializeData(NORMAL)) {
+        for (long index = 0L; index < vertices; ++index) {
+          values.serializeValueFloat3(
+            value(index, 3), value(index, 4), value(index, 5));
+        }
+      }
+      try (var values = data.serializeData(UV)) {
+        for (long index = 0L; index < vertices; ++index) {
+          values.serializeValueFloat2(value(index, 6), value(index, 7));
+        }
+      }
+      try (var values = data.serializeData(GROUP)) {
+        for (long index = 0L; index < vertices; ++index) {
+          values.serializeValueIntegerUnsigned1(index / 100L);
+        }
+      }
+    }
+
+    try (var triangles = serializer.serializeTrianglesStart()) {
+      for (long index = 0L; index < vertices - 2L; ++index) {
+        triangles.serializeTriangle(index, index + 1L, index + 2L);
+      }
+    }
+  }
+
+  private static void writeReferenceElement(
+    final XMLStreamWriter writer,
+    final String name,
+    final String[] attributes,
+    final String[] values)
+    throws XMLStreamException
+  {
+    writer.writeStartElement("sx", name, NAMESPACE);
+    for (int index = 0; index < attributes.length; ++index) {
+      writer.writeAttribute(attributes[index], values[index]);
+    }
+    writer.writeEndElement();
+  }
+
+  private static void writeReferenceHeader(
+    final XMLStreamWriter writer,
+    final SMFHeader header)
+    throws XMLStreamException
+  {
+    final var axes = header.coordinateSystem().axes();
+    final var triangles = header.triangles();
+
+    writer.writeStartElement("sx", "Header", NAMESPACE);
+    writer.writeAttribute(
+      "vertexCount", Long.toUnsignedString(header.vertexCount()));
+    writer.writeAttribute("endianness", header.dataByteOrder().toString());
+
+    writeReferenceElement(
+      writer,
+      "CoordinateSystem",
+      new String[]{"right", "up", "forward", "windingOrder"},
+      new String[]{
+        axes.right().toString(),
+        axes.up().toString(),
+        axes.forward().toString(),
+        header.coordinateSystem().windingOrder().toString(),
+      });
+    writeReferenceElement(
+      writer,
+      "TriangleSpecification",
+      new String[]{"count", "sizeBits"},
+      new String[]{
+        Long.toUnsignedString(triangles.triangleCount()),
+        Integer.toUnsignedString(triangles.triangleIndexSizeBits()),
+      });
+
+    writer.writeStartElement("sx", "Attributes", NAMESPACE);
+    for (final var attribute : header.attributesInOrder()) {
+      writeReferenceElement(
+        writer,
+        "Attribute",
+        new String[]{
+          "name", "componentKind", "componentCount", "componentSizeBits",
+        },
+        new String[]{
+          attribute.name().value(),
+          attribute.componentType().toString(),
+          Integer.toUnsignedString(attribute.componentCount()),
+          Integer.toUnsignedString(attribute.componentSizeBits()),
+        });
+    }
+    writer.writeEndElement();
+    writer.writeEndElement();
+  }
+
+  private static void serializeReference(
+    final OutputStream output,
+    final SMFHeader header)
+    throws XMLStreamException
+  {
+    final long vertices = header.vertexCount();
+    final var writer =
+      XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+
+    final String[] c3 = {"c0", "c1", "c2"};
+    final String[] c2 = {"c0", "c1"};
+    final String[] c1 = {"c0"};
+    final String[] v3 = {"v0", "v1", "v2"};
+
+    writer.writeStartDocument("UTF-8", "1.0");
+    writer.setPrefix("sx", NAMESPACE);
+    writer.writeStartElement(NAMESPACE, "SMF");
+    writer.writeNamespace("sx", NAMESPACE);
+    writeReferenceHeader(writer, header);
+    writer.writeStartElement("sx", "VertexDataNonInterleaved", NAMESPACE);
+
+    writer.writeStartElement("sx", "AttributeData", NAMESPACE);
+    writer.writeAttribute("name", POSITION.value());
+    for (long index = 0L; index < vertices; ++index) {
+      writeReferenceElement(writer, "AttributeFloat3", c3, new String[]{
+        Double.toString(value(index, 0)),
+        Double.toString(value(index, 1)),
+        Double.toString(value(index, 2)),
+      });
+    }
+    writer.writeEndElement();
+
+    writer.writeStartElement("sx", "AttributeData", NAMESPACE);
+    writer.writeAttribute("name", NORMAL.value());
+    for (long index = 0L; index < vertices; ++index) {
+      writeReferenceElement(writer, "AttributeFloat3", c3, new String[]{
+        Double.toString(value(index, 3)),
+        Double.toString(value(index, 4)),
+        Double.toString(value(index, 5)),
+      });
+    }
+    writer.writeEndElement();
+
+    writer.writeStartElement("sx", "AttributeData", NAMESPACE);
+    writer.writeAttribute("name", UV.value());
+    for (long index = 0L; index < vertices; ++index) {
+      writeReferenceElement(writer, "AttributeFloat2", c2, new String[]{
+        Double.toString(value(index, 6)),
+        Double.toString(value(index, 7)),
+      });
+    }
+    writer.writeEndElement();
+
+    writer.writeStartElement("sx", "AttributeData", NAMESPACE);
+    writer.writeAttribute("name", GROUP.value());
+    for (long index = 0L; index < vertices; ++index) {
+      writeReferenceElement(writer, "AttributeIntegerUnsigned1", c1, new String[]{
+        Long.toUnsignedString(index / 100L),
+      });
+    }
+    writer.writeEndElement();
+    writer.writeEndElement();
+
+    writer.writeStartElement("sx", "Triangles", NAMESPACE);
+    for (long index = 0L; index < vertices - 2L; ++index) {
+      writeReferenceElement(writer, "Triangle", v3, new String[]{
+        Long.toUnsignedString(index),
+        Long.toUnsignedString(index + 1L),
+        Long.toUnsignedString(index + 2L),
+      });
+    }
+    writer.writeEndElement();
+
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    writer.flush();
+  }
+
+  private static byte[] serializeWith(
+    final SMFFormatXML format,
+    final SMFFormatVersion version,
+    final SMFHeader header)
+    throws IOException
+  {
+    final var output = new ByteArrayOutputStream();
+    try (var serializer = format.serializerCreate(version, TEST, output)) {
+      serialize(serializer, header);
+    }
+    return output.toByteArray();
+  }
+
+  private interface RunType
+  {
+    long run()
+      throws Exception;
+  }
+
+  private static final class CountingOutputStream extends OutputStream
+  {
+    private long count;
+
+    CountingOutputStream()
+    {
+
+    }
+
+    @Override
+    public void write(final int b)
+    {
+      this.count += 1L;
+    }
+
+    @Override
+    public void write(
+      final byte[] b,
+      final int off,
+      final int len)
+    {
+      this.count += len;
+    }
+  }
+
+  private static double measure(
+    final String name,
+    final int iterations,
+    final RunType run)
+    throws Exception
+  {
+    run.run();
+
+    long bytes = 0L;
+    final long timeThen = System.nanoTime();
+    for (int index = 0; index < iterations; ++index) {
+      bytes += run.run();
+    }
+    final long timeNow = System.nanoTime();
+
+    final double seconds = (double) (timeNow - timeThen) / 1_000_000_000.0;
+    final double mbPerSecond = ((double) bytes / 1_000_000.0) / seconds;
+    LOG.info(
+      "{}: {} bytes per iteration, {} MB/s",
+      name,
+      Long.valueOf(bytes / iterations),
+      String.format("%.2f", Double.valueOf(mbPerSecond)));
+    return seconds;
+  }
+
+  private static SMFMemoryMesh parse(
+    final SMFFormatXMLParserEngine engine,
+    final byte[] data)
+    throws IOException
+  {
+    final var meshes = SMFMemoryMeshProducer.create();
+    try (var parser = new SMFFormatXML(engine)
+      .parserCreateSequential(meshes, TEST, new ByteArrayInputStream(data))) {
+      parser.parse();
+    }
+    Assertions.assertEquals(List.of(), meshes.errors());
+    return meshes.mesh();
+  }
+
+  @Test
+  public void testBulkOutputEquivalent()
+    throws Exception
+  {
+    final var header = header(1000L);
+    final var format = new SMFFormatXML();
+    final var bulk = serializeWith(format, SMFFormatVersion.of(2, 0), header);
+
+    final var output = new ByteArrayOutputStream();
+    serializeReference(output, header);
+    final var reference = output.toByteArray();
+
+    for (final var engine : SMFFormatXMLParserEngine.values()) {
+      final var referenceMesh = parse(engine, reference);
+      final var bulkMesh = parse(engine, bulk);
+      Assertions.assertEquals(header, referenceMesh.header());
+      Assertions.assertEquals(998, referenceMesh.triangles().size());
+      Assertions.assertEquals(4, referenceMesh.arrays().size());
+      Assertions.assertEquals(referenceMesh, bulkMesh);
+    }
+  }
+
+  @Test
+  @EnabledIfSystemProperty(
+    named = "com.io7m.smfj.tests.xml_benchmark",
+    matches = "true")
+  public void testBenchmark()
+    throws Exception
+  {
+    final long vertices =
+      Long.getLong("com.io7m.smfj.tests.xml_benchmark.vertices", 20_000L)
+        .longValue();
+    final int iterations =
+      Integer.getInteger("com.io7m.smfj.tests.xml_benchmark.iterations", 3)
+        .intValue();
+
+    final var header = header(vertices);
+    final var version20 = SMFFormatVersion.of(2, 0);
+    final var version21 = SMFFormatVersion.of(2, 1);
+    final var format = new SMFFormatXML();
+    final var formatBase64 =
+      new SMFFormatXML(
+        SMFFormatXMLParserEngine.PARSER_ENGINE_STAX,
+        SMFFormatXMLPackedEncoding.PACKED_ENCODING_BASE64_LITTLE_ENDIAN);
+
+    final double reference =
+      measure("reference 2.0", iterations, () -> {
+        final var output = new CountingOutputStream();
+        serializeReference(output, header);
+        return output.count;
+      });
+
+    final double bulk =
+      measure("serializer 2.0", iterations, () -> {
+        final var output = new CountingOutputStream();
+        try (var s = format.serializerCreate(version20, TEST, output)) {
+          serialize(s, header);
+        }
+        return output.count;
+      });
+
+    measure("serializer 2.1 text", iterations, () -> {
+      final var output = new CountingOutputStream();
+      try (var s = format.serializerCreate(version21, TEST, output)) {
+        serialize(s, header);
+      }
+      return output.count;
+    });
+
+    measure("serializer 2.1 base64", iterations, () -> {
+      final var output = new CountingOutputStream();
+      try (var s = formatBase64.serializerCreate(version21, TEST, output)) {
+        serialize(s, header);
+      }
+      return output.count;
+    });
+
+    LOG.info(
+      "serializer 2.0 speedup over reference: {}x",
+      String.format("%.2f", Double.valueOf(reference / bulk)));
+  }
+}
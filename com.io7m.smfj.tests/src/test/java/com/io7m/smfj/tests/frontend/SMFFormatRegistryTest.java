@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.tests.frontend;
+
+import com.io7m.smfj.format.binary2.SMFFormatBinary2;
+import com.io7m.smfj.format.text.SMFFormatText;
+import com.io7m.smfj.format.xml.SMFFormatXML;
+import com.io7m.smfj.frontend.SMFFormatRegistry;
+import com.io7m.smfj.frontend.SMFParserProviders;
+import com.io7m.smfj.frontend.SMFSerializerProviders;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFFormatRegistryTest
+{
+  @Test
+  public void testServiceLoadedShared()
+  {
+    final var r0 = SMFFormatRegistry.serviceLoaded();
+    final var r1 = SMFFormatRegistry.serviceLoaded();
+    Assertions.assertSame(r0, r1);
+    Assertions.assertFalse(r0.parserProviders().isEmpty());
+    Assertions.assertFalse(r0.serializerProviders().isEmpty());
+  }
+
+  @Test
+  public void testIndexes()
+  {
+    final var text = new SMFFormatText();
+    final var binary = new SMFFormatBinary2();
+    final var xml = new SMFFormatXML();
+    final var registry =
+      SMFFormatRegistry.create(List.of(text, binary, xml), List.of(text));
+
+    final var textFormat = text.parserFormat();
+    Assertions.assertSame(
+      text, registry.parserForName(textFormat.name()).orElseThrow());
+    Assertions.assertSame(
+      text, registry.parserForSuffix(textFormat.suffix()).orElseThrow());
+    Assertions.assertSame(
+      text, registry.parserForMimeType(textFormat.mimeType()).orElseThrow());
+
+    final var xmlFormat = xml.parserFormat();
+    Assertions.assertSame(
+      xml, registry.parserForSuffix(xmlFormat.suffix()).orElseThrow());
+    Assertions.assertEquals(
+      Optional.empty(), registry.serializerForName(xmlFormat.name()));
+    Assertions.assertSame(
+      text, registry.serializerForMimeType(textFormat.mimeType()).orElseThrow());
+
+    Assertions.assertEquals(
+      binary.parserSupportedVersions(), registry.parserVersions(binary));
+    Assertions.assertEquals(
+      text.serializerSupportedVersions(), registry.serializerVersions(text));
+    Assertions.assertThrows(
+      UnsupportedOperationException.class,
+      () -> registry.parserVersions(binary).clear());
+    Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> registry.serializerVersions(binary));
+  }
+
+  @Test
+  public void testFindProviders()
+  {
+    final var text = new SMFFormatText();
+    final var binary = new SMFFormatBinary2();
+    final var registry =
+      SMFFormatRegistry.create(List.of(text, binary), List.of(binary));
+
+    final var binaryFormat = binary.parserFormat();
+    Assertions.assertSame(
+      binary,
+      SMFParserProviders.findParserProvider(
+        registry, Optional.empty(), "x." + binaryFormat.suffix())
+        .orElseThrow());
+    Assertions.assertSame(
+      text,
+      SMFParserProviders.findParserProvider(
+        registry, Optional.of(text.parserFormat().name()), "x.y")
+        .orElseThrow());
+    Assertions.assertEquals(
+      Optional.empty(),
+      SMFParserProviders.findParserProvider(
+        registry, Optional.empty(), "nosuffix"));
+    Assertions.assertEquals(
+      Optional.empty(),
+      SMFSerializerProviders.findSerializerProvider(
+        registry, Optional.of(text.parserFormat().name()), "x.y"));
+    Assertions.assertSame(
+      binary,
+      SMFSerializerProviders.findSerializerProvider(
+        registry, Optional.empty(), "x." + binaryFormat.suffix())
+        .orElseThrow());
+  }
+}
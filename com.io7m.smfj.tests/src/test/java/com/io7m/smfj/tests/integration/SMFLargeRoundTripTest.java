@@ -23,6 +23,8 @@ import com.io7m.smfj.core.SMFAttribute;
 import com.io7m.smfj.format.binary2.SMFFormatBinary2;
 import com.io7m.smfj.format.text.SMFFormatText;
 import com.io7m.smfj.format.xml.SMFFormatXML;
+import com.io7m.smfj.format.xml.SMFFormatXMLPackedEncoding;
+import com.io7m.smfj.format.xml.SMFFormatXMLParserEngine;
 import com.io7m.smfj.parser.api.SMFParserProviderType;
 import com.io7m.smfj.processing.api.SMFAttributeArrayFloating1Type;
 import com.io7m.smfj.processing.api.SMFAttributeArrayFloating2Type;
@@ -509,6 +511,30 @@ public final class SMFLargeRoundTripTest
   }
 
 
+  @Test
+  public void testRoundTrip_LE_32_TBXTBX_Base64()
+    throws Exception
+  {
+    final var xml =
+      new SMFFormatXML(
+        SMFFormatXMLParserEngine.PARSER_ENGINE_STAX,
+        SMFFormatXMLPackedEncoding.PACKED_ENCODING_BASE64_LITTLE_ENDIAN);
+
+    runTrips(
+      "all.smft",
+      ByteOrder.LITTLE_ENDIAN,
+      32,
+      new SMFFormatText(),
+      List.of(
+        new SMFFormatText(),
+        new SMFFormatBinary2(),
+        xml,
+        new SMFFormatText(),
+        new SMFFormatBinary2(),
+        xml
+      ));
+  }
+
   @Test
   public void testRoundTrip_BE_64_TBXTBX()
     throws Exception
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.tests.parser.api;
+
+import com.io7m.jlexing.core.LexicalPositions;
+import com.io7m.smfj.parser.api.SMFErrorCollector;
+import com.io7m.smfj.parser.api.SMFErrorLimits;
+import com.io7m.smfj.parser.api.SMFParseErrors;
+import com.io7m.smfj.parser.api.SMFParseWarning;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFErrorCollectorTest
+{
+  @Test
+  public void testUnderLimit()
+  {
+    final var collector =
+      SMFErrorCollector.create(SMFErrorLimits.of(3, 3));
+
+    collector.addError(SMFParseErrors.errorWithMessage("e0"));
+    collector.addError(SMFParseErrors.errorWithMessage("e1"));
+
+    Assertions.assertFalse(collector.errorLimitReached());
+    Assertions.assertFalse(collector.hasNoErrors());
+    Assertions.assertEquals(2L, collector.errorCount());
+    Assertions.assertEquals(2, collector.errors().size());
+    Assertions.assertEquals(0, collector.warnings().size());
+  }
+
+  @Test
+  public void testAtLimit()
+  {
+    final var collector =
+      SMFErrorCollector.create(SMFErrorLimits.of(3, 3));
+
+    for (int index = 0; index < 3; ++index) {
+      collector.addError(SMFParseErrors.errorWithMessage("e" + index));
+      collector.addWarning(SMFParseWarning.of(
+        LexicalPositions.zero(), "w" + index, Optional.empty()));
+    }
+
+    Assertions.assertTrue(collector.errorLimitReached());
+    Assertions.assertEquals(3L, collector.errorCount());
+    Assertions.assertEquals(3, collector.errors().size());
+    Assertions.assertEquals("e2", collector.errors().get(2).message());
+    Assertions.assertEquals(3, collector.warnings().size());
+    Assertions.assertEquals("w2", collector.warnings().get(2).message());
+  }
+
+  @Test
+  public void testOverLimit()
+  {
+    final var collector =
+      SMFErrorCollector.create(SMFErrorLimits.of(3, 2));
+
+    for (int index = 0; index < 10000; ++index) {
+      collector.addError(SMFParseErrors.errorWithMessage("e" + index));
+      collector.addWarning(SMFParseWarning.of(
+        LexicalPositions.zero(), "w" + index, Optional.empty()));
+    }
+
+    Assertions.assertTrue(collector.errorLimitReached());
+    Assertions.assertEquals(10000L, collector.errorCount());
+    Assertions.assertEquals(10000L, collector.warningCount());
+
+    final var errors = collector.errors();
+    Assertions.assertEquals(4, errors.size());
+    Assertions.assertEquals("e0", errors.get(0).message());
+    Assertions.assertEquals("e2", errors.get(2).message());
+    Assertions.assertTrue(errors.get(3).message().contains("(3)"));
+    Assertions.assertTrue(
+      errors.get(3).message().contains(String.format("%,d", 9997)));
+
+    final var warnings = collector.warnings();
+    Assertions.assertEquals(3, warnings.size());
+    Assertions.assertTrue(
+      warnings.get(2).message().contains(String.format("%,d", 9998)));
+  }
+
+  @Test
+  public void testClear()
+  {
+    final var collector =
+      SMFErrorCollector.create(SMFErrorLimits.of(1, 1));
+
+    collector.addError(SMFParseErrors.errorWithMessage("e0"));
+    Assertions.assertTrue(collector.errorLimitReached());
+
+    collector.clear();
+    Assertions.assertFalse(collector.errorLimitReached());
+    Assertions.assertTrue(collector.hasNoErrors());
+    Assertions.assertEquals(0, collector.errors().size());
+  }
+
+  @Test
+  public void testLimitsInvalid()
+  {
+    Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> SMFErrorLimits.of(0, 1));
+    Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> SMFErrorLimits.of(1, 0));
+  }
+}
@@ -19,10 +19,13 @@ package com.io7m.smfj.tests.probe;
 import com.io7m.smfj.core.SMFPartialLogged;
 import com.io7m.smfj.format.binary2.SMFFormatBinary2;
 import com.io7m.smfj.format.text.SMFFormatText;
+import com.io7m.smfj.format.xml.SMFFormatXML;
 import com.io7m.smfj.probe.api.SMFVersionProbeControllerOSGi;
 import com.io7m.smfj.probe.api.SMFVersionProbed;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.io.input.BrokenInputStream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -167,4 +170,80 @@ public final class SMFVersionProbeControllerOSGiTest
     Assertions.assertTrue(r.isFailed());
     Assertions.assertTrue(r.errors().size() >= 1);
   }
+
+  private static byte[] largeFile(
+    final String firstLine)
+  {
+    final var text = new StringBuilder(firstLine);
+    text.append('\n');
+    for (int index = 0; index < 1000; ++index) {
+      text.append("# padding\n");
+    }
+    return text.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testMagicDispatchOpensOnce()
+  {
+    final SMFVersionProbeControllerOSGi c =
+      new SMFVersionProbeControllerOSGi();
+    c.onProbeProviderAdd(new SMFFormatBinary2());
+    c.onProbeProviderAdd(new SMFFormatXML());
+    c.onProbeProviderAdd(new SMFFormatText());
+
+    final var data = largeFile("smf 1 0");
+    final var opens = new AtomicInteger(0);
+    final var r = c.probe(() -> {
+      opens.incrementAndGet();
+      return new ByteArrayInputStream(data);
+    });
+
+    dumpValidation(r);
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(1, opens.get());
+    Assertions.assertEquals(
+      SMFFormatText.class, r.get().provider().getClass());
+  }
+
+  @Test
+  public void testMagicDispatchFallsBack()
+  {
+    final SMFVersionProbeControllerOSGi c =
+      new SMFVersionProbeControllerOSGi();
+    c.onProbeProviderAdd(new SMFFormatBinary2());
+    c.onProbeProviderAdd(new SMFFormatXML());
+    c.onProbeProviderAdd(new SMFFormatText());
+
+    final var data = largeFile("smf x y");
+    final var opens = new AtomicInteger(0);
+    final var r = c.probe(() -> {
+      opens.incrementAndGet();
+      return new ByteArrayInputStream(data);
+    });
+
+    dumpValidation(r);
+    Assertions.assertTrue(r.isFailed());
+    Assertions.assertEquals(3, opens.get());
+    Assertions.assertTrue(r.errors().size() >= 3);
+  }
+
+  @Test
+  public void testSmallFileOpensOnce()
+  {
+    final SMFVersionProbeControllerOSGi c =
+      new SMFVersionProbeControllerOSGi();
+    c.onProbeProviderAdd(new SMFFormatXML());
+    c.onProbeProviderAdd(new SMFFormatText());
+    c.onProbeProviderAdd(new SMFFormatBinary2());
+
+    final var opens = new AtomicInteger(0);
+    final var r = c.probe(() -> {
+      opens.incrementAndGet();
+      return resource("/com/io7m/smfj/tests/probe/bad.smfb");
+    });
+
+    dumpValidation(r);
+    Assertions.assertTrue(r.isFailed());
+    Assertions.assertEquals(1, opens.get());
+  }
 }
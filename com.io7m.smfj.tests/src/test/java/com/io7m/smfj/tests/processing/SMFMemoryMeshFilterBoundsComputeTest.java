@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.processing;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFMetadata;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterBoundsCompute;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFMemoryMeshFilterBoundsComputeTest extends
+  SMFMemoryMeshFilterContract
+{
+  private static double[] bounds(
+    final SMFMemoryMesh mesh)
+  {
+    Assertions.assertEquals(1, mesh.metadata().size());
+    final SMFMetadata metadata = mesh.metadata().get(0);
+    Assertions.assertEquals(
+      SMFMemoryMeshFilterBoundsCompute.SCHEMA, metadata.schema());
+
+    final ByteBuffer data = ByteBuffer.wrap(metadata.data());
+    final double[] values = new double[13];
+    for (int index = 0; index < values.length; ++index) {
+      values[index] = data.getDouble();
+    }
+    Assertions.assertFalse(data.hasRemaining());
+    return values;
+  }
+
+  private static void checkEnclosed(
+    final SMFMemoryMesh mesh,
+    final double[] bounds)
+  {
+    final List<Vector3D> positions =
+      ((SMFAttributeArrayFloating3) mesh.arrays().get(SMFTestMeshes.POSITION))
+        .values();
+    for (final Vector3D p : positions) {
+      final double dx = p.x() - bounds[9];
+      final double dy = p.y() - bounds[10];
+      final double dz = p.z() - bounds[11];
+      Assertions.assertTrue(
+        Math.sqrt(dx * dx + dy * dy + dz * dz) <= bounds[12] + 1.0e-9);
+    }
+  }
+
+  @Test
+  public void testParseOk0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterBoundsCompute.parse(
+        Optional.empty(),
+        1,
+        List.of("position"));
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(
+      SMFMemoryMeshFilterBoundsCompute.NAME, r.get().name());
+  }
+
+  @Test
+  public void testParseWrong0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterBoundsCompute.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "x"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterBoundsCompute.parse(
+        Optional.empty(),
+        1,
+        List.of("<>"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testNonexistentAttribute()
+  {
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterBoundsCompute.create(SMFTestMeshes.UV)
+        .filter(this.createContext(), SMFTestMeshes.grid(4));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testBounds()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.layers(16, 3);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterBoundsCompute.create(SMFTestMeshes.POSITION)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(mesh.triangles(), result.triangles());
+    Assertions.assertEquals(mesh.arrays(), result.arrays());
+
+    final double[] bounds = bounds(result);
+    Assertions.assertArrayEquals(
+      new double[]{0.0, 0.0, 0.0, 16.0, 16.0, 2.0, 8.0, 8.0, 1.0},
+      Arrays.copyOf(bounds, 9),
+      1.0e-9);
+
+    checkEnclosed(mesh, bounds);
+    Assertions.assertTrue(bounds[12] <= Math.sqrt(8.0 * 8.0 * 2.0 + 1.0) + 1.0e-9);
+
+    final SMFPartialLogged<SMFMemoryMesh> again =
+      SMFMemoryMeshFilterBoundsCompute.create(SMFTestMeshes.POSITION)
+        .filter(this.createContext(), result);
+    Assertions.assertTrue(again.isSucceeded());
+    Assertions.assertEquals(1, again.get().metadata().size());
+  }
+
+  @Test
+  public void testBoundsParallel()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(256);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterBoundsCompute.create(SMFTestMeshes.POSITION)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final double[] bounds = bounds(r.get());
+    Assertions.assertArrayEquals(
+      new double[]{0.0, 0.0, 0.0, 256.0, 256.0, 0.0, 128.0, 128.0, 0.0},
+      Arrays.copyOf(bounds, 9),
+      1.0e-9);
+    checkEnclosed(mesh, bounds);
+  }
+}
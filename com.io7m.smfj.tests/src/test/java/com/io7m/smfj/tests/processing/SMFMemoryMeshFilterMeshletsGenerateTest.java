@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.processing;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFMetadata;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterMeshletsGenerate;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFMemoryMeshFilterMeshletsGenerateTest extends
+  SMFMemoryMeshFilterContract
+{
+  private static List<Vector3D> positions(
+    final SMFMemoryMesh mesh)
+  {
+    return ((SMFAttributeArrayFloating3) mesh.arrays().get(SMFTestMeshes.POSITION))
+      .values();
+  }
+
+  private static double distance(
+    final Vector3D p,
+    final double x,
+    final double y,
+    final double z)
+  {
+    final double dx = p.x() - x;
+    final double dy = p.y() - y;
+    final double dz = p.z() - z;
+    return Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  /**
+   * Decode the meshlets of a mesh, checking their limits and bounds, and
+   * return the triangles that they cover.
+   */
+
+  private static List<Vector3L> decode(
+    final SMFMemoryMesh mesh,
+    final SMFMetadata metadata,
+    final int maxVertices,
+    final int maxTriangles)
+  {
+    final List<Vector3D> positions = positions(mesh);
+    final ByteBuffer data = ByteBuffer.wrap(metadata.data());
+    final int count = data.getInt();
+    final List<Vector3L> triangles = new ArrayList<>();
+
+    for (int meshlet = 0; meshlet < count; ++meshlet) {
+      final int vertexCount = data.getInt();
+      final int triangleCount = data.getInt();
+      Assertions.assertTrue(vertexCount >= 3 && vertexCount <= maxVertices);
+      Assertions.assertTrue(triangleCount >= 1 && triangleCount <= maxTriangles);
+
+      final double x = data.getFloat();
+      final double y = data.getFloat();
+      final double z = data.getFloat();
+      final double radius = data.getFloat();
+
+      final double[] cone = new double[7];
+      for (int index = 0; index < 7; ++index) {
+        cone[index] = data.getFloat();
+      }
+      Assertions.assertEquals(0.0, cone[6], 1.0e-6);
+      Assertions.assertEquals(1.0, cone[5], 1.0e-6);
+
+      final int[] vertices = new int[vertexCount];
+      for (int index = 0; index < vertexCount; ++index) {
+        vertices[index] = data.getInt();
+        Assertions.assertTrue(
+          distance(positions.get(vertices[index]), x, y, z) <= radius + 1.0e-4);
+      }
+      for (int index = 0; index < triangleCount; ++index) {
+        final int a = Byte.toUnsignedInt(data.get());
+        final int b = Byte.toUnsignedInt(data.get());
+        final int c = Byte.toUnsignedInt(data.get());
+        triangles.add(Vector3L.of(
+          (long) vertices[a], (long) vertices[b], (long) vertices[c]));
+      }
+    }
+
+    Assertions.assertFalse(data.hasRemaining());
+    return triangles;
+  }
+
+  @Test
+  public void testParseOk0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterMeshletsGenerate.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "64", "124"));
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(
+      SMFMemoryMeshFilterMeshletsGenerate.NAME, r.get().name());
+  }
+
+  @Test
+  public void testParseWrong0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterMeshletsGenerate.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "257", "124"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterMeshletsGenerate.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "64", "0"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong2()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterMeshletsGenerate.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "64"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testNonexistentAttribute()
+  {
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterMeshletsGenerate.create(
+        SMFTestMeshes.UV, 64, 124)
+        .filter(this.createContext(), SMFTestMeshes.grid(4));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testGenerate()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(16);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterMeshletsGenerate.create(
+        SMFTestMeshes.POSITION, 64, 124)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(mesh.triangles(), result.triangles());
+    Assertions.assertEquals(mesh.arrays(), result.arrays());
+    Assertions.assertEquals(1, result.metadata().size());
+
+    final SMFMetadata metadata = result.metadata().get(0);
+    Assertions.assertEquals(
+      SMFMemoryMeshFilterMeshletsGenerate.SCHEMA, metadata.schema());
+    Assertions.assertEquals(
+      SMFTestMeshes.sortedTriangles(mesh.triangles()),
+      SMFTestMeshes.sortedTriangles(decode(mesh, metadata, 64, 124)));
+  }
+
+  @Test
+  public void testGenerateSmall()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(8);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterMeshletsGenerate.create(
+        SMFTestMeshes.POSITION, 4, 2)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMetadata metadata = r.get().metadata().get(0);
+    Assertions.assertEquals(64, ByteBuffer.wrap(metadata.data()).getInt());
+    Assertions.assertEquals(
+      SMFTestMeshes.sortedTriangles(mesh.triangles()),
+      SMFTestMeshes.sortedTriangles(decode(mesh, metadata, 4, 2)));
+  }
+
+  @Test
+  public void testGenerateReplaces()
+  {
+    final SMFMemoryMeshFilterType filter =
+      SMFMemoryMeshFilterMeshletsGenerate.create(
+        SMFTestMeshes.POSITION, 64, 124);
+
+    final SMFPartialLogged<SMFMemoryMesh> r0 =
+      filter.filter(this.createContext(), SMFTestMeshes.grid(4));
+    Assertions.assertTrue(r0.isSucceeded());
+    final SMFPartialLogged<SMFMemoryMesh> r1 =
+      filter.filter(this.createContext(), r0.get());
+    Assertions.assertTrue(r1.isSucceeded());
+    Assertions.assertEquals(1, r1.get().metadata().size());
+  }
+}
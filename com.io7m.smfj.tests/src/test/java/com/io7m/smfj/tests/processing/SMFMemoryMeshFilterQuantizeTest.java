@@ -0,0 +1,336 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.processing;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector2D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector2L;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFAttribute;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFComponentType;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating2;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFAttributeArrayIntegerSigned2;
+import com.io7m.smfj.processing.api.SMFAttributeArrayIntegerSigned3;
+import com.io7m.smfj.processing.api.SMFAttributeArrayIntegerUnsigned2;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFMetadata;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterQuantize;
+import com.io7m.smfj.processing.main.SMFQuantizationPolicy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.io7m.smfj.processing.main.SMFQuantizationPolicy.QUANTIZE_FLOAT16;
+import static com.io7m.smfj.processing.main.SMFQuantizationPolicy.QUANTIZE_OCTAHEDRAL16;
+import static com.io7m.smfj.processing.main.SMFQuantizationPolicy.QUANTIZE_OCTAHEDRAL8;
+import static com.io7m.smfj.processing.main.SMFQuantizationPolicy.QUANTIZE_SNORM16;
+import static com.io7m.smfj.processing.main.SMFQuantizationPolicy.QUANTIZE_UNORM8;
+
+public final class SMFMemoryMeshFilterQuantizeTest extends
+  SMFMemoryMeshFilterContract
+{
+  /**
+   * A grid with scaled positions and randomly oriented unit normals.
+   */
+
+  private static SMFMemoryMesh mesh()
+  {
+    final SMFMemoryMesh grid = SMFTestMeshes.grid(8);
+    final Random random = new Random(0x5eedL);
+
+    final List<Vector3D> positions =
+      ((SMFAttributeArrayFloating3) grid.arrays().get(SMFTestMeshes.POSITION))
+        .values()
+        .stream()
+        .map(p -> Vector3D.of(p.x() * 0.1, p.y() * 0.3, -p.x() * 0.7))
+        .collect(Collectors.toList());
+
+    final List<Vector3D> normals =
+      positions.stream()
+        .map(p -> {
+          final double x = random.nextGaussian();
+          final double y = random.nextGaussian();
+          final double z = random.nextGaussian();
+          final double length = Math.sqrt(x * x + y * y + z * z);
+          return Vector3D.of(x / length, y / length, z / length);
+        })
+        .collect(Collectors.toList());
+
+    return SMFMemoryMesh.builder()
+      .from(grid)
+      .putArrays(SMFTestMeshes.POSITION, SMFAttributeArrayFloating3.of(positions))
+      .putArrays(SMFTestMeshes.NORMAL, SMFAttributeArrayFloating3.of(normals))
+      .build();
+  }
+
+  /**
+   * Decode the quantization metadata into per-attribute arrays of
+   * alternating scales and biases.
+   */
+
+  private static Map<String, double[]> entries(
+    final SMFMemoryMesh mesh,
+    final Map<String, String> policies)
+  {
+    final List<SMFMetadata> metadata =
+      mesh.metadata()
+        .stream()
+        .filter(x -> x.schema().equals(SMFMemoryMeshFilterQuantize.SCHEMA))
+        .collect(Collectors.toList());
+    Assertions.assertEquals(1, metadata.size());
+
+    final ByteBuffer data = ByteBuffer.wrap(metadata.get(0).data());
+    final Map<String, double[]> entries = new HashMap<>();
+    final int count = data.getInt();
+    for (int index = 0; index < count; ++index) {
+      final String name = string(data);
+      policies.put(name, string(data));
+      final double[] values = new double[data.getInt() * 2];
+      for (int k = 0; k < values.length; ++k) {
+        values[k] = data.getDouble();
+      }
+      entries.put(name, values);
+    }
+    Assertions.assertFalse(data.hasRemaining());
+    return entries;
+  }
+
+  private static String string(
+    final ByteBuffer data)
+  {
+    final byte[] bytes = new byte[data.getInt()];
+    data.get(bytes);
+    return StandardCharsets.UTF_8.decode(ByteBuffer.wrap(bytes)).toString();
+  }
+
+  private static Vector3D decodeOctahedral(
+    final double u,
+    final double v)
+  {
+    double x = u;
+    double y = v;
+    final double z = 1.0 - Math.abs(x) - Math.abs(y);
+    final double t = Math.max(-z, 0.0);
+    x += x >= 0.0 ? -t : t;
+    y += y >= 0.0 ? -t : t;
+    final double length = Math.sqrt(x * x + y * y + z * z);
+    return Vector3D.of(x / length, y / length, z / length);
+  }
+
+  @Test
+  public void testParseOk0()
+  {
+    for (final SMFQuantizationPolicy policy : SMFQuantizationPolicy.values()) {
+      final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+        SMFMemoryMeshFilterQuantize.parse(
+          Optional.empty(),
+          1,
+          List.of("normal", policy.toName()));
+      Assertions.assertTrue(r.isSucceeded());
+      Assertions.assertEquals(SMFMemoryMeshFilterQuantize.NAME, r.get().name());
+    }
+  }
+
+  @Test
+  public void testParseWrong0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterQuantize.parse(
+        Optional.empty(),
+        1,
+        List.of("normal", "unorm12"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterQuantize.parse(
+        Optional.empty(),
+        1,
+        List.of("normal"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testOctahedralWrongType()
+  {
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterQuantize.create(SMFTestMeshes.UV, QUANTIZE_OCTAHEDRAL8)
+        .filter(this.createContext(), mesh());
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testNonexistentAttribute()
+  {
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterQuantize.create(SMFAttributeName.of("tangent"), QUANTIZE_FLOAT16)
+        .filter(this.createContext(), mesh());
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testFloat16()
+  {
+    final SMFMemoryMesh mesh = mesh();
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterQuantize.create(SMFTestMeshes.POSITION, QUANTIZE_FLOAT16)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(
+      16,
+      result.header()
+        .attributesByName()
+        .get(SMFTestMeshes.POSITION)
+        .componentSizeBits());
+    Assertions.assertEquals(0, result.metadata().size());
+
+    final List<Vector3D> p0 =
+      ((SMFAttributeArrayFloating3) mesh.arrays().get(SMFTestMeshes.POSITION))
+        .values();
+    final List<Vector3D> p1 =
+      ((SMFAttributeArrayFloating3) result.arrays().get(SMFTestMeshes.POSITION))
+        .values();
+    for (int index = 0; index < p0.size(); ++index) {
+      final Vector3D a = p0.get(index);
+      final Vector3D b = p1.get(index);
+      Assertions.assertEquals((double) (float) b.x(), b.x());
+      Assertions.assertEquals(a.x(), b.x(), Math.abs(a.x()) * 0x1.0p-11);
+      Assertions.assertEquals(a.y(), b.y(), Math.abs(a.y()) * 0x1.0p-11);
+      Assertions.assertEquals(a.z(), b.z(), Math.abs(a.z()) * 0x1.0p-11);
+    }
+    Assertions.assertNotEquals(p0, p1);
+  }
+
+  @Test
+  public void testUnorm8()
+  {
+    final SMFMemoryMesh mesh = mesh();
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterQuantize.create(SMFTestMeshes.UV, QUANTIZE_UNORM8)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(
+      SMFAttribute.of(
+        SMFTestMeshes.UV, SMFComponentType.ELEMENT_TYPE_INTEGER_UNSIGNED, 2, 8),
+      result.header().attributesByName().get(SMFTestMeshes.UV));
+
+    final Map<String, String> policies = new HashMap<>();
+    final double[] entry = entries(result, policies).get("uv");
+    Assertions.assertEquals("unorm8", policies.get("uv"));
+    Assertions.assertEquals(1.0 / 255.0, entry[0], 1.0e-12);
+    Assertions.assertEquals(0.0, entry[1], 1.0e-12);
+
+    final List<Vector2D> uv0 =
+      ((SMFAttributeArrayFloating2) mesh.arrays().get(SMFTestMeshes.UV))
+        .values();
+    final List<Vector2L> uv1 =
+      ((SMFAttributeArrayIntegerUnsigned2) result.arrays().get(SMFTestMeshes.UV))
+        .values();
+    for (int index = 0; index < uv0.size(); ++index) {
+      final Vector2L q = uv1.get(index);
+      Assertions.assertTrue(q.x() >= 0L && q.x() <= 255L);
+      Assertions.assertEquals(
+        uv0.get(index).x(), (double) q.x() * entry[0] + entry[1], entry[0] / 2.0);
+      Assertions.assertEquals(
+        uv0.get(index).y(), (double) q.y() * entry[2] + entry[3], entry[2] / 2.0);
+    }
+  }
+
+  @Test
+  public void testSnorm16AndOctahedral()
+  {
+    final SMFMemoryMesh mesh = mesh();
+
+    final SMFPartialLogged<SMFMemoryMesh> r0 =
+      SMFMemoryMeshFilterQuantize.create(SMFTestMeshes.POSITION, QUANTIZE_SNORM16)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r0.isSucceeded());
+
+    final SMFPartialLogged<SMFMemoryMesh> r1 =
+      SMFMemoryMeshFilterQuantize.create(SMFTestMeshes.NORMAL, QUANTIZE_OCTAHEDRAL16)
+        .filter(this.createContext(), r0.get());
+    Assertions.assertTrue(r1.isSucceeded());
+
+    final SMFMemoryMesh result = r1.get();
+    Assertions.assertEquals(
+      SMFAttribute.of(
+        SMFTestMeshes.NORMAL, SMFComponentType.ELEMENT_TYPE_INTEGER_SIGNED, 2, 16),
+      result.header().attributesByName().get(SMFTestMeshes.NORMAL));
+
+    final Map<String, String> policies = new HashMap<>();
+    final Map<String, double[]> entries = entries(result, policies);
+    Assertions.assertEquals("snorm16", policies.get("position"));
+    Assertions.assertEquals("octahedral16", policies.get("normal"));
+
+    final double[] position = entries.get("position");
+    Assertions.assertEquals(0.8 / 32767.0, position[0], 1.0e-12);
+    Assertions.assertEquals(0.0, position[1]);
+    Assertions.assertEquals(2.4 / 32767.0, position[2], 1.0e-12);
+    Assertions.assertEquals(5.6 / 32767.0, position[4], 1.0e-12);
+
+    final List<Vector3D> p0 =
+      ((SMFAttributeArrayFloating3) mesh.arrays().get(SMFTestMeshes.POSITION))
+        .values();
+    final List<Vector3L> p1 =
+      ((SMFAttributeArrayIntegerSigned3) result.arrays().get(SMFTestMeshes.POSITION))
+        .values();
+    for (int index = 0; index < p0.size(); ++index) {
+      Assertions.assertEquals(
+        p0.get(index).z(),
+        (double) p1.get(index).z() * position[4],
+        position[4] / 2.0);
+    }
+
+    final double[] normal = entries.get("normal");
+    final List<Vector3D> n0 =
+      ((SMFAttributeArrayFloating3) mesh.arrays().get(SMFTestMeshes.NORMAL))
+        .values();
+    final List<Vector2L> n1 =
+      ((SMFAttributeArrayIntegerSigned2) result.arrays().get(SMFTestMeshes.NORMAL))
+        .values();
+    for (int index = 0; index < n0.size(); ++index) {
+      final Vector3D n = n0.get(index);
+      final Vector3D d =
+        decodeOctahedral(
+          (double) n1.get(index).x() * normal[0],
+          (double) n1.get(index).y() * normal[2]);
+      final double cosine = n.x() * d.x() + n.y() * d.y() + n.z() * d.z();
+      Assertions.assertTrue(cosine > Math.cos(Math.toRadians(0.01)));
+    }
+  }
+}
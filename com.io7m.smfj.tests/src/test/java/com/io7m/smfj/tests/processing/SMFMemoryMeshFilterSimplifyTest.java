@@ -0,0 +1,410 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.processing;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector2D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating2;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFMetadata;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterSimplify;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterSimplifyLODs;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFMemoryMeshFilterSimplifyTest extends
+  SMFMemoryMeshFilterContract
+{
+  private static List<Vector3D> positions(
+    final SMFMemoryMesh mesh)
+  {
+    return ((SMFAttributeArrayFloating3) mesh.arrays().get(SMFTestMeshes.POSITION))
+      .values();
+  }
+
+  private static double area(
+    final SMFMemoryMesh mesh)
+  {
+    final List<Vector3D> positions = positions(mesh);
+    double area = 0.0;
+    for (final Vector3L triangle : mesh.triangles()) {
+      final Vector3D a = positions.get((int) triangle.x());
+      final Vector3D b = positions.get((int) triangle.y());
+      final Vector3D c = positions.get((int) triangle.z());
+      area += 0.5 * ((b.x() - a.x()) * (c.y() - a.y())
+        - (c.x() - a.x()) * (b.y() - a.y()));
+    }
+    return area;
+  }
+
+  private static SMFMemoryMesh paraboloid(
+    final int size)
+  {
+    final SMFMemoryMesh grid = SMFTestMeshes.grid(size);
+    final double center = (double) size / 2.0;
+    final List<Vector3D> curved =
+      positions(grid)
+        .stream()
+        .map(p -> {
+          final double dx = p.x() - center;
+          final double dy = p.y() - center;
+          return Vector3D.of(p.x(), p.y(), 0.1 * (dx * dx + dy * dy));
+        })
+        .collect(Collectors.toList());
+    return SMFMemoryMesh.builder()
+      .from(grid)
+      .putArrays(SMFTestMeshes.POSITION, SMFAttributeArrayFloating3.of(curved))
+      .build();
+  }
+
+  private static List<Vector2D> uvs(
+    final SMFMemoryMesh mesh)
+  {
+    return ((SMFAttributeArrayFloating2) mesh.arrays().get(SMFTestMeshes.UV))
+      .values();
+  }
+
+  /**
+   * A flat grid with a texture coordinate seam along the column at
+   * {@code x = size / 2}: the triangles to the right of the seam use their
+   * own copies of the seam vertices, and every vertex used by those
+   * triangles has its U coordinate offset by 10.
+   */
+
+  private static SMFMemoryMesh seamed(
+    final int size)
+  {
+    final SMFMemoryMesh grid = SMFTestMeshes.grid(size);
+    final double column = (double) (size / 2);
+    final List<Vector3D> positions = new ArrayList<>(positions(grid));
+    final List<Vector3D> normals =
+      new ArrayList<>(
+        ((SMFAttributeArrayFloating3) grid.arrays().get(SMFTestMeshes.NORMAL))
+          .values());
+    final List<Vector2D> uvs = new ArrayList<>();
+    for (int index = 0; index < positions.size(); ++index) {
+      final Vector2D uv = uvs(grid).get(index);
+      uvs.add(
+        positions.get(index).x() > column
+          ? Vector2D.of(uv.x() + 10.0, uv.y())
+          : uv);
+    }
+
+    final Map<Long, Long> copies = new HashMap<>();
+    final List<Vector3L> triangles = new ArrayList<>();
+    for (final Vector3L triangle : grid.triangles()) {
+      final List<Long> corners =
+        List.of(
+          Long.valueOf(triangle.x()),
+          Long.valueOf(triangle.y()),
+          Long.valueOf(triangle.z()));
+      final boolean right =
+        corners.stream()
+          .anyMatch(v -> positions.get(v.intValue()).x() > column);
+
+      final List<Long> result = new ArrayList<>();
+      for (final Long vertex : corners) {
+        if (right && positions.get(vertex.intValue()).x() == column) {
+          result.add(copies.computeIfAbsent(vertex, v -> {
+            final int original = v.intValue();
+            final Vector2D uv = uvs.get(original);
+            positions.add(positions.get(original));
+            normals.add(normals.get(original));
+            uvs.add(Vector2D.of(uv.x() + 10.0, uv.y()));
+            return Long.valueOf((long) positions.size() - 1L);
+          }));
+        } else {
+          result.add(vertex);
+        }
+      }
+      triangles.add(
+        Vector3L.of(
+          result.get(0).longValue(),
+          result.get(1).longValue(),
+          result.get(2).longValue()));
+    }
+
+    return SMFMemoryMesh.builder()
+      .from(grid)
+      .setHeader(grid.header().withVertexCount((long) positions.size()))
+      .setTriangles(triangles)
+      .putArrays(SMFTestMeshes.POSITION, SMFAttributeArrayFloating3.of(positions))
+      .putArrays(SMFTestMeshes.NORMAL, SMFAttributeArrayFloating3.of(normals))
+      .putArrays(SMFTestMeshes.UV, SMFAttributeArrayFloating2.of(uvs))
+      .build();
+  }
+
+  @Test
+  public void testParseOk0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterSimplify.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "0.5", "0.01"));
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(SMFMemoryMeshFilterSimplify.NAME, r.get().name());
+  }
+
+  @Test
+  public void testParseOk1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterSimplify.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "0.5", "0.01", "lock-borders"));
+    Assertions.assertTrue(r.isSucceeded());
+  }
+
+  @Test
+  public void testParseWrong0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterSimplify.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "1.5", "0.01"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterSimplify.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "0.5", "-1.0"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong2()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterSimplify.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "0.5", "0.01", "lock-everything"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseLODsWrong0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterSimplifyLODs.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "0.5", "0.01", "0"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseLODsOk0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterSimplifyLODs.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "0.5", "0.01", "3", "lock-borders"));
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(
+      SMFMemoryMeshFilterSimplifyLODs.NAME, r.get().name());
+  }
+
+  @Test
+  public void testSimplifyFlat()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(16);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterSimplify.create(SMFTestMeshes.POSITION, 0.1, 0.0, false)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertTrue(result.triangles().size() <= 64);
+    Assertions.assertEquals(
+      (long) result.triangles().size(),
+      result.header().triangles().triangleCount());
+    Assertions.assertTrue(result.header().vertexCount() < 289L);
+    Assertions.assertEquals(256.0, area(result), 1.0e-9);
+  }
+
+  @Test
+  public void testSimplifyLockBorders()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(16);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterSimplify.create(SMFTestMeshes.POSITION, 0.0, 0.0, true)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    final long border =
+      positions(result)
+        .stream()
+        .filter(p -> p.x() == 0.0 || p.x() == 16.0 || p.y() == 0.0 || p.y() == 16.0)
+        .count();
+
+    Assertions.assertEquals(64L, border);
+    Assertions.assertTrue(result.triangles().size() < 512);
+    Assertions.assertEquals(256.0, area(result), 1.0e-9);
+  }
+
+  @Test
+  public void testSimplifyErrorBound()
+  {
+    final SMFMemoryMesh mesh = paraboloid(8);
+
+    final SMFPartialLogged<SMFMemoryMesh> exact =
+      SMFMemoryMeshFilterSimplify.create(SMFTestMeshes.POSITION, 0.0, 0.0, false)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(exact.isSucceeded());
+    Assertions.assertSame(mesh, exact.get());
+
+    final SMFPartialLogged<SMFMemoryMesh> coarse =
+      SMFMemoryMeshFilterSimplify.create(SMFTestMeshes.POSITION, 0.5, 0.1, false)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(coarse.isSucceeded());
+    Assertions.assertTrue(coarse.get().triangles().size() <= 64);
+  }
+
+  @Test
+  public void testSimplifySeams()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.unwelded(SMFTestMeshes.grid(4));
+
+    /*
+     * Every vertex shares its position with the vertices of triangles that
+     * do not contain the other end of any of its edges, so no vertex can
+     * move without tearing the surface.
+     */
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterSimplify.create(SMFTestMeshes.POSITION, 0.0, 1.0, true)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertSame(mesh, r.get());
+  }
+
+  @Test
+  public void testSimplifySeamsCollapse()
+  {
+    final SMFMemoryMesh mesh = seamed(16);
+    Assertions.assertEquals(306L, mesh.header().vertexCount());
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterSimplify.create(SMFTestMeshes.POSITION, 0.1, 0.0, false)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertTrue(result.triangles().size() <= 128);
+    Assertions.assertEquals(256.0, area(result), 1.0e-9);
+
+    /*
+     * Each triangle must lie entirely on one side of the seam, and must
+     * use only the texture coordinates of that side.
+     */
+
+    final List<Vector3D> positions = positions(result);
+    final List<Vector2D> uvs = uvs(result);
+    long seamVertices = 0L;
+    for (final Vector3L triangle : result.triangles()) {
+      final List<Integer> corners =
+        List.of(
+          Integer.valueOf((int) triangle.x()),
+          Integer.valueOf((int) triangle.y()),
+          Integer.valueOf((int) triangle.z()));
+      final boolean right =
+        corners.stream().anyMatch(v -> positions.get(v.intValue()).x() > 8.0);
+      for (final Integer vertex : corners) {
+        final Vector3D position = positions.get(vertex.intValue());
+        final double u = uvs.get(vertex.intValue()).x();
+        Assertions.assertEquals(right, u >= 10.0, "Triangle " + triangle);
+        Assertions.assertTrue(right ? position.x() >= 8.0 : position.x() <= 8.0);
+      }
+    }
+
+    for (final Vector3D position : positions) {
+      if (position.x() == 8.0) {
+        ++seamVertices;
+      }
+    }
+    Assertions.assertTrue(seamVertices < 34L, "Seam vertices " + seamVertices);
+  }
+
+  @Test
+  public void testSimplifyLODs()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(16);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterSimplifyLODs.create(
+        SMFTestMeshes.POSITION, 0.5, 0.0, 3, false)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(mesh.triangles(), result.triangles());
+    Assertions.assertEquals(mesh.arrays(), result.arrays());
+    Assertions.assertEquals(1, result.metadata().size());
+
+    final SMFMetadata metadata = result.metadata().get(0);
+    Assertions.assertEquals(
+      SMFMemoryMeshFilterSimplifyLODs.SCHEMA, metadata.schema());
+
+    final ByteBuffer data = ByteBuffer.wrap(metadata.data());
+    Assertions.assertEquals(3, data.getInt());
+
+    int previous = mesh.triangles().size();
+    for (int level = 0; level < 3; ++level) {
+      Assertions.assertEquals(0.0, data.getDouble(), 1.0e-9);
+      final int triangles = data.getInt();
+      Assertions.assertTrue(triangles <= previous / 2, "Level " + level);
+      for (int index = 0; index < triangles * 3; ++index) {
+        final int vertex = data.getInt();
+        Assertions.assertTrue(vertex >= 0 && vertex < 289);
+      }
+      previous = triangles;
+    }
+    Assertions.assertFalse(data.hasRemaining());
+
+    final SMFPartialLogged<SMFMemoryMesh> again =
+      SMFMemoryMeshFilterSimplifyLODs.create(
+        SMFTestMeshes.POSITION, 0.5, 0.0, 1, false)
+        .filter(this.createContext(), result);
+    Assertions.assertTrue(again.isSucceeded());
+    Assertions.assertEquals(1, again.get().metadata().size());
+  }
+}
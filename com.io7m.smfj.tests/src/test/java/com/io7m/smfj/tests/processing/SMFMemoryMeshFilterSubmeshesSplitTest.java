@@ -0,0 +1,264 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.processing;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.core.SMFTriangles;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.api.SMFMetadata;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterSubmeshesSplit;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterVerticesWeld;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFMemoryMeshFilterSubmeshesSplitTest extends
+  SMFMemoryMeshFilterContract
+{
+  private static List<Vector3D> positions(
+    final SMFMemoryMesh mesh)
+  {
+    return ((SMFAttributeArrayFloating3) mesh.arrays().get(SMFTestMeshes.POSITION))
+      .values();
+  }
+
+  private static long corner(
+    final Vector3L triangle,
+    final int index)
+  {
+    switch (index) {
+      case 0:
+        return triangle.x();
+      case 1:
+        return triangle.y();
+      default:
+        return triangle.z();
+    }
+  }
+
+  @Test
+  public void testParseOk0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterSubmeshesSplit.parse(
+        Optional.empty(),
+        1,
+        List.of("65536"));
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(
+      SMFMemoryMeshFilterSubmeshesSplit.NAME, r.get().name());
+  }
+
+  @Test
+  public void testParseWrong0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterSubmeshesSplit.parse(
+        Optional.empty(),
+        1,
+        List.of("65537"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterSubmeshesSplit.parse(
+        Optional.empty(),
+        1,
+        List.of("2"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong2()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterSubmeshesSplit.parse(
+        Optional.empty(),
+        1,
+        List.of());
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testSplitUnnecessary()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(4);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterSubmeshesSplit.create(25)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(mesh.header(), result.header());
+    Assertions.assertEquals(mesh.triangles(), result.triangles());
+    Assertions.assertEquals(mesh.arrays(), result.arrays());
+
+    final SMFMetadata metadata = result.metadata().get(0);
+    Assertions.assertEquals(
+      SMFMemoryMeshFilterSubmeshesSplit.SCHEMA, metadata.schema());
+
+    final ByteBuffer data = ByteBuffer.wrap(metadata.data());
+    Assertions.assertEquals(1, data.getInt());
+    Assertions.assertEquals(0, data.getInt());
+    Assertions.assertEquals(32, data.getInt());
+    Assertions.assertEquals(0, data.getInt());
+    Assertions.assertEquals(25, data.getInt());
+    Assertions.assertFalse(data.hasRemaining());
+  }
+
+  @Test
+  public void testSplitUnnecessaryUnreferenced()
+  {
+    final SMFMemoryMesh grid = SMFTestMeshes.grid(4);
+    final SMFMemoryMesh mesh =
+      SMFMemoryMesh.builder()
+        .from(grid)
+        .setHeader(grid.header().withTriangles(SMFTriangles.of(30L, 32)))
+        .setTriangles(grid.triangles().subList(2, 32))
+        .build();
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterSubmeshesSplit.create(25)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(24L, result.header().vertexCount());
+    Assertions.assertEquals(
+      SMFTriangles.of(30L, 32), result.header().triangles());
+    Assertions.assertEquals(
+      positions(mesh).subList(1, 25), positions(result));
+
+    for (int t = 0; t < 30; ++t) {
+      final Vector3L original = mesh.triangles().get(t);
+      final Vector3L triangle = result.triangles().get(t);
+      for (int k = 0; k < 3; ++k) {
+        Assertions.assertEquals(corner(original, k) - 1L, corner(triangle, k));
+      }
+    }
+
+    final ByteBuffer data = ByteBuffer.wrap(result.metadata().get(0).data());
+    Assertions.assertEquals(1, data.getInt());
+    Assertions.assertEquals(0, data.getInt());
+    Assertions.assertEquals(30, data.getInt());
+    Assertions.assertEquals(0, data.getInt());
+    Assertions.assertEquals(24, data.getInt());
+    Assertions.assertFalse(data.hasRemaining());
+  }
+
+  @Test
+  public void testSplit()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(16);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterSubmeshesSplit.create(64)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(
+      mesh.header().triangles(), result.header().triangles());
+    Assertions.assertTrue(
+      result.header().vertexCount() > mesh.header().vertexCount());
+
+    final List<Vector3D> positions = positions(mesh);
+    final List<Vector3D> resultPositions = positions(result);
+    Assertions.assertEquals(
+      (int) result.header().vertexCount(), resultPositions.size());
+
+    final ByteBuffer data = ByteBuffer.wrap(result.metadata().get(0).data());
+    final int count = data.getInt();
+    Assertions.assertTrue(count > 1);
+
+    int nextTriangle = 0;
+    int nextVertex = 0;
+    for (int submesh = 0; submesh < count; ++submesh) {
+      final int firstTriangle = data.getInt();
+      final int triangleCount = data.getInt();
+      final int firstVertex = data.getInt();
+      final int vertexCount = data.getInt();
+      Assertions.assertEquals(nextTriangle, firstTriangle);
+      Assertions.assertEquals(nextVertex, firstVertex);
+      Assertions.assertTrue(vertexCount <= 64);
+
+      for (int t = firstTriangle; t < firstTriangle + triangleCount; ++t) {
+        final Vector3L original = mesh.triangles().get(t);
+        final Vector3L triangle = result.triangles().get(t);
+        for (int k = 0; k < 3; ++k) {
+          final long vertex = corner(triangle, k);
+          final long source = corner(original, k);
+          Assertions.assertTrue(vertex >= firstVertex);
+          Assertions.assertTrue(vertex < firstVertex + vertexCount);
+          Assertions.assertEquals(
+            positions.get((int) source), resultPositions.get((int) vertex));
+        }
+      }
+
+      nextTriangle += triangleCount;
+      nextVertex += vertexCount;
+    }
+
+    Assertions.assertEquals(mesh.triangles().size(), nextTriangle);
+    Assertions.assertEquals((int) result.header().vertexCount(), nextVertex);
+    Assertions.assertFalse(data.hasRemaining());
+  }
+
+  @Test
+  public void testSplitThenWeld()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(16);
+
+    final SMFPartialLogged<SMFMemoryMesh> split =
+      SMFMemoryMeshFilterSubmeshesSplit.create(64)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(split.isSucceeded());
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterVerticesWeld.create(Map.of())
+        .filter(this.createContext(), split.get());
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(289L, result.header().vertexCount());
+    Assertions.assertEquals(mesh.triangles().size(), result.triangles().size());
+
+    final List<Vector3D> positions = positions(mesh);
+    final List<Vector3D> resultPositions = positions(result);
+    for (int t = 0; t < mesh.triangles().size(); ++t) {
+      final Vector3L original = mesh.triangles().get(t);
+      final Vector3L triangle = result.triangles().get(t);
+      for (int k = 0; k < 3; ++k) {
+        Assertions.assertEquals(
+          positions.get((int) corner(original, k)),
+          resultPositions.get((int) corner(triangle, k)));
+      }
+    }
+  }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.processing;
+
+import com.io7m.jtensors.core.unparameterized.matrices.Matrix4x4D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector4D;
+import com.io7m.smfj.core.SMFAttribute;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFComponentType;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating4;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterTransform;
+import com.io7m.smfj.processing.main.SMFTransformAttributeKind;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.io7m.smfj.processing.main.SMFTransformAttributeKind.TRANSFORM_NORMAL;
+import static com.io7m.smfj.processing.main.SMFTransformAttributeKind.TRANSFORM_POSITION;
+import static com.io7m.smfj.processing.main.SMFTransformAttributeKind.TRANSFORM_TANGENT;
+
+public final class SMFMemoryMeshFilterTransformTest extends
+  SMFMemoryMeshFilterContract
+{
+  private static final SMFAttributeName TANGENT =
+    SMFAttributeName.of("tangent");
+
+  private static List<Vector3D> values3(
+    final SMFMemoryMesh mesh,
+    final SMFAttributeName name)
+  {
+    return ((SMFAttributeArrayFloating3) mesh.arrays().get(name)).values();
+  }
+
+  private static SMFMemoryMesh withTangents(
+    final SMFMemoryMesh mesh)
+  {
+    final SMFHeader header = mesh.header();
+    final List<Vector4D> tangents =
+      Collections.nCopies(
+        (int) header.vertexCount(), Vector4D.of(1.0, 0.0, 0.0, 1.0));
+
+    return SMFMemoryMesh.builder()
+      .from(mesh)
+      .setHeader(
+        SMFHeader.builder()
+          .from(header)
+          .addAttributesInOrder(
+            SMFAttribute.of(
+              TANGENT, SMFComponentType.ELEMENT_TYPE_FLOATING, 4, 32))
+          .build())
+      .putArrays(TANGENT, SMFAttributeArrayFloating4.of(tangents))
+      .build();
+  }
+
+  private static List<String> arguments(
+    final String... extra)
+  {
+    final List<String> text = new ArrayList<>(List.of(
+      "1", "0", "0", "0",
+      "0", "1", "0", "0",
+      "0", "0", "1", "0",
+      "0", "0", "0", "1"));
+    text.addAll(List.of(extra));
+    return text;
+  }
+
+  @Test
+  public void testParseOk0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTransform.parse(
+        Optional.empty(),
+        1,
+        arguments("position=position", "normal=normal", "renormalize"));
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(SMFMemoryMeshFilterTransform.NAME, r.get().name());
+  }
+
+  @Test
+  public void testParseOk1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTransform.parse(
+        Optional.empty(),
+        1,
+        arguments("tangent=tangent"));
+    Assertions.assertTrue(r.isSucceeded());
+  }
+
+  @Test
+  public void testParseWrong0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTransform.parse(
+        Optional.empty(),
+        1,
+        arguments());
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTransform.parse(
+        Optional.empty(),
+        1,
+        arguments("renormalize"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong2()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTransform.parse(
+        Optional.empty(),
+        1,
+        arguments("position=colour"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong3()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTransform.parse(
+        Optional.empty(),
+        1,
+        arguments("position=position", "position=normal"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong4()
+  {
+    final List<String> text = arguments("position=position");
+    text.set(12, "1");
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTransform.parse(Optional.empty(), 1, text);
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong5()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTransform.parse(
+        Optional.empty(),
+        1,
+        arguments("position"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testWrongType()
+  {
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTransform.create(
+        Matrix4x4D.of(
+          1.0, 0.0, 0.0, 0.0,
+          0.0, 1.0, 0.0, 0.0,
+          0.0, 0.0, 1.0, 0.0,
+          0.0, 0.0, 0.0, 1.0),
+        Map.of(SMFTestMeshes.UV, TRANSFORM_POSITION),
+        false)
+        .filter(this.createContext(), SMFTestMeshes.grid(2));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testSingularNormals()
+  {
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTransform.create(
+        Matrix4x4D.of(
+          1.0, 0.0, 0.0, 0.0,
+          0.0, 1.0, 0.0, 0.0,
+          0.0, 0.0, 0.0, 0.0,
+          0.0, 0.0, 0.0, 1.0),
+        Map.of(SMFTestMeshes.NORMAL, TRANSFORM_NORMAL),
+        false)
+        .filter(this.createContext(), SMFTestMeshes.grid(2));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testTranslateScale()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(4);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTransform.create(
+        Matrix4x4D.of(
+          2.0, 0.0, 0.0, 10.0,
+          0.0, 3.0, 0.0, 20.0,
+          0.0, 0.0, 4.0, 30.0,
+          0.0, 0.0, 0.0, 1.0),
+        Map.of(
+          SMFTestMeshes.POSITION, TRANSFORM_POSITION,
+          SMFTestMeshes.NORMAL, TRANSFORM_NORMAL),
+        false)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(mesh.triangles(), result.triangles());
+    Assertions.assertEquals(
+      mesh.arrays().get(SMFTestMeshes.UV),
+      result.arrays().get(SMFTestMeshes.UV));
+
+    final List<Vector3D> p0 = values3(mesh, SMFTestMeshes.POSITION);
+    final List<Vector3D> p1 = values3(result, SMFTestMeshes.POSITION);
+    final List<Vector3D> n1 = values3(result, SMFTestMeshes.NORMAL);
+    for (int index = 0; index < p0.size(); ++index) {
+      final Vector3D p = p0.get(index);
+      Assertions.assertEquals(
+        Vector3D.of(p.x() * 2.0 + 10.0, p.y() * 3.0 + 20.0, p.z() * 4.0 + 30.0),
+        p1.get(index));
+      Assertions.assertEquals(Vector3D.of(0.0, 0.0, 0.25), n1.get(index));
+    }
+  }
+
+  @Test
+  public void testShearRenormalize()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(4);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTransform.create(
+        Matrix4x4D.of(
+          1.0, 0.0, 0.0, 0.0,
+          0.0, 1.0, 0.0, 0.0,
+          1.0, 0.0, 1.0, 0.0,
+          0.0, 0.0, 0.0, 1.0),
+        Map.of(SMFTestMeshes.NORMAL, TRANSFORM_NORMAL),
+        true)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final double s = Math.sqrt(0.5);
+    for (final Vector3D n : values3(r.get(), SMFTestMeshes.NORMAL)) {
+      Assertions.assertEquals(-s, n.x(), 1.0e-12);
+      Assertions.assertEquals(0.0, n.y(), 1.0e-12);
+      Assertions.assertEquals(s, n.z(), 1.0e-12);
+    }
+  }
+
+  @Test
+  public void testMirror()
+  {
+    final SMFMemoryMesh mesh = withTangents(SMFTestMeshes.grid(4));
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTransform.create(
+        Matrix4x4D.of(
+          -1.0, 0.0, 0.0, 0.0,
+          0.0, 1.0, 0.0, 0.0,
+          0.0, 0.0, 1.0, 0.0,
+          0.0, 0.0, 0.0, 1.0),
+        Map.of(
+          SMFTestMeshes.POSITION, TRANSFORM_POSITION,
+          SMFTestMeshes.NORMAL, TRANSFORM_NORMAL,
+          TANGENT, TRANSFORM_TANGENT),
+        true)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    for (int index = 0; index < mesh.triangles().size(); ++index) {
+      final Vector3L t0 = mesh.triangles().get(index);
+      final Vector3L t1 = result.triangles().get(index);
+      Assertions.assertEquals(Vector3L.of(t0.x(), t0.z(), t0.y()), t1);
+    }
+
+    for (final Vector3D n : values3(result, SMFTestMeshes.NORMAL)) {
+      Assertions.assertEquals(0.0, n.x(), 1.0e-12);
+      Assertions.assertEquals(0.0, n.y(), 1.0e-12);
+      Assertions.assertEquals(1.0, n.z(), 1.0e-12);
+    }
+
+    final List<Vector4D> tangents =
+      ((SMFAttributeArrayFloating4) result.arrays().get(TANGENT)).values();
+    for (final Vector4D t : tangents) {
+      Assertions.assertEquals(Vector4D.of(-1.0, 0.0, 0.0, -1.0), t);
+    }
+  }
+
+  @Test
+  public void testParallel()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(256);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTransform.create(
+        Matrix4x4D.of(
+          1.0, 0.0, 0.0, 1.0,
+          0.0, 1.0, 0.0, 2.0,
+          0.0, 0.0, 1.0, 3.0,
+          0.0, 0.0, 0.0, 1.0),
+        Map.of(SMFTestMeshes.POSITION, TRANSFORM_POSITION),
+        false)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final List<Vector3D> p0 = values3(mesh, SMFTestMeshes.POSITION);
+    final List<Vector3D> p1 = values3(r.get(), SMFTestMeshes.POSITION);
+    for (int index = 0; index < p0.size(); ++index) {
+      final Vector3D p = p0.get(index);
+      Assertions.assertEquals(
+        Vector3D.of(p.x() + 1.0, p.y() + 2.0, p.z() + 3.0), p1.get(index));
+    }
+  }
+
+  @Test
+  public void testKindNames()
+  {
+    for (final SMFTransformAttributeKind kind :
+      SMFTransformAttributeKind.values()) {
+      Assertions.assertEquals(
+        kind, SMFTransformAttributeKind.fromName(kind.toName()));
+    }
+    Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> SMFTransformAttributeKind.fromName("colour"));
+  }
+}
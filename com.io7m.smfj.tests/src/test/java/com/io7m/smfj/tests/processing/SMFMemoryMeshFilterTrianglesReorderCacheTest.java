@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.tests.processing;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterTrianglesReorderCache;
+import com.io7m.smfj.processing.main.SMFVertexCacheStatistics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class SMFMemoryMeshFilterTrianglesReorderCacheTest extends
+  SMFMemoryMeshFilterContract
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterTrianglesReorderCacheTest.class);
+
+  @Test
+  public void testParseWrong0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTrianglesReorderCache.parse(
+        Optional.empty(),
+        1,
+        List.of());
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTrianglesReorderCache.parse(
+        Optional.empty(),
+        1,
+        List.of("x"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong2()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTrianglesReorderCache.parse(
+        Optional.empty(),
+        1,
+        List.of("2"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseOk0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTrianglesReorderCache.parse(
+        Optional.empty(),
+        1,
+        List.of("16"));
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(
+      SMFMemoryMeshFilterTrianglesReorderCache.NAME, r.get().name());
+  }
+
+  @Test
+  public void testReorderShuffledGrid()
+  {
+    final SMFMemoryMesh mesh =
+      SMFTestMeshes.shuffled(SMFTestMeshes.grid(64), 0x5eedL);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTrianglesReorderCache.create(16)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(mesh.header(), result.header());
+    Assertions.assertEquals(mesh.arrays(), result.arrays());
+    Assertions.assertEquals(
+      SMFTestMeshes.sortedTriangles(mesh.triangles()),
+      SMFTestMeshes.sortedTriangles(result.triangles()));
+
+    final var before =
+      SMFVertexCacheStatistics.measure(
+        mesh.triangles(), mesh.header().vertexCount(), 16);
+    final var after =
+      SMFVertexCacheStatistics.measure(
+        result.triangles(), result.header().vertexCount(), 16);
+
+    LOG.debug("before: {}", before);
+    LOG.debug("after:  {}", after);
+    Assertions.assertTrue(after.acmr() < 1.0, after.toString());
+    Assertions.assertTrue(after.acmr() < before.acmr() / 2.0);
+  }
+
+  @Test
+  public void testReorderAlreadyOptimal()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(1);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTrianglesReorderCache.create(16)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(mesh, r.get());
+  }
+
+  @Test
+  public void testNonexistentVertex()
+  {
+    final SMFMemoryMesh grid = SMFTestMeshes.grid(2);
+    final List<Vector3L> triangles = new ArrayList<>(grid.triangles());
+    triangles.set(3, Vector3L.of(0L, 1L, 1000L));
+    final SMFMemoryMesh mesh = grid.withTriangles(triangles);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTrianglesReorderCache.create(16)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testStatistics()
+  {
+    final var statistics =
+      SMFVertexCacheStatistics.measure(
+        List.of(
+          Vector3L.of(0L, 1L, 2L),
+          Vector3L.of(2L, 1L, 3L),
+          Vector3L.of(4L, 5L, 6L)),
+        8L,
+        3);
+
+    Assertions.assertEquals(3L, statistics.triangles());
+    Assertions.assertEquals(7L, statistics.vertices());
+    Assertions.assertEquals(7L, statistics.misses());
+    Assertions.assertEquals(1.0, statistics.atvr(), 0.0);
+
+    final var small =
+      SMFVertexCacheStatistics.measure(
+        List.of(
+          Vector3L.of(0L, 1L, 2L),
+          Vector3L.of(3L, 4L, 5L),
+          Vector3L.of(0L, 1L, 2L)),
+        6L,
+        3);
+    Assertions.assertEquals(9L, small.misses());
+    Assertions.assertEquals(3.0, small.acmr(), 0.0);
+  }
+
+  @Test
+  public void testStatisticsCacheSizeInvalid()
+  {
+    final var ex = Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> SMFVertexCacheStatistics.measure(
+        List.of(Vector3L.of(0L, 1L, 2L)), 3L, 0));
+    Assertions.assertEquals("Cache size 0 must be positive", ex.getMessage());
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.processing;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterTrianglesReorderOverdraw;
+import com.io7m.smfj.processing.main.SMFOverdrawStatistics;
+import com.io7m.smfj.processing.main.SMFVertexCacheStatistics;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class SMFMemoryMeshFilterTrianglesReorderOverdrawTest extends
+  SMFMemoryMeshFilterContract
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(SMFMemoryMeshFilterTrianglesReorderOverdrawTest.class);
+
+  @Test
+  public void testParseWrong0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTrianglesReorderOverdraw.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "16"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTrianglesReorderOverdraw.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "2", "1.05"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong2()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTrianglesReorderOverdraw.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "16", "0.5"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong3()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTrianglesReorderOverdraw.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "16", "NaN"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseOk0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterTrianglesReorderOverdraw.parse(
+        Optional.empty(),
+        1,
+        List.of("position", "16", "1.05"));
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(
+      SMFMemoryMeshFilterTrianglesReorderOverdraw.NAME, r.get().name());
+  }
+
+  @Test
+  public void testLayersFrontToBack()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.layers(8, 4);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTrianglesReorderOverdraw.create(
+        SMFTestMeshes.POSITION, 16, 1.05)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(mesh.header(), result.header());
+    Assertions.assertEquals(mesh.arrays(), result.arrays());
+    Assertions.assertEquals(
+      SMFTestMeshes.sortedTriangles(mesh.triangles()),
+      SMFTestMeshes.sortedTriangles(result.triangles()));
+
+    final var before =
+      SMFOverdrawStatistics.measure(mesh, SMFTestMeshes.POSITION, 64);
+    final var after =
+      SMFOverdrawStatistics.measure(result, SMFTestMeshes.POSITION, 64);
+
+    LOG.debug("before: {}", before);
+    LOG.debug("after:  {}", after);
+    Assertions.assertEquals(4.0, before.overdraw(), 0.01);
+    Assertions.assertEquals(1.0, after.overdraw(), 0.01);
+    Assertions.assertEquals(before.covered(), after.covered());
+  }
+
+  @Test
+  public void testShuffledGridCache()
+  {
+    final SMFMemoryMesh mesh =
+      SMFTestMeshes.shuffled(SMFTestMeshes.grid(32), 0x5eedL);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTrianglesReorderOverdraw.create(
+        SMFTestMeshes.POSITION, 16, 1.05)
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(
+      SMFTestMeshes.sortedTriangles(mesh.triangles()),
+      SMFTestMeshes.sortedTriangles(result.triangles()));
+
+    final var before =
+      SMFVertexCacheStatistics.measure(
+        mesh.triangles(), mesh.header().vertexCount(), 16);
+    final var after =
+      SMFVertexCacheStatistics.measure(
+        result.triangles(), result.header().vertexCount(), 16);
+
+    LOG.debug("before: {}", before);
+    LOG.debug("after:  {}", after);
+    Assertions.assertTrue(after.acmr() < before.acmr() / 2.0);
+  }
+
+  @Test
+  public void testNonexistentAttribute()
+  {
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTrianglesReorderOverdraw.create(
+        SMFAttributeName.of("nonexistent"), 16, 1.05)
+        .filter(this.createContext(), SMFTestMeshes.grid(2));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testWrongAttributeType()
+  {
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterTrianglesReorderOverdraw.create(
+        SMFTestMeshes.UV, 16, 1.05)
+        .filter(this.createContext(), SMFTestMeshes.grid(2));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testStatisticsCulling()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(4);
+    final SMFMemoryMesh reversed =
+      mesh.withTriangles(
+        mesh.triangles()
+          .stream()
+          .map(t -> Vector3L.of(t.x(), t.z(), t.y()))
+          .collect(Collectors.toList()));
+
+    final var front =
+      SMFOverdrawStatistics.measure(mesh, SMFTestMeshes.POSITION, 16);
+    final var back =
+      SMFOverdrawStatistics.measure(reversed, SMFTestMeshes.POSITION, 16);
+
+    Assertions.assertEquals(256L, front.covered());
+    Assertions.assertEquals(1.0, front.overdraw(), 0.0);
+    Assertions.assertEquals(256L, back.covered());
+    Assertions.assertEquals(1.0, back.overdraw(), 0.0);
+  }
+}
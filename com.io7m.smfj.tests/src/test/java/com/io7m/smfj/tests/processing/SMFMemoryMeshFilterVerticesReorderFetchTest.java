@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.tests.processing;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector2D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating2;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterVerticesReorderFetch;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFMemoryMeshFilterVerticesReorderFetchTest extends
+  SMFMemoryMeshFilterContract
+{
+  private static <T> List<T> permute(
+    final List<T> values,
+    final List<Integer> sources)
+  {
+    final List<T> result = new ArrayList<>(values.size());
+    for (final Integer source : sources) {
+      result.add(values.get(source.intValue()));
+    }
+    return result;
+  }
+
+  private static SMFMemoryMesh shuffleVertices(
+    final SMFMemoryMesh mesh,
+    final long seed)
+  {
+    final int count = (int) mesh.header().vertexCount();
+    final List<Integer> sources = new ArrayList<>(count);
+    for (int index = 0; index < count; ++index) {
+      sources.add(Integer.valueOf(index));
+    }
+    Collections.shuffle(sources, new Random(seed));
+
+    final long[] remap = new long[count];
+    for (int index = 0; index < count; ++index) {
+      remap[sources.get(index).intValue()] = (long) index;
+    }
+
+    final List<Vector3L> triangles = new ArrayList<>();
+    for (final Vector3L t : mesh.triangles()) {
+      triangles.add(Vector3L.of(
+        remap[(int) t.x()], remap[(int) t.y()], remap[(int) t.z()]));
+    }
+
+    return mesh
+      .withTriangles(triangles)
+      .withArrays(Map.of(
+        SMFTestMeshes.POSITION,
+        SMFAttributeArrayFloating3.of(permute(positions(mesh), sources)),
+        SMFTestMeshes.NORMAL,
+        SMFAttributeArrayFloating3.of(permute(
+          ((SMFAttributeArrayFloating3) mesh.arrays().get(SMFTestMeshes.NORMAL)).values(),
+          sources)),
+        SMFTestMeshes.UV,
+        SMFAttributeArrayFloating2.of(permute(uvs(mesh), sources))));
+  }
+
+  private static List<Vector3D> positions(
+    final SMFMemoryMesh mesh)
+  {
+    return ((SMFAttributeArrayFloating3) mesh.arrays().get(SMFTestMeshes.POSITION)).values();
+  }
+
+  private static List<Vector2D> uvs(
+    final SMFMemoryMesh mesh)
+  {
+    return ((SMFAttributeArrayFloating2) mesh.arrays().get(SMFTestMeshes.UV)).values();
+  }
+
+  private static <T> List<List<T>> corners(
+    final SMFMemoryMesh mesh,
+    final Function<SMFMemoryMesh, List<T>> values)
+  {
+    final List<T> data = values.apply(mesh);
+    final List<List<T>> result = new ArrayList<>();
+    for (final Vector3L t : mesh.triangles()) {
+      result.add(List.of(
+        data.get((int) t.x()), data.get((int) t.y()), data.get((int) t.z())));
+    }
+    return result;
+  }
+
+  private static void checkFirstUseOrder(
+    final SMFMemoryMesh mesh)
+  {
+    long next = 0L;
+    for (final Vector3L t : mesh.triangles()) {
+      for (final long v : new long[]{t.x(), t.y(), t.z()}) {
+        Assertions.assertTrue(v <= next);
+        if (v == next) {
+          ++next;
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testParseWrong0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterVerticesReorderFetch.parse(
+        Optional.empty(),
+        1,
+        List.of("x"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseOk0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterVerticesReorderFetch.parse(
+        Optional.empty(),
+        1,
+        List.of());
+    Assertions.assertTrue(r.isSucceeded());
+  }
+
+  @Test
+  public void testReorderShuffled()
+  {
+    final SMFMemoryMesh mesh =
+      shuffleVertices(SMFTestMeshes.grid(16), 0x5eedL);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterVerticesReorderFetch.create()
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(mesh.header(), result.header());
+    checkFirstUseOrder(result);
+    Assertions.assertEquals(
+      corners(mesh, SMFMemoryMeshFilterVerticesReorderFetchTest::positions),
+      corners(result, SMFMemoryMeshFilterVerticesReorderFetchTest::positions));
+    Assertions.assertEquals(
+      corners(mesh, SMFMemoryMeshFilterVerticesReorderFetchTest::uvs),
+      corners(result, SMFMemoryMeshFilterVerticesReorderFetchTest::uvs));
+  }
+
+  @Test
+  public void testUnreferencedLast()
+  {
+    final SMFMemoryMesh grid = SMFTestMeshes.grid(2);
+    final SMFMemoryMesh mesh =
+      SMFMemoryMesh.builder()
+        .from(grid)
+        .setTriangles(List.of(Vector3L.of(4L, 5L, 8L)))
+        .setHeader(grid.header().withTriangles(
+          grid.header().triangles().withTriangleCount(1L)))
+        .build();
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterVerticesReorderFetch.create()
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(
+      List.of(Vector3L.of(0L, 1L, 2L)), result.triangles());
+
+    final List<Vector3D> before = positions(mesh);
+    final List<Vector3D> after = positions(result);
+    Assertions.assertEquals(9, after.size());
+    Assertions.assertEquals(before.get(4), after.get(0));
+    Assertions.assertEquals(before.get(5), after.get(1));
+    Assertions.assertEquals(before.get(8), after.get(2));
+    Assertions.assertEquals(before.get(0), after.get(3));
+    Assertions.assertEquals(before.get(7), after.get(8));
+  }
+
+  @Test
+  public void testIdempotent()
+  {
+    final SMFMemoryMeshFilterType filter =
+      SMFMemoryMeshFilterVerticesReorderFetch.create();
+    final SMFMemoryMesh mesh =
+      filter.filter(this.createContext(), SMFTestMeshes.grid(4)).get();
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      filter.filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertSame(mesh, r.get());
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.smfj.tests.processing;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFPartialLogged;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import com.io7m.smfj.processing.api.SMFMemoryMeshFilterType;
+import com.io7m.smfj.processing.main.SMFMemoryMeshFilterVerticesWeld;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntToDoubleFunction;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SMFMemoryMeshFilterVerticesWeldTest extends
+  SMFMemoryMeshFilterContract
+{
+  private static List<Vector3D> corners(
+    final SMFMemoryMesh mesh)
+  {
+    final List<Vector3D> positions =
+      ((SMFAttributeArrayFloating3) mesh.arrays().get(SMFTestMeshes.POSITION))
+        .values();
+    final List<Vector3D> result = new ArrayList<>();
+    for (final Vector3L triangle : mesh.triangles()) {
+      result.add(positions.get((int) triangle.x()));
+      result.add(positions.get((int) triangle.y()));
+      result.add(positions.get((int) triangle.z()));
+    }
+    return result;
+  }
+
+  private static SMFMemoryMesh offsetX(
+    final SMFMemoryMesh mesh,
+    final IntToDoubleFunction offsets)
+  {
+    final List<Vector3D> positions =
+      ((SMFAttributeArrayFloating3) mesh.arrays().get(SMFTestMeshes.POSITION))
+        .values();
+    final List<Vector3D> offset = new ArrayList<>();
+    for (int index = 0; index < positions.size(); ++index) {
+      final Vector3D p = positions.get(index);
+      offset.add(
+        Vector3D.of(p.x() + offsets.applyAsDouble(index), p.y(), p.z()));
+    }
+    return SMFMemoryMesh.builder()
+      .from(mesh)
+      .putArrays(SMFTestMeshes.POSITION, SMFAttributeArrayFloating3.of(offset))
+      .build();
+  }
+
+  @Test
+  public void testParseOk0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterVerticesWeld.parse(
+        Optional.empty(),
+        1,
+        List.of());
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(
+      SMFMemoryMeshFilterVerticesWeld.NAME, r.get().name());
+  }
+
+  @Test
+  public void testParseOk1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterVerticesWeld.parse(
+        Optional.empty(),
+        1,
+        List.of("position=0.001", "uv:0"));
+    Assertions.assertTrue(r.isSucceeded());
+  }
+
+  @Test
+  public void testParseWrong0()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterVerticesWeld.parse(
+        Optional.empty(),
+        1,
+        List.of("position=-1.0"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong1()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterVerticesWeld.parse(
+        Optional.empty(),
+        1,
+        List.of("position=x"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testParseWrong2()
+  {
+    final SMFPartialLogged<SMFMemoryMeshFilterType> r =
+      SMFMemoryMeshFilterVerticesWeld.parse(
+        Optional.empty(),
+        1,
+        List.of("POSITION"));
+    Assertions.assertTrue(r.isFailed());
+  }
+
+  @Test
+  public void testWeldExact()
+  {
+    final SMFMemoryMesh grid = SMFTestMeshes.grid(8);
+    final SMFMemoryMesh mesh = SMFTestMeshes.unwelded(grid);
+    Assertions.assertEquals(384L, mesh.header().vertexCount());
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterVerticesWeld.create(Map.of())
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(81L, result.header().vertexCount());
+    Assertions.assertEquals(
+      mesh.header().triangles(), result.header().triangles());
+    Assertions.assertEquals(corners(mesh), corners(result));
+  }
+
+  @Test
+  public void testWeldLarge()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.unwelded(SMFTestMeshes.grid(150));
+    Assertions.assertEquals(135000L, mesh.header().vertexCount());
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterVerticesWeld.create(Map.of())
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(22801L, result.header().vertexCount());
+    Assertions.assertEquals(corners(mesh), corners(result));
+  }
+
+  @Test
+  public void testWeldAlreadyWelded()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.grid(4);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterVerticesWeld.create(Map.of())
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertSame(mesh, r.get());
+  }
+
+  @Test
+  public void testWeldEpsilon()
+  {
+    final SMFMemoryMesh unwelded = SMFTestMeshes.unwelded(SMFTestMeshes.grid(4));
+    final List<Vector3D> jittered = new ArrayList<>();
+    final List<Vector3D> positions =
+      ((SMFAttributeArrayFloating3) unwelded.arrays().get(SMFTestMeshes.POSITION))
+        .values();
+    for (int index = 0; index < positions.size(); ++index) {
+      final double offset = (index % 7 - 3) * 1.0e-6;
+      final Vector3D p = positions.get(index);
+      jittered.add(Vector3D.of(p.x() + offset, p.y() - offset, p.z()));
+    }
+    final SMFMemoryMesh mesh =
+      SMFMemoryMesh.builder()
+        .from(unwelded)
+        .putArrays(SMFTestMeshes.POSITION, SMFAttributeArrayFloating3.of(jittered))
+        .build();
+
+    final SMFPartialLogged<SMFMemoryMesh> exact =
+      SMFMemoryMeshFilterVerticesWeld.create(Map.of())
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(exact.isSucceeded());
+    Assertions.assertTrue(exact.get().header().vertexCount() > 25L);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterVerticesWeld.create(
+        Map.of(SMFTestMeshes.POSITION, Double.valueOf(0.001)))
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(25L, r.get().header().vertexCount());
+    Assertions.assertEquals(32, r.get().triangles().size());
+  }
+
+  @Test
+  public void testWeldEpsilonCellBoundary()
+  {
+    final SMFMemoryMesh mesh =
+      offsetX(
+        SMFTestMeshes.unwelded(SMFTestMeshes.grid(4)),
+        index -> index % 2 == 0 ? 0.0005 + 1.0e-9 : 0.0005 - 1.0e-9);
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterVerticesWeld.create(
+        Map.of(SMFTestMeshes.POSITION, Double.valueOf(0.001)))
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+    Assertions.assertEquals(25L, r.get().header().vertexCount());
+    Assertions.assertEquals(32, r.get().triangles().size());
+  }
+
+  @Test
+  public void testWeldEpsilonDistance()
+  {
+    final SMFMemoryMesh mesh =
+      offsetX(
+        SMFTestMeshes.unwelded(SMFTestMeshes.grid(4)),
+        index -> index % 2 == 0 ? 0.0 : 0.0015);
+
+    final SMFPartialLogged<SMFMemoryMesh> exact =
+      SMFMemoryMeshFilterVerticesWeld.create(Map.of())
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(exact.isSucceeded());
+    Assertions.assertTrue(exact.get().header().vertexCount() > 25L);
+
+    final SMFPartialLogged<SMFMemoryMesh> near =
+      SMFMemoryMeshFilterVerticesWeld.create(
+        Map.of(SMFTestMeshes.POSITION, Double.valueOf(0.001)))
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(near.isSucceeded());
+    Assertions.assertEquals(
+      exact.get().header().vertexCount(),
+      near.get().header().vertexCount());
+
+    final SMFPartialLogged<SMFMemoryMesh> far =
+      SMFMemoryMeshFilterVerticesWeld.create(
+        Map.of(SMFTestMeshes.POSITION, Double.valueOf(0.002)))
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(far.isSucceeded());
+    Assertions.assertEquals(25L, far.get().header().vertexCount());
+  }
+
+  @Test
+  public void testWeldDegenerate()
+  {
+    final SMFMemoryMesh mesh = SMFTestMeshes.unwelded(SMFTestMeshes.grid(4));
+
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterVerticesWeld.create(
+        Map.of(SMFTestMeshes.POSITION, Double.valueOf(100.0)))
+        .filter(this.createContext(), mesh);
+    Assertions.assertTrue(r.isSucceeded());
+
+    final SMFMemoryMesh result = r.get();
+    Assertions.assertEquals(1L, result.header().vertexCount());
+    Assertions.assertEquals(0L, result.header().triangles().triangleCount());
+    Assertions.assertEquals(List.of(), result.triangles());
+  }
+
+  @Test
+  public void testNonexistentAttribute()
+  {
+    final SMFPartialLogged<SMFMemoryMesh> r =
+      SMFMemoryMeshFilterVerticesWeld.create(
+        Map.of(SMFAttributeName.of("nonexistent"), Double.valueOf(0.0)))
+        .filter(this.createContext(), SMFTestMeshes.grid(2));
+    Assertions.assertTrue(r.isFailed());
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.smfj.tests.processing;
+
+import com.io7m.jtensors.core.unparameterized.vectors.Vector2D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3D;
+import com.io7m.jtensors.core.unparameterized.vectors.Vector3L;
+import com.io7m.smfj.core.SMFAttribute;
+import com.io7m.smfj.core.SMFAttributeName;
+import com.io7m.smfj.core.SMFComponentType;
+import com.io7m.smfj.core.SMFHeader;
+import com.io7m.smfj.core.SMFTriangles;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating2;
+import com.io7m.smfj.processing.api.SMFAttributeArrayFloating3;
+import com.io7m.smfj.processing.api.SMFMemoryMesh;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Programmatically constructed meshes for filter tests.
+ */
+
+public final class SMFTestMeshes
+{
+  public static final SMFAttributeName POSITION =
+    SMFAttributeName.of("position");
+  public static final SMFAttributeName NORMAL =
+    SMFAttributeName.of("normal");
+  public static final SMFAttributeName UV =
+    SMFAttributeName.of("uv");
+
+  private SMFTestMeshes()
+  {
+
+  }
+
+  /**
+   * A flat square grid of {@code size * size} quads in the XY plane, facing
+   * +Z, with its triangles in row order.
+   *
+   * @param size The number of quads along each side
+   *
+   * @return A mesh
+   */
+
+  public static SMFMemoryMesh grid(
+    final int size)
+  {
+    return layers(size, 1);
+  }
+
+  /**
+   * A stack of disconnected flat square grids of {@code size * size} quads,
+   * parallel to the XY plane at {@code z = 0, 1, ...} and facing +Z, with
+   * the triangles of the rearmost grid first and each grid's triangles in
+   * row order.
+   *
+   * @param size  The number of quads along each side
+   * @param count The number of grids
+   *
+   * @return A mesh
+   */
+
+  public static SMFMemoryMesh layers(
+    final int size,
+    final int count)
+  {
+    final int stride = size + 1;
+    final List<Vector3D> positions = new ArrayList<>();
+    final List<Vector3D> normals = new ArrayList<>();
+    final List<Vector2D> uvs = new ArrayList<>();
+    final List<Vector3L> triangles = new ArrayList<>();
+
+    for (int layer = 0; layer < count; ++layer) {
+      final int first = positions.size();
+      for (int y = 0; y <= size; ++y) {
+        for (int x = 0; x <= size; ++x) {
+          positions.add(Vector3D.of((double) x, (double) y, (double) layer));
+          normals.add(Vector3D.of(0.0, 0.0, 1.0));
+          uvs.add(Vector2D.of(x / (double) size, y / (double) size));
+        }
+      }
+
+      for (int y = 0; y < size; ++y) {
+        for (int x = 0; x < size; ++x) {
+          final long i0 = (long) (first + y * stride + x);
+          final long i1 = i0 + 1L;
+          final long i2 = i0 + (long) stride + 1L;
+          final long i3 = i0 + (long) stride;
+          triangles.add(Vector3L.of(i0, i1, i2));
+          triangles.add(Vector3L.of(i0, i2, i3));
+        }
+      }
+    }
+
+    final SMFHeader header =
+      SMFHeader.builder()
+        .setVertexCount((long) positions.size())
+        .setTriangles(SMFTriangles.of((long) triangles.size(), 32))
+        .setAttributesInOrder(List.of(
+          SMFAttribute.of(POSITION, SMFComponentType.ELEMENT_TYPE_FLOATING, 3, 32),
+          SMFAttribute.of(NORMAL, SMFComponentType.ELEMENT_TYPE_FLOATING, 3, 32),
+          SMFAttribute.of(UV, SMFComponentType.ELEMENT_TYPE_FLOATING, 2, 32)))
+        .build();
+
+    return SMFMemoryMesh.builder()
+      .setHeader(header)
+      .setTriangles(triangles)
+      .putArrays(POSITION, SMFAttributeArrayFloating3.of(positions))
+      .putArrays(NORMAL, SMFAttributeArrayFloating3.of(normals))
+      .putArrays(UV, SMFAttributeArrayFloating2.of(uvs))
+      .build();
+  }
+
+  /**
+   * Give every triangle corner of a mesh produced by {@link #layers(int,
+   * int)} its own vertex, as exporters that write one vertex per face
+   * corner do.
+   *
+   * @param mesh The mesh
+   *
+   * @return The mesh with no shared vertices
+   */
+
+  public static SMFMemoryMesh unwelded(
+    final SMFMemoryMesh mesh)
+  {
+    final List<Vector3D> positions =
+      ((SMFAttributeArrayFloating3) mesh.arrays().get(POSITION)).values();
+    final List<Vector3D> normals =
+      ((SMFAttributeArrayFloating3) mesh.arrays().get(NORMAL)).values();
+    final List<Vector2D> uvs =
+      ((SMFAttributeArrayFloating2) mesh.arrays().get(UV)).values();
+
+    final List<Vector3D> newPositions = new ArrayList<>();
+    final List<Vector3D> newNormals = new ArrayList<>();
+    final List<Vector2D> newUVs = new ArrayList<>();
+    final List<Vector3L> triangles = new ArrayList<>();
+    for (final Vector3L triangle : mesh.triangles()) {
+      final long first = (long) newPositions.size();
+      for (final long vertex : List.of(triangle.x(), triangle.y(), triangle.z())) {
+        newPositions.add(positions.get((int) vertex));
+        newNormals.add(normals.get((int) vertex));
+        newUVs.add(uvs.get((int) vertex));
+      }
+      triangles.add(Vector3L.of(first, first + 1L, first + 2L));
+    }
+
+    return SMFMemoryMesh.builder()
+      .from(mesh)
+      .setHeader(mesh.header().withVertexCount((long) newPositions.size()))
+      .setTriangles(triangles)
+      .putArrays(POSITION, SMFAttributeArrayFloating3.of(newPositions))
+      .putArrays(NORMAL, SMFAttributeArrayFloating3.of(newNormals))
+      .putArrays(UV, SMFAttributeArrayFloating2.of(newUVs))
+      .build();
+  }
+
+  /**
+   * @param mesh The mesh
+   * @param seed The random seed
+   *
+   * @return The mesh with its triangles in a random order
+   */
+
+  public static SMFMemoryMesh shuffled(
+    final SMFMemoryMesh mesh,
+    final long seed)
+  {
+    final List<Vector3L> triangles = new ArrayList<>(mesh.triangles());
+    Collections.shuffle(triangles, new Random(seed));
+    return mesh.withTriangles(triangles);
+  }
+
+  /**
+   * @param triangles The triangles
+   *
+   * @return The triangles in a canonical order, for comparing meshes whose
+   * triangles have been reordered
+   */
+
+  public static List<Vector3L> sortedTriangles(
+    final List<Vector3L> triangles)
+  {
+    final List<Vector3L> result = new ArrayList<>(triangles);
+    result.sort(
+      Comparator.comparingLong(Vector3L::x)
+        .thenComparingLong(Vector3L::y)
+        .thenComparingLong(Vector3L::z));
+    return result;
+  }
+}